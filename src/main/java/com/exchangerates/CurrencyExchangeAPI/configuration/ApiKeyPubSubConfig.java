@@ -0,0 +1,44 @@
+package com.exchangerates.CurrencyExchangeAPI.configuration;
+
+import com.exchangerates.CurrencyExchangeAPI.services.ApiKeyBloomFilterService;
+import com.exchangerates.CurrencyExchangeAPI.services.AuthenticationService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyBloomFilterService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IAuthenticationService;
+import java.nio.charset.StandardCharsets;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Subscribes to API key events published by any instance (including this one):
+ * - revocations (API key digests) drop the revoked keys from this instance's cache of resolved API keys
+ * - additions set the bits of newly issued keys in this instance's filter of issued API keys
+ * Pub/sub is fire and forget - revocations published while disconnected are lost, and are only
+ * honored once the cached entry expires (auth.api-key-cache.ttl). Lost additions are picked up by
+ * the next sync of the filter (auth.bloom-filter.sync-interval-ms).
+ */
+@Configuration
+public class ApiKeyPubSubConfig {
+
+    @Bean
+    public RedisMessageListenerContainer apiKeyListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            IAuthenticationService authenticationService,
+            IApiKeyBloomFilterService apiKeyBloomFilter) {
+        var container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) ->
+                        authenticationService.evictAPIKeyDigest(
+                                new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(AuthenticationService.API_KEY_REVOCATION_CHANNEL));
+        container.addMessageListener(
+                (message, pattern) ->
+                        apiKeyBloomFilter.applyPublishedAddition(
+                                new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(ApiKeyBloomFilterService.API_KEY_ADDITION_CHANNEL));
+        return container;
+    }
+}
@@ -1,22 +1,15 @@
 package com.exchangerates.CurrencyExchangeAPI.configuration;
 
-import com.exchangerates.CurrencyExchangeAPI.exception.RestTemplateResponseErrorHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.web.client.RestTemplate;
 
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
-    @Bean
-    public RestTemplate restTemplate() {
-        var restTemplate = new RestTemplate();
-        restTemplate.setErrorHandler(new RestTemplateResponseErrorHandler());
-        return restTemplate;
-    }
-
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -0,0 +1,114 @@
+package com.exchangerates.CurrencyExchangeAPI.configuration;
+
+import com.exchangerates.CurrencyExchangeAPI.services.NearCacheService;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+/**
+ * Sets up Redis 6 server-assisted client side caching for the near cache.
+ * A dedicated RESP3 connection enables CLIENT TRACKING in broadcasting mode for the cached key
+ * prefixes, so any write or expiry of those keys (from any backend instance) is pushed to us as
+ * an 'invalidate' message.
+ * Tracking is set up on a standalone (or sentinel managed) Redis only - in a cluster, every node
+ * only tracks its own keys, so the near cache cannot be enabled against one.
+ * Documentation: https://redis.io/docs/latest/develop/reference/client-side-caching/
+ */
+@Configuration
+@ConditionalOnProperty(name = "cache.near.enabled", havingValue = "true")
+public class NearCacheTrackingConfig {
+    private static final Logger logger = LoggerFactory.getLogger(NearCacheTrackingConfig.class);
+    private static final String INVALIDATE_MESSAGE_TYPE = "invalidate";
+
+    @Value("${cache.near.tracked-prefixes:rates:,available:}")
+    private String[] trackedPrefixes;
+
+    @Bean(destroyMethod = "close")
+    public StatefulRedisConnection<String, String> nearCacheTrackingConnection(
+            LettuceConnectionFactory connectionFactory, NearCacheService<?> nearCacheService) {
+        // same client (and credentials) Spring Data Redis uses, but a connection of our own,
+        // as tracking state is bound to the connection
+        if (!(connectionFactory.getRequiredNativeClient() instanceof RedisClient redisClient)) {
+            // without invalidations, local entries would be served stale until they expire
+            throw new IllegalStateException(
+                    "The near cache needs a standalone or sentinel Redis, disable it with"
+                            + " cache.near.enabled=false.");
+        }
+        var connection = redisClient.connect(StringCodec.UTF8);
+
+        connection.addListener(
+                (PushMessage message) -> {
+                    if (!INVALIDATE_MESSAGE_TYPE.equals(message.getType())) {
+                        return;
+                    }
+                    var invalidatedKeys = extractInvalidatedKeys(message);
+                    // a null key list means the whole database was flushed
+                    if (invalidatedKeys == null) {
+                        nearCacheService.invalidateAll();
+                    } else {
+                        nearCacheService.invalidate(invalidatedKeys);
+                    }
+                });
+
+        connection.addListener(
+                new RedisConnectionStateListener() {
+                    @Override
+                    public void onRedisDisconnected(RedisChannelHandler<?, ?> handler) {
+                        // invalidations sent while disconnected are lost, so nothing local can
+                        // be trusted anymore
+                        logger.warn("Near cache tracking connection lost, clearing near cache.");
+                        nearCacheService.invalidateAll();
+                    }
+
+                    @Override
+                    public void onRedisConnected(
+                            RedisChannelHandler<?, ?> handler, SocketAddress remoteAddress) {
+                        // tracking is per connection, re-enable it after a reconnect. Can't block
+                        // here, since this runs on the connection's event loop
+                        if (handler instanceof StatefulRedisConnection<?, ?> reconnected) {
+                            reconnected.async().clientTracking(trackingArgs());
+                        }
+                    }
+                });
+
+        connection.sync().clientTracking(trackingArgs());
+        logger.info("Near cache tracking enabled for key prefixes {}.", List.of(trackedPrefixes));
+        return connection;
+    }
+
+    private TrackingArgs trackingArgs() {
+        return TrackingArgs.Builder.enabled().bcast().prefixes(trackedPrefixes);
+    }
+
+    private static List<String> extractInvalidatedKeys(PushMessage message) {
+        // message content: ["invalidate", [key1, key2, ...] | null]
+        var content = message.getContent(StringCodec.UTF8::decodeKey);
+        if (content.size() < 2 || !(content.get(1) instanceof List<?> rawKeys)) {
+            return null;
+        }
+
+        var keys = new ArrayList<String>(rawKeys.size());
+        for (var rawKey : rawKeys) {
+            keys.add(
+                    rawKey instanceof ByteBuffer buffer
+                            ? StringCodec.UTF8.decodeKey(buffer)
+                            : String.valueOf(rawKey));
+        }
+        return keys;
+    }
+}
@@ -1,9 +1,13 @@
 package com.exchangerates.CurrencyExchangeAPI.configuration;
 
+import com.exchangerates.CurrencyExchangeAPI.serialization.CompactRedisSerializer;
+import com.exchangerates.CurrencyExchangeAPI.serialization.RatesBinaryCodec;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
@@ -19,10 +23,28 @@ import org.springframework.scripting.support.ResourceScriptSource;
 public class RedisConfig {
 
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(
+            RedisConnectionFactory connectionFactory,
+            @Value("${cache.serializer.binary.enabled:true}") boolean binaryEnabled,
+            @Value("${cache.serializer.binary.compression-threshold:512}")
+                    int compressionThreshold) {
         var redisTemplate = new RedisTemplate<String, Object>();
         redisTemplate.setConnectionFactory(connectionFactory);
 
+        // rates and the available currencies are stored in a compact binary format instead of
+        // JSON, everything else is still JSON
+        var serializer =
+                new CompactRedisSerializer(
+                        jsonSerializer(),
+                        new RatesBinaryCodec(compressionThreshold),
+                        binaryEnabled);
+
+        redisTemplate.setDefaultSerializer(serializer);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        return redisTemplate;
+    }
+
+    public static GenericJackson2JsonRedisSerializer jsonSerializer() {
         // for serializing java.time.Instant
         var mapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
         mapper.activateDefaultTyping(
@@ -30,11 +52,7 @@ public class RedisConfig {
                 ObjectMapper.DefaultTyping.NON_FINAL,
                 JsonTypeInfo.As.PROPERTY);
 
-        var serializer = new GenericJackson2JsonRedisSerializer(mapper);
-
-        redisTemplate.setDefaultSerializer(serializer);
-        redisTemplate.setKeySerializer(new StringRedisSerializer());
-        return redisTemplate;
+        return new GenericJackson2JsonRedisSerializer(mapper);
     }
 
     // Documentation for Redis script
@@ -51,4 +69,45 @@ public class RedisConfig {
         script.setResultType(Boolean.class);
         return script;
     }
+
+    // reserves a batch of requests from the same bucket, for the hybrid rate limiter.
+    // returns [granted requests, seconds until a request can be granted again]
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public DefaultRedisScript<List> rateLimitReservationScript() {
+        ScriptSource scriptSource =
+                new ResourceScriptSource(new ClassPathResource("scripts/ratelimiter_reserve.lua"));
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptSource(scriptSource);
+        script.setResultType(List.class);
+        return script;
+    }
+
+    // API key validation and GCRA rate limiting in a single call, with
+    // auth.single-round-trip.enabled. returns [1 allowed | 0 rate limited | -1 invalid API key,
+    // milliseconds until it would be allowed]
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public DefaultRedisScript<List> authRateLimiterScript() {
+        ScriptSource scriptSource =
+                new ResourceScriptSource(
+                        new ClassPathResource("scripts/auth_ratelimiter_gcra.lua"));
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptSource(scriptSource);
+        script.setResultType(List.class);
+        return script;
+    }
+
+    // GCRA rate limiting, selected with ratelimit.mode=gcra.
+    // returns [1 if allowed else 0, milliseconds until it would be allowed]
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public DefaultRedisScript<List> gcraRateLimiterScript() {
+        ScriptSource scriptSource =
+                new ResourceScriptSource(new ClassPathResource("scripts/ratelimiter_gcra.lua"));
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptSource(scriptSource);
+        script.setResultType(List.class);
+        return script;
+    }
 }
@@ -1,8 +1,9 @@
 package com.exchangerates.CurrencyExchangeAPI.configuration;
 
 import com.exchangerates.CurrencyExchangeAPI.filter.RateLimiterFilter;
-import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IAuthenticationService;
-import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRateLimitService;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyFormat;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyAccessService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyBloomFilterService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -17,8 +18,11 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 @RequiredArgsConstructor
 public class SecurityConfig {
 
-    private final IAuthenticationService authenticationService;
-    private final IRateLimitService rateLimitService;
+    private final IApiKeyAccessService apiKeyAccessService;
+
+    private final IApiKeyBloomFilterService apiKeyBloomFilter;
+
+    private final ApiKeyFormat apiKeyFormat;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -37,7 +41,7 @@ public class SecurityConfig {
                                         .anyRequest()
                                         .authenticated())
                 .addFilterBefore(
-                        new RateLimiterFilter(authenticationService, rateLimitService),
+                        new RateLimiterFilter(apiKeyAccessService, apiKeyBloomFilter, apiKeyFormat),
                         UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
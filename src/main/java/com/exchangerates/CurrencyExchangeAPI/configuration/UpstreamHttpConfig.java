@@ -0,0 +1,92 @@
+package com.exchangerates.CurrencyExchangeAPI.configuration;
+
+import com.exchangerates.CurrencyExchangeAPI.exception.RestTemplateResponseErrorHandler;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * HTTP clients for the external API. Both keep their connections alive and reuse them, and every
+ * call is bounded by the connect and read timeouts below - concurrent calls are bounded by the
+ * upstream bulkhead, see UpstreamCallGuard.
+ */
+@Configuration
+public class UpstreamHttpConfig {
+    // connections idle for longer are closed, before the external API drops them
+    private static final TimeValue IDLE_CONNECTION_TIMEOUT = TimeValue.ofSeconds(30);
+
+    @Value("${upstream.http.connect-timeout-ms:2000}")
+    private long connectTimeoutMillis;
+
+    @Value("${upstream.http.read-timeout-ms:5000}")
+    private long readTimeoutMillis;
+
+    @Bean
+    public PoolingHttpClientConnectionManager upstreamConnectionManager(
+            @Value("${upstream.http.max-connections:20}") int maxConnections) {
+        // every call goes to the same host, so a single route may use the whole pool
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(
+                        ConnectionConfig.custom()
+                                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMillis))
+                                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+                                .build())
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(
+            PoolingHttpClientConnectionManager upstreamConnectionManager,
+            @Value("${upstream.http.pool-timeout-ms:1000}") long poolTimeoutMillis) {
+        var httpClient =
+                HttpClients.custom()
+                        .setConnectionManager(upstreamConnectionManager)
+                        .setDefaultRequestConfig(
+                                RequestConfig.custom()
+                                        // how long a call waits for a pooled connection
+                                        .setConnectionRequestTimeout(
+                                                Timeout.ofMilliseconds(poolTimeoutMillis))
+                                        .setResponseTimeout(
+                                                Timeout.ofMilliseconds(readTimeoutMillis))
+                                        .build())
+                        .evictIdleConnections(IDLE_CONNECTION_TIMEOUT)
+                        .build();
+
+        var restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        restTemplate.setErrorHandler(new RestTemplateResponseErrorHandler());
+        return restTemplate;
+    }
+
+    // exposes the pool's leased, idle and pending connections as httpcomponents.httpclient.pool.*
+    @Bean
+    public MeterBinder upstreamConnectionPoolMetrics(
+            PoolingHttpClientConnectionManager upstreamConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(
+                upstreamConnectionManager, "exchangerate");
+    }
+
+    // non-blocking client for the external API - connections are pooled and kept alive by the
+    // client, so a single instance is shared by every asynchronous call. Its read timeout is set
+    // on each request
+    @Bean
+    public HttpClient asyncHttpClient() {
+        return HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+    }
+}
@@ -0,0 +1,17 @@
+package com.exchangerates.CurrencyExchangeAPI.contracts.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A single conversion of a batch - validated along with the whole batch.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConversionRequestDTO {
+    private String from;
+    private String to;
+    private double amount;
+}
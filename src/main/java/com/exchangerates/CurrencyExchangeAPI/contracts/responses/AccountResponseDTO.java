@@ -13,11 +13,17 @@ public class AccountResponseDTO {
     private String email;
     private String apiKey;
 
+    // API keys are not stored, so they are only included when issued
     public static AccountResponseDTO fromUser(User user) {
         AccountResponseDTO accountResponseDTO = new AccountResponseDTO();
         accountResponseDTO.setId(user.getId());
         accountResponseDTO.setEmail(user.getEmail());
-        accountResponseDTO.setApiKey(user.getApiKey());
+        return accountResponseDTO;
+    }
+
+    public static AccountResponseDTO fromUser(User user, String issuedAPIKey) {
+        var accountResponseDTO = fromUser(user);
+        accountResponseDTO.setApiKey(issuedAPIKey);
         return accountResponseDTO;
     }
 }
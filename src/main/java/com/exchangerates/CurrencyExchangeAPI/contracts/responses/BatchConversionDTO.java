@@ -0,0 +1,12 @@
+package com.exchangerates.CurrencyExchangeAPI.contracts.responses;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BatchConversionDTO {
+    // in the order the conversions were requested
+    private List<ConversionResultDTO> conversions;
+}
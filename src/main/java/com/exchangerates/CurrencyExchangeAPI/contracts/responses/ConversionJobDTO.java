@@ -0,0 +1,34 @@
+package com.exchangerates.CurrencyExchangeAPI.contracts.responses;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobFormat;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ConversionJobDTO {
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private String id;
+    private Status status;
+    private ConversionJobFormat format;
+    private String to;
+
+    // rows converted so far, including the ones that could not be converted
+    private long rowsProcessed;
+    private long rowsFailed;
+
+    private Instant submittedAt;
+    private Instant completedAt;
+    // timestamp of the rates every row of the job was converted with
+    private Instant rateTimestamp;
+
+    // why the job failed, only set for failed jobs
+    private String error;
+}
@@ -0,0 +1,27 @@
+package com.exchangerates.CurrencyExchangeAPI.contracts.responses;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ConversionResultDTO {
+    private String from;
+    private String to;
+    private double amount;
+
+    // null when the external API has no rate between the currencies, see error
+    private Double rate;
+    private Double value;
+    private Instant rateTimestamp;
+
+    // true when the rates are past their freshness TTL, served from the cache while they are
+    // refreshed, or because the external API is failing
+    private boolean stale;
+    // how long ago the rates were cached, only set for stale rates
+    private Long ageSeconds;
+
+    // why the amount could not be converted, only set when there is no rate
+    private String error;
+}
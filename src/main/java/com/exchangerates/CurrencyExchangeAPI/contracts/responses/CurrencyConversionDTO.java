@@ -13,4 +13,10 @@ public class CurrencyConversionDTO {
 
     // target currencies and their values
     private Map<String, Double> targets;
+
+    // true when the rates are past their freshness TTL, served from the cache while they are
+    // refreshed, or because the external API is failing
+    private boolean stale;
+    // how long ago the rates were cached, only set for stale rates
+    private Long ageSeconds;
 }
@@ -1,5 +1,6 @@
 package com.exchangerates.CurrencyExchangeAPI.contracts.responses;
 
+import java.time.Instant;
 import java.util.Map;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -10,7 +11,14 @@ public class ValueConversionDTO {
 
     private String base;
     private double requestedValue;
+    private Instant rateTimestamp;
 
     // map between currencies converted to, and the associated converted value
     private Map<String, Double> conversions;
+
+    // true when the rates are past their freshness TTL, served from the cache while they are
+    // refreshed, or because the external API is failing
+    private boolean stale;
+    // how long ago the rates were cached, only set for stale rates
+    private Long ageSeconds;
 }
@@ -0,0 +1,163 @@
+package com.exchangerates.CurrencyExchangeAPI.controllers;
+
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ConversionJobDTO;
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ErrorMessage;
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobFormat;
+import com.exchangerates.CurrencyExchangeAPI.exception.BusinessException;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IConversionJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import java.io.InputStream;
+import java.net.URI;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@SecurityRequirement(name = "api_key")
+@Tag(
+        name = "Conversion Jobs",
+        description = "Endpoints for converting large files of currency amounts asynchronously")
+@RestController
+@RequestMapping("/api/v1/currency/convert/jobs")
+@RequiredArgsConstructor
+public class ConversionJobController {
+    private final IConversionJobService conversionJobService;
+
+    @Operation(
+            summary = "Submit a bulk conversion job",
+            description =
+                    "Uploads a CSV (currency,amount[,date] rows, with an optional header) or NDJSON"
+                        + " ({\"currency\", \"amount\", \"date\"} objects, date optional) file, and"
+                        + " queues a job converting every row to the target currency. Rows are"
+                        + " converted with the latest rates, dates are kept as given.")
+    @ApiResponses(
+            value = {
+                @ApiResponse(
+                        responseCode = "202",
+                        description = "The job was queued - its status is at the Location header",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ConversionJobDTO.class))),
+                @ApiResponse(
+                        responseCode = "400",
+                        description = "Invalid target currency",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+                @ApiResponse(
+                        responseCode = "413",
+                        description = "The uploaded file is too large",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+                @ApiResponse(
+                        responseCode = "503",
+                        description = "Too many jobs in progress",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+            })
+    @PostMapping(consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ConversionJobDTO> submitJob(
+            @Parameter(hidden = true) @RequestHeader("X-API-KEY") String apiKey,
+            @Parameter(hidden = true) @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @Valid @NotEmpty @RequestParam("to") String targetCurrency,
+            InputStream rows) {
+        var format =
+                ConversionJobFormat.fromMediaType(MediaType.parseMediaType(contentType))
+                        .orElseThrow(() -> new BusinessException("Unsupported file format."));
+
+        var job = conversionJobService.submitJob(apiKey, format, targetCurrency, rows);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/currency/convert/jobs/" + job.getId()))
+                .body(job);
+    }
+
+    @Operation(
+            summary = "Get the status of a bulk conversion job",
+            description = "Shows whether the job completed, and how many rows it converted so far.")
+    @ApiResponses(
+            value = {
+                @ApiResponse(
+                        responseCode = "200",
+                        description = "The job's status",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ConversionJobDTO.class))),
+                @ApiResponse(
+                        responseCode = "404",
+                        description = "No such job for this API key, or it expired",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+            })
+    @GetMapping("{jobId}")
+    public ResponseEntity<ConversionJobDTO> getJob(
+            @Parameter(hidden = true) @RequestHeader("X-API-KEY") String apiKey,
+            @PathVariable("jobId") String jobId) {
+        return ResponseEntity.ok(conversionJobService.getJob(apiKey, jobId));
+    }
+
+    @Operation(
+            summary = "Download the result of a bulk conversion job",
+            description =
+                    "Streams the converted rows of a completed job, in the order and format they"
+                            + " were uploaded in - with the rate and converted value of every"
+                            + " row, or why it could not be converted.")
+    @ApiResponses(
+            value = {
+                @ApiResponse(responseCode = "200", description = "The converted rows"),
+                @ApiResponse(
+                        responseCode = "404",
+                        description = "No such job for this API key, or it expired",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+                @ApiResponse(
+                        responseCode = "409",
+                        description = "The job has not completed, or failed",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+            })
+    @GetMapping("{jobId}/result")
+    public ResponseEntity<Resource> getJobResult(
+            @Parameter(hidden = true) @RequestHeader("X-API-KEY") String apiKey,
+            @PathVariable("jobId") String jobId) {
+        var result = conversionJobService.getJobResult(apiKey, jobId);
+        var fileName = result.jobId() + "." + result.format().getFileExtension();
+        return ResponseEntity.ok()
+                .contentType(result.format().getMediaType())
+                .header(
+                        HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(new FileSystemResource(result.file()));
+    }
+}
@@ -1,10 +1,18 @@
 package com.exchangerates.CurrencyExchangeAPI.controllers;
 
+import com.exchangerates.CurrencyExchangeAPI.contracts.requests.ConversionRequestDTO;
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.BatchConversionDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.CurrencyConversionDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ErrorMessage;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ValueConversionDTO;
+import com.exchangerates.CurrencyExchangeAPI.domain.ApiKeyAccessDecision.Result;
+import com.exchangerates.CurrencyExchangeAPI.exception.BusinessException;
+import com.exchangerates.CurrencyExchangeAPI.exception.RateLimitExceededException;
+import com.exchangerates.CurrencyExchangeAPI.services.Futures;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyAccessService;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -16,13 +24,22 @@ import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
-import lombok.AllArgsConstructor;
+import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
 
 @SecurityRequirement(name = "api_key")
 @Tag(
@@ -30,9 +47,17 @@ import org.springframework.web.bind.annotation.RestController;
         description = "Endpoints for currency conversion and exchange rates")
 @RestController
 @RequestMapping("/api/v1/currency")
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class CurrencyController {
     private final ICurrencyService currencyService;
+    private final IApiKeyAccessService apiKeyAccessService;
+
+    @Value("${currency.batch.max-conversions:1000}")
+    private int maxBatchConversions = 1000;
+
+    // a batch counts as one request against the rate limits per this many conversions
+    @Value("${currency.batch.conversions-per-request:100}")
+    private int conversionsPerRequest = 100;
 
     @Operation(
             summary = "List currency conversion rates.",
@@ -82,13 +107,9 @@ public class CurrencyController {
     public ResponseEntity<CurrencyConversionDTO> getConversionRateBetweenCurrencies(
             @Valid @NotEmpty @RequestParam("from") String baseCurrency,
             @RequestParam("to") Optional<String> targetCurrency) {
-        Optional<String> uppercaseTarget =
-                targetCurrency.isPresent()
-                        ? Optional.of(targetCurrency.get().toUpperCase())
-                        : Optional.empty();
         return ResponseEntity.ok(
                 currencyService.getCurrencyConversionRates(
-                        baseCurrency.toUpperCase(), uppercaseTarget));
+                        baseCurrency.toUpperCase(), toUpperCase(targetCurrency)));
     }
 
     @Operation(
@@ -136,13 +157,239 @@ public class CurrencyController {
             @Valid @NotEmpty @RequestParam("from") String baseCurrency,
             @Valid @NotEmpty @RequestParam("to") String targetCurrencies,
             @Valid @Positive @NotNull @RequestParam("value") double valueToConvert) {
-        // parse 'to' query parameter: a comma separated list of currencies encoded in
-        // a single string. Example: 'USD,AUD,CAD,EUR,CHF' -> 'USD,AUD,CAD,EUR,CHF'
-        var currenciesToConvertTo = targetCurrencies.toUpperCase().split(",");
         return ResponseEntity.ok(
                 currencyService.convertCurrencyValues(
                         baseCurrency.toUpperCase(),
-                        Arrays.asList(currenciesToConvertTo),
+                        parseTargetCurrencies(targetCurrencies),
+                        valueToConvert));
+    }
+
+    @Operation(
+            summary = "List currency conversion rates, asynchronously.",
+            description =
+                    "Same as /rate, but no request thread is held while rates missing from the"
+                            + " cache are fetched from the external API.")
+    @ApiResponses(
+            value = {
+                @ApiResponse(
+                        responseCode = "200",
+                        description =
+                                "Lists currency conversion rate between provided base and target"
+                                        + " currency, or all available currencies",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema =
+                                                @Schema(
+                                                        implementation =
+                                                                CurrencyConversionDTO.class))),
+                @ApiResponse(
+                        responseCode = "400",
+                        description =
+                                "Invalid currency code provided, or the base currency is the same"
+                                        + " as the target currency",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+                @ApiResponse(
+                        responseCode = "429",
+                        description = "Rate limit exceeded",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+                @ApiResponse(
+                        responseCode = "502",
+                        description = "Upstream server returned invalid response",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+                @ApiResponse(
+                        responseCode = "504",
+                        description = "Upstream server did not respond in time",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+            })
+    @GetMapping("rate/async")
+    public DeferredResult<ResponseEntity<CurrencyConversionDTO>>
+            getConversionRateBetweenCurrenciesAsync(
+                    @Valid @NotEmpty @RequestParam("from") String baseCurrency,
+                    @RequestParam("to") Optional<String> targetCurrency) {
+        return toDeferredResult(
+                currencyService.getCurrencyConversionRatesAsync(
+                        baseCurrency.toUpperCase(), toUpperCase(targetCurrency)));
+    }
+
+    @Operation(
+            summary = "Convert currency values, asynchronously.",
+            description =
+                    "Same as /convert, but no request thread is held while rates missing from the"
+                            + " cache are fetched from the external API.")
+    @ApiResponses(
+            value = {
+                @ApiResponse(
+                        responseCode = "200",
+                        description = "Successfully converted the amount to target currencies",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema =
+                                                @Schema(
+                                                        implementation =
+                                                                ValueConversionDTO.class))),
+                @ApiResponse(
+                        responseCode = "400",
+                        description =
+                                "Invalid currency code or provided value to convert is 0 or"
+                                        + " negative.",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+                @ApiResponse(
+                        responseCode = "429",
+                        description = "Rate limit exceeded",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+                @ApiResponse(
+                        responseCode = "502",
+                        description = "Upstream server returned invalid response",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+                @ApiResponse(
+                        responseCode = "504",
+                        description = "Upstream server did not respond in time",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+            })
+    @GetMapping("convert/async")
+    public DeferredResult<ResponseEntity<ValueConversionDTO>> convertCurrencyValuesAsync(
+            @Valid @NotEmpty @RequestParam("from") String baseCurrency,
+            @Valid @NotEmpty @RequestParam("to") String targetCurrencies,
+            @Valid @Positive @NotNull @RequestParam("value") double valueToConvert) {
+        return toDeferredResult(
+                currencyService.convertCurrencyValuesAsync(
+                        baseCurrency.toUpperCase(),
+                        parseTargetCurrencies(targetCurrencies),
                         valueToConvert));
     }
+
+    @Operation(
+            summary = "Convert many currency values at once",
+            description =
+                    "Performs a batch of conversions, each from a base currency to a target"
+                            + " currency. Every distinct base currency is looked up once, and the"
+                            + " batch counts against the rate limits as one request per"
+                            + " currency.batch.conversions-per-request conversions.")
+    @ApiResponses(
+            value = {
+                @ApiResponse(
+                        responseCode = "200",
+                        description = "Successfully converted every amount, in the order requested",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema =
+                                                @Schema(
+                                                        implementation =
+                                                                BatchConversionDTO.class))),
+                @ApiResponse(
+                        responseCode = "400",
+                        description =
+                                "No conversions or too many conversions, or a conversion with an"
+                                        + " invalid currency code or a 0 or negative amount",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+                @ApiResponse(
+                        responseCode = "429",
+                        description = "Rate limit exceeded",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+                @ApiResponse(
+                        responseCode = "502",
+                        description = "Upstream server returned invalid response",
+                        content =
+                                @Content(
+                                        mediaType = "application/json",
+                                        schema = @Schema(implementation = ErrorMessage.class))),
+            })
+    @PostMapping("convert/batch")
+    public ResponseEntity<BatchConversionDTO> convertCurrencyValuesBatch(
+            @Parameter(hidden = true) @RequestHeader("X-API-KEY") String apiKey,
+            @RequestBody List<ConversionRequestDTO> conversions) {
+        if (conversions != null && conversions.size() > maxBatchConversions) {
+            throw new BusinessException(
+                    "At most " + maxBatchConversions + " conversions can be made at once.");
+        }
+
+        // invalid batches are rejected before being charged
+        currencyService.validateConversionsBatch(conversions);
+        applyBatchWeight(apiKey, conversions.size());
+        return ResponseEntity.ok(currencyService.convertCurrencyValuesBatch(conversions));
+    }
+
+    /**
+     * Charges the rest of a batch's weight to the API key's rate limits - the rate limiting filter
+     * already charged it as a single request, before its size was known.
+     */
+    private void applyBatchWeight(String apiKey, int conversions) {
+        int weight = (conversions + conversionsPerRequest - 1) / conversionsPerRequest;
+        if (weight <= 1) {
+            return;
+        }
+
+        var accessDecision = apiKeyAccessService.checkAccess(apiKey, weight - 1);
+        if (accessDecision.result() == Result.RATE_LIMITED) {
+            throw new RateLimitExceededException(accessDecision.retryAfterMillis());
+        }
+    }
+
+    private static Optional<String> toUpperCase(Optional<String> currency) {
+        return currency.isPresent() ? Optional.of(currency.get().toUpperCase()) : Optional.empty();
+    }
+
+    // parse 'to' query parameter: a comma separated list of currencies encoded in
+    // a single string. Example: 'USD,AUD,CAD,EUR,CHF' -> 'USD,AUD,CAD,EUR,CHF'
+    private static List<String> parseTargetCurrencies(String targetCurrencies) {
+        return Arrays.asList(targetCurrencies.toUpperCase().split(","));
+    }
+
+    /**
+     * Completes the response once the lookup completes - the request thread is released as soon as
+     * this returns. Failures are handled by the exception handlers, as if they had been thrown.
+     */
+    private static <T> DeferredResult<ResponseEntity<T>> toDeferredResult(
+            CompletableFuture<T> lookup) {
+        // times out after spring.mvc.async.request-timeout
+        var deferredResult = new DeferredResult<ResponseEntity<T>>();
+        deferredResult.onTimeout(
+                () ->
+                        deferredResult.setErrorResult(
+                                new ResponseStatusException(
+                                        HttpStatus.GATEWAY_TIMEOUT,
+                                        "Timed out waiting for upstream response")));
+        lookup.whenComplete(
+                (result, ex) -> {
+                    if (ex != null) {
+                        deferredResult.setErrorResult(Futures.unwrap(ex));
+                    } else {
+                        deferredResult.setResult(ResponseEntity.ok(result));
+                    }
+                });
+        return deferredResult;
+    }
 }
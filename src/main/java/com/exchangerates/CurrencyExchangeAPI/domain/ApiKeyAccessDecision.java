@@ -0,0 +1,23 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+/**
+ * Whether a request made with an API key can proceed - the API key must be valid, and within its
+ * rate limits. When rate limited, also how long until the request would be allowed (0 if unknown).
+ */
+public record ApiKeyAccessDecision(Result result, long retryAfterMillis) {
+    public enum Result {
+        ALLOWED,
+        RATE_LIMITED,
+        INVALID_API_KEY
+    }
+
+    public static ApiKeyAccessDecision invalidAPIKey() {
+        return new ApiKeyAccessDecision(Result.INVALID_API_KEY, 0);
+    }
+
+    public static ApiKeyAccessDecision fromRateLimitDecision(RateLimitDecision decision) {
+        return new ApiKeyAccessDecision(
+                decision.allowed() ? Result.ALLOWED : Result.RATE_LIMITED,
+                decision.retryAfterMillis());
+    }
+}
@@ -12,4 +12,6 @@ import lombok.NoArgsConstructor;
 public class CachedRates {
     private Map<String, Double> rates;
     private Instant timestamp;
+    // when the rates were written to the cache - used to tell fresh and stale rates apart
+    private Instant cachedAt;
 }
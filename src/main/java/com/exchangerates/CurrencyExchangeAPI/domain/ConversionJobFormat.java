@@ -0,0 +1,44 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+import java.util.Optional;
+import org.springframework.http.MediaType;
+
+/**
+ * Formats of the files of conversion jobs - results are written in the format rows were uploaded
+ * in.
+ */
+public enum ConversionJobFormat {
+    // currency,amount[,date] rows, with an optional header line
+    CSV(new MediaType("text", "csv"), "csv"),
+    // one {"currency": ..., "amount": ..., "date": ...} object per line, date optional
+    NDJSON(MediaType.APPLICATION_NDJSON, "ndjson");
+
+    private final MediaType mediaType;
+    private final String fileExtension;
+
+    ConversionJobFormat(MediaType mediaType, String fileExtension) {
+        this.mediaType = mediaType;
+        this.fileExtension = fileExtension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * @return The format of an uploaded file, from its content type - ignoring parameters such as
+     * its charset.
+     */
+    public static Optional<ConversionJobFormat> fromMediaType(MediaType mediaType) {
+        for (var format : values()) {
+            if (format.mediaType.equalsTypeAndSubtype(mediaType)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,8 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+import java.nio.file.Path;
+
+/**
+ * The result file of a completed conversion job, in the format its rows were uploaded in.
+ */
+public record ConversionJobResult(String jobId, Path file, ConversionJobFormat format) {}
@@ -0,0 +1,28 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A row of a conversion job's result - the row as uploaded, and either its converted value or why
+ * it could not be converted. Fields of rows that could not be read are left null.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ConversionJobRow(
+        String currency,
+        Double amount,
+        String date,
+        String to,
+        Double rate,
+        Double value,
+        String error) {
+
+    public static ConversionJobRow converted(
+            String currency, double amount, String date, String to, double rate) {
+        return new ConversionJobRow(currency, amount, date, to, rate, amount * rate, null);
+    }
+
+    public static ConversionJobRow failed(
+            String currency, Double amount, String date, String to, String error) {
+        return new ConversionJobRow(currency, amount, date, to, null, null, error);
+    }
+}
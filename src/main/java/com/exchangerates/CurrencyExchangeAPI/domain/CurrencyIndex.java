@@ -0,0 +1,79 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable mapping between currency codes and compact int ids (0..size-1), assigned in
+ * alphabetical order - used to index rates in a RateSnapshot.
+ */
+public final class CurrencyIndex {
+    public static final int UNKNOWN = -1;
+
+    private final String[] codes;
+    private final Map<String, Integer> ids;
+
+    private CurrencyIndex(String[] codes) {
+        this.codes = codes;
+        this.ids = new HashMap<>(codes.length * 2);
+        for (int id = 0; id < codes.length; id++) {
+            ids.put(codes[id], id);
+        }
+    }
+
+    public static CurrencyIndex of(Collection<String> currencies) {
+        return new CurrencyIndex(currencies.stream().distinct().sorted().toArray(String[]::new));
+    }
+
+    /**
+     * @return The id of the currency, or UNKNOWN if the currency is not indexed.
+     */
+    public int idOf(String currency) {
+        var id = ids.get(currency);
+        return id == null ? UNKNOWN : id;
+    }
+
+    public String codeOf(int id) {
+        return codes[id];
+    }
+
+    /**
+     * Looks up the code spelled by the end of the text, from the offset, without creating a String
+     * for it - e.g. EUR for USDEUR from offset 3.
+     * @return The indexed code, or null if the currency is not indexed.
+     */
+    public String codeOf(String text, int offset) {
+        // codes are sorted, so they are binary searched with the same (char by char) ordering
+        int low = 0;
+        int high = codes.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(codes[middle], text, offset);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return codes[middle];
+            }
+        }
+        return null;
+    }
+
+    private static int compare(String code, String text, int offset) {
+        int length = text.length() - offset;
+        int common = Math.min(code.length(), length);
+        for (int i = 0; i < common; i++) {
+            int difference = code.charAt(i) - text.charAt(offset + i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return code.length() - length;
+    }
+
+    public int size() {
+        return codes.length;
+    }
+}
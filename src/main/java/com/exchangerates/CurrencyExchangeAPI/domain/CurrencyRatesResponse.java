@@ -1,5 +1,8 @@
 package com.exchangerates.CurrencyExchangeAPI.domain;
 
+import com.exchangerates.CurrencyExchangeAPI.serialization.LiveQuotesDeserializer;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import java.time.Instant;
 import java.util.Map;
 import lombok.AllArgsConstructor;
@@ -16,7 +19,15 @@ public class CurrencyRatesResponse {
     private boolean success;
     private Instant timestamp;
     private String source;
+
+    // keyed by target currency - the external API's pairs (e.g. USDEUR) are sliced while parsing
+    @JsonDeserialize(using = LiveQuotesDeserializer.class)
     private Map<String, Double> quotes;
+
     // filled out when success = false
     private ExternalAPIError error;
+
+    // not part of the external API's response - set when the rates were served from the cache,
+    // to when the oldest of them was cached
+    @JsonIgnore private Instant cachedAt;
 }
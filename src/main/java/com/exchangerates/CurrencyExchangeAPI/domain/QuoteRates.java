@@ -0,0 +1,172 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Immutable rates from a single base currency, keyed by target currency. Codes and rates are kept
+ * in two parallel arrays sorted by code, with the rates as primitive doubles - instead of a
+ * HashMap of boxed entries - so a response of ~170 rates is two small arrays. Looking up a rate is
+ * a binary search over the codes.
+ */
+public final class QuoteRates extends AbstractMap<String, Double> {
+    private static final QuoteRates EMPTY = new QuoteRates(new String[0], new double[0], 0);
+
+    private final String[] codes;
+    private final double[] rates;
+    private final int size;
+
+    private QuoteRates(String[] codes, double[] rates, int size) {
+        this.codes = codes;
+        this.rates = rates;
+        this.size = size;
+    }
+
+    /**
+     * Copies rates into a compact map - null rates are left out. Also how cached JSON rates are
+     * read back.
+     */
+    @JsonCreator
+    public static QuoteRates of(Map<String, Double> rates) {
+        if (rates instanceof QuoteRates quoteRates) {
+            return quoteRates;
+        }
+
+        var builder = builder(rates.size());
+        for (var rate : rates.entrySet()) {
+            if (rate.getValue() != null) {
+                builder.put(rate.getKey(), rate.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    /**
+     * @return The rate to the target currency, NaN if there is none - without boxing it.
+     */
+    public double rate(String code) {
+        int position = indexOf(code);
+        return position < 0 ? Double.NaN : rates[position];
+    }
+
+    /**
+     * Walks the rates in code order, without boxing them.
+     */
+    public void forEachRate(ObjDoubleConsumer<String> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(codes[i], rates[i]);
+        }
+    }
+
+    @Override
+    public Double get(Object key) {
+        int position = key instanceof String code ? indexOf(code) : -1;
+        return position < 0 ? null : rates[position];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String code && indexOf(code) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Double>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Double>> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<String, Double> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        var entry = new SimpleImmutableEntry<>(codes[next], rates[next]);
+                        next++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int indexOf(String code) {
+        return Arrays.binarySearch(codes, 0, size, code);
+    }
+
+    /**
+     * Collects rates into a QuoteRates - not thread safe. Rates are inserted in code order, which
+     * is a plain append for the external API's responses (they are already sorted). A later rate
+     * for the same code replaces the earlier one.
+     */
+    public static final class Builder {
+        private String[] codes;
+        private double[] rates;
+        private int size;
+
+        private Builder(int expectedSize) {
+            this.codes = new String[Math.max(expectedSize, 1)];
+            this.rates = new double[codes.length];
+        }
+
+        public Builder put(String code, double rate) {
+            int position = Arrays.binarySearch(codes, 0, size, code);
+            if (position >= 0) {
+                rates[position] = rate;
+                return this;
+            }
+
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+                rates = Arrays.copyOf(rates, size * 2);
+            }
+            int insertAt = -position - 1;
+            if (insertAt < size) {
+                System.arraycopy(codes, insertAt, codes, insertAt + 1, size - insertAt);
+                System.arraycopy(rates, insertAt, rates, insertAt + 1, size - insertAt);
+            }
+            codes[insertAt] = code;
+            rates[insertAt] = rate;
+            size++;
+            return this;
+        }
+
+        public QuoteRates build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            // the arrays are handed over as is, the builder must not be used afterwards
+            var quoteRates = new QuoteRates(codes, rates, size);
+            codes = null;
+            rates = null;
+            return quoteRates;
+        }
+    }
+}
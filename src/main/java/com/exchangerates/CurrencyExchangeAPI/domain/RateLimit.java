@@ -0,0 +1,15 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+/**
+ * Rate limits of an API key - how many requests per second it can make on average, and how many
+ * it can make at once.
+ */
+public record RateLimit(double requestsPerSecond, int burst) {
+    /**
+     * @return Milliseconds between requests at the sustained rate - e.g. 1 request per second ->
+     * one request every 1000ms.
+     */
+    public long emissionIntervalMillis() {
+        return Math.max(Math.round(1000 / requestsPerSecond), 1);
+    }
+}
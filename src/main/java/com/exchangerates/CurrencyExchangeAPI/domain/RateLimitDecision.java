@@ -0,0 +1,7 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+/**
+ * Whether a request is allowed by rate limiting, and if not, how long until it would be - 0 when
+ * allowed, or when the rate limiter does not know.
+ */
+public record RateLimitDecision(boolean allowed, long retryAfterMillis) {}
@@ -0,0 +1,119 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the exchange rates between every pair of indexed currencies, built from
+ * the rates of a single pivot currency. Rates are kept in a dense row-major matrix of primitive
+ * doubles (row = base id, column = target id), so looking up a rate is plain array indexing.
+ * Rates involving a currency missing from the pivot's rates are NaN.
+ */
+public final class RateSnapshot {
+    private final CurrencyIndex index;
+    private final double[] reciprocals; // 1 / rate(PIVOT, currency), per currency id
+    private final double[] matrix;
+    private final Instant timestamp;
+    private final Instant cachedAt;
+
+    private RateSnapshot(
+            CurrencyIndex index,
+            double[] reciprocals,
+            double[] matrix,
+            Instant timestamp,
+            Instant cachedAt) {
+        this.index = index;
+        this.reciprocals = reciprocals;
+        this.matrix = matrix;
+        this.timestamp = timestamp;
+        this.cachedAt = cachedAt;
+    }
+
+    /**
+     * Builds the snapshot from the rates of the pivot currency to every other currency:
+     *   rate(A, B) = rate(PIVOT, B) * (1 / rate(PIVOT, A))
+     * Currencies that are not in the index are ignored.
+     */
+    public static RateSnapshot fromPivotRates(
+            CurrencyIndex index,
+            String pivotCurrency,
+            Map<String, Double> pivotRates,
+            Instant timestamp,
+            Instant cachedAt) {
+        int size = index.size();
+        var pivotToCurrency = new double[size];
+        Arrays.fill(pivotToCurrency, Double.NaN);
+        if (pivotRates instanceof QuoteRates quoteRates) {
+            // rates parsed from the external API are read without boxing
+            quoteRates.forEachRate(
+                    (currency, rate) -> {
+                        int id = index.idOf(currency);
+                        if (id != CurrencyIndex.UNKNOWN) {
+                            pivotToCurrency[id] = rate;
+                        }
+                    });
+        } else {
+            for (var pivotRate : pivotRates.entrySet()) {
+                int id = index.idOf(pivotRate.getKey());
+                if (id != CurrencyIndex.UNKNOWN && pivotRate.getValue() != null) {
+                    pivotToCurrency[id] = pivotRate.getValue();
+                }
+            }
+        }
+        // P -> P is not always included in the pivot's rates
+        int pivotId = index.idOf(pivotCurrency);
+        if (pivotId != CurrencyIndex.UNKNOWN) {
+            pivotToCurrency[pivotId] = 1.0;
+        }
+
+        var reciprocals = new double[size];
+        for (int id = 0; id < size; id++) {
+            reciprocals[id] = 1.0 / pivotToCurrency[id];
+        }
+
+        var matrix = new double[size * size];
+        for (int base = 0; base < size; base++) {
+            int row = base * size;
+            for (int target = 0; target < size; target++) {
+                matrix[row + target] = pivotToCurrency[target] * reciprocals[base];
+            }
+        }
+        return new RateSnapshot(index, reciprocals, matrix, timestamp, cachedAt);
+    }
+
+    /**
+     * @return The same snapshot, for rates that were cached again - the rates are shared, not
+     * copied.
+     */
+    public RateSnapshot withCachedAt(Instant cachedAt) {
+        return new RateSnapshot(index, reciprocals, matrix, timestamp, cachedAt);
+    }
+
+    /**
+     * @return The rate from the base currency to the target currency, NaN if unknown.
+     */
+    public double rate(int baseId, int targetId) {
+        return matrix[baseId * index.size() + targetId];
+    }
+
+    /**
+     * @return true if the currency has a rate from the pivot currency, so it can be converted
+     * from and to any other quoted currency.
+     */
+    public boolean isQuoted(int id) {
+        return id != CurrencyIndex.UNKNOWN && !Double.isNaN(reciprocals[id]);
+    }
+
+    public CurrencyIndex getIndex() {
+        return index;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public Instant getCachedAt() {
+        return cachedAt;
+    }
+}
@@ -0,0 +1,19 @@
+package com.exchangerates.CurrencyExchangeAPI.entities;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.RateLimit;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Plan tiers of users, which set the rate limits of their API keys.
+ */
+@Getter
+@AllArgsConstructor
+public enum Plan {
+    FREE(new RateLimit(1.0, 10)),
+    PRO(new RateLimit(10.0, 100)),
+    // heavy internal consumers
+    INTERNAL(new RateLimit(100.0, 1000));
+
+    private final RateLimit rateLimit;
+}
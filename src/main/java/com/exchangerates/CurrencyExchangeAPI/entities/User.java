@@ -2,6 +2,8 @@ package com.exchangerates.CurrencyExchangeAPI.entities;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
@@ -11,11 +13,14 @@ import java.time.LocalDateTime;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 @Entity
-@Table(name = "user_table", indexes = @Index(columnList = "apiKey", name = "IX_user_apiKey"))
+@Table(
+        name = "user_table",
+        indexes = @Index(columnList = "apiKeyDigest", name = "IX_user_apiKeyDigest", unique = true))
 @Getter
 @Setter
 @RequiredArgsConstructor
@@ -27,8 +32,20 @@ public class User {
     private String email;
 
     private String password; // hashed
+
+    // API keys are only stored as their SHA-256 digest (see ApiKeyDigest)
+    @Column(columnDefinition = "binary(32)")
+    private byte[] apiKeyDigest;
+
+    // plaintext API keys of rows created before digests were stored - replaced with their digest
+    // by ApiKeyDigestBackfillService, and never set for new rows
     private String apiKey;
 
+    // existing users are on the free plan
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'FREE'")
+    private Plan plan = Plan.FREE;
+
     @CreationTimestamp private LocalDateTime createdAt;
     @UpdateTimestamp private LocalDateTime updatedAt;
 }
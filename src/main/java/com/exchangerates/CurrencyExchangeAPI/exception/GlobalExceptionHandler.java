@@ -5,6 +5,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -32,7 +33,9 @@ public class GlobalExceptionHandler {
             errorMessage = "An error occurred: " + ex.getMessage();
         }
 
-        return ResponseEntity.status(errorStatusCode).body(new ErrorMessage(errorMessage));
+        return ResponseEntity.status(errorStatusCode)
+                .headers(ex.getHeaders())
+                .body(new ErrorMessage(errorMessage));
     }
 
     @ExceptionHandler(MissingServletRequestParameterException.class)
@@ -43,6 +46,13 @@ public class GlobalExceptionHandler {
                 .body(new ErrorMessage(ex.getMessage()));
     }
 
+    @ExceptionHandler(HttpMediaTypeNotSupportedException.class)
+    public ResponseEntity<ErrorMessage> handleUnsupportedMediaType(
+            HttpMediaTypeNotSupportedException ex) {
+        return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                .body(new ErrorMessage(ex.getMessage()));
+    }
+
     @ExceptionHandler(NoResourceFoundException.class)
     public ResponseEntity<ErrorMessage> handleMissingResource(NoResourceFoundException ex) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorMessage("Not found"));
@@ -54,6 +64,11 @@ public class GlobalExceptionHandler {
                 .body(new ErrorMessage(ex.getMessage()));
     }
 
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<ErrorMessage> handleNotFoundException(NotFoundException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorMessage(ex.getMessage()));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorMessage> handleMethodArgumentNotValidException(
             MethodArgumentNotValidException ex) {
@@ -0,0 +1,7 @@
+package com.exchangerates.CurrencyExchangeAPI.exception;
+
+public class NotFoundException extends RuntimeException {
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,31 @@
+package com.exchangerates.CurrencyExchangeAPI.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A request over the rate limits of its API key, found past the rate limiting filter - e.g. the
+ * weight of a batch, which is only known once its body is read. Answered like the filter answers
+ * (a 429, with Retry-After when known).
+ */
+public class RateLimitExceededException extends ResponseStatusException {
+    private final long retryAfterMillis;
+
+    public RateLimitExceededException(long retryAfterMillis) {
+        super(
+                HttpStatus.TOO_MANY_REQUESTS,
+                "Rate limit exceeded, please wait before making more requests.");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        var headers = new HttpHeaders();
+        if (retryAfterMillis > 0) {
+            // Retry-After is in whole seconds, round up so retrying right then is allowed
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterMillis + 999) / 1000));
+        }
+        return headers;
+    }
+}
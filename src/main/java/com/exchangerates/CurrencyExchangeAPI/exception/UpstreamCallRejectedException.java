@@ -0,0 +1,14 @@
+package com.exchangerates.CurrencyExchangeAPI.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A call to the external API that was rejected before being made - e.g. by the circuit breaker,
+ * or to save the upstream quota. Handled like any other external API failure (a 503).
+ */
+public class UpstreamCallRejectedException extends ResponseStatusException {
+    public UpstreamCallRejectedException(String reason) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, reason);
+    }
+}
@@ -1,23 +1,33 @@
 package com.exchangerates.CurrencyExchangeAPI.filter;
 
+import com.exchangerates.CurrencyExchangeAPI.domain.ApiKeyAccessDecision.Result;
 import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyAuthenticationToken;
-import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IAuthenticationService;
-import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRateLimitService;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyFormat;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyAccessService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyBloomFilterService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 @AllArgsConstructor
 public class RateLimiterFilter extends OncePerRequestFilter {
+    // hides the filter's commons-logging logger, which has no placeholder support
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiterFilter.class);
 
-    private final IAuthenticationService authenticationService;
-    private final IRateLimitService rateLimitService;
+    private final IApiKeyAccessService apiKeyAccessService;
+
+    private final IApiKeyBloomFilterService apiKeyBloomFilter;
+
+    private final ApiKeyFormat apiKeyFormat;
 
     @Override
     protected void doFilterInternal(
@@ -32,18 +42,32 @@ public class RateLimiterFilter extends OncePerRequestFilter {
             return;
         }
 
-        // check if API key does exist
-        if (!authenticationService.isValidAPIKey(apiKey)) {
-            logger.info("Blocked a request due to invalid API key");
-            response.setStatus(HttpStatus.FORBIDDEN.value());
-            response.getWriter().write("Invalid API key");
+        // reject malformed or forged API keys, and API keys that were never issued, in memory -
+        // before any lookup
+        if (!apiKeyFormat.isWellFormed(apiKey) || !apiKeyBloomFilter.mightBeIssued(apiKey)) {
+            rejectInvalidAPIKey(response);
             return;
         }
 
-        // apply rate limiting policy
-        if (!rateLimitService.applyRateLimiting(apiKey)) {
-            logger.info("Blocked a request due to rate limit exceeded.");
+        // check if API key does exist, and apply the rate limits of its plan
+        var accessDecision = apiKeyAccessService.checkAccess(apiKey);
+        if (accessDecision.result() == Result.INVALID_API_KEY) {
+            apiKeyBloomFilter.recordFalsePositive();
+            rejectInvalidAPIKey(response);
+            return;
+        }
+
+        if (accessDecision.result() == Result.RATE_LIMITED) {
+            logger.info(
+                    "Blocked a request from API key '{}' due to rate limit exceeded.",
+                    apiKeyFormat.keyId(apiKey).orElse("legacy"));
             response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            if (accessDecision.retryAfterMillis() > 0) {
+                // Retry-After is in whole seconds, round up so retrying right then is allowed
+                response.setHeader(
+                        HttpHeaders.RETRY_AFTER,
+                        String.valueOf((accessDecision.retryAfterMillis() + 999) / 1000));
+            }
             response.getWriter()
                     .write("Rate limit exceeded, please wait before making more requests.");
             return;
@@ -55,4 +79,10 @@ public class RateLimiterFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    private void rejectInvalidAPIKey(HttpServletResponse response) throws IOException {
+        logger.info("Blocked a request due to invalid API key");
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        response.getWriter().write("Invalid API key");
+    }
 }
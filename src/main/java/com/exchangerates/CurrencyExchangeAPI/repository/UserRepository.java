@@ -2,12 +2,23 @@ package com.exchangerates.CurrencyExchangeAPI.repository;
 
 import com.exchangerates.CurrencyExchangeAPI.entities.User;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     public Optional<User> findByEmail(String email);
 
-    public boolean existsByApiKey(String apiKey);
+    public Optional<User> findByApiKeyDigest(byte[] apiKeyDigest);
 
     public boolean existsByEmail(String email);
+
+    @Query("select u.apiKeyDigest from User u where u.apiKeyDigest is not null")
+    public Slice<byte[]> findAllApiKeyDigests(Pageable pageable);
+
+    // rows that still hold a plaintext API key, whether its digest was stored yet or not
+    public Slice<User> findByApiKeyIsNotNull(Pageable pageable);
+
+    public boolean existsByApiKeyDigestIsNullAndApiKeyIsNotNull();
 }
@@ -0,0 +1,36 @@
+package com.exchangerates.CurrencyExchangeAPI.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 digests of API keys - API keys are only stored, cached and published as digests, so
+ * none of those expose usable API keys.
+ * API keys are random, so a plain (unsalted) digest is enough to keep them from being recovered.
+ */
+public final class ApiKeyDigest {
+    public static final int LENGTH = 32;
+
+    private ApiKeyDigest() {}
+
+    public static byte[] of(String apiKey) {
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                    .digest(apiKey.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /** Hex form of the digest, used to identify API keys in caches and messages. */
+    public static String hex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+
+    public static String hexOf(String apiKey) {
+        return hex(of(apiKey));
+    }
+}
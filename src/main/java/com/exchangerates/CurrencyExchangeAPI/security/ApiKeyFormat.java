@@ -0,0 +1,153 @@
+package com.exchangerates.CurrencyExchangeAPI.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Format of issued API keys: 'cxa1_' followed by the URL safe Base64 of a key id (6 bytes), the
+ * secret (32 random bytes), and a MAC of both (8 bytes, truncated HMAC-SHA256 under a server side
+ * secret). Keys can be checked for being well formed, and not forged, without any I/O - only keys
+ * that pass are looked up.
+ * The key id identifies a key (e.g. in logs) without exposing its secret.
+ * Keys issued before this format (32 random bytes in Base64) are still accepted, unless
+ * auth.api-key.accept-legacy is disabled.
+ */
+@Component
+public class ApiKeyFormat {
+    public static final String PREFIX = "cxa1_";
+
+    private static final int KEY_ID_LENGTH = 6;
+    private static final int SECRET_LENGTH = 32;
+    private static final int MAC_LENGTH = 8;
+    private static final int PAYLOAD_LENGTH = KEY_ID_LENGTH + SECRET_LENGTH + MAC_LENGTH;
+    // unpadded Base64 of the payload
+    private static final int ENCODED_PAYLOAD_LENGTH = (PAYLOAD_LENGTH * 4 + 2) / 3;
+    private static final int KEY_ID_ENCODED_LENGTH = KEY_ID_LENGTH * 4 / 3;
+
+    // legacy API keys are 32 random bytes, in padded Base64
+    private static final int LEGACY_SECRET_LENGTH = 32;
+    private static final int LEGACY_ENCODED_LENGTH = 44;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_POOL_SIZE = 64;
+
+    private static final SecureRandom rng = new SecureRandom();
+
+    private final SecretKeySpec macKey;
+    private final boolean acceptLegacy;
+
+    // Mac instances are not thread safe, and cheaper to reuse than to create on every request. They
+    // are pooled rather than kept per thread, as virtual threads are not reused across requests
+    private final BlockingQueue<Mac> macs = new ArrayBlockingQueue<>(MAC_POOL_SIZE);
+
+    @Autowired
+    public ApiKeyFormat(
+            @Value("${auth.api-key.mac-secret}") String macSecret,
+            @Value("${auth.api-key.accept-legacy:true}") boolean acceptLegacy) {
+        if (macSecret == null || macSecret.isBlank()) {
+            throw new IllegalArgumentException("auth.api-key.mac-secret must be set");
+        }
+        this.macKey = new SecretKeySpec(macSecret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        this.acceptLegacy = acceptLegacy;
+    }
+
+    /** Generates a new API key, with a random key id and secret. */
+    public String generate() {
+        var payload = new byte[PAYLOAD_LENGTH];
+        rng.nextBytes(payload);
+        System.arraycopy(mac(payload), 0, payload, KEY_ID_LENGTH + SECRET_LENGTH, MAC_LENGTH);
+        return PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(payload);
+    }
+
+    /**
+     * Checks whether the API key could have been issued by this application - either a key in the
+     * current format with a valid MAC, or (if still accepted) a legacy key of the right shape.
+     * Keys that pass still have to be looked up, as they may have been revoked.
+     */
+    public boolean isWellFormed(String apiKey) {
+        if (apiKey.startsWith(PREFIX)) {
+            var payload = decodePayload(apiKey);
+            if (payload == null) {
+                return false;
+            }
+            var expectedMac = mac(payload);
+            var actualMac =
+                    Arrays.copyOfRange(payload, KEY_ID_LENGTH + SECRET_LENGTH, PAYLOAD_LENGTH);
+            // constant time comparison, so the MAC cannot be guessed byte by byte
+            return MessageDigest.isEqual(expectedMac, actualMac);
+        }
+
+        return acceptLegacy && isLegacyAPIKey(apiKey);
+    }
+
+    /**
+     * Extracts the key id of an API key in the current format.
+     *
+     * @return The key id, or an empty optional for legacy API keys.
+     */
+    public Optional<String> keyId(String apiKey) {
+        if (!apiKey.startsWith(PREFIX)
+                || apiKey.length() < PREFIX.length() + KEY_ID_ENCODED_LENGTH) {
+            return Optional.empty();
+        }
+        return Optional.of(
+                apiKey.substring(PREFIX.length(), PREFIX.length() + KEY_ID_ENCODED_LENGTH));
+    }
+
+    private byte[] decodePayload(String apiKey) {
+        if (apiKey.length() != PREFIX.length() + ENCODED_PAYLOAD_LENGTH) {
+            return null;
+        }
+        try {
+            return Base64.getUrlDecoder().decode(apiKey.substring(PREFIX.length()));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static boolean isLegacyAPIKey(String apiKey) {
+        if (apiKey.length() != LEGACY_ENCODED_LENGTH) {
+            return false;
+        }
+        try {
+            return Base64.getDecoder().decode(apiKey).length == LEGACY_SECRET_LENGTH;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /** MAC of the key id and secret, prefix included - so it also covers the format version. */
+    private byte[] mac(byte[] payload) {
+        var pooledMac = macs.poll();
+        var mac = pooledMac != null ? pooledMac : newMac();
+        mac.update(PREFIX.getBytes(StandardCharsets.US_ASCII));
+        mac.update(payload, 0, KEY_ID_LENGTH + SECRET_LENGTH);
+        var result = Arrays.copyOf(mac.doFinal(), MAC_LENGTH);
+        // doFinal resets the Mac - past the pool size, it is left to be garbage collected
+        macs.offer(mac);
+        return result;
+    }
+
+    private Mac newMac() {
+        try {
+            var mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(macKey);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            // every Java platform is required to support HmacSHA256
+            throw new IllegalStateException(ex);
+        }
+    }
+}
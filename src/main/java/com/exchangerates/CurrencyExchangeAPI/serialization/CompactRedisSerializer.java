@@ -0,0 +1,55 @@
+package com.exchangerates.CurrencyExchangeAPI.serialization;
+
+import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Redis serializer that writes rates and the available currencies in the compact binary format of
+ * RatesBinaryCodec, and every other value with the fallback (JSON) serializer.
+ * Both formats are always readable, so the binary format can be switched on and off (or upgraded)
+ * while entries written in the other format are still cached.
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+    private static final Logger logger = LoggerFactory.getLogger(CompactRedisSerializer.class);
+
+    private final RedisSerializer<Object> fallbackSerializer;
+    private final RatesBinaryCodec codec;
+    private final boolean binaryEnabled;
+
+    public CompactRedisSerializer(
+            RedisSerializer<Object> fallbackSerializer,
+            RatesBinaryCodec codec,
+            boolean binaryEnabled) {
+        this.fallbackSerializer = fallbackSerializer;
+        this.codec = codec;
+        this.binaryEnabled = binaryEnabled;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (binaryEnabled && codec.canEncode(value)) {
+            return codec.encode(value);
+        }
+        return fallbackSerializer.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (!RatesBinaryCodec.isBinary(bytes)) {
+            return fallbackSerializer.deserialize(bytes);
+        }
+
+        try {
+            var value = codec.decode(bytes);
+            if (value == null) {
+                logger.debug("Binary value written by a newer format version, ignoring it.");
+            }
+            return value;
+        } catch (IOException ex) {
+            throw new SerializationException("Could not read binary value", ex);
+        }
+    }
+}
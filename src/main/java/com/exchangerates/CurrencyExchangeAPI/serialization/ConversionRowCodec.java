@@ -0,0 +1,246 @@
+package com.exchangerates.CurrencyExchangeAPI.serialization;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobFormat;
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobRow;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the rows of a conversion job's uploaded file, and writes the rows of its result, one line
+ * at a time - so a job never holds more than a single row in memory, however large its file is.
+ * CSV fields may be quoted as in RFC 4180, as they are written, but a quoted field cannot span
+ * lines.
+ */
+public final class ConversionRowCodec {
+    private static final String CSV_HEADER = "currency,amount,date,to,rate,value,error";
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final ConversionJobFormat format;
+    private final ObjectReader jsonReader;
+    private final ObjectWriter jsonWriter;
+
+    public ConversionRowCodec(ConversionJobFormat format, ObjectMapper objectMapper) {
+        this.format = format;
+        this.jsonReader = objectMapper.reader();
+        this.jsonWriter = objectMapper.writerFor(ConversionJobRow.class);
+    }
+
+    /**
+     * A row of an uploaded file - date is null when not given.
+     */
+    public record UploadedRow(String currency, double amount, String date) {}
+
+    /**
+     * @return The first line of an uploaded file, without the byte order mark some editors
+     * (e.g. spreadsheets exporting UTF-8 CSV) start files with.
+     */
+    public static String stripByteOrderMark(String firstLine) {
+        return !firstLine.isEmpty() && firstLine.charAt(0) == BYTE_ORDER_MARK
+                ? firstLine.substring(1)
+                : firstLine;
+    }
+
+    /**
+     * @return Whether the line is the header of an uploaded CSV file - only the first line can be.
+     */
+    public boolean isHeader(String line, boolean firstLine) {
+        if (!firstLine || format != ConversionJobFormat.CSV) {
+            return false;
+        }
+        var firstField = line.stripLeading();
+        if (firstField.startsWith("\"")) {
+            firstField = firstField.substring(1);
+        }
+        return firstField.regionMatches(true, 0, "currency", 0, "currency".length());
+    }
+
+    /**
+     * @return The row on the line, with its currency in upper case.
+     * @throws IllegalArgumentException If the line is not a valid row, with why.
+     */
+    public UploadedRow read(String line) {
+        return format == ConversionJobFormat.CSV ? readCsv(line) : readJson(line);
+    }
+
+    public void writeHeader(Writer writer) throws IOException {
+        if (format == ConversionJobFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+    }
+
+    public void write(Writer writer, ConversionJobRow row) throws IOException {
+        if (format == ConversionJobFormat.CSV) {
+            writeCsv(writer, row);
+        } else {
+            // written as a string, since writing to the writer directly would close it
+            writer.write(jsonWriter.writeValueAsString(row));
+        }
+        writer.write('\n');
+    }
+
+    private UploadedRow readCsv(String line) {
+        var fields = splitCsv(line);
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException(
+                    "expected currency,amount[,date] - got " + fields.size() + " fields");
+        }
+
+        double amount;
+        try {
+            amount = Double.parseDouble(fields.get(1).strip());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("invalid amount");
+        }
+        var date = fields.size() == 3 ? fields.get(2).strip() : "";
+        return newRow(fields.get(0).strip(), amount, date.isEmpty() ? null : date);
+    }
+
+    /**
+     * Splits a CSV line into its fields - a field may be quoted, with quotes inside it doubled, and
+     * then hold commas.
+     */
+    private static List<String> splitCsv(String line) {
+        var fields = new ArrayList<String>(3);
+        var field = new StringBuilder();
+        int i = 0;
+        while (true) {
+            // whitespace around a quoted field is ignored, like around any other field
+            int start = i;
+            while (i < line.length() && line.charAt(i) == ' ') {
+                i++;
+            }
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        throw new IllegalArgumentException("unterminated quoted field");
+                    }
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                while (i < line.length() && line.charAt(i) == ' ') {
+                    i++;
+                }
+                if (i < line.length() && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException("unexpected characters after quoted field");
+                }
+            } else {
+                i = start;
+                while (i < line.length() && line.charAt(i) != ',') {
+                    field.append(line.charAt(i++));
+                }
+            }
+
+            fields.add(field.toString());
+            field.setLength(0);
+            if (i >= line.length()) {
+                return fields;
+            }
+            // skip the comma
+            i++;
+        }
+    }
+
+    private UploadedRow readJson(String line) {
+        JsonNode node;
+        try {
+            node = jsonReader.readTree(line);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("malformed JSON");
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("expected a JSON object");
+        }
+
+        var currency = node.path("currency");
+        var amount = node.path("amount");
+        var date = node.path("date");
+        if (!currency.isTextual()) {
+            throw new IllegalArgumentException("missing currency");
+        }
+        if (!amount.isNumber()) {
+            throw new IllegalArgumentException("invalid amount");
+        }
+        if (!date.isMissingNode() && !date.isNull() && !date.isTextual()) {
+            throw new IllegalArgumentException("invalid date");
+        }
+        return newRow(
+                currency.asText(), amount.asDouble(), date.isTextual() ? date.asText() : null);
+    }
+
+    private static UploadedRow newRow(String currency, double amount, String date) {
+        if (currency.isEmpty()) {
+            throw new IllegalArgumentException("missing currency");
+        }
+        if (!Double.isFinite(amount)) {
+            throw new IllegalArgumentException("invalid amount");
+        }
+        // same as a single conversion
+        if (amount <= 0) {
+            throw new IllegalArgumentException(
+                    "currency amount to convert must be greater than 0.");
+        }
+        if (date != null) {
+            try {
+                LocalDate.parse(date);
+            } catch (DateTimeParseException ex) {
+                throw new IllegalArgumentException("invalid date, expected yyyy-MM-dd");
+            }
+        }
+        return new UploadedRow(currency.toUpperCase(), amount, date);
+    }
+
+    private static void writeCsv(Writer writer, ConversionJobRow row) throws IOException {
+        writeCsvField(writer, row.currency());
+        writer.write(',');
+        writeCsvNumber(writer, row.amount());
+        writer.write(',');
+        writeCsvField(writer, row.date());
+        writer.write(',');
+        writeCsvField(writer, row.to());
+        writer.write(',');
+        writeCsvNumber(writer, row.rate());
+        writer.write(',');
+        writeCsvNumber(writer, row.value());
+        writer.write(',');
+        writeCsvField(writer, row.error());
+    }
+
+    // plain notation, so spreadsheets read e.g. 12000000 instead of 1.2E7
+    private static void writeCsvNumber(Writer writer, Double number) throws IOException {
+        if (number != null) {
+            writer.write(BigDecimal.valueOf(number).toPlainString());
+        }
+    }
+
+    private static void writeCsvField(Writer writer, String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        writer.write(field.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
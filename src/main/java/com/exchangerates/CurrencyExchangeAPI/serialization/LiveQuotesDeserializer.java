@@ -0,0 +1,74 @@
+package com.exchangerates.CurrencyExchangeAPI.serialization;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyIndex;
+import com.exchangerates.CurrencyExchangeAPI.domain.QuoteRates;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import java.io.IOException;
+import java.util.Currency;
+
+/**
+ * Reads the quotes of the external API's /live responses, e.g. {"USDEUR": 0.92, "USDJPY": 151.2},
+ * token by token, straight into a QuoteRates keyed by target currency. Each quote is named after
+ * its pair of currency codes, so the target currency is read from the end of the name by
+ * position - no intermediate map is built, and the source currency never needs to be known.
+ * Target currencies are resolved to the codes of a CurrencyIndex, rather than sliced into a new
+ * String for every quote of every response.
+ */
+public class LiveQuotesDeserializer extends StdDeserializer<QuoteRates> {
+    private static final int CODE_LENGTH = 3;
+    // quotes of every available currency
+    private static final int EXPECTED_QUOTES = 170;
+    // the ISO 4217 codes known to the JDK - the external API also quotes a few other currencies
+    // (e.g. BTC), which are still sliced. Deserializers are created by Jackson, so the index of
+    // the available currencies cannot be handed over
+    private static final CurrencyIndex KNOWN_CURRENCIES =
+            CurrencyIndex.of(
+                    Currency.getAvailableCurrencies().stream()
+                            .map(Currency::getCurrencyCode)
+                            .toList());
+
+    public LiveQuotesDeserializer() {
+        super(QuoteRates.class);
+    }
+
+    @Override
+    public QuoteRates deserialize(JsonParser parser, DeserializationContext context)
+            throws IOException {
+        if (!parser.isExpectedStartObjectToken()) {
+            return (QuoteRates) context.handleUnexpectedToken(QuoteRates.class, parser);
+        }
+
+        var builder = QuoteRates.builder(EXPECTED_QUOTES);
+        for (var pair = parser.nextFieldName(); pair != null; pair = parser.nextFieldName()) {
+            var token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            if (!token.isNumeric()) {
+                return (QuoteRates)
+                        context.reportInputMismatch(
+                                this,
+                                "Expected a numeric rate for quote '%s', got %s",
+                                pair,
+                                token);
+            }
+            builder.put(targetCurrency(pair), parser.getDoubleValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return The target currency of a quote - e.g. EUR for USDEUR, and USD for USDUSD.
+     */
+    static String targetCurrency(String pair) {
+        if (pair.length() <= CODE_LENGTH) {
+            return pair;
+        }
+        int offset = pair.length() - CODE_LENGTH;
+        var code = KNOWN_CURRENCIES.codeOf(pair, offset);
+        return code != null ? code : pair.substring(offset);
+    }
+}
@@ -0,0 +1,308 @@
+package com.exchangerates.CurrencyExchangeAPI.serialization;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.CachedRates;
+import com.exchangerates.CurrencyExchangeAPI.domain.QuoteRates;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary format for the values cached the most - rates and the available currencies.
+ *
+ * Every payload starts with a 4 byte header:
+ *   MAGIC | VERSION | TYPE | FLAGS
+ * MAGIC is never the first byte of a JSON document, so binary and JSON values can live side by
+ * side in the cache, and VERSION lets newer formats roll out gradually - readers treat versions
+ * they do not know as a cache miss.
+ * With the COMPRESSED flag set, the body is the uncompressed length followed by the body
+ * compressed with deflate (fastest level) - only used for large bodies, when it pays off.
+ *
+ * Strings are written as a 1 byte length followed by their UTF-8 bytes, so values with strings
+ * longer than 255 bytes (or null rates) can not be encoded - see canEncode.
+ */
+public class RatesBinaryCodec {
+    public static final byte MAGIC = (byte) 0xB1;
+    public static final byte VERSION = 1;
+
+    static final byte TYPE_CACHED_RATES = 1;
+    static final byte TYPE_CURRENCY_SET = 2;
+    static final byte FLAG_COMPRESSED = 1;
+
+    private static final int HEADER_SIZE = 4;
+    private static final int MAX_STRING_LENGTH = 255;
+    // guards against corrupted lengths allocating huge buffers
+    private static final int MAX_BODY_SIZE = 16 * 1024 * 1024;
+
+    private static final byte HAS_RATES = 1;
+    private static final byte HAS_TIMESTAMP = 1 << 1;
+    private static final byte HAS_CACHED_AT = 1 << 2;
+
+    private final int compressionThreshold;
+
+    /**
+     * @param compressionThreshold Bodies at least this big (in bytes) are compressed - a negative
+     *                             value disables compression.
+     */
+    public RatesBinaryCodec(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_SIZE && bytes[0] == MAGIC;
+    }
+
+    /**
+     * @return true if the value is of a supported type, and fits the format's limits.
+     */
+    public boolean canEncode(Object value) {
+        if (value instanceof CachedRates cachedRates) {
+            if (cachedRates.getRates() == null) {
+                return true;
+            }
+            for (var rate : cachedRates.getRates().entrySet()) {
+                if (!isEncodable(rate.getKey()) || rate.getValue() == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        if (value instanceof Set<?> set) {
+            for (var element : set) {
+                if (!(element instanceof String currency) || !isEncodable(currency)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Encodes a value accepted by canEncode.
+     */
+    public byte[] encode(Object value) {
+        try {
+            byte type;
+            var body = new ByteArrayOutputStream(256);
+            var out = new DataOutputStream(body);
+            if (value instanceof CachedRates cachedRates) {
+                type = TYPE_CACHED_RATES;
+                writeCachedRates(out, cachedRates);
+            } else {
+                type = TYPE_CURRENCY_SET;
+                writeCurrencies(out, (Set<?>) value);
+            }
+            out.flush();
+            return withHeader(type, body.toByteArray());
+        } catch (IOException ex) {
+            // only in-memory streams are used, this never happens
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @return The decoded value, or null if the value was written by a newer version of the
+     * format.
+     */
+    public Object decode(byte[] bytes) throws IOException {
+        if (bytes[1] > VERSION) {
+            return null;
+        }
+
+        var body = readBody(bytes);
+        var in = new DataInputStream(new ByteArrayInputStream(body));
+        return switch (bytes[2]) {
+            case TYPE_CACHED_RATES -> readCachedRates(in);
+            case TYPE_CURRENCY_SET -> readCurrencies(in);
+            default -> throw new IOException("Unknown binary value type " + bytes[2]);
+        };
+    }
+
+    private byte[] withHeader(byte type, byte[] body) {
+        byte flags = 0;
+        if (compressionThreshold >= 0 && body.length >= compressionThreshold) {
+            var compressed = compress(body);
+            if (compressed.length < body.length) {
+                body = compressed;
+                flags |= FLAG_COMPRESSED;
+            }
+        }
+
+        var payload = new byte[HEADER_SIZE + body.length];
+        payload[0] = MAGIC;
+        payload[1] = VERSION;
+        payload[2] = type;
+        payload[3] = flags;
+        System.arraycopy(body, 0, payload, HEADER_SIZE, body.length);
+        return payload;
+    }
+
+    private static byte[] readBody(byte[] bytes) throws IOException {
+        if ((bytes[3] & FLAG_COMPRESSED) == 0) {
+            var body = new byte[bytes.length - HEADER_SIZE];
+            System.arraycopy(bytes, HEADER_SIZE, body, 0, body.length);
+            return body;
+        }
+        return decompress(bytes, HEADER_SIZE);
+    }
+
+    private static void writeCachedRates(DataOutputStream out, CachedRates cachedRates)
+            throws IOException {
+        var rates = cachedRates.getRates();
+        byte present = 0;
+        present |= rates != null ? HAS_RATES : 0;
+        present |= cachedRates.getTimestamp() != null ? HAS_TIMESTAMP : 0;
+        present |= cachedRates.getCachedAt() != null ? HAS_CACHED_AT : 0;
+        out.writeByte(present);
+
+        writeInstant(out, cachedRates.getTimestamp());
+        writeInstant(out, cachedRates.getCachedAt());
+        if (rates != null) {
+            out.writeInt(rates.size());
+            for (var rate : rates.entrySet()) {
+                writeString(out, rate.getKey());
+                out.writeDouble(rate.getValue());
+            }
+        }
+    }
+
+    private static CachedRates readCachedRates(DataInputStream in) throws IOException {
+        byte present = in.readByte();
+        var timestamp = (present & HAS_TIMESTAMP) != 0 ? readInstant(in) : null;
+        var cachedAt = (present & HAS_CACHED_AT) != 0 ? readInstant(in) : null;
+
+        QuoteRates rates = null;
+        if ((present & HAS_RATES) != 0) {
+            int size = readSize(in);
+            var builder = QuoteRates.builder(size);
+            for (int i = 0; i < size; i++) {
+                builder.put(readString(in), in.readDouble());
+            }
+            rates = builder.build();
+        }
+        return new CachedRates(rates, timestamp, cachedAt);
+    }
+
+    private static void writeCurrencies(DataOutputStream out, Collection<?> currencies)
+            throws IOException {
+        out.writeInt(currencies.size());
+        for (var currency : currencies) {
+            writeString(out, (String) currency);
+        }
+    }
+
+    private static Set<String> readCurrencies(DataInputStream in) throws IOException {
+        int size = readSize(in);
+        var currencies = new HashSet<String>(size * 2);
+        for (int i = 0; i < size; i++) {
+            currencies.add(readString(in));
+        }
+        return currencies;
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant instant) throws IOException {
+        if (instant != null) {
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return Instant.ofEpochSecond(in.readLong(), in.readInt());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var bytes = new byte[in.readUnsignedByte()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readSize(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0 || size > MAX_BODY_SIZE) {
+            throw new IOException("Invalid binary value size " + size);
+        }
+        return size;
+    }
+
+    private static boolean isEncodable(String value) {
+        // UTF-8 never uses more than 3 bytes per UTF-16 char
+        return value != null
+                && (value.length() * 3 <= MAX_STRING_LENGTH
+                        || value.getBytes(StandardCharsets.UTF_8).length <= MAX_STRING_LENGTH);
+    }
+
+    private static byte[] compress(byte[] body) {
+        var deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            var out = new ByteArrayOutputStream(body.length);
+            var buffer = new byte[1024];
+            // uncompressed length first, so decompression allocates the body exactly once
+            out.write(body.length >>> 24);
+            out.write(body.length >>> 16);
+            out.write(body.length >>> 8);
+            out.write(body.length);
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] bytes, int offset) throws IOException {
+        if (bytes.length < offset + 4) {
+            throw new IOException("Truncated compressed binary value");
+        }
+        int length =
+                ((bytes[offset] & 0xFF) << 24)
+                        | ((bytes[offset + 1] & 0xFF) << 16)
+                        | ((bytes[offset + 2] & 0xFF) << 8)
+                        | (bytes[offset + 3] & 0xFF);
+        if (length < 0 || length > MAX_BODY_SIZE) {
+            throw new IOException("Invalid compressed binary value length " + length);
+        }
+
+        var inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes, offset + 4, bytes.length - offset - 4);
+            var body = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int inflated = inflater.inflate(body, read, length - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != length) {
+                throw new IOException("Truncated compressed binary value");
+            }
+            return body;
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupted compressed binary value", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+}
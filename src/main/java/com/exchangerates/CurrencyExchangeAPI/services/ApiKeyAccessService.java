@@ -0,0 +1,39 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.ApiKeyAccessDecision;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyDigest;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyAccessService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IAuthenticationService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRateLimitService;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Validates API keys through the (cached) AuthenticationService, then applies rate limiting with
+ * the configured IRateLimitService.
+ */
+@Service
+@AllArgsConstructor
+public class ApiKeyAccessService implements IApiKeyAccessService {
+
+    private final IAuthenticationService authenticationService;
+    private final IRateLimitService rateLimitService;
+
+    @Override
+    public ApiKeyAccessDecision checkAccess(String apiKey, int weight) {
+        var plan = authenticationService.resolveAPIKeyPlan(apiKey);
+        if (plan.isEmpty()) {
+            return ApiKeyAccessDecision.invalidAPIKey();
+        }
+
+        // rate limits are kept in Redis by the API key's digest, never the API key itself
+        var rateLimitKey = ApiKeyDigest.hexOf(apiKey);
+        var rateLimit = plan.get().getRateLimit();
+        var decision =
+                weight == 1
+                        ? rateLimitService.checkRateLimit(rateLimitKey, rateLimit)
+                        : rateLimitService.checkRateLimit(
+                                rateLimitKey, rateLimit, Math.min(weight, rateLimit.burst()));
+        return ApiKeyAccessDecision.fromRateLimitDecision(decision);
+    }
+}
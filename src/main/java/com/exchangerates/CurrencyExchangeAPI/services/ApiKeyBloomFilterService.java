@@ -0,0 +1,400 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.repository.UserRepository;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyDigest;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyFormat;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyBloomFilterService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.connection.RedisStringCommands.BitOperation;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bloom filter of every issued API key, so random API keys are rejected in memory, without a
+ * lookup in the cache, Redis or the database.
+ * Every instance keeps its own copy of the filter, built from the API key digests in the user
+ * table at startup - so bit positions are derived from the same SHA-256 digest. The
+ * filter is shared through a Redis bitmap: bits are only ever set, so instances merge their copy
+ * into the bitmap with BITOP OR, and merge the bitmap back into their copy. Additions are set in
+ * the bitmap and published to every instance right away. API keys in the current format missing
+ * from the local copy are checked against the bitmap before being rejected, so an addition whose
+ * publication was lost never rejects an issued API key - the periodic sync from the bitmap then
+ * picks it up for good. Only keys with a valid MAC are checked there, so forged keys cannot make
+ * every check a Redis round trip. Legacy API keys are no longer issued, so every one of them is in
+ * the local copy once it is built, and missing ones are rejected right away.
+ * Revoked API keys stay in the filter - they only cost a lookup, and are then cached as invalid.
+ */
+@Service
+public class ApiKeyBloomFilterService implements IApiKeyBloomFilterService {
+    private static final Logger logger = LoggerFactory.getLogger(ApiKeyBloomFilterService.class);
+
+    // bit positions of added API keys are published here - never the API keys themselves
+    public static final String API_KEY_ADDITION_CHANNEL = "auth:api-key-additions";
+    private static final String BITMAP_KEY_PREFIX = "auth:api-key-bloom:";
+    private static final int BUILD_PAGE_SIZE = 10000;
+
+    private final UserRepository userRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final ApiKeyFormat apiKeyFormat;
+
+    private final boolean enabled;
+    private final long bitCount;
+    private final int hashCount;
+    // bit positions depend on the size of the filter, so every size gets its own bitmap
+    private final String layout;
+    private final String bitmapKey;
+
+    // bit i is stored at word i / 64, most significant bit first - the order Redis uses, so the
+    // words are the bitmap as read from Redis
+    private final AtomicLongArray words;
+    private volatile boolean built;
+    // set when an addition could not be written to Redis, so the whole copy is merged on next sync
+    private volatile boolean pendingMerge;
+
+    private final Counter rejected;
+    private final Counter passed;
+    private final Counter falsePositives;
+
+    @Autowired
+    public ApiKeyBloomFilterService(
+            UserRepository userRepository,
+            StringRedisTemplate redisTemplate,
+            ApiKeyFormat apiKeyFormat,
+            MeterRegistry meterRegistry,
+            @Value("${auth.bloom-filter.enabled:true}") boolean enabled,
+            @Value("${auth.bloom-filter.expected-keys:1000000}") long expectedKeys,
+            @Value("${auth.bloom-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+        this.apiKeyFormat = apiKeyFormat;
+        this.enabled = enabled;
+        this.bitCount = optimalBitCount(expectedKeys, falsePositiveRate);
+        this.hashCount = optimalHashCount(expectedKeys, bitCount);
+        this.layout = bitCount + ":" + hashCount;
+        this.bitmapKey = BITMAP_KEY_PREFIX + layout;
+        this.words = new AtomicLongArray(enabled ? (int) ((bitCount + 63) / 64) : 0);
+
+        this.rejected = checkCounter(meterRegistry, "rejected");
+        this.passed = checkCounter(meterRegistry, "passed");
+        this.falsePositives = checkCounter(meterRegistry, "false_positive");
+        Gauge.builder(
+                        "auth.bloom-filter.estimated-false-positive-rate",
+                        this,
+                        f -> f.estimatedFpp())
+                .description("False positive rate of the API key filter, estimated from its fill")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean mightBeIssued(String apiKey) {
+        // until the filter is built, every API key may have been issued
+        if (!enabled || !built) {
+            return true;
+        }
+
+        var positions = bitPositions(ApiKeyDigest.of(apiKey));
+        if (!isSet(positions) && !(isMacVerified(apiKey) && isSetInSharedBitmap(positions))) {
+            rejected.increment();
+            return false;
+        }
+        passed.increment();
+        return true;
+    }
+
+    @Override
+    public void addIssuedAPIKey(String apiKey) {
+        if (!enabled) {
+            return;
+        }
+
+        var positions = bitPositions(ApiKeyDigest.of(apiKey));
+        setBits(positions);
+        try {
+            redisTemplate.executePipelined(
+                    (RedisCallback<Object>)
+                            connection -> {
+                                var key = bitmapKey.getBytes(StandardCharsets.UTF_8);
+                                for (long position : positions) {
+                                    connection.stringCommands().setBit(key, position, true);
+                                }
+                                return null;
+                            });
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to add API key to the shared filter: {}", ex.getMessage());
+            pendingMerge = true;
+        }
+
+        try {
+            redisTemplate.convertAndSend(
+                    API_KEY_ADDITION_CHANNEL,
+                    Arrays.stream(positions)
+                            .mapToObj(String::valueOf)
+                            .collect(Collectors.joining(",", layout + "|", "")));
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to publish API key addition: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public void applyPublishedAddition(String message) {
+        // additions from instances with a differently sized filter do not map to this one
+        var prefix = layout + "|";
+        if (!enabled || !message.startsWith(prefix)) {
+            return;
+        }
+
+        setBits(
+                Arrays.stream(message.substring(prefix.length()).split(","))
+                        .mapToLong(Long::parseLong)
+                        .toArray());
+    }
+
+    @Override
+    public void recordFalsePositive() {
+        if (enabled && built) {
+            falsePositives.increment();
+        }
+    }
+
+    /** Builds the filter from the user table once the application is up. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            build();
+        }
+    }
+
+    /**
+     * Merges the shared bitmap into the local filter, picking up additions whose publication was
+     * lost - or builds the filter, if that failed at startup.
+     */
+    @Scheduled(fixedDelayString = "${auth.bloom-filter.sync-interval-ms:60000}")
+    public void synchronize() {
+        if (!enabled) {
+            return;
+        }
+        if (!built) {
+            build();
+            return;
+        }
+
+        boolean mergeIntoShared = pendingMerge;
+        pendingMerge = false;
+        try {
+            merge(mergeIntoShared);
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to sync the API key filter: {}", ex.getMessage());
+            pendingMerge |= mergeIntoShared;
+        }
+    }
+
+    void build() {
+        try {
+            // API keys not replaced with their digest yet would be rejected
+            if (userRepository.existsByApiKeyDigestIsNullAndApiKeyIsNotNull()) {
+                logger.info("API key digests are being backfilled, building filter on next sync.");
+                return;
+            }
+
+            long keyCount = 0;
+            var page = PageRequest.of(0, BUILD_PAGE_SIZE, Sort.by("id"));
+            while (true) {
+                var apiKeyDigests = userRepository.findAllApiKeyDigests(page);
+                for (var apiKeyDigest : apiKeyDigests) {
+                    setBits(bitPositions(apiKeyDigest));
+                }
+                keyCount += apiKeyDigests.getNumberOfElements();
+                if (!apiKeyDigests.hasNext()) {
+                    break;
+                }
+                page = page.next();
+            }
+
+            merge(true);
+            built = true;
+            logger.info(
+                    "Built API key filter from {} API keys ({} bits, {} hashes).",
+                    keyCount,
+                    bitCount,
+                    hashCount);
+        } catch (DataAccessException ex) {
+            logger.warn(
+                    "Failed to build the API key filter, retrying on next sync: {}",
+                    ex.getMessage());
+        }
+    }
+
+    /** Optionally merges the local filter into the shared bitmap, then merges the bitmap back. */
+    private void merge(boolean mergeIntoShared) {
+        var key = bitmapKey.getBytes(StandardCharsets.UTF_8);
+        byte[] shared =
+                redisTemplate.execute(
+                        (RedisCallback<byte[]>)
+                                connection -> {
+                                    if (mergeIntoShared) {
+                                        // BITOP OR through a temporary key, so bits set by other
+                                        // instances in the meantime are kept
+                                        var tempKey =
+                                                (bitmapKey + ":merge:" + UUID.randomUUID())
+                                                        .getBytes(StandardCharsets.UTF_8);
+                                        connection
+                                                .stringCommands()
+                                                .set(
+                                                        tempKey,
+                                                        toBytes(),
+                                                        Expiration.seconds(60),
+                                                        SetOption.upsert());
+                                        connection
+                                                .stringCommands()
+                                                .bitOp(BitOperation.OR, key, key, tempKey);
+                                        connection.keyCommands().del(tempKey);
+                                    }
+                                    return connection.stringCommands().get(key);
+                                });
+        if (shared != null) {
+            orBytes(shared);
+        }
+    }
+
+    private long[] bitPositions(byte[] apiKeyDigest) {
+        // double hashing over the first 128 bits of the SHA-256 digest - API keys are random, but a
+        // cryptographic hash keeps crafted keys from targeting particular bits
+        var hash = ByteBuffer.wrap(apiKeyDigest);
+        long first = hash.getLong();
+        long second = hash.getLong();
+
+        var positions = new long[hashCount];
+        for (int i = 0; i < hashCount; i++) {
+            positions[i] = Math.floorMod(first + i * second, bitCount);
+        }
+        return positions;
+    }
+
+    private boolean isMacVerified(String apiKey) {
+        return apiKey.startsWith(ApiKeyFormat.PREFIX) && apiKeyFormat.isWellFormed(apiKey);
+    }
+
+    /**
+     * Checks bits missing from the local copy in the shared bitmap, in case they were set by an
+     * addition whose publication was lost. Bits found there are set in the local copy.
+     */
+    private boolean isSetInSharedBitmap(long[] positions) {
+        List<Object> bits;
+        try {
+            bits =
+                    redisTemplate.executePipelined(
+                            (RedisCallback<Object>)
+                                    connection -> {
+                                        var key = bitmapKey.getBytes(StandardCharsets.UTF_8);
+                                        for (long position : positions) {
+                                            connection.stringCommands().getBit(key, position);
+                                        }
+                                        return null;
+                                    });
+        } catch (DataAccessException ex) {
+            // the API key lookup that follows decides instead
+            logger.warn("Failed to check API key against the shared filter: {}", ex.getMessage());
+            return true;
+        }
+
+        if (bits.size() != positions.length || !bits.stream().allMatch(Boolean.TRUE::equals)) {
+            return false;
+        }
+        setBits(positions);
+        return true;
+    }
+
+    private boolean isSet(long[] positions) {
+        for (long position : positions) {
+            if (!isSet(position)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSet(long position) {
+        return (words.get((int) (position >>> 6)) & mask(position)) != 0;
+    }
+
+    private void setBits(long[] positions) {
+        for (long position : positions) {
+            words.accumulateAndGet((int) (position >>> 6), mask(position), (a, b) -> a | b);
+        }
+    }
+
+    private static long mask(long position) {
+        return 1L << (63 - (position & 63));
+    }
+
+    private byte[] toBytes() {
+        var buffer = ByteBuffer.allocate(words.length() * Long.BYTES);
+        for (int i = 0; i < words.length(); i++) {
+            buffer.putLong(words.get(i));
+        }
+        return buffer.array();
+    }
+
+    private void orBytes(byte[] bitmap) {
+        // Redis only stores the bitmap up to its highest set bit, so it may be shorter
+        var padded = Arrays.copyOf(bitmap, words.length() * Long.BYTES);
+        var buffer = ByteBuffer.wrap(padded);
+        for (int i = 0; i < words.length(); i++) {
+            long word = buffer.getLong();
+            if (word != 0) {
+                words.accumulateAndGet(i, word, (a, b) -> a | b);
+            }
+        }
+    }
+
+    private double estimatedFpp() {
+        if (!enabled) {
+            return 1.0;
+        }
+
+        long setBits = 0;
+        for (int i = 0; i < words.length(); i++) {
+            setBits += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) setBits / bitCount, hashCount);
+    }
+
+    static long optimalBitCount(long expectedKeys, double falsePositiveRate) {
+        return (long)
+                Math.ceil(
+                        -expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    }
+
+    static int optimalHashCount(long expectedKeys, long bitCount) {
+        return Math.max(1, (int) Math.round((double) bitCount / expectedKeys * Math.log(2)));
+    }
+
+    private static Counter checkCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("auth.bloom-filter.checks")
+                .description("API keys checked against the filter of issued API keys")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,121 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.entities.User;
+import com.exchangerates.CurrencyExchangeAPI.repository.UserRepository;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyDigest;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyBloomFilterService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Stores the digest of plaintext API keys of rows created before digests were stored.
+ * Runs at startup, before the filter of issued API keys is built from the digests, and then
+ * periodically - rows written by instances still storing plaintext API keys (during a rolling
+ * upgrade) are picked up on the next run, including API keys they revoked, whose digest no longer
+ * matches. API keys whose digest is stored are added to the filter of issued API keys, since older
+ * instances do not add the API keys they issue to it.
+ * Plaintext API keys are kept, since instances still on an older version look API keys up by them,
+ * until 'auth.api-key-digest.drop-plaintext' is enabled once every instance is upgraded - after
+ * which there is nothing left to backfill, and a run is a single indexed query.
+ */
+@Service
+public class ApiKeyDigestBackfillService {
+    private static final Logger logger = LoggerFactory.getLogger(ApiKeyDigestBackfillService.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final UserRepository userRepository;
+    private final IApiKeyBloomFilterService apiKeyBloomFilter;
+
+    private final boolean dropPlaintext;
+
+    @Autowired
+    public ApiKeyDigestBackfillService(
+            UserRepository userRepository,
+            IApiKeyBloomFilterService apiKeyBloomFilter,
+            @Value("${auth.api-key-digest.drop-plaintext:false}") boolean dropPlaintext) {
+        this.userRepository = userRepository;
+        this.apiKeyBloomFilter = apiKeyBloomFilter;
+        this.dropPlaintext = dropPlaintext;
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        backfill();
+    }
+
+    @Scheduled(
+            initialDelayString = "${auth.api-key-digest.backfill-interval-ms:60000}",
+            fixedDelayString = "${auth.api-key-digest.backfill-interval-ms:60000}")
+    public void backfill() {
+        try {
+            long backfilled = 0;
+            long dropped = 0;
+            int page = 0;
+            while (true) {
+                var users =
+                        userRepository.findByApiKeyIsNotNull(
+                                PageRequest.of(page, BATCH_SIZE, Sort.by("id")));
+                if (users.isEmpty()) {
+                    break;
+                }
+
+                var changedUsers = new ArrayList<User>();
+                var issuedAPIKeys = new ArrayList<String>();
+                for (var user : users) {
+                    var apiKeyDigest = ApiKeyDigest.of(user.getApiKey());
+                    boolean changed = false;
+                    if (!Arrays.equals(apiKeyDigest, user.getApiKeyDigest())) {
+                        user.setApiKeyDigest(apiKeyDigest);
+                        issuedAPIKeys.add(user.getApiKey());
+                        backfilled++;
+                        changed = true;
+                    }
+                    if (dropPlaintext) {
+                        user.setApiKey(null);
+                        dropped++;
+                        changed = true;
+                    }
+                    if (changed) {
+                        changedUsers.add(user);
+                    }
+                }
+                if (!changedUsers.isEmpty()) {
+                    userRepository.saveAll(changedUsers);
+                }
+                // issued (or revoked) by an older instance, which did not add them to the filter
+                issuedAPIKeys.forEach(apiKeyBloomFilter::addIssuedAPIKey);
+
+                // rows whose plaintext API key was dropped no longer match, so the first page
+                // then always holds the next rows
+                if (!dropPlaintext) {
+                    page++;
+                }
+            }
+
+            if (backfilled > 0 || dropped > 0) {
+                logger.info(
+                        "Stored the digest of {} plaintext API keys, dropped {} plaintext API"
+                                + " keys.",
+                        backfilled,
+                        dropped);
+            }
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to backfill API key digests, retrying later: {}", ex.getMessage());
+        }
+    }
+}
@@ -2,27 +2,95 @@ package com.exchangerates.CurrencyExchangeAPI.services;
 
 import com.exchangerates.CurrencyExchangeAPI.contracts.requests.AccountCredentialsDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.AccountResponseDTO;
+import com.exchangerates.CurrencyExchangeAPI.entities.Plan;
 import com.exchangerates.CurrencyExchangeAPI.entities.User;
 import com.exchangerates.CurrencyExchangeAPI.exception.BusinessException;
 import com.exchangerates.CurrencyExchangeAPI.repository.UserRepository;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyDigest;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyFormat;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyBloomFilterService;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IAuthenticationService;
-import java.security.SecureRandom;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Base64;
-import lombok.AllArgsConstructor;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 @Service
-@AllArgsConstructor
 public class AuthenticationService implements IAuthenticationService {
+    private static final Logger logger = LoggerFactory.getLogger(AuthenticationService.class);
 
-    private final UserRepository userRepository;
+    // digests of revoked API keys are published here, for every instance to drop them from its
+    // cache
+    public static final String API_KEY_REVOCATION_CHANNEL = "auth:api-key-revocations";
 
-    private static final SecureRandom rng = new SecureRandom();
+    private final UserRepository userRepository;
 
     private final PasswordEncoder passwordEncoder;
 
+    private final ApiKeyFormat apiKeyFormat;
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final IApiKeyBloomFilterService apiKeyBloomFilter;
+
+    // plans of API keys (by digest), resolved once instead of on every request - an empty plan
+    // means the API key is not valid. Entries expire, so plan changes made straight in the database
+    // are picked up without a restart, and invalid API keys are only cached for a short while
+    private final Cache<String, Optional<Plan>> apiKeyPlans;
+
+    // active API keys expire, so plan changes made straight in the database are picked up
+    private final Duration activeAPIKeyTtl;
+
+    private final Counter databaseLookupsFound;
+    private final Counter databaseLookupsNotFound;
+
+    @Autowired
+    public AuthenticationService(
+            UserRepository userRepository,
+            PasswordEncoder passwordEncoder,
+            ApiKeyFormat apiKeyFormat,
+            StringRedisTemplate redisTemplate,
+            IApiKeyBloomFilterService apiKeyBloomFilter,
+            MeterRegistry meterRegistry,
+            @Value("${auth.api-key-cache.ttl:60}") long apiKeyCacheTtlSeconds,
+            @Value("${auth.api-key-cache.negative-ttl:5}") long apiKeyCacheNegativeTtlSeconds,
+            @Value("${auth.api-key-cache.max-size:10000}") long apiKeyCacheMaxSize,
+            @Value("${auth.active-api-keys.ttl:86400}") long activeAPIKeyTtlSeconds) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.apiKeyFormat = apiKeyFormat;
+        this.redisTemplate = redisTemplate;
+        this.apiKeyBloomFilter = apiKeyBloomFilter;
+        this.activeAPIKeyTtl = Duration.ofSeconds(activeAPIKeyTtlSeconds);
+        this.apiKeyPlans =
+                Caffeine.newBuilder()
+                        .maximumSize(apiKeyCacheMaxSize)
+                        .expireAfter(
+                                new APIKeyPlanExpiry(
+                                        Duration.ofSeconds(apiKeyCacheTtlSeconds),
+                                        Duration.ofSeconds(apiKeyCacheNegativeTtlSeconds)))
+                        .recordStats()
+                        .build();
+
+        // hit ratio comes from caffeine, lookups that fell back to the database are counted here
+        CaffeineCacheMetrics.monitor(meterRegistry, apiKeyPlans, "api-keys");
+        this.databaseLookupsFound = databaseLookupCounter(meterRegistry, "found");
+        this.databaseLookupsNotFound = databaseLookupCounter(meterRegistry, "not_found");
+    }
+
     @Override
     public AccountResponseDTO signUp(AccountCredentialsDTO request) {
         if (userRepository.existsByEmail(request.getEmail())) {
@@ -32,12 +100,15 @@ public class AuthenticationService implements IAuthenticationService {
         var newUser = new User();
         newUser.setEmail(request.getEmail());
         newUser.setPassword(passwordEncoder.encode(request.getPassword()));
-        newUser.setApiKey(generateAPIKey());
+        var apiKey = generateAPIKey();
+        newUser.setApiKeyDigest(ApiKeyDigest.of(apiKey));
         newUser.setCreatedAt(LocalDateTime.now());
         newUser.setUpdatedAt(LocalDateTime.now());
         var savedUser = userRepository.save(newUser);
+        apiKeyBloomFilter.addIssuedAPIKey(apiKey);
+        registerActiveAPIKey(apiKey, savedUser.getPlan());
 
-        return AccountResponseDTO.fromUser(savedUser);
+        return AccountResponseDTO.fromUser(savedUser, apiKey);
     }
 
     @Override
@@ -47,16 +118,145 @@ public class AuthenticationService implements IAuthenticationService {
 
     @Override
     public boolean isValidAPIKey(String apiKey) {
-        return userRepository.existsByApiKey(apiKey);
+        return resolveAPIKeyPlan(apiKey).isPresent();
+    }
+
+    @Override
+    public Optional<Plan> resolveAPIKeyPlan(String apiKey) {
+        var apiKeyDigest = ApiKeyDigest.of(apiKey);
+        var hexDigest = ApiKeyDigest.hex(apiKeyDigest);
+        var cachedPlan = apiKeyPlans.getIfPresent(hexDigest);
+        if (cachedPlan != null) {
+            return cachedPlan;
+        }
+
+        // looked up outside of the cache's compute, which holds a monitor - a virtual thread
+        // waiting on the database within it would pin its carrier thread. Concurrent misses of
+        // the same API key may each look it up
+        var plan = findAPIKeyPlan(apiKeyDigest);
+        apiKeyPlans.put(hexDigest, plan);
+        return plan;
+    }
+
+    @Override
+    public Optional<Plan> revalidateAPIKeyPlan(String apiKey) {
+        var apiKeyDigest = ApiKeyDigest.of(apiKey);
+        var hexDigest = ApiKeyDigest.hex(apiKeyDigest);
+        var cachedPlan = apiKeyPlans.getIfPresent(hexDigest);
+        if (cachedPlan != null && cachedPlan.isEmpty()) {
+            return cachedPlan;
+        }
+
+        var plan = findAPIKeyPlan(apiKeyDigest);
+        apiKeyPlans.put(hexDigest, plan);
+        return plan;
+    }
+
+    @Override
+    public void evictAPIKeyDigest(String apiKeyDigest) {
+        apiKeyPlans.invalidate(apiKeyDigest);
+    }
+
+    @Override
+    public void registerActiveAPIKey(String apiKey, Plan plan) {
+        // only an optimization - API keys missing from Redis are looked up in the database
+        try {
+            redisTemplate
+                    .opsForValue()
+                    .set(
+                            activeAPIKeyKey(ApiKeyDigest.hexOf(apiKey)),
+                            (plan != null ? plan : Plan.FREE).name(),
+                            activeAPIKeyTtl);
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to register active API key: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public void unregisterActiveAPIKey(String apiKey) {
+        deleteActiveAPIKey(ApiKeyDigest.hexOf(apiKey));
+    }
+
+    private void deleteActiveAPIKey(String apiKeyDigest) {
+        // unlike registering, this must not fail silently, or the revoked key stays usable
+        redisTemplate.delete(activeAPIKeyKey(apiKeyDigest));
+    }
+
+    /**
+     * @return The Redis key of an active API key, mapped to its plan - hash tagged with the API
+     * key's digest, so scripts can use it along with the API key's rate limiting state in Redis
+     * Cluster.
+     */
+    public static String activeAPIKeyKey(String apiKeyDigest) {
+        return "auth:api-key:{" + apiKeyDigest + "}";
+    }
+
+    private Optional<Plan> findAPIKeyPlan(byte[] apiKeyDigest) {
+        var plan =
+                userRepository
+                        .findByApiKeyDigest(apiKeyDigest)
+                        .map(user -> user.getPlan() != null ? user.getPlan() : Plan.FREE);
+        (plan.isPresent() ? databaseLookupsFound : databaseLookupsNotFound).increment();
+        return plan;
     }
 
     @Override
     public AccountResponseDTO revokeAPIKey(AccountCredentialsDTO request) {
         var existingUser = checkAuthenticationAndReturnUser(request);
-        existingUser.setApiKey(generateAPIKey());
+        // rows that were not backfilled yet still hold the plaintext API key
+        var revokedAPIKeyDigest =
+                ApiKeyDigest.hex(
+                        existingUser.getApiKeyDigest() != null
+                                ? existingUser.getApiKeyDigest()
+                                : ApiKeyDigest.of(existingUser.getApiKey()));
+        var apiKey = generateAPIKey();
+        existingUser.setApiKeyDigest(ApiKeyDigest.of(apiKey));
+        existingUser.setApiKey(null);
         var updatedUser = userRepository.save(existingUser);
+        apiKeyBloomFilter.addIssuedAPIKey(apiKey);
+        evictAPIKeyDigest(revokedAPIKeyDigest);
+        deleteActiveAPIKey(revokedAPIKeyDigest);
+        publishRevocation(revokedAPIKeyDigest);
+        registerActiveAPIKey(apiKey, updatedUser.getPlan());
 
-        return AccountResponseDTO.fromUser(updatedUser);
+        return AccountResponseDTO.fromUser(updatedUser, apiKey);
+    }
+
+    private void publishRevocation(String revokedAPIKeyDigest) {
+        // if publishing fails, other instances still drop it once their cached entry expires
+        try {
+            redisTemplate.convertAndSend(API_KEY_REVOCATION_CHANNEL, revokedAPIKeyDigest);
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to publish API key revocation: {}", ex.getMessage());
+        }
+    }
+
+    private static Counter databaseLookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("auth.api-key.db-lookups")
+                .description("API key lookups that were not cached, and went to the database")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /** Valid API keys are cached for the positive TTL, invalid ones for the negative TTL. */
+    private record APIKeyPlanExpiry(Duration ttl, Duration negativeTtl)
+            implements Expiry<String, Optional<Plan>> {
+        @Override
+        public long expireAfterCreate(String apiKey, Optional<Plan> plan, long currentTime) {
+            return (plan.isPresent() ? ttl : negativeTtl).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(
+                String apiKey, Optional<Plan> plan, long currentTime, long currentDuration) {
+            return expireAfterCreate(apiKey, plan, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(
+                String apiKey, Optional<Plan> plan, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 
     private User checkAuthenticationAndReturnUser(AccountCredentialsDTO request) {
@@ -73,9 +273,6 @@ public class AuthenticationService implements IAuthenticationService {
     }
 
     private String generateAPIKey() {
-        // use cryptographically secure rng to generate a random 32 byte sequence
-        byte[] apiKey = new byte[32];
-        rng.nextBytes(apiKey);
-        return Base64.getEncoder().encodeToString(apiKey);
+        return apiKeyFormat.generate();
     }
 }
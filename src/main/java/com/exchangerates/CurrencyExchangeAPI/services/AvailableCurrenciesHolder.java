@@ -1,5 +1,6 @@
 package com.exchangerates.CurrencyExchangeAPI.services;
 
+import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyIndex;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheService;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyAPIClient;
 import java.time.Duration;
@@ -7,6 +8,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -21,6 +23,10 @@ public class AvailableCurrenciesHolder {
     private static final String REDIS_KEY = "available:currencies";
 
     private volatile Set<String> availableCurrencies; // lazy loaded
+    private volatile CurrencyIndex currencyIndex; // lazy loaded, from availableCurrencies
+    // held while loading from the cache/external API - a lock rather than a monitor, since a
+    // virtual thread blocked on I/O while holding a monitor pins its carrier thread
+    private final ReentrantLock loadLock = new ReentrantLock();
     // cache it for a long time (2 day)
     private static long AVAILABLE_CURRENCIES_TTL = 60 * 60 * 24;
 
@@ -72,9 +78,10 @@ public class AvailableCurrenciesHolder {
             return availableCurrencies;
         }
 
-        // why isn't the whole function synchronized? the overhead isn't worth it,
-        // since after lazy loading, the synchronized code doesn't run very often
-        synchronized (this) {
+        // why isn't the whole function locked? the overhead isn't worth it,
+        // since after lazy loading, the locked code doesn't run very often
+        loadLock.lock();
+        try {
             if (availableCurrencies != null) {
                 return availableCurrencies;
             }
@@ -95,9 +102,24 @@ public class AvailableCurrenciesHolder {
                     REDIS_KEY, availableCurrencies, Duration.ofSeconds(AVAILABLE_CURRENCIES_TTL));
 
             return availableCurrencies;
+        } finally {
+            loadLock.unlock();
         }
     }
 
+    /**
+     * Lazy loads the ids assigned to each available currency.
+     * @return an immutable index of the available currencies
+     */
+    public CurrencyIndex getCurrencyIndex() {
+        // no locking needed - concurrent callers would build an identical index, and the
+        // available currencies never change once loaded
+        if (currencyIndex == null) {
+            currencyIndex = CurrencyIndex.of(getAvailableCurrencies());
+        }
+        return currencyIndex;
+    }
+
     private Optional<Set<String>> getCurrenciesFromCache() {
         return cacheService.get(REDIS_KEY);
     }
@@ -0,0 +1,111 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.AvailableCurrenciesResponse;
+import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyRatesResponse;
+import com.exchangerates.CurrencyExchangeAPI.exception.UpstreamCallRejectedException;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyAPIClient;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IUpstreamBudgetService;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * Makes calls to the external API only while they fit the upstream quota budget, and counts every
+ * call made against it. Calls that are not made fail like a rejected call (a 503), so cached rates
+ * are served instead where there are any.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "upstream.budget.enabled", havingValue = "true")
+public class BudgetedCurrencyAPIClient implements ICurrencyAPIClient {
+    private final CurrencyAPIClient currencyAPIClient;
+    private final IUpstreamBudgetService upstreamBudgetService;
+
+    @Autowired
+    public BudgetedCurrencyAPIClient(
+            CurrencyAPIClient currencyAPIClient, IUpstreamBudgetService upstreamBudgetService) {
+        this.currencyAPIClient = currencyAPIClient;
+        this.upstreamBudgetService = upstreamBudgetService;
+    }
+
+    @Override
+    public AvailableCurrenciesResponse fetchAvailableCurrencies() {
+        return call(null, currencyAPIClient::fetchAvailableCurrencies);
+    }
+
+    @Override
+    public CurrencyRatesResponse fetchCurrencyExchangeRates(
+            String baseCurrency, List<String> targetCurrencies) {
+        return call(
+                baseCurrency,
+                () -> currencyAPIClient.fetchCurrencyExchangeRates(baseCurrency, targetCurrencies));
+    }
+
+    @Override
+    public CompletableFuture<AvailableCurrenciesResponse> fetchAvailableCurrenciesAsync() {
+        return callAsync(null, currencyAPIClient::fetchAvailableCurrenciesAsync);
+    }
+
+    @Override
+    public CompletableFuture<CurrencyRatesResponse> fetchCurrencyExchangeRatesAsync(
+            String baseCurrency, List<String> targetCurrencies) {
+        return callAsync(
+                baseCurrency,
+                () ->
+                        currencyAPIClient.fetchCurrencyExchangeRatesAsync(
+                                baseCurrency, targetCurrencies));
+    }
+
+    private <V> V call(String baseCurrency, Supplier<V> call) {
+        checkBudget(baseCurrency);
+        try {
+            var result = call.get();
+            upstreamBudgetService.recordCall();
+            return result;
+        } catch (UpstreamCallRejectedException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            // failed calls still count against the quota
+            upstreamBudgetService.recordCall();
+            throw ex;
+        }
+    }
+
+    private <V> CompletableFuture<V> callAsync(
+            String baseCurrency, Supplier<CompletableFuture<V>> call) {
+        try {
+            checkBudget(baseCurrency);
+        } catch (UpstreamCallRejectedException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        CompletableFuture<V> future;
+        try {
+            future = call.get();
+        } catch (UpstreamCallRejectedException ex) {
+            return CompletableFuture.failedFuture(ex);
+        } catch (RuntimeException ex) {
+            // thrown before returning a future - counted like any other failed call
+            upstreamBudgetService.recordCall();
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        return future.whenComplete(
+                (result, ex) -> {
+                    if (!(Futures.unwrap(ex) instanceof UpstreamCallRejectedException)) {
+                        upstreamBudgetService.recordCall();
+                    }
+                });
+    }
+
+    private void checkBudget(String baseCurrency) {
+        if (!upstreamBudgetService.allowCall(baseCurrency)) {
+            throw new UpstreamCallRejectedException(
+                    "Upstream quota budget reserved for the most requested base currencies");
+        }
+    }
+}
@@ -13,4 +13,10 @@ public class CacheKeyBuilderService implements ICacheKeyBuilderService {
                 ? String.format("rates:%s:%s", baseCurrency, targetCurrency.get())
                 : String.format("rates:%s", baseCurrency);
     }
+
+    @Override
+    public String buildRatesHashKey(String baseCurrency) {
+        // own prefix, so it never clashes with the 'rates:' string keys of the key per pair layout
+        return String.format("rates-hash:%s", baseCurrency);
+    }
 }
@@ -0,0 +1,395 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ConversionJobDTO;
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ConversionJobDTO.Status;
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobFormat;
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobResult;
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobRow;
+import com.exchangerates.CurrencyExchangeAPI.domain.QuoteRates;
+import com.exchangerates.CurrencyExchangeAPI.exception.BusinessException;
+import com.exchangerates.CurrencyExchangeAPI.exception.NotFoundException;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyDigest;
+import com.exchangerates.CurrencyExchangeAPI.serialization.ConversionRowCodec;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IConversionJobService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Asynchronous bulk conversions: uploaded files of rows are stored on disk, and converted by a
+ * small bounded pool of worker threads - separate from request threads, so large jobs never hold
+ * up interactive requests. Rows are streamed from the uploaded file to the result file one at a
+ * time, all converted with a single snapshot of the target currency's rates, so a job uses the
+ * same memory (and at most one rates lookup) whether it has a hundred rows or millions.
+ * Jobs are kept by the instance they were submitted to, until they expire after the retention
+ * period - files left behind by jobs of before a restart are removed at startup, so the directory
+ * must not be shared between instances.
+ */
+@Service
+public class ConversionJobService implements IConversionJobService {
+    private static final Logger logger = LoggerFactory.getLogger(ConversionJobService.class);
+
+    private final ICurrencyService currencyService;
+    private final AvailableCurrenciesHolder existingCurrencies;
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<String, ConversionJob> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor jobExecutor;
+    // queued and running jobs - jobs past the capacity of the pool are rejected before their file
+    // is uploaded
+    private final AtomicInteger pendingJobs = new AtomicInteger();
+    private final int maxPendingJobs;
+
+    private final Path directory;
+    private final long maxUploadBytes;
+    private final Duration retention;
+
+    private final Counter jobsCompleted;
+    private final Counter jobsFailed;
+    private final Counter jobsRejected;
+
+    @Autowired
+    public ConversionJobService(
+            ICurrencyService currencyService,
+            AvailableCurrenciesHolder existingCurrencies,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${currency.jobs.directory:${java.io.tmpdir}/conversion-jobs}") Path directory,
+            @Value("${currency.jobs.workers:2}") int workers,
+            @Value("${currency.jobs.queue-capacity:20}") int queueCapacity,
+            @Value("${currency.jobs.max-upload-bytes:1073741824}") long maxUploadBytes,
+            @Value("${currency.jobs.retention-seconds:86400}") long retentionSeconds)
+            throws IOException {
+        this.currencyService = currencyService;
+        this.existingCurrencies = existingCurrencies;
+        this.objectMapper = objectMapper;
+        this.directory = Files.createDirectories(directory);
+        removeLeftoverFiles();
+        this.maxUploadBytes = maxUploadBytes;
+        this.retention = Duration.ofSeconds(retentionSeconds);
+        this.maxPendingJobs = workers + queueCapacity;
+
+        var threadCount = new AtomicInteger();
+        this.jobExecutor =
+                new ThreadPoolExecutor(
+                        workers,
+                        workers,
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                        runnable -> {
+                            var thread =
+                                    new Thread(
+                                            runnable,
+                                            "conversion-job-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+
+        this.jobsCompleted = jobCounter(meterRegistry, "completed");
+        this.jobsFailed = jobCounter(meterRegistry, "failed");
+        this.jobsRejected = jobCounter(meterRegistry, "rejected");
+        meterRegistry.gauge("conversion.jobs.pending", pendingJobs);
+    }
+
+    @Override
+    public ConversionJobDTO submitJob(
+            String apiKey, ConversionJobFormat format, String targetCurrency, InputStream rows) {
+        var normalizedTargetCurrency = targetCurrency.toUpperCase();
+        if (!existingCurrencies.doesCurrencyExist(normalizedTargetCurrency)) {
+            throw new BusinessException("Invalid target currency - does not exist");
+        }
+
+        if (pendingJobs.incrementAndGet() > maxPendingJobs) {
+            pendingJobs.decrementAndGet();
+            jobsRejected.increment();
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many conversion jobs in progress, please try again later.");
+        }
+
+        var id = UUID.randomUUID().toString();
+        var job =
+                new ConversionJob(
+                        id,
+                        ApiKeyDigest.hexOf(apiKey),
+                        format,
+                        normalizedTargetCurrency,
+                        directory.resolve(id + ".input"),
+                        directory.resolve(id + ".output." + format.getFileExtension()));
+        try {
+            storeUpload(rows, job.inputFile);
+        } catch (RuntimeException ex) {
+            pendingJobs.decrementAndGet();
+            deleteQuietly(job.inputFile);
+            throw ex;
+        }
+
+        jobs.put(id, job);
+        // never rejected, since pending jobs never outnumber the workers and queue capacity
+        jobExecutor.execute(() -> run(job));
+        logger.debug("Conversion job '{}' queued, converting to '{}'.", id, job.targetCurrency);
+        return job.toDTO();
+    }
+
+    @Override
+    public ConversionJobDTO getJob(String apiKey, String jobId) {
+        return findJob(apiKey, jobId).toDTO();
+    }
+
+    @Override
+    public ConversionJobResult getJobResult(String apiKey, String jobId) {
+        var job = findJob(apiKey, jobId);
+        if (job.status != Status.COMPLETED) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT, "Conversion job has not completed - it is " + job.status);
+        }
+        return new ConversionJobResult(job.id, job.outputFile, job.format);
+    }
+
+    /**
+     * Removes jobs that finished more than the retention period ago, along with their results.
+     */
+    @Scheduled(fixedDelayString = "${currency.jobs.cleanup-interval-ms:60000}")
+    public void removeExpiredJobs() {
+        var expiredBefore = Instant.now().minus(retention);
+        for (var job : jobs.values()) {
+            var completedAt = job.completedAt;
+            if (completedAt != null && completedAt.isBefore(expiredBefore)) {
+                jobs.remove(job.id, job);
+                deleteQuietly(job.outputFile);
+            }
+        }
+    }
+
+    /**
+     * Removes the files of jobs of before a restart - jobs are only kept in memory, so they can no
+     * longer be polled, and would never be removed otherwise.
+     */
+    private void removeLeftoverFiles() throws IOException {
+        long removed = 0;
+        try (var files = Files.newDirectoryStream(directory, "*.{input,output.*}")) {
+            for (var file : files) {
+                deleteQuietly(file);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            logger.info("Removed {} files left behind by conversion jobs.", removed);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    private ConversionJob findJob(String apiKey, String jobId) {
+        var job = jobs.get(jobId);
+        // jobs of other API keys are not told apart from jobs that do not exist
+        if (job == null || !job.ownerDigest.equals(ApiKeyDigest.hexOf(apiKey))) {
+            throw new NotFoundException("Conversion job not found.");
+        }
+        return job;
+    }
+
+    private void storeUpload(InputStream rows, Path inputFile) {
+        try (var output = Files.newOutputStream(inputFile)) {
+            var buffer = new byte[8192];
+            long stored = 0;
+            for (int read = rows.read(buffer); read >= 0; read = rows.read(buffer)) {
+                stored += read;
+                if (stored > maxUploadBytes) {
+                    throw new ResponseStatusException(
+                            HttpStatus.PAYLOAD_TOO_LARGE,
+                            "Uploaded file is larger than " + maxUploadBytes + " bytes.");
+                }
+                output.write(buffer, 0, read);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to store uploaded file", ex);
+        }
+    }
+
+    private void run(ConversionJob job) {
+        job.status = Status.RUNNING;
+        try {
+            // a single snapshot of rates, from the target currency to every other currency -
+            // every row is converted with the same rates, through their inverse
+            var rates =
+                    currencyService.getCurrencyConversionRates(
+                            job.targetCurrency, Optional.empty());
+            job.rateTimestamp = rates.getRateTimestamp();
+            convertRows(job, QuoteRates.of(rates.getTargets()));
+
+            job.completedAt = Instant.now();
+            job.status = Status.COMPLETED;
+            jobsCompleted.increment();
+            logger.debug(
+                    "Conversion job '{}' completed, {} rows converted.", job.id, job.rowsProcessed);
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Conversion job '{}' failed: {}", job.id, ex.getMessage());
+            deleteQuietly(job.outputFile);
+            job.error = ex.getMessage();
+            job.completedAt = Instant.now();
+            job.status = Status.FAILED;
+            jobsFailed.increment();
+        } finally {
+            deleteQuietly(job.inputFile);
+            pendingJobs.decrementAndGet();
+        }
+    }
+
+    private void convertRows(ConversionJob job, QuoteRates targetRates) throws IOException {
+        var codec = new ConversionRowCodec(job.format, objectMapper);
+        try (var reader = Files.newBufferedReader(job.inputFile, StandardCharsets.UTF_8);
+                var writer = Files.newBufferedWriter(job.outputFile, StandardCharsets.UTF_8)) {
+            codec.writeHeader(writer);
+
+            long lineNumber = 0;
+            long processed = 0;
+            long failed = 0;
+            for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (lineNumber == 1) {
+                    line = ConversionRowCodec.stripByteOrderMark(line);
+                }
+                if (line.isBlank() || codec.isHeader(line, lineNumber == 1)) {
+                    continue;
+                }
+
+                var row = convertRow(codec, line, lineNumber, job.targetCurrency, targetRates);
+                codec.write(writer, row);
+                if (row.error() != null) {
+                    job.rowsFailed = ++failed;
+                }
+                job.rowsProcessed = ++processed;
+            }
+        }
+    }
+
+    private static ConversionJobRow convertRow(
+            ConversionRowCodec codec,
+            String line,
+            long lineNumber,
+            String targetCurrency,
+            QuoteRates targetRates) {
+        ConversionRowCodec.UploadedRow row;
+        try {
+            row = codec.read(line);
+        } catch (IllegalArgumentException ex) {
+            return ConversionJobRow.failed(
+                    null,
+                    null,
+                    null,
+                    targetCurrency,
+                    "line " + lineNumber + ": " + ex.getMessage());
+        }
+
+        if (row.currency().equals(targetCurrency)) {
+            return ConversionJobRow.converted(
+                    row.currency(), row.amount(), row.date(), targetCurrency, 1.0);
+        }
+        // rates are from the target currency, rows are converted the other way around
+        double inverseRate = targetRates.rate(row.currency());
+        if (Double.isNaN(inverseRate) || inverseRate == 0) {
+            return ConversionJobRow.failed(
+                    row.currency(),
+                    row.amount(),
+                    row.date(),
+                    targetCurrency,
+                    "line " + lineNumber + ": no exchange rate for currency " + row.currency());
+        }
+        return ConversionJobRow.converted(
+                row.currency(), row.amount(), row.date(), targetCurrency, 1 / inverseRate);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            logger.warn("Failed to delete conversion job file '{}': {}", file, ex.getMessage());
+        }
+    }
+
+    private static Counter jobCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("conversion.jobs")
+                .description("Bulk conversion jobs, by how they ended")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static class ConversionJob {
+        private final String id;
+        private final String ownerDigest;
+        private final ConversionJobFormat format;
+        private final String targetCurrency;
+        private final Path inputFile;
+        private final Path outputFile;
+        private final Instant submittedAt = Instant.now();
+
+        // only written by the worker running the job
+        private volatile Status status = Status.QUEUED;
+        private volatile long rowsProcessed;
+        private volatile long rowsFailed;
+        private volatile Instant rateTimestamp;
+        private volatile Instant completedAt;
+        private volatile String error;
+
+        private ConversionJob(
+                String id,
+                String ownerDigest,
+                ConversionJobFormat format,
+                String targetCurrency,
+                Path inputFile,
+                Path outputFile) {
+            this.id = id;
+            this.ownerDigest = ownerDigest;
+            this.format = format;
+            this.targetCurrency = targetCurrency;
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+        }
+
+        private ConversionJobDTO toDTO() {
+            // status first, so a completed job is never shown with its progress of before
+            var currentStatus = status;
+            return new ConversionJobDTO(
+                    id,
+                    currentStatus,
+                    format,
+                    targetCurrency,
+                    rowsProcessed,
+                    rowsFailed,
+                    submittedAt,
+                    completedAt,
+                    rateTimestamp,
+                    error);
+        }
+    }
+}
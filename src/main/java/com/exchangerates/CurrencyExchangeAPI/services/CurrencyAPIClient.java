@@ -3,13 +3,24 @@ package com.exchangerates.CurrencyExchangeAPI.services;
 import com.exchangerates.CurrencyExchangeAPI.domain.AvailableCurrenciesResponse;
 import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyRatesResponse;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyAPIClient;
-import java.util.HashMap;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IUpstreamCallGuard;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.server.ResponseStatusException;
@@ -19,25 +30,137 @@ import org.springframework.web.util.UriComponentsBuilder;
 public class CurrencyAPIClient implements ICurrencyAPIClient {
     private static final String BASE_EXCHANGERATE_API_URL = "https://api.exchangerate.host";
     private final RestTemplate httpClient;
+    // non-blocking client, with its own pool of connections to the external API
+    private final HttpClient asyncHttpClient;
+    private final ObjectMapper objectMapper;
+    // bulkhead and circuit breaker every call goes through
+    private final IUpstreamCallGuard upstreamCallGuard;
     private final Logger logger = LoggerFactory.getLogger(CurrencyAPIClient.class);
 
     @Value("${exchangerate.apikey}")
     private String exchangeRateKey;
 
+    // overridable to point at a stub of the external API, e.g. for load testing
+    @Value("${exchangerate.base-url:" + BASE_EXCHANGERATE_API_URL + "}")
+    private String exchangeRateBaseUrl = BASE_EXCHANGERATE_API_URL;
+
+    // deadline of asynchronous calls - blocking calls get theirs from the RestTemplate's client
+    @Value("${upstream.http.read-timeout-ms:5000}")
+    private long readTimeoutMillis = 5000;
+
     @Autowired
-    public CurrencyAPIClient(RestTemplate httpClient) {
+    public CurrencyAPIClient(
+            RestTemplate httpClient,
+            HttpClient asyncHttpClient,
+            ObjectMapper objectMapper,
+            IUpstreamCallGuard upstreamCallGuard) {
         this.httpClient = httpClient;
+        this.asyncHttpClient = asyncHttpClient;
+        this.objectMapper = objectMapper;
+        this.upstreamCallGuard = upstreamCallGuard;
     }
 
     @Override
     public AvailableCurrenciesResponse fetchAvailableCurrencies() {
-        var requestUri =
-                UriComponentsBuilder.fromUriString(BASE_EXCHANGERATE_API_URL + "/list")
-                        .queryParam("access_key", exchangeRateKey)
-                        .toUriString();
-        var availableCurrenciesResponse =
-                httpClient.getForObject(requestUri, AvailableCurrenciesResponse.class);
+        return upstreamCallGuard.call(
+                () ->
+                        checkAvailableCurrenciesResponse(
+                                httpClient.getForObject(
+                                        buildAvailableCurrenciesUri(),
+                                        AvailableCurrenciesResponse.class)));
+    }
+
+    @Override
+    public CurrencyRatesResponse fetchCurrencyExchangeRates(
+            String baseCurrency, List<String> targetCurrencies) {
+        var requestUri = buildExchangeRatesUri(baseCurrency, targetCurrencies);
+
+        logger.info("GET request to external API at {}.", requestUri);
+        return upstreamCallGuard.call(
+                () ->
+                        checkCurrencyRatesResponse(
+                                httpClient.getForObject(requestUri, CurrencyRatesResponse.class)));
+    }
+
+    @Override
+    public CompletableFuture<AvailableCurrenciesResponse> fetchAvailableCurrenciesAsync() {
+        return upstreamCallGuard.callAsync(
+                () ->
+                        getAsync(buildAvailableCurrenciesUri(), AvailableCurrenciesResponse.class)
+                                .thenApply(this::checkAvailableCurrenciesResponse));
+    }
+
+    @Override
+    public CompletableFuture<CurrencyRatesResponse> fetchCurrencyExchangeRatesAsync(
+            String baseCurrency, List<String> targetCurrencies) {
+        var requestUri = buildExchangeRatesUri(baseCurrency, targetCurrencies);
+
+        logger.info("Async GET request to external API at {}.", requestUri);
+        return upstreamCallGuard.callAsync(
+                () ->
+                        getAsync(requestUri, CurrencyRatesResponse.class)
+                                .thenApply(this::checkCurrencyRatesResponse));
+    }
+
+    private String buildAvailableCurrenciesUri() {
+        return UriComponentsBuilder.fromUriString(exchangeRateBaseUrl + "/list")
+                .queryParam("access_key", exchangeRateKey)
+                .toUriString();
+    }
+
+    private String buildExchangeRatesUri(String baseCurrency, List<String> targetCurrencies) {
+        return UriComponentsBuilder.fromUriString(exchangeRateBaseUrl + "/live")
+                .queryParam("access_key", exchangeRateKey)
+                .queryParam("source", baseCurrency)
+                .queryParam("currencies", String.join(",", targetCurrencies))
+                .toUriString();
+    }
+
+    /**
+     * Sends a GET request without waiting on its response - failures are mapped the same way the
+     * RestTemplate error handler maps them, calls past their deadline to a 504, and unreachable or
+     * unreadable responses to a 502.
+     */
+    private <T> CompletableFuture<T> getAsync(String requestUri, Class<T> responseType) {
+        var request =
+                HttpRequest.newBuilder(URI.create(requestUri))
+                        .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                        .timeout(Duration.ofMillis(readTimeoutMillis))
+                        .GET()
+                        .build();
+        return asyncHttpClient
+                .sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle(
+                        (response, ex) -> {
+                            if (ex != null && Futures.unwrap(ex) instanceof HttpTimeoutException) {
+                                throw new ResponseStatusException(
+                                        HttpStatus.GATEWAY_TIMEOUT, // 504 status code
+                                        "External API did not respond in time",
+                                        Futures.unwrap(ex));
+                            }
+                            if (ex != null) {
+                                throw new ResponseStatusException(
+                                        HttpStatus.BAD_GATEWAY, // 502 status code
+                                        "External API request failed",
+                                        Futures.unwrap(ex));
+                            }
+                            var statusCode = HttpStatusCode.valueOf(response.statusCode());
+                            if (statusCode.isError()) {
+                                throw new ResponseStatusException(statusCode);
+                            }
+                            try {
+                                return objectMapper.readValue(response.body(), responseType);
+                            } catch (IOException readEx) {
+                                throw new ResponseStatusException(
+                                        HttpStatus.BAD_GATEWAY,
+                                        "External API returned an unreadable response",
+                                        readEx);
+                            }
+                        });
+    }
 
+    private AvailableCurrenciesResponse checkAvailableCurrenciesResponse(
+            AvailableCurrenciesResponse availableCurrenciesResponse) {
         if (!availableCurrenciesResponse.isSuccess()) {
             throw new ResponseStatusException(
                     HttpStatus.BAD_GATEWAY, // 502 status code
@@ -47,45 +170,14 @@ public class CurrencyAPIClient implements ICurrencyAPIClient {
         return availableCurrenciesResponse;
     }
 
-    @Override
-    public CurrencyRatesResponse fetchCurrencyExchangeRates(
-            String baseCurrency, List<String> targetCurrencies) {
-        var requestUri =
-                UriComponentsBuilder.fromUriString(BASE_EXCHANGERATE_API_URL + "/live")
-                        .queryParam("access_key", exchangeRateKey)
-                        .queryParam("source", baseCurrency)
-                        .queryParam("currencies", String.join(",", targetCurrencies))
-                        .toUriString();
-
-        logger.info("GET request to external API at {}.", requestUri);
-        var currencyRatesResponse =
-                httpClient.getForObject(requestUri, CurrencyRatesResponse.class);
-
+    private CurrencyRatesResponse checkCurrencyRatesResponse(
+            CurrencyRatesResponse currencyRatesResponse) {
         if (!currencyRatesResponse.isSuccess()) {
             throw new ResponseStatusException(
                     HttpStatus.BAD_GATEWAY, // 502 status code
                     currencyRatesResponse.getError().getInfo());
         }
 
-        // remove the prefixes
-        transformCurrencyResponse(currencyRatesResponse);
         return currencyRatesResponse;
     }
-
-    /**
-     * This method's purpose is to change the rates mapping portion of the response,
-     * removing the prefix of the source currency from the multiple target currencies.
-     * For example, a request from EUR to USD, will return, in the quotes field,
-     * {"EURUSD": 1.2}. This method turns that into {"USD": 1.2}
-     */
-    private void transformCurrencyResponse(CurrencyRatesResponse response) {
-        var newQuotes = new HashMap<String, Double>();
-        var sourceCurrency = response.getSource();
-        for (var currencyExchangePair : response.getQuotes().entrySet()) {
-            var targetCurrency = currencyExchangePair.getKey().replace(sourceCurrency, "");
-            newQuotes.put(targetCurrency, currencyExchangePair.getValue());
-        }
-
-        response.setQuotes(newQuotes);
-    }
 }
@@ -1,24 +1,42 @@
 package com.exchangerates.CurrencyExchangeAPI.services;
 
+import com.exchangerates.CurrencyExchangeAPI.contracts.requests.ConversionRequestDTO;
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.BatchConversionDTO;
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ConversionResultDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.CurrencyConversionDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ValueConversionDTO;
 import com.exchangerates.CurrencyExchangeAPI.domain.CachedRates;
 import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyRatesResponse;
+import com.exchangerates.CurrencyExchangeAPI.domain.QuoteRates;
+import com.exchangerates.CurrencyExchangeAPI.domain.RateSnapshot;
 import com.exchangerates.CurrencyExchangeAPI.exception.BusinessException;
+import com.exchangerates.CurrencyExchangeAPI.services.RatesFreshnessPolicy.Freshness;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheKeyBuilderService;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheService;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyAPIClient;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyService;
-import java.time.Duration;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRateTriangulationService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRatesHashCacheService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRefreshAheadService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRequestCoalescer;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IUpstreamBudgetService;
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.server.ResponseStatusException;
 
 @Service
 public class CurrencyService implements ICurrencyService {
@@ -27,26 +45,201 @@ public class CurrencyService implements ICurrencyService {
     private final ICacheService<CachedRates> cacheService;
     private final ICacheKeyBuilderService cacheKeyBuilderService;
     private final AvailableCurrenciesHolder existingCurrencies;
+    private final IRequestCoalescer requestCoalescer;
+    private final IRateTriangulationService rateTriangulationService;
+    private final IRefreshAheadService refreshAheadService;
+    private final RatesFreshnessPolicy ratesFreshnessPolicy;
+    private final IRatesHashCacheService ratesHashCacheService;
+    private final IUpstreamBudgetService upstreamBudgetService;
 
-    // default rates TTL to 60 seconds
-    @Value("${cache.ttl.rates:60}")
-    private long ratesTtlSeconds;
+    // when enabled, every pair is derived from the pivot currency's snapshot
+    @Value("${rates.triangulation.enabled:false}")
+    private boolean triangulationEnabled;
+
+    // when enabled, the rates from each base currency are cached as a single Redis hash, instead
+    // of a key per (A -> B) pair and (A -> ALL)
+    @Value("${cache.rates.hash-layout.enabled:false}")
+    private boolean hashLayoutEnabled;
+
+    private final UpstreamFetch blockingUpstream = new BlockingUpstreamFetch();
+    private final UpstreamFetch asyncUpstream = new AsyncUpstreamFetch();
 
     @Autowired
     public CurrencyService(
             ICurrencyAPIClient currencyAPIClient,
             ICacheService<CachedRates> cacheService,
             ICacheKeyBuilderService cacheKeyBuilderService,
-            AvailableCurrenciesHolder existingCurrencies) {
+            AvailableCurrenciesHolder existingCurrencies,
+            IRequestCoalescer requestCoalescer,
+            IRateTriangulationService rateTriangulationService,
+            IRefreshAheadService refreshAheadService,
+            RatesFreshnessPolicy ratesFreshnessPolicy,
+            IRatesHashCacheService ratesHashCacheService,
+            IUpstreamBudgetService upstreamBudgetService) {
         this.currencyAPIClient = currencyAPIClient;
         this.cacheService = cacheService;
         this.cacheKeyBuilderService = cacheKeyBuilderService;
         this.existingCurrencies = existingCurrencies;
+        this.requestCoalescer = requestCoalescer;
+        this.rateTriangulationService = rateTriangulationService;
+        this.refreshAheadService = refreshAheadService;
+        this.ratesFreshnessPolicy = ratesFreshnessPolicy;
+        this.ratesHashCacheService = ratesHashCacheService;
+        this.upstreamBudgetService = upstreamBudgetService;
+    }
+
+    /**
+     * Triangulated rates are all derived from the pivot snapshot, so the hash layout would never
+     * be read - the two modes are exclusive, rather than one silently disabling the other.
+     */
+    @PostConstruct
+    void checkRatesLayout() {
+        if (triangulationEnabled && hashLayoutEnabled) {
+            throw new IllegalStateException(
+                    "rates.triangulation.enabled and cache.rates.hash-layout.enabled cannot both"
+                            + " be enabled.");
+        }
     }
 
     @Override
     public CurrencyConversionDTO getCurrencyConversionRates(
             String baseCurrency, Optional<String> targetCurrency) {
+        return Futures.join(
+                getCurrencyConversionRates(baseCurrency, targetCurrency, blockingUpstream));
+    }
+
+    @Override
+    public CompletableFuture<CurrencyConversionDTO> getCurrencyConversionRatesAsync(
+            String baseCurrency, Optional<String> targetCurrency) {
+        return getCurrencyConversionRates(baseCurrency, targetCurrency, asyncUpstream);
+    }
+
+    @Override
+    public ValueConversionDTO convertCurrencyValues(
+            String baseCurrency, List<String> targetCurrencies, double valueToConvert) {
+        return Futures.join(
+                convertCurrencyValues(
+                        baseCurrency, targetCurrencies, valueToConvert, blockingUpstream));
+    }
+
+    @Override
+    public CompletableFuture<ValueConversionDTO> convertCurrencyValuesAsync(
+            String baseCurrency, List<String> targetCurrencies, double valueToConvert) {
+        return convertCurrencyValues(baseCurrency, targetCurrencies, valueToConvert, asyncUpstream);
+    }
+
+    @Override
+    public void validateConversionsBatch(List<ConversionRequestDTO> conversions) {
+        if (conversions == null || conversions.isEmpty()) {
+            throw new BusinessException("At least one conversion must be provided.");
+        }
+
+        for (int i = 0; i < conversions.size(); i++) {
+            var conversion = conversions.get(i);
+            if (conversion == null) {
+                throw new BusinessException("Conversion " + i + ": missing conversion.");
+            }
+            if (conversion.getAmount() <= 0) {
+                throw new BusinessException(
+                        "Conversion " + i + ": currency amount to convert must be greater than 0.");
+            }
+            validateBatchCurrency(i, "base", conversion.getFrom());
+            validateBatchCurrency(i, "target", conversion.getTo());
+        }
+    }
+
+    @Override
+    public BatchConversionDTO convertCurrencyValuesBatch(List<ConversionRequestDTO> conversions) {
+        validateConversionsBatch(conversions);
+
+        // collect the targets of every base currency, so each base is looked up once however many
+        // conversions it appears in
+        var baseCurrencies = new String[conversions.size()];
+        var targetCurrencies = new String[conversions.size()];
+        var targetsByBase = new TreeMap<String, TreeSet<String>>();
+        for (int i = 0; i < conversions.size(); i++) {
+            var conversion = conversions.get(i);
+            baseCurrencies[i] = conversion.getFrom().toUpperCase();
+            targetCurrencies[i] = conversion.getTo().toUpperCase();
+            if (!baseCurrencies[i].equals(targetCurrencies[i])) {
+                targetsByBase
+                        .computeIfAbsent(baseCurrencies[i], k -> new TreeSet<>())
+                        .add(targetCurrencies[i]);
+            }
+        }
+
+        // every base is looked up at once - rates missing from the cache are fetched concurrently
+        // through the non-blocking client, rather than one base after the other
+        var ratesByBase = new HashMap<String, CompletableFuture<CurrencyRatesResponse>>();
+        for (var baseTargets : targetsByBase.entrySet()) {
+            ratesByBase.put(
+                    baseTargets.getKey(),
+                    fetchCurrencyExchangeRates(
+                            baseTargets.getKey(),
+                            List.copyOf(baseTargets.getValue()),
+                            asyncUpstream));
+        }
+        Futures.join(
+                CompletableFuture.allOf(ratesByBase.values().toArray(CompletableFuture<?>[]::new)));
+
+        var results = new ArrayList<ConversionResultDTO>(conversions.size());
+        for (int i = 0; i < conversions.size(); i++) {
+            results.add(
+                    mapToConversionResultDTO(
+                            baseCurrencies[i],
+                            targetCurrencies[i],
+                            conversions.get(i).getAmount(),
+                            ratesByBase.get(baseCurrencies[i])));
+        }
+        return new BatchConversionDTO(results);
+    }
+
+    private void validateBatchCurrency(int position, String role, String currency) {
+        if (currency == null || !existingCurrencies.doesCurrencyExist(currency.toUpperCase())) {
+            throw new BusinessException(
+                    "Conversion " + position + ": invalid " + role + " currency - does not exist");
+        }
+    }
+
+    private ConversionResultDTO mapToConversionResultDTO(
+            String baseCurrency,
+            String targetCurrency,
+            double valueToConvert,
+            CompletableFuture<CurrencyRatesResponse> baseRates) {
+        if (baseCurrency.equals(targetCurrency)) {
+            return new ConversionResultDTO(
+                    baseCurrency,
+                    targetCurrency,
+                    valueToConvert,
+                    1.0,
+                    valueToConvert,
+                    null,
+                    false,
+                    null,
+                    null);
+        }
+
+        // already complete
+        var currencyRatesResponse = baseRates.join();
+        var rate = currencyRatesResponse.getQuotes().get(targetCurrency);
+        var staleAgeSeconds =
+                ratesFreshnessPolicy.staleAgeSeconds(currencyRatesResponse.getCachedAt());
+        return new ConversionResultDTO(
+                baseCurrency,
+                targetCurrency,
+                valueToConvert,
+                rate,
+                rate == null ? null : valueToConvert * rate,
+                currencyRatesResponse.getTimestamp(),
+                staleAgeSeconds != null,
+                staleAgeSeconds,
+                rate == null
+                        ? "no exchange rate from " + baseCurrency + " to " + targetCurrency
+                        : null);
+    }
+
+    private CompletableFuture<CurrencyConversionDTO> getCurrencyConversionRates(
+            String baseCurrency, Optional<String> targetCurrency, UpstreamFetch upstream) {
         if (targetCurrency.isPresent() && baseCurrency == targetCurrency.get()) {
             throw new BusinessException("Base currency and target currency cannot be the same.");
         }
@@ -62,15 +255,18 @@ public class CurrencyService implements ICurrencyService {
 
         var currencyRatesResponse =
                 (targetCurrency.isEmpty())
-                        ? fetchCurrencyExchangeRates(baseCurrency, List.of())
-                        : fetchCurrencyExchangeRates(baseCurrency, List.of(targetCurrency.get()));
+                        ? fetchCurrencyExchangeRates(baseCurrency, List.of(), upstream)
+                        : fetchCurrencyExchangeRates(
+                                baseCurrency, List.of(targetCurrency.get()), upstream);
 
-        return mapToConversionDTO(currencyRatesResponse);
+        return currencyRatesResponse.thenApply(this::mapToConversionDTO);
     }
 
-    @Override
-    public ValueConversionDTO convertCurrencyValues(
-            String baseCurrency, List<String> targetCurrencies, double valueToConvert) {
+    private CompletableFuture<ValueConversionDTO> convertCurrencyValues(
+            String baseCurrency,
+            List<String> targetCurrencies,
+            double valueToConvert,
+            UpstreamFetch upstream) {
         if (valueToConvert <= 0) {
             throw new BusinessException("Currency amount to convert must be greater than 0.");
         }
@@ -84,61 +280,516 @@ public class CurrencyService implements ICurrencyService {
                     "None of the target currencies exist, please provide correct input values");
         }
 
-        var currencyRatesResponse = fetchCurrencyExchangeRates(baseCurrency, targetCurrencies);
+        // deduplicate and sort targets, so equivalent requests share cache lookups and upstream
+        // calls: 'USD,EUR,USD' and 'EUR,USD' both become [EUR, USD]
+        var normalizedTargets = targetCurrencies.stream().distinct().sorted().toList();
+        return fetchCurrencyExchangeRates(baseCurrency, normalizedTargets, upstream)
+                .thenApply(
+                        currencyRatesResponse ->
+                                mapToValueConversionDTO(
+                                        baseCurrency, valueToConvert, currencyRatesResponse));
+    }
 
+    private ValueConversionDTO mapToValueConversionDTO(
+            String baseCurrency,
+            double valueToConvert,
+            CurrencyRatesResponse currencyRatesResponse) {
         // build a response conversion DTO
-        var valueConversionResponse =
-                new ValueConversionDTO(baseCurrency, valueToConvert, new HashMap<>());
+        var staleAgeSeconds =
+                ratesFreshnessPolicy.staleAgeSeconds(currencyRatesResponse.getCachedAt());
+        var quotes = QuoteRates.of(currencyRatesResponse.getQuotes());
+        var conversions = QuoteRates.builder(quotes.size());
+        quotes.forEachRate(
+                (targetCurrency, conversionRate) ->
+                        conversions.put(targetCurrency, valueToConvert * conversionRate));
+
+        return new ValueConversionDTO(
+                baseCurrency,
+                valueToConvert,
+                currencyRatesResponse.getTimestamp(),
+                conversions.build(),
+                staleAgeSeconds != null,
+                staleAgeSeconds);
+    }
+
+    /**
+     * Inner method to fetch exchange rates, handling caching and multiple currencies. The cache is
+     * read on the calling thread, only rates missing from it are fetched through the upstream.
+     * @param upstream How missing rates are fetched from the external API.
+     * @return Returns the external API's response to the query of currency exchange rates
+     */
+    private CompletableFuture<CurrencyRatesResponse> fetchCurrencyExchangeRates(
+            String baseCurrency, List<String> targetCurrencies, UpstreamFetch upstream) {
+        // the most requested base currencies keep being fetched once the upstream quota runs low -
+        // triangulated rates are all derived from the pivot currency's, the only ones fetched
+        upstreamBudgetService.recordDemand(
+                triangulationEnabled ? rateTriangulationService.getPivotCurrency() : baseCurrency);
+
+        if (triangulationEnabled) {
+            return upstream.fetchSnapshot()
+                    .thenApply(
+                            snapshot ->
+                                    deriveTriangulatedExchangeRates(
+                                            snapshot, baseCurrency, targetCurrencies));
+        }
+
+        if (hashLayoutEnabled) {
+            return fetchHashedExchangeRates(baseCurrency, targetCurrencies, upstream);
+        }
+
+        // keeps the requested rates refreshed ahead of expiry, if they were fetched before
+        refreshAheadService.recordAccess(buildUpstreamCallKey(baseCurrency, targetCurrencies));
+
+        if (targetCurrencies.size() > 1) {
+            return fetchMultipleCurrencyExchangeRates(baseCurrency, targetCurrencies, upstream);
+        }
+
+        // check for cached exchange rates
+        Optional<String> targetCurrency = targetCurrencies.stream().findFirst();
+        var cachedCurrencyRates = getCachedRatesResponse(baseCurrency, targetCurrency);
 
-        for (var currencyExchangeRatePair : currencyRatesResponse.getQuotes().entrySet()) {
-            String targetCurrency = currencyExchangeRatePair.getKey();
-            double conversionRate = currencyExchangeRatePair.getValue();
-            valueConversionResponse
-                    .getConversions()
-                    .put(targetCurrency, valueToConvert * conversionRate);
+        if (cachedCurrencyRates.isPresent()) {
+            var cachedRates = cachedCurrencyRates.get();
+            var freshness = ratesFreshnessPolicy.freshnessOf(cachedRates.getCachedAt());
+            if (freshness == Freshness.EXPIRED) {
+                logger.debug(
+                        "Cache EXPIRED for base = '{}', target = '{}'.",
+                        baseCurrency,
+                        targetCurrency);
+                return fetchUpstreamOrServeStale(
+                        baseCurrency, targetCurrencies, cachedRates, upstream);
+            }
+
+            logger.debug("Cache HIT for base = '{}', target = '{}'.", baseCurrency, targetCurrency);
+            if (freshness == Freshness.STALE) {
+                revalidateInBackground(baseCurrency, targetCurrencies);
+            }
+            return CompletableFuture.completedFuture(
+                    mapCachedRatesToResponse(baseCurrency, cachedRates));
         }
+        logger.debug("Cache MISS for base = '{}', target = '{}'", baseCurrency, targetCurrency);
 
-        return valueConversionResponse;
+        return upstream.fetch(baseCurrency, targetCurrencies);
     }
 
     /**
-     * Inner method to fetch exchange rates, handling caching and multiple currencies.
-     * @return Returns the external API's response to the query of currency exchange rates
+     * Fetches exchange rates with the hash cache layout. The rates from a base currency are always
+     * fetched, cached and refreshed as a whole (A -> ALL) - a single external API call either way -
+     * while only the requested targets are read from the cache.
      */
-    private CurrencyRatesResponse fetchCurrencyExchangeRates(
-            String baseCurrency, List<String> targetCurrencies) {
-        // Check for caching: only when we only have a single targetCurrency, or 0 targetCurrencies
-        if (targetCurrencies.size() <= 1) {
-            // check for cached exchange rates
-            Optional<String> targetCurrency = targetCurrencies.stream().findFirst();
-            var cachedCurrencyRates = getCachedRatesResponse(baseCurrency, targetCurrency);
+    private CompletableFuture<CurrencyRatesResponse> fetchHashedExchangeRates(
+            String baseCurrency, List<String> targetCurrencies, UpstreamFetch upstream) {
+        List<String> allTargets = List.of();
+        refreshAheadService.recordAccess(buildUpstreamCallKey(baseCurrency, allTargets));
 
-            if (cachedCurrencyRates.isPresent()) {
+        var cachedCurrencyRates = getHashedCachedRates(baseCurrency, targetCurrencies);
+        CompletableFuture<CurrencyRatesResponse> currencyRatesResponse;
+        if (cachedCurrencyRates.isEmpty()) {
+            logger.debug(
+                    "Cache MISS for base = '{}', targets = {}", baseCurrency, targetCurrencies);
+            currencyRatesResponse = upstream.fetch(baseCurrency, allTargets);
+        } else {
+            var cachedRates = cachedCurrencyRates.get();
+            var freshness = ratesFreshnessPolicy.freshnessOf(cachedRates.getCachedAt());
+            if (freshness == Freshness.EXPIRED) {
                 logger.debug(
-                        "Cache HIT for base = '{}', target = '{}'.", baseCurrency, targetCurrency);
-                var responseToReturn = new CurrencyRatesResponse();
-                responseToReturn.setQuotes(cachedCurrencyRates.get().getRates());
-                responseToReturn.setSource(baseCurrency);
-                responseToReturn.setTimestamp(cachedCurrencyRates.get().getTimestamp());
+                        "Cache EXPIRED for base = '{}', targets = {}.",
+                        baseCurrency,
+                        targetCurrencies);
+                currencyRatesResponse =
+                        fetchUpstreamOrServeStale(baseCurrency, allTargets, cachedRates, upstream);
+            } else {
+                logger.debug(
+                        "Cache HIT for base = '{}', targets = {}.", baseCurrency, targetCurrencies);
+                if (freshness == Freshness.STALE) {
+                    revalidateInBackground(baseCurrency, allTargets);
+                }
+                currencyRatesResponse =
+                        CompletableFuture.completedFuture(
+                                mapCachedRatesToResponse(baseCurrency, cachedRates));
+            }
+        }
+
+        return currencyRatesResponse.thenApply(
+                ratesResponse -> {
+                    var selectedRatesResponse = selectTargets(ratesResponse, targetCurrencies);
+                    if (targetCurrencies.size() == 1
+                            && selectedRatesResponse.getQuotes().isEmpty()) {
+                        throw new BusinessException("Target currency does not exist.");
+                    }
+                    return selectedRatesResponse;
+                });
+    }
 
-                return responseToReturn;
+    /**
+     * Reads the requested targets from the base currency's rates hash. For a single target B, if
+     * the base currency's rates are not cached, the rate is derived from B's rates instead.
+     */
+    private Optional<CachedRates> getHashedCachedRates(
+            String baseCurrency, List<String> targetCurrencies) {
+        var baseRates = ratesHashCacheService.getRates(baseCurrency, targetCurrencies);
+        if (baseRates.isPresent() || targetCurrencies.size() != 1) {
+            return baseRates;
+        }
+
+        // A -> B rate is equal to 1/(B -> A) rate
+        var targetCurrency = targetCurrencies.get(0);
+        return ratesHashCacheService
+                .getRates(targetCurrency, List.of(baseCurrency))
+                .filter(targetRates -> targetRates.getRates().containsKey(baseCurrency))
+                .map(
+                        targetRates ->
+                                new CachedRates(
+                                        Map.of(
+                                                targetCurrency,
+                                                1 / targetRates.getRates().get(baseCurrency)),
+                                        targetRates.getTimestamp(),
+                                        targetRates.getCachedAt()));
+    }
+
+    /**
+     * @return A copy of the rates response with only the requested targets, or the response itself
+     * if every target was requested.
+     */
+    private static CurrencyRatesResponse selectTargets(
+            CurrencyRatesResponse currencyRatesResponse, List<String> targetCurrencies) {
+        if (targetCurrencies.isEmpty()) {
+            return currencyRatesResponse;
+        }
+
+        var allQuotes = QuoteRates.of(currencyRatesResponse.getQuotes());
+        var quotes = QuoteRates.builder(targetCurrencies.size());
+        for (var target : targetCurrencies) {
+            double rate = allQuotes.rate(target);
+            if (!Double.isNaN(rate)) {
+                quotes.put(target, rate);
             }
-            logger.debug("Cache MISS for base = '{}', target = '{}'", baseCurrency, targetCurrency);
         }
 
-        // when we can't check cache, fetch from external API
-        var currencyRatesResponse =
-                currencyAPIClient.fetchCurrencyExchangeRates(baseCurrency, targetCurrencies);
-        // save fetched rates to cache
-        saveRatesResponseToCache(currencyRatesResponse, targetCurrencies);
+        var responseToReturn = new CurrencyRatesResponse();
+        responseToReturn.setQuotes(quotes.build());
+        responseToReturn.setSource(currencyRatesResponse.getSource());
+        responseToReturn.setTimestamp(currencyRatesResponse.getTimestamp());
+        responseToReturn.setCachedAt(currencyRatesResponse.getCachedAt());
+        return responseToReturn;
+    }
+
+    /**
+     * Fetches exchange rates from the external API, falling back to the expired cached rates if
+     * the external API is failing - stale rates are better than no rates.
+     */
+    private CompletableFuture<CurrencyRatesResponse> fetchUpstreamOrServeStale(
+            String baseCurrency,
+            List<String> targetCurrencies,
+            CachedRates expiredRates,
+            UpstreamFetch upstream) {
+        return upstream.fetch(baseCurrency, targetCurrencies)
+                .exceptionally(
+                        ex -> {
+                            if (!isUpstreamFailure(ex)) {
+                                throw Futures.propagate(ex);
+                            }
+                            logger.warn(
+                                    "External API failed for base = '{}', serving rates cached at"
+                                            + " {}: {}",
+                                    baseCurrency,
+                                    expiredRates.getCachedAt(),
+                                    Futures.unwrap(ex).getMessage());
+                            return mapCachedRatesToResponse(baseCurrency, expiredRates);
+                        });
+    }
+
+    private static boolean isUpstreamFailure(Throwable ex) {
+        var cause = Futures.unwrap(ex);
+        return cause instanceof ResponseStatusException || cause instanceof RestClientException;
+    }
+
+    /**
+     * Refreshes cached rates in the background - at most one refresh per (base, targets) runs at a
+     * time, no matter how many requests are served the stale rates meanwhile.
+     */
+    private void revalidateInBackground(String baseCurrency, List<String> targetCurrencies) {
+        refreshAheadService.refreshNow(
+                buildUpstreamCallKey(baseCurrency, targetCurrencies),
+                () -> fetchUpstreamExchangeRates(baseCurrency, targetCurrencies));
+    }
+
+    private CurrencyRatesResponse mapCachedRatesToResponse(
+            String baseCurrency, CachedRates cachedRates) {
+        var responseToReturn = new CurrencyRatesResponse();
+        responseToReturn.setQuotes(cachedRates.getRates());
+        responseToReturn.setSource(baseCurrency);
+        responseToReturn.setTimestamp(cachedRates.getTimestamp());
+        responseToReturn.setCachedAt(cachedRates.getCachedAt());
+        return responseToReturn;
+    }
+
+    /**
+     * Derives exchange rates from the freshest pivot currency snapshot, instead of looking up
+     * (or fetching) rates for this base currency.
+     * @return The derived rates, timestamped with the timestamp of the snapshot used.
+     */
+    private CurrencyRatesResponse deriveTriangulatedExchangeRates(
+            RateSnapshot snapshot, String baseCurrency, List<String> targetCurrencies) {
+        var responseToReturn = new CurrencyRatesResponse();
+        responseToReturn.setQuotes(
+                rateTriangulationService.deriveRates(snapshot, baseCurrency, targetCurrencies));
+        responseToReturn.setSource(baseCurrency);
+        responseToReturn.setTimestamp(snapshot.getTimestamp());
+        responseToReturn.setCachedAt(snapshot.getCachedAt());
+        return responseToReturn;
+    }
+
+    /**
+     * Fetches exchange rates from a base currency to multiple target currencies. Every target is
+     * looked up in the cache in a single batched read - both as an (A -> B) pair and inside the
+     * (A -> ALL) snapshot - and if any target is still missing (or expired), every target is
+     * fetched upstream in a single call.
+     * @return The rates for every requested target, timestamped with the oldest rate used.
+     */
+    private CompletableFuture<CurrencyRatesResponse> fetchMultipleCurrencyExchangeRates(
+            String baseCurrency, List<String> targetCurrencies, UpstreamFetch upstream) {
+        var pairCacheKeys =
+                targetCurrencies.stream()
+                        .map(target -> buildCacheKey(baseCurrency, Optional.of(target)))
+                        .toList();
+        var baseToAnyCacheKey = buildCacheKey(baseCurrency, Optional.empty());
+
+        var cacheKeys = new ArrayList<String>(pairCacheKeys);
+        cacheKeys.add(baseToAnyCacheKey);
+        var cachedRates = cacheService.multiGet(cacheKeys);
+        var baseToAny = cachedRates.get(baseToAnyCacheKey);
+
+        var quotes = QuoteRates.builder(targetCurrencies.size());
+        Instant oldestTimestamp = null;
+        Instant oldestCachedAt = null;
+        var missingTargets = new ArrayList<String>();
+        // expired rates of missing targets, only served if the external API is failing
+        var expiredRates = new HashMap<String, CachedRates>();
+        boolean anyStale = false;
+        for (int i = 0; i < targetCurrencies.size(); i++) {
+            var target = targetCurrencies.get(i);
+            var baseToTarget = cachedRates.get(pairCacheKeys.get(i));
+            var snapshot =
+                    (baseToAny != null && baseToAny.getRates().containsKey(target))
+                            ? baseToAny
+                            : null;
+
+            // A -> B first, then A -> (ALL)
+            var source = firstUnexpired(baseToTarget, snapshot);
+            if (source == null) {
+                missingTargets.add(target);
+                if (baseToTarget != null || snapshot != null) {
+                    expiredRates.put(target, baseToTarget != null ? baseToTarget : snapshot);
+                }
+                continue;
+            }
+
+            anyStale |= ratesFreshnessPolicy.freshnessOf(source.getCachedAt()) == Freshness.STALE;
+            quotes.put(target, QuoteRates.of(source.getRates()).rate(target));
+            oldestTimestamp = oldest(oldestTimestamp, source.getTimestamp());
+            oldestCachedAt = oldest(oldestCachedAt, source.getCachedAt());
+        }
+
+        logger.debug(
+                "Cache HIT for base = '{}' on {}/{} targets, missing targets = {}.",
+                baseCurrency,
+                targetCurrencies.size() - missingTargets.size(),
+                targetCurrencies.size(),
+                missingTargets);
+        var responseToReturn = new CurrencyRatesResponse();
+        responseToReturn.setSource(baseCurrency);
+        responseToReturn.setTimestamp(oldestTimestamp);
+        responseToReturn.setCachedAt(oldestCachedAt);
+        if (missingTargets.isEmpty()) {
+            responseToReturn.setQuotes(quotes.build());
+            if (anyStale) {
+                revalidateInBackground(baseCurrency, targetCurrencies);
+            }
+            return CompletableFuture.completedFuture(responseToReturn);
+        }
+
+        // every target is fetched in a single call, not only the missing ones - it costs the same
+        // call, and the whole request is then cached and refreshed ahead of expiry together,
+        // under the key its accesses are recorded with
+        return upstream.fetch(baseCurrency, targetCurrencies)
+                .handle(
+                        (upstreamResponse, ex) -> {
+                            if (ex == null) {
+                                return upstreamResponse;
+                            }
+
+                            // stale rates are better than no rates, but only if we have them for
+                            // every target
+                            if (!isUpstreamFailure(ex)
+                                    || expiredRates.size() < missingTargets.size()) {
+                                throw Futures.propagate(ex);
+                            }
+                            logger.warn(
+                                    "External API failed for base = '{}', serving expired"
+                                            + " rates for {}: {}",
+                                    baseCurrency,
+                                    missingTargets,
+                                    Futures.unwrap(ex).getMessage());
+                            for (var expired : expiredRates.entrySet()) {
+                                var expiredRate = expired.getValue();
+                                quotes.put(
+                                        expired.getKey(),
+                                        QuoteRates.of(expiredRate.getRates())
+                                                .rate(expired.getKey()));
+                                responseToReturn.setTimestamp(
+                                        oldest(
+                                                responseToReturn.getTimestamp(),
+                                                expiredRate.getTimestamp()));
+                                responseToReturn.setCachedAt(
+                                        oldest(
+                                                responseToReturn.getCachedAt(),
+                                                expiredRate.getCachedAt()));
+                            }
+                            responseToReturn.setQuotes(quotes.build());
+                            return responseToReturn;
+                        });
+    }
+
+    /**
+     * @return The first of the cached rates that is not expired, or null if none.
+     */
+    private CachedRates firstUnexpired(CachedRates preferred, CachedRates alternative) {
+        if (preferred != null
+                && ratesFreshnessPolicy.freshnessOf(preferred.getCachedAt()) != Freshness.EXPIRED) {
+            return preferred;
+        }
+        if (alternative != null
+                && ratesFreshnessPolicy.freshnessOf(alternative.getCachedAt())
+                        != Freshness.EXPIRED) {
+            return alternative;
+        }
+        return null;
+    }
+
+    private static Instant oldest(Instant current, Instant candidate) {
+        if (current == null) {
+            return candidate;
+        }
+        return (candidate != null && candidate.isBefore(current)) ? candidate : current;
+    }
 
+    /**
+     * How rates missing from the cache are fetched from the external API - either on the calling
+     * thread, or without any thread waiting on the response.
+     */
+    private interface UpstreamFetch {
+        CompletableFuture<CurrencyRatesResponse> fetch(
+                String baseCurrency, List<String> targetCurrencies);
+
+        /** @return The pivot currency's snapshot, fetched the same way when not cached. */
+        CompletableFuture<RateSnapshot> fetchSnapshot();
+    }
+
+    private class BlockingUpstreamFetch implements UpstreamFetch {
+        @Override
+        public CompletableFuture<CurrencyRatesResponse> fetch(
+                String baseCurrency, List<String> targetCurrencies) {
+            return fetchUpstreamNow(baseCurrency, targetCurrencies);
+        }
+
+        @Override
+        public CompletableFuture<RateSnapshot> fetchSnapshot() {
+            return Futures.completedOrFailed(rateTriangulationService::getSnapshot);
+        }
+    }
+
+    private class AsyncUpstreamFetch implements UpstreamFetch {
+        @Override
+        public CompletableFuture<CurrencyRatesResponse> fetch(
+                String baseCurrency, List<String> targetCurrencies) {
+            return fetchUpstreamExchangeRatesAsync(baseCurrency, targetCurrencies);
+        }
+
+        @Override
+        public CompletableFuture<RateSnapshot> fetchSnapshot() {
+            return rateTriangulationService.getSnapshotAsync();
+        }
+    }
+
+    /**
+     * Fetches exchange rates from the external API, and caches them.
+     */
+    private CurrencyRatesResponse fetchUpstreamExchangeRates(
+            String baseCurrency, List<String> targetCurrencies) {
+        // only one in-flight call per (base, targets), concurrent requests for the same rates
+        // wait for its result
+        var upstreamCallKey = buildUpstreamCallKey(baseCurrency, targetCurrencies);
+        return requestCoalescer.coalesce(
+                upstreamCallKey,
+                () ->
+                        cacheUpstreamResponse(
+                                upstreamCallKey,
+                                baseCurrency,
+                                targetCurrencies,
+                                currencyAPIClient.fetchCurrencyExchangeRates(
+                                        baseCurrency, targetCurrencies)));
+    }
+
+    /**
+     * Fetches exchange rates on the calling thread, failing the returned future instead of
+     * throwing.
+     */
+    private CompletableFuture<CurrencyRatesResponse> fetchUpstreamNow(
+            String baseCurrency, List<String> targetCurrencies) {
+        return Futures.completedOrFailed(
+                () -> fetchUpstreamExchangeRates(baseCurrency, targetCurrencies));
+    }
+
+    /**
+     * Fetches exchange rates from the external API without waiting on the response, and caches
+     * them. Shares in-flight calls with {@link #fetchUpstreamExchangeRates}.
+     */
+    private CompletableFuture<CurrencyRatesResponse> fetchUpstreamExchangeRatesAsync(
+            String baseCurrency, List<String> targetCurrencies) {
+        var upstreamCallKey = buildUpstreamCallKey(baseCurrency, targetCurrencies);
+        return requestCoalescer.coalesceAsync(
+                upstreamCallKey,
+                () ->
+                        currencyAPIClient
+                                .fetchCurrencyExchangeRatesAsync(baseCurrency, targetCurrencies)
+                                .thenApply(
+                                        currencyRatesResponse ->
+                                                cacheUpstreamResponse(
+                                                        upstreamCallKey,
+                                                        baseCurrency,
+                                                        targetCurrencies,
+                                                        currencyRatesResponse)));
+    }
+
+    /**
+     * Caches rates fetched from the external API, and keeps them refreshed ahead of expiry.
+     */
+    private CurrencyRatesResponse cacheUpstreamResponse(
+            String upstreamCallKey,
+            String baseCurrency,
+            List<String> targetCurrencies,
+            CurrencyRatesResponse currencyRatesResponse) {
+        saveRatesResponseToCache(currencyRatesResponse, targetCurrencies);
+        refreshAheadService.track(
+                upstreamCallKey,
+                ratesFreshnessPolicy.getSoftTtl(),
+                () -> fetchUpstreamExchangeRates(baseCurrency, targetCurrencies));
         return currencyRatesResponse;
     }
 
+    /**
+     * Builds the key identifying equivalent upstream calls - the order of the target currencies
+     * does not matter.
+     */
+    private String buildUpstreamCallKey(String baseCurrency, List<String> targetCurrencies) {
+        return baseCurrency + ":" + String.join(",", targetCurrencies.stream().sorted().toList());
+    }
+
     /**
      * Retrieves the rates response from the cache if present. If targetCurrency is included,
      * searches for cached response from (baseCurrency) -> (targetCurrency), but also
-     * the other way around.
+     * the other way around, with a single batched cache read.
      * @param baseCurrency The base currency to search for.
      * @param targetCurrency The target currency to search for.
      * @return An optional containing a cached exchange rate response, if present in the cache.
@@ -150,30 +801,38 @@ public class CurrencyService implements ICurrencyService {
             return cacheService.get(buildCacheKey(baseCurrency, targetCurrency));
         }
 
+        // fetch every cache entry we could answer from in a single batched read, then use them
+        // in order of preference
+        var baseToTargetKey = buildCacheKey(baseCurrency, targetCurrency);
+        var targetToBaseKey = buildCacheKey(targetCurrency.get(), Optional.of(baseCurrency));
+        var targetToAnyKey = buildCacheKey(targetCurrency.get(), Optional.empty());
+        var baseToAnyKey = buildCacheKey(baseCurrency, Optional.empty());
+        var cachedRates =
+                cacheService.multiGet(
+                        List.of(baseToTargetKey, targetToBaseKey, targetToAnyKey, baseToAnyKey));
+
         // A -> B cache look up
-        var baseToTarget = cacheService.get(buildCacheKey(baseCurrency, targetCurrency));
-        if (baseToTarget.isPresent()) {
-            return baseToTarget;
+        var baseToTarget = cachedRates.get(baseToTargetKey);
+        if (baseToTarget != null) {
+            return Optional.of(baseToTarget);
         }
 
         // B -> A cache look up
-        var targetToBase =
-                cacheService.get(buildCacheKey(targetCurrency.get(), Optional.of(baseCurrency)));
-        if (targetToBase.isPresent()) {
-            var targetToBaseCachedRate = targetToBase.get();
-            var reversedConversionRate = targetToBaseCachedRate.getRates().get(baseCurrency);
+        var targetToBase = cachedRates.get(targetToBaseKey);
+        if (targetToBase != null) {
+            var reversedConversionRate = targetToBase.getRates().get(baseCurrency);
             // A -> B rate ==>  1/(B -> A) rate
             return Optional.of(
                     new CachedRates(
                             Map.of(targetCurrency.get(), 1 / reversedConversionRate),
-                            targetToBaseCachedRate.getTimestamp()));
+                            targetToBase.getTimestamp(),
+                            targetToBase.getCachedAt()));
         }
 
         // B -> (ALL) cache look up
-        var targetToAny = cacheService.get(buildCacheKey(targetCurrency.get(), Optional.empty()));
-        if (targetToAny.isPresent()) {
-            var targetToAnyCachedRates = targetToAny.get();
-            var reversedConversionRate = targetToAnyCachedRates.getRates().get(baseCurrency);
+        var targetToAny = cachedRates.get(targetToAnyKey);
+        if (targetToAny != null) {
+            var reversedConversionRate = targetToAny.getRates().get(baseCurrency);
             if (reversedConversionRate == null) {
                 throw new BusinessException("Source currency does not exist.");
             }
@@ -181,22 +840,22 @@ public class CurrencyService implements ICurrencyService {
             return Optional.of(
                     new CachedRates(
                             Map.of(targetCurrency.get(), 1 / reversedConversionRate),
-                            targetToAnyCachedRates.getTimestamp()));
+                            targetToAny.getTimestamp(),
+                            targetToAny.getCachedAt()));
         }
 
         // A -> (ALL) cache look up
-        var baseToAny = cacheService.get(buildCacheKey(baseCurrency, Optional.empty()));
-        if (baseToAny.isPresent()) {
-            var baseToAnyCachedRates = baseToAny.get();
-            var conversionRate = baseToAnyCachedRates.getRates().get(targetCurrency.get());
+        var baseToAny = cachedRates.get(baseToAnyKey);
+        if (baseToAny != null) {
+            var conversionRate = baseToAny.getRates().get(targetCurrency.get());
             if (conversionRate == null) {
                 throw new BusinessException("Target currency does not exist.");
             }
-            // A -> B rate is equal to 1/(B -> A) rate
             return Optional.of(
                     new CachedRates(
                             Map.of(targetCurrency.get(), conversionRate),
-                            baseToAnyCachedRates.getTimestamp()));
+                            baseToAny.getTimestamp(),
+                            baseToAny.getCachedAt()));
         }
 
         return Optional.empty();
@@ -209,22 +868,37 @@ public class CurrencyService implements ICurrencyService {
      */
     private void saveRatesResponseToCache(
             CurrencyRatesResponse res, List<String> targetCurrencies) {
+        // rates are kept past their freshness TTL, to be served if the external API fails
+        var cachedAt = Instant.now();
+        if (targetCurrencies.isEmpty() && hashLayoutEnabled) {
+            // replaced as a whole, so targets that are no longer quoted do not linger
+            ratesHashCacheService.replaceRates(
+                    res.getSource(),
+                    new CachedRates(res.getQuotes(), res.getTimestamp(), cachedAt),
+                    ratesFreshnessPolicy.getRetention());
+            return;
+        }
+
         if (targetCurrencies.isEmpty()) {
             cacheService.set(
                     buildCacheKey(res.getSource(), targetCurrencies.stream().findFirst()),
-                    new CachedRates(res.getQuotes(), res.getTimestamp()),
-                    Duration.ofSeconds(ratesTtlSeconds));
+                    new CachedRates(res.getQuotes(), res.getTimestamp(), cachedAt),
+                    ratesFreshnessPolicy.getRetention());
             return;
         }
 
+        // every pair is written in a single pipelined round trip
+        var ratesToCache = new HashMap<String, CachedRates>();
         for (var currencyExchangePair : res.getQuotes().entrySet()) {
             var target = currencyExchangePair.getKey();
-            cacheService.set(
+            ratesToCache.put(
                     buildCacheKey(res.getSource(), Optional.of(target)),
                     new CachedRates(
-                            Map.of(target, currencyExchangePair.getValue()), res.getTimestamp()),
-                    Duration.ofSeconds(ratesTtlSeconds));
+                            Map.of(target, currencyExchangePair.getValue()),
+                            res.getTimestamp(),
+                            cachedAt));
         }
+        cacheService.multiSet(ratesToCache, ratesFreshnessPolicy.getRetention());
     }
 
     /**
@@ -237,6 +911,12 @@ public class CurrencyService implements ICurrencyService {
     }
 
     private CurrencyConversionDTO mapToConversionDTO(CurrencyRatesResponse res) {
-        return new CurrencyConversionDTO(res.getSource(), res.getTimestamp(), res.getQuotes());
+        var staleAgeSeconds = ratesFreshnessPolicy.staleAgeSeconds(res.getCachedAt());
+        return new CurrencyConversionDTO(
+                res.getSource(),
+                res.getTimestamp(),
+                res.getQuotes(),
+                staleAgeSeconds != null,
+                staleAgeSeconds);
     }
 }
@@ -0,0 +1,50 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Helpers for the asynchronous lookups - failures of dependent futures are wrapped in a
+ * CompletionException, while callers (and exception handlers) expect the original exception.
+ */
+public final class Futures {
+    private Futures() {}
+
+    /** @return The exception a future actually failed with. */
+    public static Throwable unwrap(Throwable ex) {
+        return (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+    }
+
+    /** Rethrows a failure from within a future callback, without wrapping it again. */
+    public static CompletionException propagate(Throwable ex) {
+        return (ex instanceof CompletionException completionException)
+                ? completionException
+                : new CompletionException(ex);
+    }
+
+    /**
+     * Waits for a future, rethrowing the exception it failed with as is.
+     */
+    public static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Runs a call on the calling thread, failing the returned future instead of throwing.
+     */
+    public static <V> CompletableFuture<V> completedOrFailed(Supplier<V> call) {
+        try {
+            return CompletableFuture.completedFuture(call.get());
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.RateLimit;
+import com.exchangerates.CurrencyExchangeAPI.domain.RateLimitDecision;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRateLimitService;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+/**
+ * Rate limiter based on GCRA, with millisecond precision - a single GET and SET per request, and
+ * no bursts at second boundaries.
+ */
+@Service
+@Primary
+@AllArgsConstructor
+@ConditionalOnProperty(name = "ratelimit.mode", havingValue = "gcra")
+public class GcraRateLimiterService implements IRateLimitService {
+
+    private final RedisOperations<String, Object> redisOperations;
+
+    // Script inputs: 1 key + 4 arguments - time of the request (unix epoch millis), milliseconds
+    // between requests, how many requests can be made at once, and the cost of the request
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> gcraRateLimiterScript;
+
+    /**
+     * @return The Redis key of a rate limit key's GCRA state - hash tagged, so scripts can use it
+     * along with other keys of the same API key in Redis Cluster.
+     */
+    public static String tatKey(String rateLimitKey) {
+        return "ratelimit:gcra:{" + rateLimitKey + "}";
+    }
+
+    @Override
+    public boolean applyRateLimiting(String rateLimitKey, RateLimit rateLimit) {
+        return checkRateLimit(rateLimitKey, rateLimit).allowed();
+    }
+
+    @Override
+    public RateLimitDecision checkRateLimit(String rateLimitKey, RateLimit rateLimit) {
+        return checkRateLimit(rateLimitKey, rateLimit, 1);
+    }
+
+    @Override
+    public RateLimitDecision checkRateLimit(String rateLimitKey, RateLimit rateLimit, int cost) {
+        var result =
+                redisOperations.execute(
+                        gcraRateLimiterScript,
+                        List.of(tatKey(rateLimitKey)),
+                        System.currentTimeMillis(),
+                        rateLimit.emissionIntervalMillis(),
+                        rateLimit.burst(),
+                        cost);
+        return new RateLimitDecision(
+                ((Number) result.get(0)).intValue() == 1, ((Number) result.get(1)).longValue());
+    }
+}
@@ -1,5 +1,7 @@
 package com.exchangerates.CurrencyExchangeAPI.services;
 
+import com.exchangerates.CurrencyExchangeAPI.domain.RateLimit;
+import com.exchangerates.CurrencyExchangeAPI.domain.RateLimitDecision;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRateLimitService;
 import java.time.Instant;
 import java.util.List;
@@ -13,21 +15,58 @@ import org.springframework.stereotype.Service;
 public class GradualRateLimiterService implements IRateLimitService {
 
     private final RedisOperations<String, Object> redisOperations;
-    // Script inputs: 1 key + 3 arguments - time of the request (unix epoch), the leak rate of
-    // buckets, and the maximum capacity
+    // Script inputs: 1 key + 4 arguments - time of the request (unix epoch), the leak rate of
+    // buckets, the maximum capacity, and the cost of the request
     private final RedisScript<Boolean> rateLimiterScript;
 
-    private static final double DRAIN_RATE = 1.0;
-    private static final int LIMIT = 10;
+    // Same inputs, plus how many requests to reserve, the fewest worth reserving, and how many
+    // previously reserved requests went unused
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> rateLimitReservationScript;
 
     @Override
-    public boolean applyRateLimiting(String rateLimitKey) {
-        // returns boolean representing whether the request will be allowed for this apiKey
+    public boolean applyRateLimiting(String rateLimitKey, RateLimit rateLimit) {
+        return applyRateLimiting(rateLimitKey, rateLimit, 1);
+    }
+
+    @Override
+    public RateLimitDecision checkRateLimit(String rateLimitKey, RateLimit rateLimit, int cost) {
+        return new RateLimitDecision(applyRateLimiting(rateLimitKey, rateLimit, cost), 0);
+    }
+
+    private boolean applyRateLimiting(String rateLimitKey, RateLimit rateLimit, int cost) {
+        // returns boolean representing whether the request will be allowed for this apiKey.
+        // buckets leak at the plan's rate, and hold up to its burst
         return redisOperations.execute(
                 rateLimiterScript,
                 List.of(rateLimitKey),
                 Instant.now().getEpochSecond(),
-                DRAIN_RATE,
-                LIMIT);
+                rateLimit.requestsPerSecond(),
+                rateLimit.burst(),
+                cost);
+    }
+
+    /**
+     * Reserves up to the requested amount of requests from the API key's bucket at once, counting
+     * them as made - or none at all, when fewer than the minimum are left. Requests reserved
+     * before but never made are given back first.
+     * @return How many requests were granted, and if none, how long until the minimum can be.
+     */
+    public TokenReservation reserveTokens(
+            String rateLimitKey, RateLimit rateLimit, int requested, int minimum, int released) {
+        var result =
+                redisOperations.execute(
+                        rateLimitReservationScript,
+                        List.of(rateLimitKey),
+                        Instant.now().getEpochSecond(),
+                        rateLimit.requestsPerSecond(),
+                        rateLimit.burst(),
+                        requested,
+                        minimum,
+                        released);
+        return new TokenReservation(
+                ((Number) result.get(0)).intValue(), ((Number) result.get(1)).longValue());
     }
+
+    public record TokenReservation(int granted, long retryAfterSeconds) {}
 }
@@ -0,0 +1,154 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.RateLimit;
+import com.exchangerates.CurrencyExchangeAPI.domain.RateLimitDecision;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRateLimitService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * Rate limiter that admits most requests without going to Redis.
+ * Each node reserves a batch of requests from the API key's Redis bucket at once, and admits
+ * requests locally until that allowance runs out (or gets too old - what is left of it is then
+ * given back to the bucket with the next reservation). When Redis grants nothing, the
+ * deny is cached locally until a request could be granted again, so clients over their limit do
+ * not reach Redis at all. Weighted requests are granted their whole cost at once, or not at all.
+ * A node never holds more than 'batch-size' requests of a key's bucket - across N nodes, at most
+ * N * batch-size requests are reserved ahead of being made.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "ratelimit.mode", havingValue = "hybrid")
+public class HybridRateLimiterService implements IRateLimitService {
+    private final GradualRateLimiterService redisRateLimiter;
+    private final Cache<String, LocalAllowance> allowances;
+    private final int batchSize;
+    private final long allowanceTtlNanos;
+
+    private final Counter localAllowed;
+    private final Counter localDenied;
+    private final Counter redisAllowed;
+    private final Counter redisDenied;
+
+    @Autowired
+    public HybridRateLimiterService(
+            GradualRateLimiterService redisRateLimiter,
+            MeterRegistry meterRegistry,
+            @Value("${ratelimit.hybrid.batch-size:5}") int batchSize,
+            @Value("${ratelimit.hybrid.allowance-ttl-ms:1000}") long allowanceTtlMs,
+            @Value("${ratelimit.hybrid.max-keys:10000}") long maxKeys) {
+        this.redisRateLimiter = redisRateLimiter;
+        this.batchSize = batchSize;
+        this.allowanceTtlNanos = TimeUnit.MILLISECONDS.toNanos(allowanceTtlMs);
+        // keys that stop making requests are dropped - their reserved requests are unused until
+        // they leak out of the bucket
+        this.allowances =
+                Caffeine.newBuilder()
+                        .maximumSize(maxKeys)
+                        .expireAfterAccess(Duration.ofMinutes(1))
+                        .build();
+
+        this.localAllowed = decisionCounter(meterRegistry, "local", "allowed");
+        this.localDenied = decisionCounter(meterRegistry, "local", "denied");
+        this.redisAllowed = decisionCounter(meterRegistry, "redis", "allowed");
+        this.redisDenied = decisionCounter(meterRegistry, "redis", "denied");
+    }
+
+    @Override
+    public boolean applyRateLimiting(String rateLimitKey, RateLimit rateLimit) {
+        return checkRateLimit(rateLimitKey, rateLimit).allowed();
+    }
+
+    @Override
+    public RateLimitDecision checkRateLimit(String rateLimitKey, RateLimit rateLimit) {
+        return checkRateLimit(rateLimitKey, rateLimit, 1);
+    }
+
+    @Override
+    public RateLimitDecision checkRateLimit(String rateLimitKey, RateLimit rateLimit, int cost) {
+        var allowance = allowances.get(rateLimitKey, key -> new LocalAllowance());
+
+        // concurrent requests of the same key wait for a single reservation, instead of each
+        // going to Redis. A lock rather than a monitor, since a virtual thread blocked on Redis
+        // while holding a monitor pins its carrier thread
+        allowance.lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (now - allowance.deniedUntilNanos < 0) {
+                localDenied.increment();
+                return new RateLimitDecision(
+                        false, TimeUnit.NANOSECONDS.toMillis(allowance.deniedUntilNanos - now));
+            }
+
+            boolean allowanceValid = now - allowance.expiresAtNanos < 0;
+            if (allowance.tokens >= cost && allowanceValid) {
+                allowance.tokens -= cost;
+                localAllowed.increment();
+                return new RateLimitDecision(true, 0);
+            }
+
+            // never more than the whole burst of the key's plan - what is left of the local
+            // allowance is added to the reservation, so it is not lost. Nothing is reserved unless
+            // the rest of this request's cost fits, so a weighted request is not starved by the
+            // part of its cost it already holds expiring
+            int held = allowanceValid ? allowance.tokens : 0;
+            int released = allowanceValid ? 0 : allowance.tokens;
+            int missing = cost - held;
+            var reservation =
+                    redisRateLimiter.reserveTokens(
+                            rateLimitKey,
+                            rateLimit,
+                            Math.max(Math.min(batchSize, rateLimit.burst()), missing),
+                            missing,
+                            released);
+            allowance.tokens = held;
+            if (reservation.granted() <= 0) {
+                if (missing <= 1) {
+                    // no request at all can be granted until then - weighted requests are denied
+                    // sooner than lighter ones, so their denies are not cached
+                    allowance.deniedUntilNanos =
+                            now + TimeUnit.SECONDS.toNanos(reservation.retryAfterSeconds());
+                }
+                redisDenied.increment();
+                return new RateLimitDecision(
+                        false, TimeUnit.SECONDS.toMillis(reservation.retryAfterSeconds()));
+            }
+
+            int tokens = held + reservation.granted();
+            allowance.expiresAtNanos = now + allowanceTtlNanos;
+            // this request takes its cost out of the granted requests
+            allowance.tokens = tokens - cost;
+            redisAllowed.increment();
+            return new RateLimitDecision(true, 0);
+        } finally {
+            allowance.lock.unlock();
+        }
+    }
+
+    private static Counter decisionCounter(
+            MeterRegistry meterRegistry, String source, String result) {
+        return Counter.builder("ratelimit.decisions")
+                .description("Rate limiting decisions, by where they were made")
+                .tag("source", source)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    // guarded by its own lock
+    private static final class LocalAllowance {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int tokens;
+        private long expiresAtNanos;
+        private long deniedUntilNanos = System.nanoTime();
+    }
+}
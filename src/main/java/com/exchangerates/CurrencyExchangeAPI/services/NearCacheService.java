@@ -0,0 +1,167 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-process (L1) cache in front of the Redis (L2) cache.
+ * Entries are kept on heap until Redis tells us they changed - invalidations are pushed by the
+ * tracking connection set up in NearCacheTrackingConfig, which calls invalidate/invalidateAll.
+ * Local entries also have a short TTL of their own, as a safety net for lost invalidations.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "cache.near.enabled", havingValue = "true")
+public class NearCacheService<V> implements ICacheService<V> {
+    private final RedisCacheService<V> redisCacheService;
+    private final Cache<String, V> localCache;
+
+    // bumped on every invalidation, so a value read from Redis before an invalidation
+    // was received never outlives it in the local cache
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    private final Counter nearHits;
+    private final Counter nearMisses;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+
+    @Autowired
+    public NearCacheService(
+            RedisCacheService<V> redisCacheService,
+            MeterRegistry meterRegistry,
+            @Value("${cache.near.max-size:1000}") long maxSize,
+            @Value("${cache.near.ttl:60}") long ttlSeconds) {
+        this.redisCacheService = redisCacheService;
+        this.localCache =
+                Caffeine.newBuilder()
+                        .maximumSize(maxSize)
+                        .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                        .recordStats()
+                        .build();
+
+        // size and eviction metrics come from caffeine, hits and misses are tracked per tier
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "near-cache");
+        this.nearHits = cacheCounter(meterRegistry, "near", "hit");
+        this.nearMisses = cacheCounter(meterRegistry, "near", "miss");
+        this.redisHits = cacheCounter(meterRegistry, "redis", "hit");
+        this.redisMisses = cacheCounter(meterRegistry, "redis", "miss");
+    }
+
+    @Override
+    public Optional<V> get(String key) {
+        var localValue = localCache.getIfPresent(key);
+        if (localValue != null) {
+            nearHits.increment();
+            return Optional.of(localValue);
+        }
+        nearMisses.increment();
+
+        long epoch = invalidationEpoch.get();
+        var redisValue = redisCacheService.get(key);
+        if (redisValue.isEmpty()) {
+            redisMisses.increment();
+            return redisValue;
+        }
+        redisHits.increment();
+
+        localCache.put(key, redisValue.get());
+        // an invalidation may have arrived while we were reading from Redis - drop what
+        // we just stored, since it may be the value that was invalidated
+        if (invalidationEpoch.get() != epoch) {
+            localCache.invalidate(key);
+        }
+        return redisValue;
+    }
+
+    @Override
+    public Map<String, V> multiGet(List<String> keys) {
+        var foundValues = localCache.getAllPresent(keys);
+        nearHits.increment(foundValues.size());
+        nearMisses.increment(keys.size() - foundValues.size());
+        if (foundValues.size() == keys.size()) {
+            return foundValues;
+        }
+
+        // only the keys missing locally go to Redis, in a single MGET
+        var missingKeys = new ArrayList<String>(keys.size() - foundValues.size());
+        for (var key : keys) {
+            if (!foundValues.containsKey(key)) {
+                missingKeys.add(key);
+            }
+        }
+
+        long epoch = invalidationEpoch.get();
+        var redisValues = redisCacheService.multiGet(missingKeys);
+        redisHits.increment(redisValues.size());
+        redisMisses.increment(missingKeys.size() - redisValues.size());
+
+        localCache.putAll(redisValues);
+        if (invalidationEpoch.get() != epoch) {
+            localCache.invalidateAll(redisValues.keySet());
+        }
+
+        var allValues = new HashMap<String, V>(foundValues);
+        allValues.putAll(redisValues);
+        return allValues;
+    }
+
+    @Override
+    public void set(String key, V value, Duration ttl) {
+        redisCacheService.set(key, value, ttl);
+        // the write itself triggers an invalidation from Redis, no point in storing it locally
+        invalidate(key);
+    }
+
+    @Override
+    public void set(String key, V value) {
+        redisCacheService.set(key, value);
+        invalidate(key);
+    }
+
+    @Override
+    public void multiSet(Map<String, V> values, Duration ttl) {
+        redisCacheService.multiSet(values, ttl);
+        invalidate(values.keySet());
+    }
+
+    public void invalidate(String key) {
+        invalidationEpoch.incrementAndGet();
+        localCache.invalidate(key);
+    }
+
+    public void invalidate(Collection<String> keys) {
+        invalidationEpoch.incrementAndGet();
+        localCache.invalidateAll(keys);
+    }
+
+    /** Drops every local entry - used when Redis is flushed or the tracking connection drops. */
+    public void invalidateAll() {
+        invalidationEpoch.incrementAndGet();
+        localCache.invalidateAll();
+    }
+
+    private static Counter cacheCounter(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("cache.gets")
+                .description("Cache lookups per cache tier")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,261 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.CachedRates;
+import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyRatesResponse;
+import com.exchangerates.CurrencyExchangeAPI.domain.QuoteRates;
+import com.exchangerates.CurrencyExchangeAPI.domain.RateSnapshot;
+import com.exchangerates.CurrencyExchangeAPI.exception.BusinessException;
+import com.exchangerates.CurrencyExchangeAPI.services.RatesFreshnessPolicy.Freshness;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheKeyBuilderService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyAPIClient;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRateTriangulationService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRefreshAheadService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRequestCoalescer;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Cross-rate triangulation: every exchange rate is derived from a single canonical snapshot, from
+ * a pivot currency to all other currencies. Given rate(P, A) and rate(P, B):
+ *   rate(A, B) = rate(P, B) / rate(P, A)
+ * which means a single upstream call per refresh period answers every currency pair.
+ * The derived rates are kept in a RateSnapshot, which is re-checked against the cache at most
+ * once per rates.triangulation.recheck-ms, and only rebuilt when the pivot's rates changed.
+ */
+@Service
+public class RateTriangulationService implements IRateTriangulationService {
+    private static final Logger logger = LoggerFactory.getLogger(RateTriangulationService.class);
+    private final ICurrencyAPIClient currencyAPIClient;
+    private final ICacheService<CachedRates> cacheService;
+    private final ICacheKeyBuilderService cacheKeyBuilderService;
+    private final IRequestCoalescer requestCoalescer;
+    private final AvailableCurrenciesHolder existingCurrencies;
+    private final IRefreshAheadService refreshAheadService;
+    private final RatesFreshnessPolicy ratesFreshnessPolicy;
+
+    // swapped atomically on refresh, readers never see a partially built snapshot
+    private final AtomicReference<PublishedSnapshot> publishedSnapshot = new AtomicReference<>();
+    private final long recheckNanos;
+
+    @Value("${rates.triangulation.pivot:USD}")
+    private String pivotCurrency;
+
+    @Autowired
+    public RateTriangulationService(
+            ICurrencyAPIClient currencyAPIClient,
+            ICacheService<CachedRates> cacheService,
+            ICacheKeyBuilderService cacheKeyBuilderService,
+            IRequestCoalescer requestCoalescer,
+            AvailableCurrenciesHolder existingCurrencies,
+            IRefreshAheadService refreshAheadService,
+            RatesFreshnessPolicy ratesFreshnessPolicy,
+            @Value("${rates.triangulation.recheck-ms:1000}") long recheckMillis) {
+        this.currencyAPIClient = currencyAPIClient;
+        this.cacheService = cacheService;
+        this.cacheKeyBuilderService = cacheKeyBuilderService;
+        this.requestCoalescer = requestCoalescer;
+        this.existingCurrencies = existingCurrencies;
+        this.refreshAheadService = refreshAheadService;
+        this.ratesFreshnessPolicy = ratesFreshnessPolicy;
+        this.recheckNanos = TimeUnit.MILLISECONDS.toNanos(recheckMillis);
+    }
+
+    @Override
+    public RateSnapshot getSnapshot() {
+        return Futures.join(getSnapshot(this::fetchPivotRatesNow));
+    }
+
+    @Override
+    public CompletableFuture<RateSnapshot> getSnapshotAsync() {
+        return getSnapshot(this::fetchPivotRatesAsync);
+    }
+
+    private CompletableFuture<RateSnapshot> getSnapshot(PivotFetch pivotFetch) {
+        // the published snapshot is served as is for a short while, without any cache lookup
+        var published = publishedSnapshot.get();
+        long now = System.nanoTime();
+        if (published != null && now - published.checkedAtNanos() < recheckNanos) {
+            return CompletableFuture.completedFuture(published.snapshot());
+        }
+
+        return getPivotRates(pivotFetch)
+                .thenApply(pivotRates -> publishSnapshot(published, pivotRates, now));
+    }
+
+    private RateSnapshot publishSnapshot(
+            PublishedSnapshot published, CachedRates pivotRates, long now) {
+        var currencyIndex = existingCurrencies.getCurrencyIndex();
+        // only rebuild the matrix when the pivot's rates actually changed
+        if (published != null
+                && published.snapshot().getIndex() == currencyIndex
+                && Objects.equals(published.snapshot().getTimestamp(), pivotRates.getTimestamp())) {
+            var snapshot = published.snapshot();
+            if (!Objects.equals(snapshot.getCachedAt(), pivotRates.getCachedAt())) {
+                snapshot = snapshot.withCachedAt(pivotRates.getCachedAt());
+            }
+            publishedSnapshot.compareAndSet(published, new PublishedSnapshot(snapshot, now));
+            return snapshot;
+        }
+
+        var snapshot =
+                RateSnapshot.fromPivotRates(
+                        currencyIndex,
+                        pivotCurrency,
+                        pivotRates.getRates(),
+                        pivotRates.getTimestamp(),
+                        pivotRates.getCachedAt());
+        publishedSnapshot.set(new PublishedSnapshot(snapshot, now));
+        return snapshot;
+    }
+
+    @Override
+    public String getPivotCurrency() {
+        return pivotCurrency;
+    }
+
+    @Override
+    public QuoteRates deriveRates(
+            RateSnapshot snapshot, String baseCurrency, List<String> targetCurrencies) {
+        var currencyIndex = snapshot.getIndex();
+        int baseId = currencyIndex.idOf(baseCurrency);
+        if (!snapshot.isQuoted(baseId)) {
+            throw new BusinessException("Source currency does not exist.");
+        }
+
+        // currency ids are assigned in code order, so rates to every currency are appended in order
+        if (targetCurrencies.isEmpty()) {
+            var derivedRates = QuoteRates.builder(currencyIndex.size());
+            for (int targetId = 0; targetId < currencyIndex.size(); targetId++) {
+                if (targetId != baseId && snapshot.isQuoted(targetId)) {
+                    derivedRates.put(
+                            currencyIndex.codeOf(targetId), snapshot.rate(baseId, targetId));
+                }
+            }
+            return derivedRates.build();
+        }
+
+        var derivedRates = QuoteRates.builder(targetCurrencies.size());
+        for (var target : targetCurrencies) {
+            int targetId = currencyIndex.idOf(target);
+            if (targetId != baseId && snapshot.isQuoted(targetId)) {
+                derivedRates.put(target, snapshot.rate(baseId, targetId));
+            }
+        }
+
+        // when both currencies of the single requested pair are in the snapshot, the pair is
+        // always derivable - so an empty result can only mean the target does not exist
+        var rates = derivedRates.build();
+        if (targetCurrencies.size() == 1 && rates.isEmpty()) {
+            throw new BusinessException("Target currency does not exist.");
+        }
+        return rates;
+    }
+
+    /**
+     * Retrieves the pivot currency's rates to all other currencies, from the cache or, if not
+     * cached, from the external API through the given fetch. The cache is read on the calling
+     * thread.
+     */
+    private CompletableFuture<CachedRates> getPivotRates(PivotFetch pivotFetch) {
+        // the pivot's rates are cached like any other A -> (ALL) response
+        var pivotCacheKey = cacheKeyBuilderService.buildCacheKey(pivotCurrency, Optional.empty());
+        // only recorded when the snapshot is re-checked, which is frequent enough to keep the
+        // pivot's rates refreshed ahead of expiry
+        refreshAheadService.recordAccess(pivotCacheKey);
+        var cachedRates = cacheService.get(pivotCacheKey);
+        if (cachedRates.isEmpty()) {
+            logger.debug("Pivot rates for '{}' not cached, fetching them.", pivotCurrency);
+            return pivotFetch.fetch(pivotCacheKey);
+        }
+
+        var freshness = ratesFreshnessPolicy.freshnessOf(cachedRates.get().getCachedAt());
+        if (freshness == Freshness.STALE) {
+            refreshAheadService.refreshNow(pivotCacheKey, () -> fetchPivotRates(pivotCacheKey));
+        } else if (freshness == Freshness.EXPIRED) {
+            return pivotFetch
+                    .fetch(pivotCacheKey)
+                    .exceptionally(
+                            ex -> {
+                                var cause = Futures.unwrap(ex);
+                                if (!(cause instanceof ResponseStatusException
+                                        || cause instanceof RestClientException)) {
+                                    throw Futures.propagate(ex);
+                                }
+                                // stale rates are better than no rates
+                                logger.warn(
+                                        "External API failed for pivot '{}', serving rates cached"
+                                                + " at {}: {}",
+                                        pivotCurrency,
+                                        cachedRates.get().getCachedAt(),
+                                        cause.getMessage());
+                                return cachedRates.get();
+                            });
+        }
+        return CompletableFuture.completedFuture(cachedRates.get());
+    }
+
+    /**
+     * How the pivot's rates are fetched when missing from the cache - either on the calling
+     * thread, or without any thread waiting on the external API.
+     */
+    @FunctionalInterface
+    private interface PivotFetch {
+        CompletableFuture<CachedRates> fetch(String pivotCacheKey);
+    }
+
+    private CompletableFuture<CachedRates> fetchPivotRatesNow(String pivotCacheKey) {
+        return Futures.completedOrFailed(() -> fetchPivotRates(pivotCacheKey));
+    }
+
+    /**
+     * Fetches the pivot currency's rates from the external API, and caches them.
+     */
+    private CachedRates fetchPivotRates(String pivotCacheKey) {
+        return requestCoalescer.coalesce(
+                pivotCacheKey,
+                () ->
+                        cachePivotRates(
+                                pivotCacheKey,
+                                currencyAPIClient.fetchCurrencyExchangeRates(
+                                        pivotCurrency, List.of())));
+    }
+
+    /**
+     * Fetches the pivot currency's rates from the external API without waiting on the response,
+     * and caches them. Shares in-flight calls with {@link #fetchPivotRates}.
+     */
+    private CompletableFuture<CachedRates> fetchPivotRatesAsync(String pivotCacheKey) {
+        return requestCoalescer.coalesceAsync(
+                pivotCacheKey,
+                () ->
+                        currencyAPIClient
+                                .fetchCurrencyExchangeRatesAsync(pivotCurrency, List.of())
+                                .thenApply(response -> cachePivotRates(pivotCacheKey, response)));
+    }
+
+    private CachedRates cachePivotRates(String pivotCacheKey, CurrencyRatesResponse response) {
+        var rates = new CachedRates(response.getQuotes(), response.getTimestamp(), Instant.now());
+        cacheService.set(pivotCacheKey, rates, ratesFreshnessPolicy.getRetention());
+        // refreshed ahead of expiry on the refresh pool, which may block
+        refreshAheadService.track(
+                pivotCacheKey,
+                ratesFreshnessPolicy.getSoftTtl(),
+                () -> fetchPivotRates(pivotCacheKey));
+        return rates;
+    }
+
+    private record PublishedSnapshot(RateSnapshot snapshot, long checkedAtNanos) {}
+}
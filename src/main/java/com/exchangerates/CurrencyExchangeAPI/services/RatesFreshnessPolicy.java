@@ -0,0 +1,102 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Stale-while-revalidate policy for cached rates, based on how long ago they were cached:
+ * - younger than the soft TTL, rates are fresh
+ * - between the soft and hard TTLs, rates are stale - served right away, while refreshed
+ *   in the background
+ * - older than the hard TTL, rates are expired - fetched again before responding, and only served
+ *   if the external API is failing
+ * Rates are kept in the cache for the max-stale period, so they can still be served during a
+ * long external API outage.
+ * Both TTLs are stretched by the TTL multiplier, which the upstream budget raises while calls to
+ * the external API are consumed faster than the quota allows.
+ */
+@Service
+public class RatesFreshnessPolicy {
+    public enum Freshness {
+        FRESH,
+        STALE,
+        EXPIRED
+    }
+
+    private final Duration softTtl;
+    private final Duration hardTtl;
+    private final Duration retention;
+
+    private volatile double ttlMultiplier = 1.0;
+
+    @Autowired
+    public RatesFreshnessPolicy(
+            @Value("${cache.ttl.rates:60}") long softTtlSeconds,
+            @Value("${cache.ttl.rates-hard:300}") long hardTtlSeconds,
+            @Value("${cache.ttl.rates-max-stale:3600}") long maxStaleSeconds) {
+        this.softTtl = Duration.ofSeconds(softTtlSeconds);
+        this.hardTtl = Duration.ofSeconds(Math.max(softTtlSeconds, hardTtlSeconds));
+        this.retention = Duration.ofSeconds(Math.max(hardTtlSeconds, maxStaleSeconds));
+    }
+
+    public Freshness freshnessOf(Instant cachedAt) {
+        // rates cached without a write time only live as long as their cache entry
+        if (cachedAt == null) {
+            return Freshness.FRESH;
+        }
+
+        var age = Duration.between(cachedAt, Instant.now());
+        if (age.compareTo(getSoftTtl()) < 0) {
+            return Freshness.FRESH;
+        }
+        return age.compareTo(getHardTtl()) < 0 ? Freshness.STALE : Freshness.EXPIRED;
+    }
+
+    /**
+     * @return How long ago the rates were cached, in seconds, or null if the rates are fresh.
+     */
+    public Long staleAgeSeconds(Instant cachedAt) {
+        if (freshnessOf(cachedAt) == Freshness.FRESH) {
+            return null;
+        }
+        return Duration.between(cachedAt, Instant.now()).toSeconds();
+    }
+
+    /**
+     * @return How long rates are considered fresh - they are refreshed ahead of this TTL.
+     */
+    public Duration getSoftTtl() {
+        return stretch(softTtl);
+    }
+
+    /**
+     * @return How long rates are kept in the cache - never less than the (stretched) hard TTL.
+     */
+    public Duration getRetention() {
+        var hardTtl = getHardTtl();
+        return hardTtl.compareTo(retention) > 0 ? hardTtl : retention;
+    }
+
+    public double getTtlMultiplier() {
+        return ttlMultiplier;
+    }
+
+    /**
+     * Stretches the soft and hard TTLs - rates then stay fresh (and stale) for longer, so they are
+     * fetched less often.
+     */
+    public void setTtlMultiplier(double ttlMultiplier) {
+        this.ttlMultiplier = Math.max(1.0, ttlMultiplier);
+    }
+
+    private Duration getHardTtl() {
+        return stretch(hardTtl);
+    }
+
+    private Duration stretch(Duration ttl) {
+        return Duration.ofMillis((long) (ttl.toMillis() * ttlMultiplier));
+    }
+}
@@ -0,0 +1,107 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.CachedRates;
+import com.exchangerates.CurrencyExchangeAPI.domain.QuoteRates;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheKeyBuilderService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRatesHashCacheService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.AllArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Caches the rates from each base currency as a single Redis hash, of target -> rate, along with
+ * the rates' timestamp. Reads only touch the requested targets (HMGET), instead of a key per pair.
+ * Rates are stored as plain strings, so the hash stays small enough for Redis' compact encoding.
+ */
+@Service
+@AllArgsConstructor
+public class RatesHashCacheService implements IRatesHashCacheService {
+    // field names that can never be a currency code
+    static final String TIMESTAMP_FIELD = "@timestamp";
+    static final String CACHED_AT_FIELD = "@cachedAt";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ICacheKeyBuilderService cacheKeyBuilderService;
+
+    @Override
+    public Optional<CachedRates> getRates(String baseCurrency, List<String> targetCurrencies) {
+        var key = cacheKeyBuilderService.buildRatesHashKey(baseCurrency);
+        if (targetCurrencies.isEmpty()) {
+            // HGETALL, for (A -> ALL)
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+            var fields = new HashMap<String, String>();
+            entries.forEach((field, value) -> fields.put((String) field, (String) value));
+            return toCachedRates(fields);
+        }
+
+        // HMGET of the requested targets and the metadata fields, in the same order
+        var fieldNames = new ArrayList<Object>(targetCurrencies);
+        fieldNames.add(TIMESTAMP_FIELD);
+        fieldNames.add(CACHED_AT_FIELD);
+        var values = redisTemplate.opsForHash().multiGet(key, fieldNames);
+
+        var fields = new HashMap<String, String>();
+        for (int i = 0; i < fieldNames.size(); i++) {
+            var value = values.get(i);
+            if (value != null) {
+                fields.put((String) fieldNames.get(i), (String) value);
+            }
+        }
+        return toCachedRates(fields);
+    }
+
+    @Override
+    public void replaceRates(String baseCurrency, CachedRates rates, Duration ttl) {
+        var key = cacheKeyBuilderService.buildRatesHashKey(baseCurrency);
+        var fields = new HashMap<String, String>();
+        rates.getRates().forEach((target, rate) -> fields.put(target, Double.toString(rate)));
+        if (rates.getTimestamp() != null) {
+            fields.put(TIMESTAMP_FIELD, Long.toString(rates.getTimestamp().toEpochMilli()));
+        }
+        fields.put(CACHED_AT_FIELD, Long.toString(rates.getCachedAt().toEpochMilli()));
+
+        // DEL + HSET + EXPIRE in a MULTI/EXEC transaction, so targets no longer quoted do not
+        // linger, and the hash is never seen half written or without a TTL
+        redisTemplate.execute(
+                new SessionCallback<List<Object>>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> List<Object> execute(RedisOperations<K, V> operations)
+                            throws DataAccessException {
+                        var stringOperations = (RedisOperations<String, String>) operations;
+                        stringOperations.multi();
+                        stringOperations.delete(key);
+                        stringOperations.opsForHash().putAll(key, fields);
+                        stringOperations.expire(key, ttl);
+                        return stringOperations.exec();
+                    }
+                });
+    }
+
+    private static Optional<CachedRates> toCachedRates(Map<String, String> fields) {
+        // every hash has a cachedAt field - without it, the hash does not exist
+        var cachedAt = fields.remove(CACHED_AT_FIELD);
+        if (cachedAt == null) {
+            return Optional.empty();
+        }
+        var timestamp = fields.remove(TIMESTAMP_FIELD);
+
+        var rates = QuoteRates.builder(fields.size());
+        fields.forEach((target, rate) -> rates.put(target, Double.parseDouble(rate)));
+        return Optional.of(
+                new CachedRates(
+                        rates.build(),
+                        timestamp != null ? Instant.ofEpochMilli(Long.parseLong(timestamp)) : null,
+                        Instant.ofEpochMilli(Long.parseLong(cachedAt))));
+    }
+}
@@ -0,0 +1,110 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.ApiKeyAccessDecision;
+import com.exchangerates.CurrencyExchangeAPI.domain.ApiKeyAccessDecision.Result;
+import com.exchangerates.CurrencyExchangeAPI.entities.Plan;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyDigest;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyAccessService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IAuthenticationService;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+/**
+ * Validates API keys and applies GCRA rate limiting in a single Redis round trip - the script
+ * looks the API key up in the active API keys written through by AuthenticationService, and
+ * applies the limits of its plan.
+ * API keys that are not there yet (e.g. created before this was enabled, or whose entry expired)
+ * are resolved from the database once, and written back for the next requests.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "auth.single-round-trip.enabled", havingValue = "true")
+public class RedisApiKeyAccessService implements IApiKeyAccessService {
+    // script results: [status, milliseconds until it would be allowed]
+    private static final long STATUS_ALLOWED = 1;
+    private static final long STATUS_RATE_LIMITED = 0;
+
+    private final StringRedisTemplate redisTemplate;
+
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> authRateLimiterScript;
+
+    private final IAuthenticationService authenticationService;
+
+    // limits of every plan, sent along with every request: plan name, emission interval and burst
+    private final List<String> planLimitArguments;
+
+    @Autowired
+    public RedisApiKeyAccessService(
+            StringRedisTemplate redisTemplate,
+            @SuppressWarnings("rawtypes") RedisScript<List> authRateLimiterScript,
+            IAuthenticationService authenticationService) {
+        this.redisTemplate = redisTemplate;
+        this.authRateLimiterScript = authRateLimiterScript;
+        this.authenticationService = authenticationService;
+
+        this.planLimitArguments = new ArrayList<>();
+        for (var plan : Plan.values()) {
+            planLimitArguments.add(plan.name());
+            planLimitArguments.add(String.valueOf(plan.getRateLimit().emissionIntervalMillis()));
+            planLimitArguments.add(String.valueOf(plan.getRateLimit().burst()));
+        }
+    }
+
+    @Override
+    public ApiKeyAccessDecision checkAccess(String apiKey, int weight) {
+        var decision = executeScript(apiKey, weight);
+        if (decision.result() != Result.INVALID_API_KEY) {
+            return decision;
+        }
+
+        // not an active API key in Redis - it may still be valid. A cached plan is not trusted, the
+        // API key may have just been revoked, and it would be registered again
+        var plan = authenticationService.revalidateAPIKeyPlan(apiKey);
+        if (plan.isEmpty()) {
+            return decision;
+        }
+        authenticationService.registerActiveAPIKey(apiKey, plan.get());
+
+        // a revocation committed after the lookup above would delete the active API key before it
+        // was registered again, leaving it usable. Revoking deletes it after committing, so either
+        // this second lookup sees the revocation, or the revocation deletes the registered key
+        if (authenticationService.revalidateAPIKeyPlan(apiKey).isEmpty()) {
+            authenticationService.unregisterActiveAPIKey(apiKey);
+            return decision;
+        }
+        return executeScript(apiKey, weight);
+    }
+
+    private ApiKeyAccessDecision executeScript(String apiKey, int weight) {
+        var arguments = new ArrayList<String>(planLimitArguments.size() + 2);
+        arguments.add(String.valueOf(System.currentTimeMillis()));
+        // capped at the burst of the API key's plan by the script
+        arguments.add(String.valueOf(weight));
+        arguments.addAll(planLimitArguments);
+
+        var apiKeyDigest = ApiKeyDigest.hexOf(apiKey);
+        var result =
+                redisTemplate.execute(
+                        authRateLimiterScript,
+                        List.of(
+                                AuthenticationService.activeAPIKeyKey(apiKeyDigest),
+                                GcraRateLimiterService.tatKey(apiKeyDigest)),
+                        arguments.toArray());
+        long status = ((Number) result.get(0)).longValue();
+        long retryAfterMillis = ((Number) result.get(1)).longValue();
+        if (status == STATUS_ALLOWED) {
+            return new ApiKeyAccessDecision(Result.ALLOWED, 0);
+        }
+        if (status == STATUS_RATE_LIMITED) {
+            return new ApiKeyAccessDecision(Result.RATE_LIMITED, retryAfterMillis);
+        }
+        return ApiKeyAccessDecision.invalidAPIKey();
+    }
+}
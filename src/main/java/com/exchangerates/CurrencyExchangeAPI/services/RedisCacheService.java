@@ -2,9 +2,15 @@ package com.exchangerates.CurrencyExchangeAPI.services;
 
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheService;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import lombok.AllArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -17,6 +23,24 @@ public class RedisCacheService<V> implements ICacheService<V> {
         return Optional.ofNullable(redisTemplate.opsForValue().get(key));
     }
 
+    @Override
+    public Map<String, V> multiGet(List<String> keys) {
+        var foundValues = new HashMap<String, V>();
+        if (keys.isEmpty()) {
+            return foundValues;
+        }
+
+        // MGET returns values in the same order as the keys, with null for missing keys
+        var values = redisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            var value = values.get(i);
+            if (value != null) {
+                foundValues.put(keys.get(i), value);
+            }
+        }
+        return foundValues;
+    }
+
     @Override
     public void set(String key, V value, Duration ttl) {
         redisTemplate.opsForValue().set(key, value, ttl);
@@ -26,4 +50,30 @@ public class RedisCacheService<V> implements ICacheService<V> {
     public void set(String key, V value) {
         redisTemplate.opsForValue().set(key, value);
     }
+
+    @Override
+    public void multiSet(Map<String, V> values, Duration ttl) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        // pipeline one 'SET key value EX ttl' per entry - every command is sent before reading
+        // any reply, so it costs a single round trip, and each key is written with its TTL
+        // atomically (unlike MSET followed by EXPIRE)
+        redisTemplate.executePipelined(
+                new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, HV> Object execute(RedisOperations<K, HV> operations)
+                            throws DataAccessException {
+                        var valueOperations =
+                                ((RedisOperations<String, V>) operations).opsForValue();
+                        for (var entry : values.entrySet()) {
+                            valueOperations.set(entry.getKey(), entry.getValue(), ttl);
+                        }
+                        // results are collected by executePipelined, must return null
+                        return null;
+                    }
+                });
+    }
 }
@@ -0,0 +1,173 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRefreshAheadService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Refresh-ahead for cached rates: rates that keep being requested are fetched again shortly before
+ * their cache entry expires, so steady traffic never waits on the external API after a miss.
+ * Refreshes run on a small bounded pool, so hot keys can never flood the external API - when the
+ * pool is saturated, the remaining refreshes are skipped until the next run.
+ * The same pool also revalidates stale rates in the background (see RatesFreshnessPolicy).
+ */
+@Service
+public class RefreshAheadService implements IRefreshAheadService {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshAheadService.class);
+
+    private final ConcurrentHashMap<String, TrackedRates> trackedRates = new ConcurrentHashMap<>();
+    // keys being refreshed, so the same rates are never refreshed twice at the same time
+    private final Set<String> inFlightRefreshes = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor refreshExecutor;
+
+    private final boolean enabled;
+    private final long leadNanos;
+    private final long idleNanos;
+
+    private final Counter refreshSuccesses;
+    private final Counter refreshFailures;
+    private final Counter refreshesSkipped;
+
+    @Autowired
+    public RefreshAheadService(
+            MeterRegistry meterRegistry,
+            @Value("${rates.refresh-ahead.enabled:true}") boolean enabled,
+            @Value("${rates.refresh-ahead.lead-seconds:10}") long leadSeconds,
+            @Value("${rates.refresh-ahead.idle-seconds:300}") long idleSeconds,
+            @Value("${rates.refresh-ahead.max-concurrency:4}") int maxConcurrency) {
+        this.enabled = enabled;
+        this.leadNanos = TimeUnit.SECONDS.toNanos(leadSeconds);
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+
+        var threadCount = new AtomicInteger();
+        this.refreshExecutor =
+                new ThreadPoolExecutor(
+                        maxConcurrency,
+                        maxConcurrency,
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(maxConcurrency),
+                        runnable -> {
+                            var thread =
+                                    new Thread(
+                                            runnable,
+                                            "rates-refresh-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+
+        this.refreshSuccesses = refreshCounter(meterRegistry, "success");
+        this.refreshFailures = refreshCounter(meterRegistry, "failure");
+        this.refreshesSkipped = refreshCounter(meterRegistry, "skipped");
+        meterRegistry.gaugeMapSize("rates.refresh.tracked", null, trackedRates);
+    }
+
+    @Override
+    public void recordAccess(String key) {
+        var tracked = trackedRates.get(key);
+        if (tracked != null) {
+            tracked.lastAccessNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void track(String key, Duration ttl, Runnable refresh) {
+        if (!enabled) {
+            return;
+        }
+
+        long expiresAtNanos = System.nanoTime() + ttl.toNanos();
+        // a refresh updates the expiry of the entry, but not its last access - entries that are
+        // no longer requested are dropped once idle
+        trackedRates.computeIfAbsent(key, k -> new TrackedRates(refresh, System.nanoTime()))
+                        .expiresAtNanos =
+                expiresAtNanos;
+    }
+
+    /**
+     * Refreshes every tracked entry that expires within the lead time, and drops idle entries.
+     */
+    @Scheduled(fixedDelayString = "${rates.refresh-ahead.interval-ms:5000}")
+    public void refreshExpiringRates() {
+        long now = System.nanoTime();
+        for (var entry : trackedRates.entrySet()) {
+            var tracked = entry.getValue();
+            if (now - tracked.lastAccessNanos > idleNanos) {
+                logger.debug("Rates for '{}' no longer requested, not refreshing.", entry.getKey());
+                trackedRates.remove(entry.getKey(), tracked);
+                continue;
+            }
+
+            if (tracked.expiresAtNanos - now <= leadNanos) {
+                refreshNow(entry.getKey(), tracked.refresh);
+            }
+        }
+    }
+
+    @Override
+    public void refreshNow(String key, Runnable refresh) {
+        if (!inFlightRefreshes.add(key)) {
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(() -> refresh(key, refresh));
+        } catch (RejectedExecutionException ex) {
+            inFlightRefreshes.remove(key);
+            refreshesSkipped.increment();
+        }
+    }
+
+    private void refresh(String key, Runnable refresh) {
+        try {
+            logger.debug("Refreshing rates for '{}'.", key);
+            refresh.run();
+            refreshSuccesses.increment();
+        } catch (RuntimeException ex) {
+            // scheduled refreshes are retried on the next run, as long as the rates keep being
+            // requested
+            logger.warn("Failed to refresh rates for '{}': {}", key, ex.getMessage());
+            refreshFailures.increment();
+        } finally {
+            inFlightRefreshes.remove(key);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private static Counter refreshCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("rates.refresh.ahead")
+                .description("Refreshes of cached rates ahead of their expiry")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static class TrackedRates {
+        private final Runnable refresh;
+        private volatile long expiresAtNanos;
+        private volatile long lastAccessNanos;
+
+        private TrackedRates(Runnable refresh, long lastAccessNanos) {
+            this.refresh = refresh;
+            this.lastAccessNanos = lastAccessNanos;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRequestCoalescer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Single-flight request coalescing: the first caller for a key (the leader) executes the call on
+ * its own thread, while callers arriving before it finishes (followers) wait on its result.
+ * Prevents a stampede of identical upstream calls when a hot cache key expires.
+ * Asynchronous callers share the same in-flight calls, without waiting on a thread.
+ * A call is only shared for as long as followers would wait on it - callers arriving after a call
+ * has been in flight for longer make their own.
+ */
+@Service
+public class RequestCoalescer implements IRequestCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(RequestCoalescer.class);
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlightCalls =
+            new ConcurrentHashMap<>();
+    private final long followerTimeoutMillis;
+
+    private final Counter leaderCalls;
+    private final Counter followerCalls;
+    private final Counter followerTimeouts;
+
+    @Autowired
+    public RequestCoalescer(
+            MeterRegistry meterRegistry,
+            @Value("${upstream.coalescing.timeout-ms:10000}") long followerTimeoutMillis) {
+        this.followerTimeoutMillis = followerTimeoutMillis;
+        this.leaderCalls = coalescingCounter(meterRegistry, "leader");
+        this.followerCalls = coalescingCounter(meterRegistry, "follower");
+        this.followerTimeouts =
+                Counter.builder("upstream.coalescing.timeouts")
+                        .description("Callers that gave up waiting on an in-flight call")
+                        .register(meterRegistry);
+        meterRegistry.gaugeMapSize("upstream.coalescing.inflight", null, inFlightCalls);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V> V coalesce(String key, Supplier<V> call) {
+        var ownCall = new CompletableFuture<Object>();
+        var inFlightCall = inFlightCalls.putIfAbsent(key, ownCall);
+
+        if (inFlightCall == null) {
+            leaderCalls.increment();
+            boundInFlightCall(key, ownCall);
+            try {
+                var result = call.get();
+                ownCall.complete(result);
+                return result;
+            } catch (Throwable ex) {
+                // errors too, followers must never be left waiting on a call that ended
+                ownCall.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                inFlightCalls.remove(key, ownCall);
+            }
+        }
+
+        followerCalls.increment();
+        logger.debug("Waiting on in-flight call for key '{}'.", key);
+        try {
+            return (V) inFlightCall.get(followerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            followerTimeouts.increment();
+            throw new ResponseStatusException(
+                    HttpStatus.GATEWAY_TIMEOUT, "Timed out waiting for upstream response");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof TimeoutException) {
+                followerTimeouts.increment();
+                throw new ResponseStatusException(
+                        HttpStatus.GATEWAY_TIMEOUT, "Timed out waiting for upstream response");
+            }
+            // the follower fails the same way the leader did
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE, "Interrupted waiting for upstream response");
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V> CompletableFuture<V> coalesceAsync(String key, Supplier<CompletableFuture<V>> call) {
+        var ownCall = new CompletableFuture<Object>();
+        var inFlightCall = inFlightCalls.putIfAbsent(key, ownCall);
+
+        if (inFlightCall == null) {
+            leaderCalls.increment();
+            boundInFlightCall(key, ownCall);
+            CompletableFuture<V> result;
+            try {
+                result = call.get();
+            } catch (RuntimeException ex) {
+                result = CompletableFuture.failedFuture(ex);
+            } catch (Error ex) {
+                ownCall.completeExceptionally(ex);
+                inFlightCalls.remove(key, ownCall);
+                throw ex;
+            }
+            return result.whenComplete(
+                    (value, ex) -> {
+                        if (ex != null) {
+                            ownCall.completeExceptionally(Futures.unwrap(ex));
+                        } else {
+                            ownCall.complete(value);
+                        }
+                        inFlightCalls.remove(key, ownCall);
+                    });
+        }
+
+        followerCalls.increment();
+        logger.debug("Attaching to in-flight call for key '{}'.", key);
+        // the timeout only applies to this caller's view of the in-flight call, not the call itself
+        return inFlightCall
+                .thenApply(value -> (V) value)
+                .orTimeout(followerTimeoutMillis, TimeUnit.MILLISECONDS)
+                .handle(
+                        (value, ex) -> {
+                            if (ex == null) {
+                                return value;
+                            }
+                            if (Futures.unwrap(ex) instanceof TimeoutException) {
+                                followerTimeouts.increment();
+                                throw new ResponseStatusException(
+                                        HttpStatus.GATEWAY_TIMEOUT,
+                                        "Timed out waiting for upstream response");
+                            }
+                            throw Futures.propagate(ex);
+                        });
+    }
+
+    /**
+     * Stops sharing a call once followers would have given up waiting on it, so a call that never
+     * completes does not keep collecting followers - the call itself goes on.
+     */
+    private void boundInFlightCall(String key, CompletableFuture<Object> ownCall) {
+        ownCall.orTimeout(followerTimeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((value, ex) -> inFlightCalls.remove(key, ownCall));
+    }
+
+    private static Counter coalescingCounter(MeterRegistry meterRegistry, String role) {
+        return Counter.builder("upstream.coalescing.calls")
+                .description("Coalesced calls, by whether the caller executed or waited")
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,330 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IUpstreamBudgetService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Paces calls to the external API so its quota lasts the whole quota period (a calendar day, week
+ * or month, in UTC). Calls are counted in Redis, so every instance shares the same budget.
+ * On every sync, the recent call rate is compared with the rate the remaining quota can sustain
+ * until the period ends, and the TTL multiplier of cached rates is raised (or lowered again) by
+ * that ratio - rates are then refreshed less often, both on request and ahead of expiry.
+ * If stretching TTLs is not enough, or the remaining quota falls to the reserve, only the most
+ * requested base currencies are still fetched - other requests are served cached rates, if any.
+ * Once the quota is used up, no more calls are made until the next period.
+ */
+@Service
+public class UpstreamBudgetService implements IUpstreamBudgetService {
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamBudgetService.class);
+
+    private static final String CONSUMED_KEY_PREFIX = "upstream:budget:";
+    // weight of the latest sample in the smoothed call rate
+    private static final double RATE_SMOOTHING = 0.2;
+    // most the TTL multiplier changes in a single sync, so it does not overreact to a burst of
+    // misses
+    private static final double MAX_MULTIPLIER_STEP = 2.0;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RatesFreshnessPolicy ratesFreshnessPolicy;
+
+    private final boolean enabled;
+    private final long quota;
+    private final ChronoUnit period;
+    private final double maxTtlMultiplier;
+    private final long reserve;
+    private final int priorityBaseCount;
+
+    // requests per base currency, halved on every sync so recent demand weighs the most
+    private final ConcurrentHashMap<String, LongAdder> demandByBase = new ConcurrentHashMap<>();
+    private volatile Set<String> priorityBases = Set.of();
+    // whether only the priority base currencies are fetched
+    private volatile boolean restricted;
+
+    private final AtomicLong consumed = new AtomicLong();
+    private volatile Instant periodStart;
+    // calls per second, smoothed - negative until first measured
+    private volatile double callRate = -1;
+    private volatile double projectedExhaustionSeconds = Double.POSITIVE_INFINITY;
+    // guards the period rollover and the pacing state below
+    private final ReentrantLock lock = new ReentrantLock();
+    private long lastSyncConsumed;
+    private Instant lastSyncAt;
+
+    private final Counter allowedCalls;
+    private final Counter rejectedCalls;
+
+    @Autowired
+    public UpstreamBudgetService(
+            StringRedisTemplate redisTemplate,
+            RatesFreshnessPolicy ratesFreshnessPolicy,
+            MeterRegistry meterRegistry,
+            @Value("${upstream.budget.enabled:false}") boolean enabled,
+            @Value("${upstream.budget.quota:0}") long quota,
+            @Value("${upstream.budget.period:MONTHS}") ChronoUnit period,
+            @Value("${upstream.budget.max-ttl-multiplier:10}") double maxTtlMultiplier,
+            @Value("${upstream.budget.reserve-ratio:0.1}") double reserveRatio,
+            @Value("${upstream.budget.priority-bases:10}") int priorityBaseCount) {
+        if (period != ChronoUnit.DAYS
+                && period != ChronoUnit.WEEKS
+                && period != ChronoUnit.MONTHS) {
+            throw new IllegalArgumentException(
+                    "upstream.budget.period must be DAYS, WEEKS or MONTHS");
+        }
+        // a guessed quota would either reject calls the plan allows, or not save any
+        if (enabled && quota <= 0) {
+            throw new IllegalArgumentException(
+                    "upstream.budget.quota must be set to the external API's quota");
+        }
+        this.redisTemplate = redisTemplate;
+        this.ratesFreshnessPolicy = ratesFreshnessPolicy;
+        this.enabled = enabled;
+        this.quota = quota;
+        this.period = period;
+        this.maxTtlMultiplier = Math.max(1.0, maxTtlMultiplier);
+        this.reserve = (long) (quota * reserveRatio);
+        this.priorityBaseCount = priorityBaseCount;
+
+        var now = Instant.now();
+        this.periodStart = periodStart(now, period);
+        this.lastSyncAt = now;
+
+        this.allowedCalls = budgetCounter(meterRegistry, "allowed");
+        this.rejectedCalls = budgetCounter(meterRegistry, "rejected");
+        Gauge.builder("upstream.budget.remaining", () -> Math.max(0, quota - consumed.get()))
+                .description("Calls to the external API left in the current quota period")
+                .register(meterRegistry);
+        Gauge.builder(
+                        "upstream.budget.projected-exhaustion-seconds",
+                        () -> projectedExhaustionSeconds)
+                .description("Seconds until the quota is used up, at the recent call rate")
+                .register(meterRegistry);
+        Gauge.builder("upstream.budget.ttl-multiplier", ratesFreshnessPolicy::getTtlMultiplier)
+                .description("How much the TTLs of cached rates are stretched to save quota")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void recordDemand(String baseCurrency) {
+        if (enabled) {
+            demandByBase.computeIfAbsent(baseCurrency, k -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public boolean allowCall(String baseCurrency) {
+        if (!enabled) {
+            return true;
+        }
+
+        boolean allowed =
+                consumed.get() < quota
+                        && (!restricted
+                                || baseCurrency == null
+                                || priorityBases.contains(baseCurrency));
+        (allowed ? allowedCalls : rejectedCalls).increment();
+        return allowed;
+    }
+
+    @Override
+    public void recordCall() {
+        if (!enabled) {
+            return;
+        }
+
+        var start = rollOver(Instant.now());
+        var consumedKey = consumedKey(start);
+        try {
+            var total = redisTemplate.opsForValue().increment(consumedKey);
+            if (total != null) {
+                if (total == 1) {
+                    // kept a little past the end of the period, then dropped
+                    redisTemplate.expire(consumedKey, periodLength(start).plusDays(1));
+                }
+                consumed.accumulateAndGet(total, Math::max);
+                return;
+            }
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to count upstream call in Redis: {}", ex.getMessage());
+        }
+        consumed.incrementAndGet();
+    }
+
+    /**
+     * Picks up calls made by other instances, and adjusts the pacing to the remaining quota.
+     */
+    @Scheduled(fixedDelayString = "${upstream.budget.sync-interval-ms:60000}")
+    public void synchronize() {
+        if (!enabled) {
+            return;
+        }
+
+        var now = Instant.now();
+        var start = rollOver(now);
+        try {
+            var total = redisTemplate.opsForValue().get(consumedKey(start));
+            if (total != null) {
+                consumed.accumulateAndGet(Long.parseLong(total), Math::max);
+            }
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to read upstream calls from Redis: {}", ex.getMessage());
+        }
+
+        updatePacing(now, start);
+        updatePriorityBases();
+    }
+
+    private void updatePacing(Instant now, Instant start) {
+        lock.lock();
+        try {
+            adjustPacing(now, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjustPacing(Instant now, Instant start) {
+        long consumedNow = consumed.get();
+        double elapsedSeconds = Duration.between(lastSyncAt, now).toMillis() / 1000.0;
+        if (elapsedSeconds <= 0) {
+            return;
+        }
+        double rateSample = Math.max(0, consumedNow - lastSyncConsumed) / elapsedSeconds;
+        callRate =
+                callRate < 0
+                        ? rateSample
+                        : RATE_SMOOTHING * rateSample + (1 - RATE_SMOOTHING) * callRate;
+        lastSyncConsumed = consumedNow;
+        lastSyncAt = now;
+
+        long remaining = Math.max(0, quota - consumedNow);
+        double secondsLeft =
+                Math.max(1, Duration.between(now, start.plus(periodLength(start))).toSeconds());
+        double sustainableRate = remaining / secondsLeft;
+        projectedExhaustionSeconds = callRate > 0 ? remaining / callRate : Double.POSITIVE_INFINITY;
+
+        // calls are roughly inversely proportional to the TTLs, so the multiplier scales with how
+        // much faster than sustainable the quota is being used
+        double pressure =
+                sustainableRate > 0 ? callRate / sustainableRate : Double.POSITIVE_INFINITY;
+        double multiplier = ratesFreshnessPolicy.getTtlMultiplier();
+        double targetMultiplier =
+                Math.min(
+                        Math.max(multiplier * pressure, multiplier / MAX_MULTIPLIER_STEP),
+                        multiplier * MAX_MULTIPLIER_STEP);
+        targetMultiplier = Math.min(Math.max(targetMultiplier, 1.0), maxTtlMultiplier);
+        ratesFreshnessPolicy.setTtlMultiplier(targetMultiplier);
+
+        boolean wasRestricted = restricted;
+        restricted = remaining <= reserve || (targetMultiplier >= maxTtlMultiplier && pressure > 1);
+        if (restricted != wasRestricted) {
+            logger.warn(
+                    "Upstream budget {} - {} of {} calls left, TTL multiplier {}.",
+                    restricted ? "restricted to the most requested bases" : "no longer restricted",
+                    remaining,
+                    quota,
+                    targetMultiplier);
+        }
+    }
+
+    private void updatePriorityBases() {
+        var demand = new HashMap<String, Long>();
+        for (var entry : demandByBase.entrySet()) {
+            long count = entry.getValue().sumThenReset();
+            if (count == 0) {
+                demandByBase.remove(entry.getKey(), entry.getValue());
+                continue;
+            }
+            demand.put(entry.getKey(), count);
+            entry.getValue().add(count / 2);
+        }
+
+        priorityBases =
+                demand.entrySet().stream()
+                        .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                        .limit(priorityBaseCount)
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Resets the consumed calls once a new period starts.
+     * @return The start of the current period.
+     */
+    private Instant rollOver(Instant now) {
+        var start = periodStart(now, period);
+        if (start.equals(periodStart)) {
+            return start;
+        }
+
+        lock.lock();
+        try {
+            if (!start.equals(periodStart)) {
+                logger.info(
+                        "New upstream quota period, {} calls were made in the last one.",
+                        consumed.get());
+                periodStart = start;
+                consumed.set(0);
+                lastSyncConsumed = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return start;
+    }
+
+    private Duration periodLength(Instant start) {
+        var startDate = start.atZone(ZoneOffset.UTC);
+        return Duration.between(startDate, startDate.plus(1, period));
+    }
+
+    private String consumedKey(Instant start) {
+        return CONSUMED_KEY_PREFIX + start.getEpochSecond();
+    }
+
+    /**
+     * @return The start of the quota period the instant falls in - a calendar day, week (starting
+     * on Monday) or month, in UTC.
+     */
+    static Instant periodStart(Instant now, ChronoUnit period) {
+        var date = now.atZone(ZoneOffset.UTC).toLocalDate();
+        var startDate =
+                switch (period) {
+                    case WEEKS -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                    case MONTHS -> date.withDayOfMonth(1);
+                    default -> date;
+                };
+        return startDate.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static Counter budgetCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("upstream.budget.calls")
+                .description("Calls to the external API checked against the quota budget")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
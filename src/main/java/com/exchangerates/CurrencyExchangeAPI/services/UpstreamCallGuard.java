@@ -0,0 +1,258 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import com.exchangerates.CurrencyExchangeAPI.exception.UpstreamCallRejectedException;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IUpstreamCallGuard;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Bulkhead and circuit breaker in front of the external API.
+ * The bulkhead caps concurrent calls, so a slow external API cannot tie up every request thread.
+ * The circuit breaker opens once the failure rate over the last calls reaches a threshold, and
+ * rejects calls for a while - callers then fall back to the cached rates right away, instead of
+ * waiting on timeouts. Once the open duration elapses, a single trial call decides whether it
+ * closes again.
+ * Rejected calls fail with an UpstreamCallRejectedException (a 503), which callers handle like any
+ * other external API failure.
+ */
+@Service
+public class UpstreamCallGuard implements IUpstreamCallGuard {
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamCallGuard.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final Semaphore bulkhead;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+
+    // outcomes of the last calls, true for failures
+    private final boolean[] outcomes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int recordedCalls;
+    private int nextOutcome;
+    private int failures;
+    private volatile State state = State.CLOSED;
+    private long openedAtNanos;
+    private boolean trialCallInFlight;
+
+    private final Counter successfulCalls;
+    private final Counter failedCalls;
+    private final Counter rejectedOpenCalls;
+    private final Counter rejectedBulkheadCalls;
+
+    @Autowired
+    public UpstreamCallGuard(
+            MeterRegistry meterRegistry,
+            @Value("${upstream.bulkhead.max-concurrent-calls:20}") int maxConcurrentCalls,
+            @Value("${upstream.circuit-breaker.window-size:20}") int windowSize,
+            @Value("${upstream.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${upstream.circuit-breaker.failure-rate-threshold:0.5}")
+                    double failureRateThreshold,
+            @Value("${upstream.circuit-breaker.open-duration-ms:30000}") long openDurationMillis) {
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+
+        this.successfulCalls = callCounter(meterRegistry, "success");
+        this.failedCalls = callCounter(meterRegistry, "failure");
+        this.rejectedOpenCalls = callCounter(meterRegistry, "rejected_open");
+        this.rejectedBulkheadCalls = callCounter(meterRegistry, "rejected_bulkhead");
+        Gauge.builder("upstream.circuit-breaker.state", () -> state.ordinal())
+                .description(
+                        "State of the external API circuit breaker: 0 closed, 1 open, 2 half open")
+                .register(meterRegistry);
+        Gauge.builder(
+                        "upstream.bulkhead.in-flight",
+                        () -> maxConcurrentCalls - bulkhead.availablePermits())
+                .description("Calls to the external API in flight")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <V> V call(Supplier<V> call) {
+        boolean trialCall = acquire();
+        try {
+            var result = call.get();
+            recordOutcome(trialCall, false);
+            return result;
+        } catch (RuntimeException ex) {
+            recordOutcome(trialCall, isFailure(ex));
+            throw ex;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    @Override
+    public <V> CompletableFuture<V> callAsync(Supplier<CompletableFuture<V>> call) {
+        boolean trialCall;
+        try {
+            trialCall = acquire();
+        } catch (UpstreamCallRejectedException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        CompletableFuture<V> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException ex) {
+            result = CompletableFuture.failedFuture(ex);
+        }
+        return result.whenComplete(
+                (value, ex) -> {
+                    recordOutcome(trialCall, ex != null && isFailure(Futures.unwrap(ex)));
+                    bulkhead.release();
+                });
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Takes a bulkhead permit, if the circuit allows the call.
+     * @return Whether the call is the trial call of a half open circuit.
+     */
+    private boolean acquire() {
+        boolean trialCall = allowCall();
+        if (!bulkhead.tryAcquire()) {
+            if (trialCall) {
+                releaseTrialCall();
+            }
+            rejectedBulkheadCalls.increment();
+            throw new UpstreamCallRejectedException(
+                    "Too many concurrent calls to the external API");
+        }
+        return trialCall;
+    }
+
+    private boolean allowCall() {
+        if (state == State.CLOSED) {
+            return false;
+        }
+
+        lock.lock();
+        try {
+            if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openDurationNanos) {
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN && !trialCallInFlight) {
+                trialCallInFlight = true;
+                return true;
+            }
+            if (state == State.CLOSED) {
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        rejectedOpenCalls.increment();
+        throw new UpstreamCallRejectedException("External API circuit breaker is open");
+    }
+
+    private void releaseTrialCall() {
+        lock.lock();
+        try {
+            trialCallInFlight = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordOutcome(boolean trialCall, boolean failure) {
+        (failure ? failedCalls : successfulCalls).increment();
+
+        lock.lock();
+        try {
+            if (trialCall) {
+                trialCallInFlight = false;
+                if (failure) {
+                    open();
+                } else {
+                    resetWindow();
+                    transitionTo(State.CLOSED);
+                }
+                return;
+            }
+            if (state != State.CLOSED) {
+                // calls started before the circuit opened do not count towards the next window
+                return;
+            }
+
+            if (recordedCalls == outcomes.length && outcomes[nextOutcome]) {
+                failures--;
+            }
+            outcomes[nextOutcome] = failure;
+            if (failure) {
+                failures++;
+            }
+            nextOutcome = (nextOutcome + 1) % outcomes.length;
+            recordedCalls = Math.min(recordedCalls + 1, outcomes.length);
+
+            if (recordedCalls >= minimumCalls
+                    && (double) failures / recordedCalls >= failureRateThreshold) {
+                open();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() {
+        openedAtNanos = System.nanoTime();
+        resetWindow();
+        transitionTo(State.OPEN);
+    }
+
+    private void resetWindow() {
+        recordedCalls = 0;
+        nextOutcome = 0;
+        failures = 0;
+    }
+
+    private void transitionTo(State newState) {
+        if (state != newState) {
+            logger.warn("External API circuit breaker {} -> {}.", state, newState);
+            state = newState;
+        }
+    }
+
+    /**
+     * Only failures of the external API count towards opening the circuit - e.g. not rejections
+     * of invalid input.
+     */
+    private static boolean isFailure(Throwable ex) {
+        if (ex instanceof ResponseStatusException statusException) {
+            return statusException.getStatusCode().is5xxServerError();
+        }
+        return ex instanceof RestClientException;
+    }
+
+    private static Counter callCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("upstream.calls")
+                .description("Calls to the external API, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,24 @@
+package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.ApiKeyAccessDecision;
+
+public interface IApiKeyAccessService {
+    /**
+     * Validates the API key, and applies the rate limits of its plan to this request.
+     * @param apiKey The API key the request was made with
+     * @return Whether the request is allowed, rate limited, or made with an invalid API key
+     */
+    default ApiKeyAccessDecision checkAccess(String apiKey) {
+        return checkAccess(apiKey, 1);
+    }
+
+    /**
+     * Validates the API key, and applies the rate limits of its plan to a request that counts as
+     * several requests, e.g. a batch of conversions.
+     * @param apiKey The API key the request was made with
+     * @param weight How many requests this request counts as - capped at the burst of the plan, so
+     *               a request can always eventually be made
+     * @return Whether the request is allowed, rate limited, or made with an invalid API key
+     */
+    ApiKeyAccessDecision checkAccess(String apiKey, int weight);
+}
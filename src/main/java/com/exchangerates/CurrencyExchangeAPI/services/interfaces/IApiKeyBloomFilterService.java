@@ -0,0 +1,32 @@
+package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
+
+public interface IApiKeyBloomFilterService {
+    /**
+     * Checks the API key against the Bloom filter of issued API keys, in memory. False positives
+     * are possible, false negatives are not - a key that was never issued is almost always
+     * rejected, while a key that passes still has to be validated.
+     *
+     * @param apiKey The API key to check.
+     * @return False if the API key was definitely never issued, true if it may have been.
+     */
+    boolean mightBeIssued(String apiKey);
+
+    /**
+     * Adds a newly issued API key to the filter of this instance, and to the filter shared by
+     * every instance through Redis.
+     *
+     * @param apiKey The issued API key.
+     */
+    void addIssuedAPIKey(String apiKey);
+
+    /**
+     * Applies an addition published by any instance (including this one) to the local filter.
+     *
+     * @param message The published message, holding the layout of the publisher's filter and
+     *                the bit positions of the added API key.
+     */
+    void applyPublishedAddition(String message);
+
+    /** Records an API key that passed the filter, but turned out not to be valid. */
+    void recordFalsePositive();
+}
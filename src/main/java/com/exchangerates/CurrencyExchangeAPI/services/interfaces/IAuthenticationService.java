@@ -2,6 +2,8 @@ package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
 
 import com.exchangerates.CurrencyExchangeAPI.contracts.requests.AccountCredentialsDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.AccountResponseDTO;
+import com.exchangerates.CurrencyExchangeAPI.entities.Plan;
+import java.util.Optional;
 
 public interface IAuthenticationService {
     /**
@@ -25,6 +27,43 @@ public interface IAuthenticationService {
      */
     public boolean isValidAPIKey(String apiKey);
 
+    /**
+     * Resolves the plan of the user owning the provided API key - resolved plans are cached for a
+     * while, so this is cheap to call on every request
+     * @param apiKey The API key to resolve
+     * @return The plan of the API key's user, or an empty optional if the API key is not valid
+     */
+    public Optional<Plan> resolveAPIKeyPlan(String apiKey);
+
+    /**
+     * Resolves the plan of the user owning the provided API key from the database, ignoring a
+     * cached plan (which may belong to an API key revoked since) - only API keys cached as invalid
+     * are not looked up again. The cache is updated with the result
+     * @param apiKey The API key to resolve
+     * @return The plan of the API key's user, or an empty optional if the API key is not valid
+     */
+    public Optional<Plan> revalidateAPIKeyPlan(String apiKey);
+
+    /**
+     * Drops the API key from the cache of resolved API keys, so it is looked up again
+     * @param apiKeyDigest The hex digest of the API key to drop (see ApiKeyDigest)
+     */
+    public void evictAPIKeyDigest(String apiKeyDigest);
+
+    /**
+     * Writes the API key to the active API keys kept in Redis, used to validate API keys (and get
+     * their plan) within the rate limiting script
+     * @param apiKey The valid API key
+     * @param plan The plan of the API key's user
+     */
+    public void registerActiveAPIKey(String apiKey, Plan plan);
+
+    /**
+     * Removes the API key from the active API keys kept in Redis
+     * @param apiKey The API key to remove
+     */
+    public void unregisterActiveAPIKey(String apiKey);
+
     /**
      * Revokes the API key for the given user
      * @param request The request containing the user's credentials
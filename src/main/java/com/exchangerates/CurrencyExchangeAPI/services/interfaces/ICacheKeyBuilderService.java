@@ -11,4 +11,12 @@ public interface ICacheKeyBuilderService {
      * @return The cache key built from the given base currency and target currency.
      */
     String buildCacheKey(String baseCurrency, Optional<String> targetCurrency);
+
+    /**
+     * Builds the key of the hash holding every cached rate from the given base currency.
+     *
+     * @param baseCurrency The base currency to build the cache key with.
+     * @return The cache key of the base currency's rates hash.
+     */
+    String buildRatesHashKey(String baseCurrency);
 }
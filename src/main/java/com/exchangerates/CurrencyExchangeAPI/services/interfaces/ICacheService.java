@@ -1,6 +1,8 @@
 package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface ICacheService<V> {
@@ -12,6 +14,14 @@ public interface ICacheService<V> {
      */
     Optional<V> get(String key);
 
+    /**
+     * Retrieves the values associated to multiple keys, in a single round trip to the cache.
+     *
+     * @param keys The keys to search for in the cache.
+     * @return A map from each key found in the cache to its value. Keys not present in the cache are not included.
+     */
+    Map<String, V> multiGet(List<String> keys);
+
     /**
      * Stores a value in the cache with the specified key and a TTL duration.
      *
@@ -28,4 +38,13 @@ public interface ICacheService<V> {
      * @param value The value to store
      */
     void set(String key, V value);
+
+    /**
+     * Stores multiple values in the cache, all with the same TTL duration, in a single round trip
+     * to the cache.
+     *
+     * @param values The values to store, mapped by the key to store them under
+     * @param ttl    Duration after which the cached entries should expire.
+     */
+    void multiSet(Map<String, V> values, Duration ttl);
 }
@@ -0,0 +1,34 @@
+package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
+
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ConversionJobDTO;
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobFormat;
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobResult;
+import java.io.InputStream;
+
+public interface IConversionJobService {
+    /**
+     * Stores an uploaded file of rows to convert, and queues a job converting every row to the
+     * target currency - the file is read as it is stored, never held in memory.
+     * @param apiKey - the API key the job is submitted with, the only one that can access it
+     * @param format - format of the uploaded file, also the format of the job's result
+     * @param targetCurrency - the currency every row is converted to
+     * @param rows - the uploaded file
+     * @return ConversionJobDTO - the queued job
+     */
+    ConversionJobDTO submitJob(
+            String apiKey, ConversionJobFormat format, String targetCurrency, InputStream rows);
+
+    /**
+     * @return ConversionJobDTO - the job's status and progress
+     * @throws com.exchangerates.CurrencyExchangeAPI.exception.NotFoundException if there is no
+     * such job for the API key, or it expired
+     */
+    ConversionJobDTO getJob(String apiKey, String jobId);
+
+    /**
+     * @return ConversionJobResult - the file with the converted rows of a completed job
+     * @throws com.exchangerates.CurrencyExchangeAPI.exception.NotFoundException if there is no
+     * such job for the API key, or it expired
+     */
+    ConversionJobResult getJobResult(String apiKey, String jobId);
+}
@@ -3,10 +3,24 @@ package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
 import com.exchangerates.CurrencyExchangeAPI.domain.AvailableCurrenciesResponse;
 import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyRatesResponse;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface ICurrencyAPIClient {
     AvailableCurrenciesResponse fetchAvailableCurrencies();
 
     CurrencyRatesResponse fetchCurrencyExchangeRates(
             String baseCurrency, List<String> targetCurrencies);
+
+    /**
+     * Non-blocking variant of {@link #fetchAvailableCurrencies()} - no thread waits on the
+     * external API's response.
+     */
+    CompletableFuture<AvailableCurrenciesResponse> fetchAvailableCurrenciesAsync();
+
+    /**
+     * Non-blocking variant of {@link #fetchCurrencyExchangeRates(String, List)} - no thread waits
+     * on the external API's response.
+     */
+    CompletableFuture<CurrencyRatesResponse> fetchCurrencyExchangeRatesAsync(
+            String baseCurrency, List<String> targetCurrencies);
 }
@@ -1,9 +1,12 @@
 package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
 
+import com.exchangerates.CurrencyExchangeAPI.contracts.requests.ConversionRequestDTO;
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.BatchConversionDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.CurrencyConversionDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ValueConversionDTO;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface ICurrencyService {
     /**
@@ -27,4 +30,39 @@ public interface ICurrencyService {
      */
     ValueConversionDTO convertCurrencyValues(
             String baseCurrency, List<String> targetCurrencies, double valueToConvert);
+
+    /**
+     * Asynchronous variant of {@link #getCurrencyConversionRates}: cached rates are read on the
+     * calling thread, but no thread waits on the external API for rates missing from the cache.
+     * Invalid input is still rejected by throwing right away.
+     */
+    CompletableFuture<CurrencyConversionDTO> getCurrencyConversionRatesAsync(
+            String baseCurrency, Optional<String> targetCurrency);
+
+    /**
+     * Asynchronous variant of {@link #convertCurrencyValues}: cached rates are read on the calling
+     * thread, but no thread waits on the external API for rates missing from the cache.
+     * Invalid input is still rejected by throwing right away.
+     */
+    CompletableFuture<ValueConversionDTO> convertCurrencyValuesAsync(
+            String baseCurrency, List<String> targetCurrencies, double valueToConvert);
+
+    /**
+     * Validates a batch of conversions, without converting anything - so it can be rejected before
+     * being charged to the API key's rate limits.
+     * @param conversions - the conversions to validate
+     * @throws com.exchangerates.CurrencyExchangeAPI.exception.BusinessException if the batch is empty, or any conversion is missing or invalid.
+     */
+    void validateConversionsBatch(List<ConversionRequestDTO> conversions);
+
+    /**
+     * Performs many conversions at once - every distinct base currency is looked up once, from the
+     * cache or a single call to the external API, and all conversions are computed from those
+     * rates. The whole batch is rejected if any conversion is invalid.
+     * @param conversions - the conversions to perform, each from a base currency to a target
+     * currency
+     * @return BatchConversionDTO - a DTO containing the converted value of every conversion, in the
+     * order they were requested.
+     */
+    BatchConversionDTO convertCurrencyValuesBatch(List<ConversionRequestDTO> conversions);
 }
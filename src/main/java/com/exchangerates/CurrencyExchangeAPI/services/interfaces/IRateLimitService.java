@@ -1,10 +1,36 @@
 package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
 
+import com.exchangerates.CurrencyExchangeAPI.domain.RateLimit;
+import com.exchangerates.CurrencyExchangeAPI.domain.RateLimitDecision;
+
 public interface IRateLimitService {
     /**
      * Applies rate limits, and returns whether the request is allowed to proceed.
      * @param apiKey The API key to check the rate limit for
+     * @param rateLimit The rate limits of the API key
      * @return True if the rate limit has been exceeded, false otherwise
      */
-    public boolean applyRateLimiting(String rateLimitKey);
+    public boolean applyRateLimiting(String rateLimitKey, RateLimit rateLimit);
+
+    /**
+     * Applies rate limits, and returns whether the request is allowed to proceed, along with when
+     * it can be retried if it is not.
+     * @param rateLimitKey The API key to check the rate limit for
+     * @param rateLimit The rate limits of the API key
+     * @return The rate limiting decision for this request
+     */
+    default RateLimitDecision checkRateLimit(String rateLimitKey, RateLimit rateLimit) {
+        return new RateLimitDecision(applyRateLimiting(rateLimitKey, rateLimit), 0);
+    }
+
+    /**
+     * Applies rate limits to a request that counts as several requests, e.g. a batch of
+     * conversions - it is allowed only if all of its cost fits the limits, and then charged all of
+     * it.
+     * @param rateLimitKey The API key to check the rate limit for
+     * @param rateLimit The rate limits of the API key
+     * @param cost How many requests this request counts as - at most the burst of the limits
+     * @return The rate limiting decision for this request
+     */
+    RateLimitDecision checkRateLimit(String rateLimitKey, RateLimit rateLimit, int cost);
 }
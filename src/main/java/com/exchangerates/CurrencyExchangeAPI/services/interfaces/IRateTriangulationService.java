@@ -0,0 +1,46 @@
+package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.QuoteRates;
+import com.exchangerates.CurrencyExchangeAPI.domain.RateSnapshot;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface IRateTriangulationService {
+    /**
+     * @return The currency whose rates every snapshot is built from - the only base currency
+     * fetched from the external API.
+     */
+    String getPivotCurrency();
+
+    /**
+     * Retrieves the freshest snapshot of exchange rates between every pair of currencies, built
+     * from the pivot currency's rates to all other currencies - from the cache or, if not cached,
+     * from the external API.
+     *
+     * @return The rate snapshot, with the timestamp of the pivot currency's rates.
+     */
+    RateSnapshot getSnapshot();
+
+    /**
+     * Same as {@link #getSnapshot()}, but when the pivot currency's rates have to be fetched from
+     * the external API, no thread waits on the response - the returned future completes once it
+     * responds.
+     *
+     * @return The rate snapshot, with the timestamp of the pivot currency's rates.
+     */
+    CompletableFuture<RateSnapshot> getSnapshotAsync();
+
+    /**
+     * Derives exchange rates from a base currency to target currencies, using only the rate
+     * snapshot: rate(A, B) = rate(PIVOT, B) / rate(PIVOT, A).
+     *
+     * @param snapshot         The rate snapshot to derive rates from.
+     * @param baseCurrency     The base currency of the derived rates.
+     * @param targetCurrencies The target currencies to derive rates to. If empty, derives rates to
+     *                         every currency in the snapshot.
+     * @return The rates keyed by target currency. Targets missing from the snapshot are not
+     * included.
+     */
+    QuoteRates deriveRates(
+            RateSnapshot snapshot, String baseCurrency, List<String> targetCurrencies);
+}
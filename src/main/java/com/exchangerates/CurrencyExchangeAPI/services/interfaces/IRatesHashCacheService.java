@@ -0,0 +1,28 @@
+package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.CachedRates;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+public interface IRatesHashCacheService {
+    /**
+     * Retrieves the cached rates from a base currency, reading only the requested targets.
+     *
+     * @param baseCurrency     The base currency of the rates.
+     * @param targetCurrencies The target currencies to read - all of them if empty.
+     * @return An Optional with the cached rates if the base currency's rates are cached, otherwise,
+     *     an empty optional. Targets not quoted in the cached rates are not included.
+     */
+    Optional<CachedRates> getRates(String baseCurrency, List<String> targetCurrencies);
+
+    /**
+     * Replaces every cached rate from a base currency, atomically - readers either see all of the
+     * previous rates, or all of the new ones.
+     *
+     * @param baseCurrency The base currency of the rates.
+     * @param rates        The rates to every target currency.
+     * @param ttl          Duration after which the cached rates should expire.
+     */
+    void replaceRates(String baseCurrency, CachedRates rates, Duration ttl);
+}
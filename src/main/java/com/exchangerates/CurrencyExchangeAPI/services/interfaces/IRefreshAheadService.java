@@ -0,0 +1,30 @@
+package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
+
+import java.time.Duration;
+
+public interface IRefreshAheadService {
+    /**
+     * Records that the rates identified by the key were requested, keeping them refreshed ahead of
+     * their expiry for as long as they keep being requested.
+     *
+     * @param key The key identifying the rates, as used when tracking them.
+     */
+    void recordAccess(String key);
+
+    /**
+     * Tracks rates that were just cached, so they can be refreshed shortly before they expire.
+     *
+     * @param key     The key identifying the rates.
+     * @param ttl     How long until the cached rates expire.
+     * @param refresh Fetches the rates again, and caches them - expected to call track again.
+     */
+    void track(String key, Duration ttl, Runnable refresh);
+
+    /**
+     * Refreshes the rates in the background, unless a refresh for the same key is already running.
+     *
+     * @param key     The key identifying the rates.
+     * @param refresh Fetches the rates again, and caches them.
+     */
+    void refreshNow(String key, Runnable refresh);
+}
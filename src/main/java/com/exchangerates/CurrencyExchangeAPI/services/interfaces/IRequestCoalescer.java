@@ -0,0 +1,27 @@
+package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+public interface IRequestCoalescer {
+    /**
+     * Executes a call, making sure only one call per key is in flight at any given time.
+     * Callers that arrive while a call for the same key is running don't execute their own call,
+     * and instead wait for the in-flight call's result.
+     *
+     * @param key  The key identifying equivalent calls.
+     * @param call The call to execute, if none is in flight for this key.
+     * @return The result of the call, either executed by this caller or by the in-flight caller.
+     */
+    <V> V coalesce(String key, Supplier<V> call);
+
+    /**
+     * Asynchronous variant of {@link #coalesce}: neither the caller executing the call nor the
+     * callers attached to it wait for its result. Shares in-flight calls with {@link #coalesce}.
+     *
+     * @param key  The key identifying equivalent calls.
+     * @param call Starts the call, if none is in flight for this key.
+     * @return A future of the result of the call, either started by this caller or in flight.
+     */
+    <V> CompletableFuture<V> coalesceAsync(String key, Supplier<CompletableFuture<V>> call);
+}
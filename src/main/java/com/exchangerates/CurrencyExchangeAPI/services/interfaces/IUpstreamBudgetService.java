@@ -0,0 +1,25 @@
+package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
+
+public interface IUpstreamBudgetService {
+    /**
+     * Records that rates from a base currency were requested - the most requested base currencies
+     * keep being fetched once the upstream quota runs low.
+     *
+     * @param baseCurrency The requested base currency.
+     */
+    void recordDemand(String baseCurrency);
+
+    /**
+     * Checks whether a call to the external API fits the remaining upstream quota.
+     *
+     * @param baseCurrency The base currency of the rates to fetch, or null for calls not specific
+     *                     to a base currency.
+     * @return Whether the call should be made.
+     */
+    boolean allowCall(String baseCurrency);
+
+    /**
+     * Records a call made to the external API, against the upstream quota.
+     */
+    void recordCall();
+}
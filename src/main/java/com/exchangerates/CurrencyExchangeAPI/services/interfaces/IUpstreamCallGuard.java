@@ -0,0 +1,25 @@
+package com.exchangerates.CurrencyExchangeAPI.services.interfaces;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+public interface IUpstreamCallGuard {
+    /**
+     * Executes a call to the external API, unless the external API is considered unhealthy or too
+     * many calls to it are already in flight - in which case the call fails fast with an
+     * UpstreamCallRejectedException (a 503), without being executed.
+     *
+     * @param call The call to the external API.
+     * @return The result of the call.
+     */
+    <V> V call(Supplier<V> call);
+
+    /**
+     * Asynchronous variant of {@link #call}: the call counts as in flight until its future
+     * completes.
+     *
+     * @param call Starts the call to the external API.
+     * @return A future of the result of the call, failed right away if the call was rejected.
+     */
+    <V> CompletableFuture<V> callAsync(Supplier<CompletableFuture<V>> call);
+}
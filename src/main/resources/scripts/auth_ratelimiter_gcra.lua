@@ -0,0 +1,46 @@
+-- validates an API key and applies GCRA rate limiting (same as ratelimiter_gcra.lua) in a single
+-- call. Returns { 1, 0 } if allowed, { 0, retry after in ms } if rate limited, and { -1, 0 } if the
+-- API key is not an active API key
+-- active API keys are stored by their digest, as 'auth:api-key:{<key digest>}' -> plan name, and
+-- rate limited as 'ratelimit:gcra:{<key digest>}' - both built by the caller, and sharing a hash tag
+-- so they are in the same Redis Cluster slot
+local active_key = KEYS[1]
+local tat_key = KEYS[2]
+
+local plan = redis.call("GET", active_key)
+if not plan then
+	return { -1, 0 }
+end
+
+-- extract arguments - time of the request (unix epoch, in milliseconds), how many requests this one
+-- counts as, followed by the limits of every plan, as (plan name, milliseconds between requests, how
+-- many requests can be made at once)
+local current_time = tonumber(ARGV[1])
+local cost = tonumber(ARGV[2])
+local emission_interval = nil
+local burst = nil
+for i = 3, #ARGV, 3 do
+	if ARGV[i] == plan then
+		emission_interval = tonumber(ARGV[i + 1])
+		burst = tonumber(ARGV[i + 2])
+		break
+	end
+end
+
+-- a plan we do not know about, let the caller resolve the API key again
+if not emission_interval then
+	return { -1, 0 }
+end
+
+-- same rate limiting state as ratelimiter_gcra.lua, which is also keyed by the API key's digest
+local tat = math.max(tonumber(redis.call("GET", tat_key) or current_time), current_time)
+
+-- a request never costs more than the whole burst, so it can always eventually be made
+local new_tat = tat + math.min(cost, burst) * emission_interval
+local allow_at = new_tat - burst * emission_interval
+if current_time < allow_at then
+	return { 0, allow_at - current_time }
+end
+
+redis.call("SET", tat_key, new_tat, "PX", new_tat - current_time)
+return { 1, 0 }
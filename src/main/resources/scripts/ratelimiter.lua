@@ -8,11 +8,12 @@ local key = KEYS[1]
 -- build the key for accessing the rate limit hash
 local bucket_key = "ratelimit:" .. key
 
--- extract arguments - time of the request (unix epoch), the leak rate of buckets, and the maximum capacity
--- of buckets
+-- extract arguments - time of the request (unix epoch), the leak rate of buckets, the maximum capacity
+-- of buckets, and how many requests this one counts as (1 if not given)
 local current_time = tonumber(ARGV[1])
 local leak_rate = tonumber(ARGV[2])
 local bucket_capacity = tonumber(ARGV[3])
+local cost = tonumber(ARGV[4] or "1")
 
 -- fetch value of current capacity and the timestamp of the last bucket update for this user's bucket
 local current_capacity = tonumber(redis.call("HGET", bucket_key, BUCKET_CAPACITY_FIELD_NAME) or "0")
@@ -35,9 +36,10 @@ if leaked > 0 then
 	last_timestamp = current_time
 end
 
+-- the whole cost must fit in the bucket, or none of it is added
 local allowed = false
-if current_capacity < bucket_capacity then
-	current_capacity = current_capacity + 1
+if current_capacity + cost <= bucket_capacity then
+	current_capacity = current_capacity + cost
 	allowed = true
 	last_timestamp = current_time
 end
@@ -0,0 +1,29 @@
+-- GCRA (generic cell rate algorithm) - the same limits as a leaky bucket, but the whole state of a
+-- bucket is a single value: the theoretical arrival time (TAT) of the next request, in unix epoch
+-- milliseconds. Each request pushes it forward by the emission interval, and a request is allowed
+-- as long as that does not put it more than 'burst' intervals ahead of now.
+-- source: https://en.wikipedia.org/wiki/Generic_cell_rate_algorithm
+-- 'ratelimit:gcra:{<key>}', built by the caller - Redis Cluster only allows keys passed as KEYS
+local tat_key = KEYS[1]
+
+-- extract arguments - time of the request (unix epoch, in milliseconds), milliseconds between
+-- requests at the sustained rate, how many requests can be made at once, and how many requests
+-- this one counts as
+local current_time = tonumber(ARGV[1])
+local emission_interval = tonumber(ARGV[2])
+local burst = tonumber(ARGV[3])
+local cost = tonumber(ARGV[4])
+
+-- a missing key means every past request is long forgotten
+local tat = math.max(tonumber(redis.call("GET", tat_key) or current_time), current_time)
+
+local new_tat = tat + cost * emission_interval
+local allow_at = new_tat - burst * emission_interval
+if current_time < allow_at then
+	-- denied, nothing to write - return how many milliseconds until it would be allowed
+	return { 0, allow_at - current_time }
+end
+
+-- expires exactly when the bucket would be empty again
+redis.call("SET", tat_key, new_tat, "PX", new_tat - current_time)
+return { 1, 0 }
@@ -0,0 +1,70 @@
+-- same leaky bucket as ratelimiter.lua, but reserves up to a batch of requests at once, for nodes
+-- that admit requests locally and only reconcile with Redis when their local allowance runs out
+local BUCKET_CAPACITY_FIELD_NAME = "cap"
+local BUCKET_TIMESTAMP_FIELD_NAME = "ts"
+
+local key = KEYS[1]
+
+-- same bucket as ratelimiter.lua, so both can be used at once
+local bucket_key = "ratelimit:" .. key
+
+-- extract arguments - time of the request (unix epoch), the leak rate of buckets, the maximum
+-- capacity of buckets, how many requests to reserve, the fewest worth reserving (a weighted
+-- request needs its whole cost at once), and how many previously reserved requests went unused
+local current_time = tonumber(ARGV[1])
+local leak_rate = tonumber(ARGV[2])
+local bucket_capacity = tonumber(ARGV[3])
+local requested = tonumber(ARGV[4])
+local minimum = tonumber(ARGV[5] or "1")
+local released = tonumber(ARGV[6] or "0")
+
+local current_capacity = tonumber(redis.call("HGET", bucket_key, BUCKET_CAPACITY_FIELD_NAME) or "0")
+local last_timestamp = tonumber(redis.call("HGET", bucket_key, BUCKET_TIMESTAMP_FIELD_NAME) or "0")
+
+if last_timestamp == 0 then
+	last_timestamp = current_time
+end
+
+local elapsed = current_time - last_timestamp
+
+local leaked = math.floor(elapsed * leak_rate)
+if leaked > 0 then
+	current_capacity = math.max(current_capacity - leaked, 0)
+	last_timestamp = current_time
+end
+
+-- requests reserved but never made no longer count as made
+if released > 0 then
+	current_capacity = math.max(current_capacity - released, 0)
+end
+
+-- grant as much of the batch as fits in the bucket, or nothing when the minimum does not fit -
+-- reserving less would only count requests that cannot be made as made
+local granted = math.max(math.min(requested, bucket_capacity - current_capacity), 0)
+if granted < minimum then
+	granted = 0
+end
+if granted > 0 then
+	current_capacity = current_capacity + granted
+	last_timestamp = current_time
+end
+
+redis.call(
+	"HSET",
+	bucket_key,
+	BUCKET_CAPACITY_FIELD_NAME,
+	current_capacity,
+	BUCKET_TIMESTAMP_FIELD_NAME,
+	last_timestamp
+)
+redis.call("EXPIRE", bucket_key, math.floor(bucket_capacity / leak_rate) + 1)
+
+-- when nothing was granted, how many seconds until enough drops leak for the minimum, so callers
+-- can deny locally until then
+local retry_after = 0
+if granted == 0 then
+	local missing = current_capacity + minimum - bucket_capacity
+	retry_after = math.max(math.ceil(missing / leak_rate - (current_time - last_timestamp)), 1)
+end
+
+return { granted, retry_after }
@@ -0,0 +1,128 @@
+package com.exchangerates.CurrencyExchangeAPI.controllers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static io.restassured.module.mockmvc.RestAssuredMockMvc.given;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ConversionJobDTO;
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ConversionJobDTO.Status;
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobFormat;
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobResult;
+import com.exchangerates.CurrencyExchangeAPI.exception.NotFoundException;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IConversionJobService;
+
+@WebMvcTest(ConversionJobController.class)
+@AutoConfigureMockMvc(addFilters = false) // not testing for security here
+class ConversionJobControllerTest {
+
+    @Autowired private MockMvc mockMvc;
+
+    @MockitoBean private IConversionJobService conversionJobService;
+
+    @TempDir Path directory;
+
+    @Test
+    void givenCsvFile_SubmitJob_ShouldReturnAcceptedWithJobLocation() {
+        // Arrange
+        when(conversionJobService.submitJob(eq(API_KEY), eq(ConversionJobFormat.CSV), eq("EUR"), any()))
+            .thenReturn(queuedJob);
+
+        // Act & Assert
+        given().
+            mockMvc(mockMvc).
+            contentType("text/csv; charset=UTF-8").
+            header("X-API-KEY", API_KEY).
+            param("to", "EUR").
+            body("currency,amount\nUSD,100\n").
+        when().
+            post("/api/v1/currency/convert/jobs").
+        then().
+            statusCode(HttpStatus.SC_ACCEPTED).
+            and().
+            header("Location", endsWith("/api/v1/currency/convert/jobs/" + JOB_ID)).
+            body("id", is(JOB_ID),
+                 "status", is("QUEUED"),
+                 "format", is("CSV"));
+    }
+
+    @Test
+    void givenUnsupportedFileFormat_SubmitJob_ShouldReturnUnsupportedMediaType() {
+        // Act & Assert
+        given().
+            mockMvc(mockMvc).
+            contentType("application/xml").
+            header("X-API-KEY", API_KEY).
+            param("to", "EUR").
+            body("<rows/>").
+        when().
+            post("/api/v1/currency/convert/jobs").
+        then().
+            statusCode(HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE);
+
+        verifyNoInteractions(conversionJobService);
+    }
+
+    @Test
+    void givenUnknownJob_GetJob_ShouldReturnNotFound() {
+        // Arrange
+        when(conversionJobService.getJob(API_KEY, JOB_ID))
+            .thenThrow(new NotFoundException("Conversion job not found."));
+
+        // Act & Assert
+        given().
+            mockMvc(mockMvc).
+            header("X-API-KEY", API_KEY).
+        when().
+            get("/api/v1/currency/convert/jobs/" + JOB_ID).
+        then().
+            statusCode(HttpStatus.SC_NOT_FOUND).
+            and().
+            body("message", is("Conversion job not found."));
+    }
+
+    @Test
+    void givenCompletedJob_GetJobResult_ShouldStreamResultFile() throws IOException {
+        // Arrange
+        var resultFile = Files.writeString(directory.resolve("result.ndjson"),
+            "{\"currency\":\"USD\",\"amount\":100.0,\"to\":\"EUR\",\"rate\":0.5,\"value\":50.0}\n");
+        when(conversionJobService.getJobResult(API_KEY, JOB_ID))
+            .thenReturn(new ConversionJobResult(JOB_ID, resultFile, ConversionJobFormat.NDJSON));
+
+        // Act & Assert
+        given().
+            mockMvc(mockMvc).
+            header("X-API-KEY", API_KEY).
+        when().
+            get("/api/v1/currency/convert/jobs/" + JOB_ID + "/result").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            and().
+            contentType(containsString("application/x-ndjson")).
+            header("Content-Disposition", containsString(JOB_ID + ".ndjson")).
+            body(containsString("\"value\":50.0"));
+    }
+
+    private static final String API_KEY = "api-key";
+    private static final String JOB_ID = "0f8fad5b-d9cb-469f-a165-70867728950e";
+    private static final ConversionJobDTO queuedJob = new ConversionJobDTO(
+        JOB_ID, Status.QUEUED, ConversionJobFormat.CSV, "EUR", 0, 0, Instant.now(), null, null, null);
+}
@@ -2,14 +2,22 @@ package com.exchangerates.CurrencyExchangeAPI.controllers;
 
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static io.restassured.module.mockmvc.RestAssuredMockMvc.given;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import org.apache.http.HttpStatus;
@@ -22,8 +30,15 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.exchangerates.CurrencyExchangeAPI.contracts.requests.ConversionRequestDTO;
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.BatchConversionDTO;
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ConversionResultDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.CurrencyConversionDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ValueConversionDTO;
+import com.exchangerates.CurrencyExchangeAPI.domain.ApiKeyAccessDecision;
+import com.exchangerates.CurrencyExchangeAPI.domain.ApiKeyAccessDecision.Result;
+import com.exchangerates.CurrencyExchangeAPI.exception.BusinessException;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyAccessService;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyService;
 
 import io.restassured.http.ContentType;
@@ -35,6 +50,8 @@ class CurrencyControllerTest {
     @Autowired private MockMvc mockMvc;
 
     @MockitoBean private ICurrencyService currencyService;
+
+    @MockitoBean private IApiKeyAccessService apiKeyAccessService;
  
     @Test
     void givenValidSourceAndTargetCurrencies_FetchExchangeRates_ShouldSucceed() {
@@ -164,7 +181,7 @@ class CurrencyControllerTest {
         var amount = 100.0;
 
         when(currencyService.convertCurrencyValues(baseCurrency, Arrays.asList(targetCurrencies), amount))
-            .thenReturn(new ValueConversionDTO(baseCurrency, amount, Map.of("EUR", amount * USD_TO_EUR_RATE)));
+            .thenReturn(new ValueConversionDTO(baseCurrency, amount, now, Map.of("EUR", amount * USD_TO_EUR_RATE), false, null));
 
         // Act & Assert
         given().
@@ -264,10 +281,10 @@ class CurrencyControllerTest {
         var amount = 100.0;
 
         when(currencyService.convertCurrencyValues(baseCurrency, Arrays.asList(targetCurrencies.split(",")), amount))
-            .thenReturn(new ValueConversionDTO(baseCurrency, amount, 
+            .thenReturn(new ValueConversionDTO(baseCurrency, amount, now,
                 Map.of("EUR", amount * USD_TO_EUR_RATE,
                        "CHF", amount * USD_TO_CHF_RATE,
-                       "JPY", amount * USD_TO_JPY_RATE)));
+                       "JPY", amount * USD_TO_JPY_RATE), false, null));
 
         // Act & Assert
         given().
@@ -289,12 +306,170 @@ class CurrencyControllerTest {
                  "conversions.size()", equalTo(3));
     }
 
+    @Test
+    void givenValidSourceAndTargetCurrencies_FetchExchangeRatesAsync_ShouldSucceed() {
+        // Arrange
+        var baseCurrency = "USD";
+        var targetCurrency = "EUR";
+
+        when(currencyService.getCurrencyConversionRatesAsync(baseCurrency, Optional.of(targetCurrency)))
+            .thenReturn(CompletableFuture.completedFuture(usdToEur));
+
+        // Act & Assert
+        given().
+            mockMvc(mockMvc).
+            contentType(ContentType.JSON).
+            param("from", baseCurrency).
+            param("to", targetCurrency).
+        when().
+            async().
+            get("/api/v1/currency/rate/async").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            and().
+            body("base", is(baseCurrency),
+                  "targets.EUR", is((float) USD_TO_EUR_RATE),
+                  "targets.size()", equalTo(1));
+    }
+
+    @Test
+    void givenFailingExternalAPI_ConvertCurrencyAsync_ShouldReturnBadGateway() {
+        // Arrange
+        var baseCurrency = "USD";
+        var targetCurrencies = "EUR";
+        var amount = 100.0;
+
+        when(currencyService.convertCurrencyValuesAsync(baseCurrency, Arrays.asList(targetCurrencies), amount))
+            .thenReturn(CompletableFuture.failedFuture(new ResponseStatusException(HttpStatusCode.valueOf(502), "External API failed")));
+
+        // Act & Assert
+        given().
+            mockMvc(mockMvc).
+            contentType(ContentType.JSON).
+            param("from", baseCurrency).
+            param("to", targetCurrencies).
+            param("value", amount).
+        when().
+            async().
+            get("/api/v1/currency/convert/async").
+        then().
+            statusCode(HttpStatus.SC_BAD_GATEWAY).
+            and().
+            body("message", is(notNullValue()));
+    }
+
+    @Test
+    void givenValidConversions_ConvertCurrencyBatch_ShouldReturnConversionsInOrder() {
+        // Arrange
+        var conversions = List.of(
+            new ConversionRequestDTO("USD", "EUR", 100.0),
+            new ConversionRequestDTO("USD", "CHF", 3.0));
+
+        when(currencyService.convertCurrencyValuesBatch(conversions))
+            .thenReturn(new BatchConversionDTO(List.of(
+                new ConversionResultDTO("USD", "EUR", 100.0, USD_TO_EUR_RATE, 100.0 * USD_TO_EUR_RATE, now, false, null, null),
+                new ConversionResultDTO("USD", "CHF", 3.0, USD_TO_CHF_RATE, 3.0 * USD_TO_CHF_RATE, now, false, null, null))));
+
+        // Act & Assert
+        given().
+            mockMvc(mockMvc).
+            contentType(ContentType.JSON).
+            header("X-API-KEY", API_KEY).
+            body(conversions).
+        when().
+            post("/api/v1/currency/convert/batch").
+        then().
+            statusCode(HttpStatus.SC_OK).
+            and().
+            body("conversions.size()", equalTo(2),
+                 "conversions[0].to", is("EUR"),
+                 "conversions[0].value", is((float) (100.0 * USD_TO_EUR_RATE)),
+                 "conversions[1].to", is("CHF"),
+                 "conversions[1].value", is((float) (3.0 * USD_TO_CHF_RATE)));
+
+        // small batches were already charged by the rate limiting filter
+        verifyNoInteractions(apiKeyAccessService);
+    }
+
+    @Test
+    void givenBatchOverRateLimit_ConvertCurrencyBatch_ShouldReturnTooManyRequests() {
+        // Arrange
+        // weighs 3 requests, 1 of them charged by the rate limiting filter
+        var conversions = Collections.nCopies(250, new ConversionRequestDTO("USD", "EUR", 1.0));
+
+        when(apiKeyAccessService.checkAccess(API_KEY, 2))
+            .thenReturn(new ApiKeyAccessDecision(Result.RATE_LIMITED, 1500));
+
+        // Act & Assert
+        given().
+            mockMvc(mockMvc).
+            contentType(ContentType.JSON).
+            header("X-API-KEY", API_KEY).
+            body(conversions).
+        when().
+            post("/api/v1/currency/convert/batch").
+        then().
+            statusCode(HttpStatus.SC_TOO_MANY_REQUESTS).
+            and().
+            header("Retry-After", "2").
+            body("message", is(notNullValue()));
+
+        verify(currencyService, never()).convertCurrencyValuesBatch(anyList());
+    }
+
+    @Test
+    void givenInvalidBatch_ConvertCurrencyBatch_ShouldReturnBadRequestWithoutCharging() {
+        // Arrange
+        var conversions = Collections.nCopies(250, new ConversionRequestDTO("USD", "XXX", 1.0));
+
+        doThrow(new BusinessException("Conversion 0: invalid target currency - does not exist"))
+            .when(currencyService).validateConversionsBatch(conversions);
+
+        // Act & Assert
+        given().
+            mockMvc(mockMvc).
+            contentType(ContentType.JSON).
+            header("X-API-KEY", API_KEY).
+            body(conversions).
+        when().
+            post("/api/v1/currency/convert/batch").
+        then().
+            statusCode(HttpStatus.SC_BAD_REQUEST).
+            and().
+            body("message", is(notNullValue()));
+
+        verifyNoInteractions(apiKeyAccessService);
+        verify(currencyService, never()).convertCurrencyValuesBatch(anyList());
+    }
+
+    @Test
+    void givenTooManyConversions_ConvertCurrencyBatch_ShouldReturnBadRequest() {
+        // Arrange
+        var conversions = Collections.nCopies(1001, new ConversionRequestDTO("USD", "EUR", 1.0));
+
+        // Act & Assert
+        given().
+            mockMvc(mockMvc).
+            contentType(ContentType.JSON).
+            header("X-API-KEY", API_KEY).
+            body(conversions).
+        when().
+            post("/api/v1/currency/convert/batch").
+        then().
+            statusCode(HttpStatus.SC_BAD_REQUEST).
+            and().
+            body("message", is(notNullValue()));
+
+        verifyNoInteractions(apiKeyAccessService, currencyService);
+    }
+
     // static responses from CurrencyService for use in test expectations
     private static final Instant now = Instant.now();
+    private static final String API_KEY = "api-key";
     private static final double USD_TO_EUR_RATE = 2.0;
     private static final double USD_TO_CHF_RATE = 10.0;
     private static final double USD_TO_JPY_RATE = 100.0;
-    private static final CurrencyConversionDTO usdToEur = new CurrencyConversionDTO("USD", now, Map.of("EUR", USD_TO_EUR_RATE));
-    private static final CurrencyConversionDTO usdToAll = new CurrencyConversionDTO("USD", now, Map.of("EUR", USD_TO_EUR_RATE, "CHF", 10.0, "JPY", 100.0));
+    private static final CurrencyConversionDTO usdToEur = new CurrencyConversionDTO("USD", now, Map.of("EUR", USD_TO_EUR_RATE), false, null);
+    private static final CurrencyConversionDTO usdToAll = new CurrencyConversionDTO("USD", now, Map.of("EUR", USD_TO_EUR_RATE, "CHF", 10.0, "JPY", 100.0), false, null);
 
 }
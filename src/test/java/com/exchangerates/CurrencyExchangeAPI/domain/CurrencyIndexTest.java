@@ -0,0 +1,60 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CurrencyIndexTest {
+
+    @Test
+    void givenUnsortedCurrencies_IdsShouldFollowAlphabeticalOrder() {
+        // Act
+        var index = CurrencyIndex.of(List.of("USD", "EUR", "JPY", "CHF"));
+
+        // Assert
+        assertEquals(4, index.size());
+        assertEquals(0, index.idOf("CHF"));
+        assertEquals(1, index.idOf("EUR"));
+        assertEquals(2, index.idOf("JPY"));
+        assertEquals(3, index.idOf("USD"));
+        assertEquals("JPY", index.codeOf(2));
+    }
+
+    @Test
+    void givenDuplicateCurrencies_TheyShouldBeIndexedOnce() {
+        // Act
+        var index = CurrencyIndex.of(List.of("USD", "EUR", "USD"));
+
+        // Assert
+        assertEquals(2, index.size());
+        assertEquals(0, index.idOf("EUR"));
+        assertEquals(1, index.idOf("USD"));
+    }
+
+    @Test
+    void givenUnknownCurrency_IdOfShouldReturnUnknown() {
+        // Arrange
+        var index = CurrencyIndex.of(List.of("USD", "EUR"));
+
+        // Act & Assert
+        assertEquals(CurrencyIndex.UNKNOWN, index.idOf("GBP"));
+        assertEquals(CurrencyIndex.UNKNOWN, index.idOf(null));
+    }
+
+    @Test
+    void givenTextEndingInIndexedCode_CodeOfShouldReturnTheIndexedCode() {
+        // Arrange
+        var index = CurrencyIndex.of(List.of("USD", "EUR", "JPY"));
+        var eur = index.codeOf(index.idOf("EUR"));
+
+        // Act & Assert
+        assertSame(eur, index.codeOf("USDEUR", 3));
+        assertEquals("USD", index.codeOf("USD", 0));
+        assertNull(index.codeOf("USDGBP", 3));
+        assertNull(index.codeOf("USDEURO", 3));
+        assertNull(index.codeOf("USDEU", 3));
+    }
+}
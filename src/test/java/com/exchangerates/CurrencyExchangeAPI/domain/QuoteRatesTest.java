@@ -0,0 +1,86 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class QuoteRatesTest {
+
+    @Test
+    void givenRatesPutOutOfOrder_BuilderShouldSortThemByCode() {
+        // Act
+        var rates =
+                QuoteRates.builder(1)
+                        .put("USD", 1.08)
+                        .put("CHF", 0.95)
+                        .put("JPY", 161.5)
+                        .put("EUR", 1.0)
+                        .build();
+
+        // Assert
+        var codes = new ArrayList<String>();
+        rates.forEachRate((code, rate) -> codes.add(code));
+        assertEquals(List.of("CHF", "EUR", "JPY", "USD"), codes);
+        assertEquals(List.of("CHF", "EUR", "JPY", "USD"), new ArrayList<>(rates.keySet()));
+        assertEquals(4, rates.size());
+        assertEquals(161.5, rates.rate("JPY"));
+    }
+
+    @Test
+    void givenDuplicateCode_BuilderShouldKeepTheLatestRate() {
+        // Act
+        var rates =
+                QuoteRates.builder(2).put("EUR", 0.91).put("GBP", 0.79).put("EUR", 0.92).build();
+
+        // Assert
+        assertEquals(2, rates.size());
+        assertEquals(0.92, rates.rate("EUR"));
+        assertEquals(0.92, rates.get("EUR"));
+    }
+
+    @Test
+    void givenUnknownCode_RateShouldReturnNaNAndGetNull() {
+        // Arrange
+        var rates = QuoteRates.builder(1).put("EUR", 0.92).build();
+
+        // Act & Assert
+        assertTrue(Double.isNaN(rates.rate("GBP")));
+        assertNull(rates.get("GBP"));
+        assertNull(rates.get(1));
+        assertFalse(rates.containsKey("GBP"));
+        assertTrue(rates.containsKey("EUR"));
+    }
+
+    @Test
+    void givenMapWithNullRates_OfShouldLeaveThemOut() {
+        // Arrange
+        var source = new HashMap<String, Double>();
+        source.put("EUR", 0.92);
+        source.put("GBP", null);
+
+        // Act
+        var rates = QuoteRates.of(source);
+
+        // Assert
+        assertEquals(Map.of("EUR", 0.92), rates);
+        assertSame(rates, QuoteRates.of(rates));
+    }
+
+    @Test
+    void givenNoRates_BuilderShouldReturnAnEmptyMap() {
+        // Act
+        var rates = QuoteRates.builder(0).build();
+
+        // Assert
+        assertTrue(rates.isEmpty());
+        assertTrue(Double.isNaN(rates.rate("EUR")));
+    }
+}
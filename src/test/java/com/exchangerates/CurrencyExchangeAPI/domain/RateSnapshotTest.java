@@ -0,0 +1,94 @@
+package com.exchangerates.CurrencyExchangeAPI.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class RateSnapshotTest {
+    private static final double DELTA = 1e-9;
+    private static final Instant TIMESTAMP = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final CurrencyIndex index = CurrencyIndex.of(List.of("EUR", "GBP", "JPY", "USD"));
+
+    @Test
+    void givenPivotRates_RatesBetweenOtherCurrenciesShouldBeDerivedFromReciprocals() {
+        // Arrange
+        var pivotRates = QuoteRates.of(Map.of("EUR", 0.8, "GBP", 0.5, "JPY", 150.0));
+
+        // Act
+        var snapshot = RateSnapshot.fromPivotRates(index, "USD", pivotRates, TIMESTAMP, TIMESTAMP);
+
+        // Assert
+        int eur = index.idOf("EUR");
+        int gbp = index.idOf("GBP");
+        int jpy = index.idOf("JPY");
+        int usd = index.idOf("USD");
+        assertEquals(0.8, snapshot.rate(usd, eur), DELTA);
+        assertEquals(1.25, snapshot.rate(eur, usd), DELTA);
+        assertEquals(0.625, snapshot.rate(eur, gbp), DELTA);
+        assertEquals(1.6, snapshot.rate(gbp, eur), DELTA);
+        assertEquals(300.0, snapshot.rate(gbp, jpy), DELTA);
+        assertEquals(1.0, snapshot.rate(jpy, jpy), DELTA);
+        // P -> P is implied, even though it is not in the pivot's rates
+        assertEquals(1.0, snapshot.rate(usd, usd), DELTA);
+    }
+
+    @Test
+    void givenCurrencyMissingFromPivotRates_ItsRatesShouldBeNaN() {
+        // Arrange
+        var pivotRates = new HashMap<String, Double>();
+        pivotRates.put("EUR", 0.8);
+        pivotRates.put("GBP", null);
+
+        // Act
+        var snapshot = RateSnapshot.fromPivotRates(index, "USD", pivotRates, TIMESTAMP, TIMESTAMP);
+
+        // Assert
+        int eur = index.idOf("EUR");
+        int gbp = index.idOf("GBP");
+        int jpy = index.idOf("JPY");
+        assertTrue(snapshot.isQuoted(eur));
+        assertFalse(snapshot.isQuoted(gbp));
+        assertFalse(snapshot.isQuoted(jpy));
+        assertFalse(snapshot.isQuoted(CurrencyIndex.UNKNOWN));
+        assertTrue(Double.isNaN(snapshot.rate(eur, gbp)));
+        assertTrue(Double.isNaN(snapshot.rate(jpy, eur)));
+    }
+
+    @Test
+    void givenPivotRatesForUnindexedCurrencies_TheyShouldBeIgnored() {
+        // Arrange
+        var pivotRates = QuoteRates.of(Map.of("EUR", 0.8, "CHF", 0.9));
+
+        // Act
+        var snapshot = RateSnapshot.fromPivotRates(index, "USD", pivotRates, TIMESTAMP, TIMESTAMP);
+
+        // Assert
+        assertEquals(CurrencyIndex.UNKNOWN, index.idOf("CHF"));
+        assertEquals(0.8, snapshot.rate(index.idOf("USD"), index.idOf("EUR")), DELTA);
+    }
+
+    @Test
+    void givenSnapshotCachedAgain_WithCachedAtShouldKeepItsRates() {
+        // Arrange
+        var pivotRates = QuoteRates.of(Map.of("EUR", 0.8));
+        var snapshot = RateSnapshot.fromPivotRates(index, "USD", pivotRates, TIMESTAMP, TIMESTAMP);
+        var cachedAt = TIMESTAMP.plusSeconds(60);
+
+        // Act
+        var recached = snapshot.withCachedAt(cachedAt);
+
+        // Assert
+        assertEquals(cachedAt, recached.getCachedAt());
+        assertEquals(TIMESTAMP, recached.getTimestamp());
+        assertSame(index, recached.getIndex());
+        assertEquals(1.25, recached.rate(index.idOf("EUR"), index.idOf("USD")), DELTA);
+    }
+}
@@ -0,0 +1,88 @@
+package com.exchangerates.CurrencyExchangeAPI.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Base64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ApiKeyFormatTest {
+    ApiKeyFormat apiKeyFormat;
+
+    private static final String MAC_SECRET = "test-secret";
+    private static final String LEGACY_API_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @BeforeEach
+    void setUp() {
+        apiKeyFormat = new ApiKeyFormat(MAC_SECRET, true);
+    }
+
+    @Test
+    void givenGeneratedApiKey_ItShouldBeWellFormed() {
+        // Act
+        var apiKey = apiKeyFormat.generate();
+
+        // Assert
+        assertTrue(apiKey.startsWith(ApiKeyFormat.PREFIX));
+        assertTrue(apiKeyFormat.isWellFormed(apiKey));
+        assertNotEquals(apiKey, apiKeyFormat.generate());
+    }
+
+    @Test
+    void givenTamperedApiKey_ItShouldNotBeWellFormed() {
+        // Arrange
+        var apiKey = apiKeyFormat.generate();
+        var secretIndex = ApiKeyFormat.PREFIX.length() + 20;
+        var tampered =
+                apiKey.substring(0, secretIndex)
+                        + (apiKey.charAt(secretIndex) == 'A' ? 'B' : 'A')
+                        + apiKey.substring(secretIndex + 1);
+
+        // Act & Assert
+        assertFalse(apiKeyFormat.isWellFormed(tampered));
+    }
+
+    @Test
+    void givenApiKeySignedWithOtherSecret_ItShouldNotBeWellFormed() {
+        // Arrange
+        var apiKey = new ApiKeyFormat("other-secret", true).generate();
+
+        // Act & Assert
+        assertFalse(apiKeyFormat.isWellFormed(apiKey));
+    }
+
+    @Test
+    void givenMalformedApiKeys_TheyShouldNotBeWellFormed() {
+        // Act & Assert
+        assertFalse(apiKeyFormat.isWellFormed("not-an-api-key"));
+        assertFalse(apiKeyFormat.isWellFormed(ApiKeyFormat.PREFIX + "too-short"));
+        assertFalse(apiKeyFormat.isWellFormed(ApiKeyFormat.PREFIX + "!".repeat(62)));
+        assertFalse(apiKeyFormat.isWellFormed("!".repeat(44)));
+    }
+
+    @Test
+    void givenLegacyApiKey_ItShouldOnlyBeWellFormedWhileLegacyKeysAreAccepted() {
+        // Arrange
+        var strictFormat = new ApiKeyFormat(MAC_SECRET, false);
+
+        // Act & Assert
+        assertTrue(apiKeyFormat.isWellFormed(LEGACY_API_KEY));
+        assertFalse(strictFormat.isWellFormed(LEGACY_API_KEY));
+    }
+
+    @Test
+    void givenApiKey_KeyIdShouldOnlyBeExtractedFromCurrentFormat() {
+        // Arrange
+        var apiKey = apiKeyFormat.generate();
+
+        // Act
+        var keyId = apiKeyFormat.keyId(apiKey);
+
+        // Assert
+        assertEquals(apiKey.substring(ApiKeyFormat.PREFIX.length(), 13), keyId.get());
+        assertTrue(apiKeyFormat.keyId(LEGACY_API_KEY).isEmpty());
+    }
+}
@@ -0,0 +1,70 @@
+package com.exchangerates.CurrencyExchangeAPI.serialization;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.exchangerates.CurrencyExchangeAPI.configuration.RedisConfig;
+import com.exchangerates.CurrencyExchangeAPI.domain.CachedRates;
+import java.time.Instant;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * Compares payload size and encode/decode cost of the binary format against the JSON serializer,
+ * for a full (~170 currencies) rates snapshot. Not run by default - run it with:
+ *   mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class CompactRedisSerializerBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    private static final CachedRates snapshot =
+            new CachedRates(
+                    CompactRedisSerializerTest.snapshotRates(170), Instant.now(), Instant.now());
+
+    @Test
+    void compareBinaryAndJsonSerializers() {
+        var json = measure("json", RedisConfig.jsonSerializer());
+        var binary =
+                measure(
+                        "binary",
+                        new CompactRedisSerializer(
+                                RedisConfig.jsonSerializer(), new RatesBinaryCodec(-1), true));
+        var compressed =
+                measure(
+                        "binary+deflate",
+                        new CompactRedisSerializer(
+                                RedisConfig.jsonSerializer(), new RatesBinaryCodec(0), true));
+
+        assertTrue(binary.size() < json.size());
+        assertTrue(compressed.size() < binary.size());
+    }
+
+    private static Result measure(String name, RedisSerializer<Object> serializer) {
+        var bytes = serializer.serialize(snapshot);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            serializer.deserialize(serializer.serialize(snapshot));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            bytes = serializer.serialize(snapshot);
+        }
+        long encodeNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            serializer.deserialize(bytes);
+        }
+        long decodeNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        var result = new Result(bytes.length, encodeNanos, decodeNanos);
+        System.out.printf(
+                "%-15s size = %6d bytes, encode = %7d ns/op, decode = %7d ns/op%n",
+                name, result.size(), result.encodeNanos(), result.decodeNanos());
+        return result;
+    }
+
+    private record Result(int size, long encodeNanos, long decodeNanos) {}
+}
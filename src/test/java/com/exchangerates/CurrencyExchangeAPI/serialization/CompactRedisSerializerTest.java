@@ -0,0 +1,155 @@
+package com.exchangerates.CurrencyExchangeAPI.serialization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.exchangerates.CurrencyExchangeAPI.configuration.RedisConfig;
+import com.exchangerates.CurrencyExchangeAPI.domain.CachedRates;
+import com.exchangerates.CurrencyExchangeAPI.domain.QuoteRates;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+class CompactRedisSerializerTest {
+    private final CompactRedisSerializer serializer =
+            new CompactRedisSerializer(
+                    RedisConfig.jsonSerializer(), new RatesBinaryCodec(512), true);
+
+    @Test
+    void givenCachedRates_SerializeShouldRoundTripInBinary() {
+        // Arrange
+        var rates = new CachedRates(Map.of("EUR", 0.91, "JPY", 151.2), now, now.plusSeconds(1));
+
+        // Act
+        var bytes = serializer.serialize(rates);
+
+        // Assert
+        assertEquals(RatesBinaryCodec.MAGIC, bytes[0]);
+        assertEquals(0, bytes[3]); // too small to be compressed
+        assertEquals(rates, serializer.deserialize(bytes));
+        assertInstanceOf(
+                QuoteRates.class, ((CachedRates) serializer.deserialize(bytes)).getRates());
+    }
+
+    @Test
+    void givenCachedRatesWithNullFields_SerializeShouldRoundTrip() {
+        // Arrange
+        var rates = new CachedRates(null, now, null);
+
+        // Act & Assert
+        assertEquals(rates, serializer.deserialize(serializer.serialize(rates)));
+    }
+
+    @Test
+    void givenLargeSnapshot_SerializeShouldCompress() {
+        // Arrange
+        var rates = new CachedRates(snapshotRates(170), now, now);
+
+        // Act
+        var bytes = serializer.serialize(rates);
+
+        // Assert
+        assertEquals(RatesBinaryCodec.FLAG_COMPRESSED, bytes[3]);
+        assertEquals(rates, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void givenCurrencySet_SerializeShouldRoundTripInBinary() {
+        // Arrange
+        var currencies = Set.of("USD", "EUR", "JPY");
+
+        // Act
+        var bytes = serializer.serialize(currencies);
+
+        // Assert
+        assertEquals(RatesBinaryCodec.MAGIC, bytes[0]);
+        assertEquals(currencies, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void givenOtherValue_SerializeShouldFallBackToJson() {
+        // Arrange
+        var value = new HashMap<>(Map.of("EUR", "Euro"));
+
+        // Act
+        var bytes = serializer.serialize(value);
+
+        // Assert
+        assertNotEquals(RatesBinaryCodec.MAGIC, bytes[0]);
+        assertEquals(value, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void givenValueCachedAsJson_DeserializeShouldReadIt() {
+        // Arrange - written before the binary format was enabled
+        var rates = new CachedRates(Map.of("EUR", 0.91), now, now);
+        var jsonBytes = RedisConfig.jsonSerializer().serialize(rates);
+
+        // Act & Assert
+        assertEquals(rates, serializer.deserialize(jsonBytes));
+    }
+
+    @Test
+    void givenParsedQuotesCachedAsJson_DeserializeShouldReadThem() {
+        // Arrange - rates parsed from the external API are a QuoteRates
+        var rates = new CachedRates(QuoteRates.of(Map.of("EUR", 0.91, "JPY", 151.2)), now, now);
+        var jsonBytes = RedisConfig.jsonSerializer().serialize(rates);
+
+        // Act & Assert
+        assertEquals(rates, serializer.deserialize(jsonBytes));
+    }
+
+    @Test
+    void givenBinaryDisabled_SerializeShouldWriteJsonAndStillReadBinary() {
+        // Arrange
+        var jsonOnlySerializer =
+                new CompactRedisSerializer(
+                        RedisConfig.jsonSerializer(), new RatesBinaryCodec(512), false);
+        var rates = new CachedRates(Map.of("EUR", 0.91), now, now);
+
+        // Act
+        var bytes = jsonOnlySerializer.serialize(rates);
+
+        // Assert
+        assertNotEquals(RatesBinaryCodec.MAGIC, bytes[0]);
+        assertEquals(rates, jsonOnlySerializer.deserialize(serializer.serialize(rates)));
+    }
+
+    @Test
+    void givenNewerFormatVersion_DeserializeShouldReturnNull() {
+        // Arrange
+        var bytes = serializer.serialize(new CachedRates(Map.of("EUR", 0.91), now, now));
+        bytes[1] = RatesBinaryCodec.VERSION + 1;
+
+        // Act & Assert
+        assertNull(serializer.deserialize(bytes));
+    }
+
+    @Test
+    void givenTruncatedBinaryValue_DeserializeShouldThrow() {
+        // Arrange
+        var bytes = serializer.serialize(new CachedRates(snapshotRates(170), now, now));
+        var truncated = Arrays.copyOf(bytes, bytes.length / 2);
+
+        // Act & Assert
+        assertThrows(SerializationException.class, () -> serializer.deserialize(truncated));
+    }
+
+    static Map<String, Double> snapshotRates(int size) {
+        var rates = new HashMap<String, Double>();
+        for (int i = 0; i < size; i++) {
+            var code = "" + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26) + 'X';
+            rates.put(code, 0.5 + i * 1.37);
+        }
+        return rates;
+    }
+
+    private static final Instant now = Instant.now();
+}
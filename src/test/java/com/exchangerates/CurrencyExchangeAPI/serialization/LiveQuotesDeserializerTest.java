@@ -0,0 +1,94 @@
+package com.exchangerates.CurrencyExchangeAPI.serialization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyRatesResponse;
+import com.exchangerates.CurrencyExchangeAPI.domain.QuoteRates;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class LiveQuotesDeserializerTest {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void givenLiveResponse_QuotesShouldBeKeyedByTargetCurrency() throws Exception {
+        // Arrange
+        var body =
+                "{\"success\":true,\"source\":\"USD\","
+                        + "\"quotes\":{\"USDJPY\":151.2,\"USDEUR\":0.92,\"USDGBP\":1}}";
+
+        // Act
+        var response = objectMapper.readValue(body, CurrencyRatesResponse.class);
+
+        // Assert
+        var quotes = assertInstanceOf(QuoteRates.class, response.getQuotes());
+        assertEquals(Map.of("EUR", 0.92, "GBP", 1.0, "JPY", 151.2), quotes);
+        assertEquals(0.92, quotes.rate("EUR"));
+        assertTrue(Double.isNaN(quotes.rate("CHF")));
+        // kept in code order
+        assertEquals(List.of("EUR", "GBP", "JPY"), List.copyOf(quotes.keySet()));
+    }
+
+    @Test
+    void givenSourceCurrencyInTargetCode_TargetShouldBeSlicedByPosition() throws Exception {
+        // Arrange
+        var body = "{\"success\":true,\"source\":\"USD\",\"quotes\":{\"USDUSD\":1.0}}";
+
+        // Act
+        var response = objectMapper.readValue(body, CurrencyRatesResponse.class);
+
+        // Assert
+        assertEquals(Map.of("USD", 1.0), response.getQuotes());
+    }
+
+    @Test
+    void givenQuotesOfSameTarget_TargetShouldResolveToSameCode() {
+        // Act
+        var fromUsd = LiveQuotesDeserializer.targetCurrency("USDEUR");
+        var fromGbp = LiveQuotesDeserializer.targetCurrency("GBPEUR");
+
+        // Assert
+        assertEquals("EUR", fromUsd);
+        assertSame(fromUsd, fromGbp);
+    }
+
+    @Test
+    void givenTargetOutsideIso4217_TargetShouldStillBeSliced() {
+        // Act & Assert
+        assertEquals("BTC", LiveQuotesDeserializer.targetCurrency("USDBTC"));
+        assertEquals("EU", LiveQuotesDeserializer.targetCurrency("EU"));
+    }
+
+    @Test
+    void givenNullRate_QuoteShouldBeLeftOut() throws Exception {
+        // Arrange
+        var body =
+                "{\"success\":true,\"source\":\"USD\","
+                        + "\"quotes\":{\"USDEUR\":null,\"USDJPY\":151.2}}";
+
+        // Act
+        var response = objectMapper.readValue(body, CurrencyRatesResponse.class);
+
+        // Assert
+        assertEquals(Map.of("JPY", 151.2), response.getQuotes());
+    }
+
+    @Test
+    void givenNonNumericRate_ReadShouldFail() {
+        // Arrange
+        var body = "{\"success\":true,\"source\":\"USD\",\"quotes\":{\"USDEUR\":\"abc\"}}";
+
+        // Act & Assert
+        assertThrows(
+                JsonMappingException.class,
+                () -> objectMapper.readValue(body, CurrencyRatesResponse.class));
+    }
+}
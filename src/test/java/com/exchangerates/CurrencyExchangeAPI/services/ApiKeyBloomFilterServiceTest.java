@@ -0,0 +1,214 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.exchangerates.CurrencyExchangeAPI.repository.UserRepository;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyDigest;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class ApiKeyBloomFilterServiceTest {
+    @Mock UserRepository userRepository;
+
+    @Mock StringRedisTemplate redisTemplate;
+
+    SimpleMeterRegistry meterRegistry;
+
+    ApiKeyFormat apiKeyFormat = new ApiKeyFormat("test-secret", true);
+
+    ApiKeyBloomFilterService apiKeyBloomFilter;
+
+    private static final String ISSUED_API_KEY = "issued-api-key";
+    private static final String RANDOM_API_KEY = "random-api-key";
+    private static final String LEGACY_API_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        apiKeyBloomFilter = newFilter(true);
+    }
+
+    @Test
+    void givenIssuedApiKeys_AfterBuildOnlyIssuedApiKeysShouldPass() {
+        // Arrange
+        when(userRepository.findAllApiKeyDigests(any(Pageable.class)))
+                .thenReturn(
+                        new SliceImpl<>(
+                                List.of(
+                                        ApiKeyDigest.of(ISSUED_API_KEY),
+                                        ApiKeyDigest.of("other-api-key"))));
+
+        // Act
+        apiKeyBloomFilter.buildOnStartup();
+
+        // Assert
+        assertTrue(apiKeyBloomFilter.mightBeIssued(ISSUED_API_KEY));
+        assertTrue(apiKeyBloomFilter.mightBeIssued("other-api-key"));
+        assertFalse(apiKeyBloomFilter.mightBeIssued(RANDOM_API_KEY));
+        assertEquals(2.0, checkCount("passed"));
+        assertEquals(1.0, checkCount("rejected"));
+    }
+
+    @Test
+    void givenApiKeyDigestsBeingBackfilled_FilterShouldNotBeBuilt() {
+        // Arrange
+        when(userRepository.existsByApiKeyDigestIsNullAndApiKeyIsNotNull()).thenReturn(true);
+
+        // Act
+        apiKeyBloomFilter.buildOnStartup();
+
+        // Assert
+        assertTrue(apiKeyBloomFilter.mightBeIssued(RANDOM_API_KEY));
+        verify(userRepository, never()).findAllApiKeyDigests(any(Pageable.class));
+    }
+
+    @Test
+    void givenFilterNotBuilt_EveryApiKeyShouldPass() {
+        // Act & Assert
+        assertTrue(apiKeyBloomFilter.mightBeIssued(RANDOM_API_KEY));
+        assertEquals(0.0, checkCount("rejected"));
+    }
+
+    @Test
+    void givenApiKeyAddedOnOtherInstance_PublishedAdditionShouldMakeItPass() {
+        // Arrange
+        when(userRepository.findAllApiKeyDigests(any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of()));
+        var otherInstance = newFilter(true);
+        apiKeyBloomFilter.buildOnStartup();
+        var message = ArgumentCaptor.forClass(String.class);
+
+        // Act
+        otherInstance.addIssuedAPIKey(ISSUED_API_KEY);
+        verify(redisTemplate)
+                .convertAndSend(
+                        eq(ApiKeyBloomFilterService.API_KEY_ADDITION_CHANNEL), message.capture());
+        apiKeyBloomFilter.applyPublishedAddition(message.getValue());
+
+        // Assert
+        assertFalse(message.getValue().contains(ISSUED_API_KEY));
+        assertTrue(apiKeyBloomFilter.mightBeIssued(ISSUED_API_KEY));
+        assertFalse(apiKeyBloomFilter.mightBeIssued(RANDOM_API_KEY));
+    }
+
+    @Test
+    void givenLostAdditionFoundInSharedBitmap_ApiKeyShouldPass() {
+        // Arrange
+        when(userRepository.findAllApiKeyDigests(any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of()));
+        apiKeyBloomFilter.buildOnStartup();
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(Collections.nCopies(hashCount(), true));
+
+        // Act
+        boolean mightBeIssued = apiKeyBloomFilter.mightBeIssued(apiKeyFormat.generate());
+
+        // Assert
+        assertTrue(mightBeIssued);
+        assertEquals(1.0, checkCount("passed"));
+        assertEquals(0.0, checkCount("rejected"));
+        assertTrue(estimatedFalsePositiveRate() > 0.0);
+    }
+
+    @Test
+    void givenMissingApiKeyWithoutValidMac_ItShouldBeRejectedWithoutCheckingSharedBitmap() {
+        // Arrange
+        when(userRepository.findAllApiKeyDigests(any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of()));
+        apiKeyBloomFilter.buildOnStartup();
+        var apiKey = apiKeyFormat.generate();
+        var secretIndex = ApiKeyFormat.PREFIX.length() + 20;
+        var forgedApiKey =
+                apiKey.substring(0, secretIndex)
+                        + (apiKey.charAt(secretIndex) == 'A' ? 'B' : 'A')
+                        + apiKey.substring(secretIndex + 1);
+
+        // Act & Assert
+        assertFalse(apiKeyBloomFilter.mightBeIssued(LEGACY_API_KEY));
+        assertFalse(apiKeyBloomFilter.mightBeIssued(forgedApiKey));
+        assertFalse(apiKeyBloomFilter.mightBeIssued(RANDOM_API_KEY));
+        assertEquals(3.0, checkCount("rejected"));
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void givenAdditionFromDifferentlySizedFilter_ItShouldBeIgnored() {
+        // Arrange
+        when(userRepository.findAllApiKeyDigests(any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of()));
+        apiKeyBloomFilter.buildOnStartup();
+
+        // Act
+        apiKeyBloomFilter.applyPublishedAddition("64:3|1,2,3");
+
+        // Assert
+        assertEquals(0.0, estimatedFalsePositiveRate());
+    }
+
+    @Test
+    void givenDisabledFilter_EveryApiKeyShouldPassWithoutBuilding() {
+        // Arrange
+        apiKeyBloomFilter = newFilter(false);
+
+        // Act
+        apiKeyBloomFilter.buildOnStartup();
+
+        // Assert
+        assertTrue(apiKeyBloomFilter.mightBeIssued(RANDOM_API_KEY));
+        verify(userRepository, never()).findAllApiKeyDigests(any(Pageable.class));
+    }
+
+    @Test
+    void givenExpectedKeysAndFalsePositiveRate_FilterShouldBeOptimallySized() {
+        // Act
+        long bitCount = ApiKeyBloomFilterService.optimalBitCount(1_000_000, 0.01);
+        int hashCount = ApiKeyBloomFilterService.optimalHashCount(1_000_000, bitCount);
+
+        // Assert
+        assertEquals(9585059, bitCount);
+        assertEquals(7, hashCount);
+    }
+
+    private ApiKeyBloomFilterService newFilter(boolean enabled) {
+        return new ApiKeyBloomFilterService(
+                userRepository, redisTemplate, apiKeyFormat, meterRegistry, enabled, 1000, 0.01);
+    }
+
+    private static int hashCount() {
+        return ApiKeyBloomFilterService.optimalHashCount(
+                1000, ApiKeyBloomFilterService.optimalBitCount(1000, 0.01));
+    }
+
+    private double checkCount(String result) {
+        return meterRegistry
+                .get("auth.bloom-filter.checks")
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+    private double estimatedFalsePositiveRate() {
+        return meterRegistry.get("auth.bloom-filter.estimated-false-positive-rate").gauge().value();
+    }
+}
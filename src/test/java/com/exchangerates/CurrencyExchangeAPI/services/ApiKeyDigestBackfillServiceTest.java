@@ -0,0 +1,164 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.exchangerates.CurrencyExchangeAPI.entities.User;
+import com.exchangerates.CurrencyExchangeAPI.repository.UserRepository;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyDigest;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyFormat;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyBloomFilterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class ApiKeyDigestBackfillServiceTest {
+    @Mock UserRepository userRepository;
+
+    @Mock IApiKeyBloomFilterService apiKeyBloomFilter;
+
+    @Mock StringRedisTemplate redisTemplate;
+
+    ApiKeyDigestBackfillService backfillService;
+
+    @BeforeEach
+    void setUp() {
+        backfillService = new ApiKeyDigestBackfillService(userRepository, apiKeyBloomFilter, false);
+    }
+
+    @Test
+    void givenUsersWithPlaintextApiKeys_BackfillShouldStoreDigestsAndKeepPlaintext() {
+        // Arrange
+        var first = userWithPlaintextAPIKey("first-api-key");
+        var second = userWithPlaintextAPIKey("second-api-key");
+        when(userRepository.findByApiKeyIsNotNull(any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(first, second)), new SliceImpl<>(List.of()));
+
+        // Act
+        backfillService.backfill();
+
+        // Assert
+        // instances on an older version still look API keys up by their plaintext
+        assertEquals("first-api-key", first.getApiKey());
+        assertEquals("second-api-key", second.getApiKey());
+        assertArrayEquals(ApiKeyDigest.of("first-api-key"), first.getApiKeyDigest());
+        assertArrayEquals(ApiKeyDigest.of("second-api-key"), second.getApiKeyDigest());
+        verify(userRepository, times(1)).saveAll(any());
+        verify(apiKeyBloomFilter).addIssuedAPIKey("first-api-key");
+        verify(apiKeyBloomFilter).addIssuedAPIKey("second-api-key");
+    }
+
+    @Test
+    void givenApiKeyIssuedByOlderInstance_AfterBackfillFilterShouldLetItThrough() {
+        // Arrange - the filter was built before the older instance issued the API key
+        var filter =
+                new ApiKeyBloomFilterService(
+                        userRepository,
+                        redisTemplate,
+                        new ApiKeyFormat("test-secret", true),
+                        new SimpleMeterRegistry(),
+                        true,
+                        1000,
+                        0.01);
+        when(userRepository.findAllApiKeyDigests(any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of()));
+        filter.buildOnStartup();
+        backfillService = new ApiKeyDigestBackfillService(userRepository, filter, false);
+        var user = userWithPlaintextAPIKey("older-instance-api-key");
+        when(userRepository.findByApiKeyIsNotNull(any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(user)), new SliceImpl<>(List.of()));
+        boolean passedBeforeBackfill = filter.mightBeIssued("older-instance-api-key");
+
+        // Act
+        backfillService.backfill();
+
+        // Assert
+        assertFalse(passedBeforeBackfill);
+        assertTrue(filter.mightBeIssued("older-instance-api-key"));
+    }
+
+    @Test
+    void givenApiKeyRevokedByOlderInstance_BackfillShouldReplaceStaleDigest() {
+        // Arrange - the digest of the API key it replaced is still stored
+        var user = userWithPlaintextAPIKey("new-api-key");
+        user.setApiKeyDigest(ApiKeyDigest.of("revoked-api-key"));
+        when(userRepository.findByApiKeyIsNotNull(any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(user)), new SliceImpl<>(List.of()));
+
+        // Act
+        backfillService.backfill();
+
+        // Assert
+        assertArrayEquals(ApiKeyDigest.of("new-api-key"), user.getApiKeyDigest());
+        verify(userRepository, times(1)).saveAll(List.of(user));
+    }
+
+    @Test
+    void givenBackfilledUsers_BackfillShouldNotSave() {
+        // Arrange
+        var user = userWithPlaintextAPIKey("api-key");
+        user.setApiKeyDigest(ApiKeyDigest.of("api-key"));
+        when(userRepository.findByApiKeyIsNotNull(any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(user)), new SliceImpl<>(List.of()));
+
+        // Act
+        backfillService.backfill();
+
+        // Assert
+        verify(userRepository, never()).saveAll(any());
+        verify(apiKeyBloomFilter, never()).addIssuedAPIKey(any());
+    }
+
+    @Test
+    void givenDropPlaintextEnabled_BackfillShouldClearPlaintextApiKeys() {
+        // Arrange
+        backfillService = new ApiKeyDigestBackfillService(userRepository, apiKeyBloomFilter, true);
+        var user = userWithPlaintextAPIKey("api-key");
+        when(userRepository.findByApiKeyIsNotNull(any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of(user)), new SliceImpl<>(List.of()));
+
+        // Act
+        backfillService.backfill();
+
+        // Assert
+        assertNull(user.getApiKey());
+        assertArrayEquals(ApiKeyDigest.of("api-key"), user.getApiKeyDigest());
+        verify(userRepository, times(1)).saveAll(List.of(user));
+        verify(apiKeyBloomFilter).addIssuedAPIKey("api-key");
+    }
+
+    @Test
+    void givenNothingToBackfill_BackfillShouldNotSave() {
+        // Arrange
+        when(userRepository.findByApiKeyIsNotNull(any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(List.of()));
+
+        // Act
+        backfillService.backfill();
+
+        // Assert
+        verify(userRepository, never()).saveAll(any());
+    }
+
+    private static User userWithPlaintextAPIKey(String apiKey) {
+        var user = new User();
+        user.setApiKey(apiKey);
+        return user;
+    }
+}
@@ -1,37 +1,75 @@
 package com.exchangerates.CurrencyExchangeAPI.services;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.exchangerates.CurrencyExchangeAPI.contracts.requests.AccountCredentialsDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.AccountResponseDTO;
+import com.exchangerates.CurrencyExchangeAPI.entities.Plan;
 import com.exchangerates.CurrencyExchangeAPI.entities.User;
 import com.exchangerates.CurrencyExchangeAPI.exception.BusinessException;
 import com.exchangerates.CurrencyExchangeAPI.repository.UserRepository;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyDigest;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyFormat;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyBloomFilterService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 @ExtendWith(MockitoExtension.class)
 class AuthenticationServiceTest {
-    @InjectMocks AuthenticationService authenticationService;
+    AuthenticationService authenticationService;
 
     @Mock UserRepository userRepository;
 
     @Mock PasswordEncoder passwordEncoder;
 
+    @Mock StringRedisTemplate redisTemplate;
+
+    @Mock ValueOperations<String, String> valueOperations;
+
+    @Mock IApiKeyBloomFilterService apiKeyBloomFilter;
+
+    SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        authenticationService =
+                new AuthenticationService(
+                        userRepository,
+                        passwordEncoder,
+                        new ApiKeyFormat("test-secret", true),
+                        redisTemplate,
+                        apiKeyBloomFilter,
+                        meterRegistry,
+                        60,
+                        5,
+                        100,
+                        86400);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
     private static final String VALID_EMAIL = "test@example.com";
     private static final String VALID_PASSWORD = "password123";
     private static final String VALID_API_KEY = "test-api-key";
@@ -58,6 +96,12 @@ class AuthenticationServiceTest {
         assertEquals(VALID_EMAIL, response.getEmail());
         assertNotNull(response.getApiKey());
         verify(userRepository).save(any(User.class));
+        verify(apiKeyBloomFilter).addIssuedAPIKey(response.getApiKey());
+        verify(valueOperations)
+                .set(
+                        "auth:api-key:{" + ApiKeyDigest.hexOf(response.getApiKey()) + "}",
+                        Plan.FREE.name(),
+                        Duration.ofSeconds(86400));
     }
 
     @Test
@@ -83,7 +127,8 @@ class AuthenticationServiceTest {
 
         // Assert
         assertEquals(VALID_EMAIL, response.getEmail());
-        assertEquals(VALID_API_KEY, response.getApiKey());
+        // API keys are only stored as digests, so they are only included when issued
+        assertNull(response.getApiKey());
     }
 
     @Test
@@ -115,7 +160,8 @@ class AuthenticationServiceTest {
     @Test
     void givenValidApiKey_WhenValidateApiKey_ThenReturnTrue() {
         // Arrange
-        when(userRepository.existsByApiKey(VALID_API_KEY)).thenReturn(true);
+        when(userRepository.findByApiKeyDigest(ApiKeyDigest.of(VALID_API_KEY)))
+                .thenReturn(Optional.of(createValidUser()));
 
         // Act & Assert
         assertTrue(authenticationService.isValidAPIKey(VALID_API_KEY));
@@ -124,7 +170,8 @@ class AuthenticationServiceTest {
     @Test
     void givenInvalidApiKey_WhenValidateApiKey_ThenReturnFalse() {
         // Arrange
-        when(userRepository.existsByApiKey("invalid_key")).thenReturn(false);
+        when(userRepository.findByApiKeyDigest(ApiKeyDigest.of("invalid_key")))
+                .thenReturn(Optional.empty());
 
         // Act & Assert
         assertFalse(authenticationService.isValidAPIKey("invalid_key"));
@@ -146,6 +193,141 @@ class AuthenticationServiceTest {
         // Assert
         assertNotEquals(VALID_API_KEY, response.getApiKey());
         verify(userRepository).save(any(User.class));
+        verify(apiKeyBloomFilter).addIssuedAPIKey(response.getApiKey());
+    }
+
+    @Test
+    void givenUserWithPlaintextApiKey_WhenRevokeApiKey_ThenOnlyStoreNewDigest() {
+        // Arrange - a row that was not backfilled yet
+        var credentials = new AccountCredentialsDTO(VALID_EMAIL, VALID_PASSWORD);
+        var user = createValidUser();
+        user.setApiKeyDigest(null);
+        user.setApiKey(VALID_API_KEY);
+        when(userRepository.findByEmail(VALID_EMAIL)).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches(VALID_PASSWORD, ENCODED_PASSWORD)).thenReturn(true);
+        when(userRepository.save(any(User.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        var response = authenticationService.revokeAPIKey(credentials);
+
+        // Assert
+        assertNull(user.getApiKey());
+        assertArrayEquals(ApiKeyDigest.of(response.getApiKey()), user.getApiKeyDigest());
+        verify(redisTemplate).delete("auth:api-key:{" + ApiKeyDigest.hexOf(VALID_API_KEY) + "}");
+    }
+
+    @Test
+    void givenResolvedApiKey_WhenResolvePlanAgain_ThenServeFromCache() {
+        // Arrange
+        var user = createValidUser();
+        user.setPlan(Plan.PRO);
+        when(userRepository.findByApiKeyDigest(ApiKeyDigest.of(VALID_API_KEY)))
+                .thenReturn(Optional.of(user));
+
+        // Act
+        var first = authenticationService.resolveAPIKeyPlan(VALID_API_KEY);
+        var second = authenticationService.resolveAPIKeyPlan(VALID_API_KEY);
+
+        // Assert
+        assertEquals(Plan.PRO, first.get());
+        assertEquals(Plan.PRO, second.get());
+        verify(userRepository, times(1)).findByApiKeyDigest(ApiKeyDigest.of(VALID_API_KEY));
+        assertEquals(1.0, databaseLookupCount("found"));
+    }
+
+    @Test
+    void givenInvalidApiKey_WhenResolvePlanAgain_ThenServeFromNegativeCache() {
+        // Arrange
+        when(userRepository.findByApiKeyDigest(ApiKeyDigest.of("invalid_key")))
+                .thenReturn(Optional.empty());
+
+        // Act
+        authenticationService.resolveAPIKeyPlan("invalid_key");
+        var result = authenticationService.resolveAPIKeyPlan("invalid_key");
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(userRepository, times(1)).findByApiKeyDigest(ApiKeyDigest.of("invalid_key"));
+        assertEquals(1.0, databaseLookupCount("not_found"));
+    }
+
+    @Test
+    void givenRevokedApiKey_WhenResolvePlan_ThenReturnEmpty() {
+        // Arrange
+        var credentials = new AccountCredentialsDTO(VALID_EMAIL, VALID_PASSWORD);
+        var user = createValidUser();
+        when(userRepository.findByApiKeyDigest(ApiKeyDigest.of(VALID_API_KEY)))
+                .thenReturn(Optional.of(user), Optional.empty());
+        when(userRepository.findByEmail(VALID_EMAIL)).thenReturn(Optional.of(user));
+        when(passwordEncoder.matches(VALID_PASSWORD, ENCODED_PASSWORD)).thenReturn(true);
+        when(userRepository.save(any(User.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        authenticationService.resolveAPIKeyPlan(VALID_API_KEY);
+
+        // Act
+        authenticationService.revokeAPIKey(credentials);
+        var result = authenticationService.resolveAPIKeyPlan(VALID_API_KEY);
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(redisTemplate)
+                .convertAndSend(
+                        AuthenticationService.API_KEY_REVOCATION_CHANNEL,
+                        ApiKeyDigest.hexOf(VALID_API_KEY));
+        verify(redisTemplate).delete("auth:api-key:{" + ApiKeyDigest.hexOf(VALID_API_KEY) + "}");
+    }
+
+    @Test
+    void givenEvictedApiKey_WhenResolvePlan_ThenLookUpAgain() {
+        // Arrange - e.g. revoked by another instance
+        when(userRepository.findByApiKeyDigest(ApiKeyDigest.of(VALID_API_KEY)))
+                .thenReturn(Optional.of(createValidUser()), Optional.empty());
+        authenticationService.resolveAPIKeyPlan(VALID_API_KEY);
+
+        // Act
+        authenticationService.evictAPIKeyDigest(ApiKeyDigest.hexOf(VALID_API_KEY));
+        var result = authenticationService.resolveAPIKeyPlan(VALID_API_KEY);
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(userRepository, times(2)).findByApiKeyDigest(ApiKeyDigest.of(VALID_API_KEY));
+    }
+
+    @Test
+    void givenCachedPlanOfRevokedApiKey_WhenRevalidatePlan_ThenLookUpAgain() {
+        // Arrange - revoked by another instance, before this one dropped it from its cache
+        when(userRepository.findByApiKeyDigest(ApiKeyDigest.of(VALID_API_KEY)))
+                .thenReturn(Optional.of(createValidUser()), Optional.empty());
+        authenticationService.resolveAPIKeyPlan(VALID_API_KEY);
+
+        // Act
+        var revalidated = authenticationService.revalidateAPIKeyPlan(VALID_API_KEY);
+        var resolved = authenticationService.resolveAPIKeyPlan(VALID_API_KEY);
+
+        // Assert
+        assertTrue(revalidated.isEmpty());
+        assertTrue(resolved.isEmpty());
+        verify(userRepository, times(2)).findByApiKeyDigest(ApiKeyDigest.of(VALID_API_KEY));
+    }
+
+    @Test
+    void givenInvalidApiKey_WhenRevalidatePlan_ThenServeFromNegativeCache() {
+        // Arrange
+        when(userRepository.findByApiKeyDigest(ApiKeyDigest.of("invalid_key")))
+                .thenReturn(Optional.empty());
+        authenticationService.resolveAPIKeyPlan("invalid_key");
+
+        // Act
+        var result = authenticationService.revalidateAPIKeyPlan("invalid_key");
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verify(userRepository, times(1)).findByApiKeyDigest(ApiKeyDigest.of("invalid_key"));
+    }
+
+    private double databaseLookupCount(String result) {
+        return meterRegistry.get("auth.api-key.db-lookups").tag("result", result).counter().count();
     }
 
     private User createValidUser() {
@@ -153,7 +335,7 @@ class AuthenticationServiceTest {
         user.setId(1L);
         user.setEmail(VALID_EMAIL);
         user.setPassword(ENCODED_PASSWORD);
-        user.setApiKey(VALID_API_KEY);
+        user.setApiKeyDigest(ApiKeyDigest.of(VALID_API_KEY));
         user.setCreatedAt(LocalDateTime.now());
         user.setUpdatedAt(LocalDateTime.now());
         return user;
@@ -115,4 +115,22 @@ class AvailableCurrenciesHolderTest {
         // Act & Assert
         assertTrue(holder.anyCurrencyExists(List.of("USD", "GBP")));
     }
+
+    @Test
+    void getCurrencyIndex_AssignsIdsInAlphabeticalOrder() {
+        // Arrange
+        Set<String> currencies = new HashSet<>(Set.of("USD", "EUR", "CHF"));
+        when(cacheService.get(anyString())).thenReturn(Optional.of(currencies));
+
+        // Act
+        var index = holder.getCurrencyIndex();
+
+        // Assert
+        assertEquals(3, index.size());
+        assertEquals(0, index.idOf("CHF"));
+        assertEquals(2, index.idOf("USD"));
+        assertEquals("EUR", index.codeOf(1));
+        assertEquals(-1, index.idOf("GBP"));
+        assertSame(index, holder.getCurrencyIndex());
+    }
 }
@@ -0,0 +1,119 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyRatesResponse;
+import com.exchangerates.CurrencyExchangeAPI.exception.UpstreamCallRejectedException;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IUpstreamBudgetService;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+@ExtendWith(MockitoExtension.class)
+class BudgetedCurrencyAPIClientTest {
+    @InjectMocks BudgetedCurrencyAPIClient budgetedCurrencyAPIClient;
+
+    @Mock CurrencyAPIClient currencyAPIClient;
+
+    @Mock IUpstreamBudgetService upstreamBudgetService;
+
+    @Test
+    void givenCallWithinBudget_CallShouldBeMadeAndCounted() {
+        // Arrange
+        var response = new CurrencyRatesResponse();
+        when(upstreamBudgetService.allowCall("USD")).thenReturn(true);
+        when(currencyAPIClient.fetchCurrencyExchangeRates("USD", List.of("EUR")))
+                .thenReturn(response);
+
+        // Act
+        var result = budgetedCurrencyAPIClient.fetchCurrencyExchangeRates("USD", List.of("EUR"));
+
+        // Assert
+        assertSame(response, result);
+        verify(upstreamBudgetService).recordCall();
+    }
+
+    @Test
+    void givenCallOutsideBudget_CallShouldBeRejectedWithoutReachingExternalAPI() {
+        // Arrange
+        when(upstreamBudgetService.allowCall("USD")).thenReturn(false);
+
+        // Act
+        var exception =
+                assertThrows(
+                        UpstreamCallRejectedException.class,
+                        () ->
+                                budgetedCurrencyAPIClient.fetchCurrencyExchangeRates(
+                                        "USD", List.of("EUR")));
+
+        // Assert
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode());
+        verifyNoInteractions(currencyAPIClient);
+        verify(upstreamBudgetService, never()).recordCall();
+    }
+
+    @Test
+    void givenFailedCall_CallShouldStillBeCounted() {
+        // Arrange
+        when(upstreamBudgetService.allowCall(null)).thenReturn(true);
+        when(currencyAPIClient.fetchAvailableCurrencies())
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_GATEWAY));
+
+        // Act
+        assertThrows(
+                ResponseStatusException.class,
+                () -> budgetedCurrencyAPIClient.fetchAvailableCurrencies());
+
+        // Assert
+        verify(upstreamBudgetService).recordCall();
+    }
+
+    @Test
+    void givenAsyncCallRejectedByCircuitBreaker_CallShouldNotBeCounted() {
+        // Arrange
+        when(upstreamBudgetService.allowCall("USD")).thenReturn(true);
+        when(currencyAPIClient.fetchCurrencyExchangeRatesAsync("USD", List.of("EUR")))
+                .thenReturn(
+                        CompletableFuture.failedFuture(
+                                new UpstreamCallRejectedException("Circuit breaker open")));
+
+        // Act
+        var result =
+                budgetedCurrencyAPIClient.fetchCurrencyExchangeRatesAsync("USD", List.of("EUR"));
+
+        // Assert
+        var exception = assertThrows(CompletionException.class, result::join);
+        assertEquals(UpstreamCallRejectedException.class, exception.getCause().getClass());
+        verify(upstreamBudgetService, never()).recordCall();
+    }
+
+    @Test
+    void givenAsyncCallThrowingBeforeReturningFuture_CallShouldFailAndBeCounted() {
+        // Arrange
+        when(upstreamBudgetService.allowCall("USD")).thenReturn(true);
+        when(currencyAPIClient.fetchCurrencyExchangeRatesAsync("USD", List.of("EUR")))
+                .thenThrow(new IllegalArgumentException("Illegal character in query"));
+
+        // Act
+        var result =
+                budgetedCurrencyAPIClient.fetchCurrencyExchangeRatesAsync("USD", List.of("EUR"));
+
+        // Assert
+        var exception = assertThrows(CompletionException.class, result::join);
+        assertEquals(IllegalArgumentException.class, exception.getCause().getClass());
+        verify(upstreamBudgetService).recordCall();
+    }
+}
@@ -2,11 +2,16 @@ package com.exchangerates.CurrencyExchangeAPI.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,6 +19,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ValueOperations;
 
 @ExtendWith(MockitoExtension.class)
@@ -55,6 +61,20 @@ class CacheServiceTest {
         assertTrue(optionalResult.isEmpty());
     }
 
+    @Test
+    void givenSomeExistingKeys_MultiGetShouldReturnOnlyFoundValues() {
+        // Arrange
+        var keys = List.of("test:key1", "test:key2", "test:key3");
+        when(redisTemplate.opsForValue().multiGet(keys))
+                .thenReturn(Arrays.asList(505050, null, 606060));
+
+        // Act
+        var result = cacheService.multiGet(keys);
+
+        // Assert
+        assertEquals(Map.of("test:key1", 505050, "test:key3", 606060), result);
+    }
+
     @Test
     void givenKeyAndValue_SetShouldStoreValueInCache() {
         // Arrange
@@ -81,4 +101,38 @@ class CacheServiceTest {
         // Assert
         verify(redisTemplate.opsForValue(), times(1)).set(key, value, ttl);
     }
+
+    @Test
+    void givenMultipleValuesAndTTL_MultiSetShouldWriteAllValuesInSinglePipeline() {
+        // Arrange
+        var values = Map.of("test:key1", 505050, "test:key2", 606060);
+        var ttl = java.time.Duration.ofSeconds(10);
+        // run the pipelined callback against the mocked template
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenAnswer(
+                        invocation -> {
+                            SessionCallback<?> callback = invocation.getArgument(0);
+                            callback.execute(redisTemplate);
+                            return List.of();
+                        });
+
+        // Act
+        cacheService.multiSet(values, ttl);
+
+        // Assert
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verify(redisTemplate.opsForValue(), times(1)).set("test:key1", 505050, ttl);
+        verify(redisTemplate.opsForValue(), times(1)).set("test:key2", 606060, ttl);
+    }
+
+    @Test
+    void givenNoValues_MultiSetShouldNotCallRedis() {
+        // Act
+        cacheService.multiSet(Map.of(), java.time.Duration.ofSeconds(10));
+
+        // Assert
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+        verify(redisTemplate.opsForValue(), never())
+                .set(any(), any(), any(java.time.Duration.class));
+    }
 }
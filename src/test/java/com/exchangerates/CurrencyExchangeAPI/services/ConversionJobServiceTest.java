@@ -0,0 +1,363 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ConversionJobDTO;
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ConversionJobDTO.Status;
+import com.exchangerates.CurrencyExchangeAPI.contracts.responses.CurrencyConversionDTO;
+import com.exchangerates.CurrencyExchangeAPI.domain.ConversionJobFormat;
+import com.exchangerates.CurrencyExchangeAPI.exception.BusinessException;
+import com.exchangerates.CurrencyExchangeAPI.exception.NotFoundException;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+@ExtendWith(MockitoExtension.class)
+class ConversionJobServiceTest {
+    @Mock ICurrencyService currencyService;
+
+    @Mock AvailableCurrenciesHolder existingCurrencies;
+
+    @TempDir Path directory;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    ConversionJobService conversionJobService;
+
+    @AfterEach
+    void tearDown() {
+        if (conversionJobService != null) {
+            conversionJobService.shutdown();
+        }
+    }
+
+    @Test
+    void givenCsvRows_JobShouldConvertEveryRowWithSingleRatesSnapshot() throws Exception {
+        // Arrange
+        conversionJobService = newConversionJobService(2, 10, 1024, 3600);
+        setupTargetRates();
+        var rows =
+                """
+                currency,amount,date
+                eur,100,2026-09-30
+                USD,2.5
+
+                JPY,1000,2026-09-30
+                EUR,abc
+                XXX,1
+                """;
+
+        // Act
+        var submittedJob = submit(ConversionJobFormat.CSV, rows);
+        var job = awaitCompletion(submittedJob.getId());
+        var result = conversionJobService.getJobResult(API_KEY, job.getId());
+
+        // Assert
+        assertEquals(Status.COMPLETED, job.getStatus());
+        assertEquals(5, job.getRowsProcessed());
+        assertEquals(2, job.getRowsFailed());
+        assertEquals(now, job.getRateTimestamp());
+        assertEquals(
+                List.of(
+                        "currency,amount,date,to,rate,value,error",
+                        "EUR,100.0,2026-09-30,USD,2.0,200.0,",
+                        "USD,2.5,,USD,1.0,2.5,",
+                        "JPY,1000.0,2026-09-30,USD,0.01,10.0,",
+                        ",,,USD,,,line 6: invalid amount",
+                        "XXX,1.0,,USD,,,line 7: no exchange rate for currency XXX"),
+                Files.readAllLines(result.file()));
+        // the uploaded file is removed once converted
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void givenNdjsonRows_ResultShouldBeNdjson() throws Exception {
+        // Arrange
+        conversionJobService = newConversionJobService(2, 10, 1024, 3600);
+        setupTargetRates();
+        var rows =
+                """
+                {"currency": "EUR", "amount": 100, "date": "2026-09-30"}
+                {"currency": "JPY", "amount": 1000}
+                {"currency": "EUR"
+                """;
+
+        // Act
+        var job = awaitCompletion(submit(ConversionJobFormat.NDJSON, rows).getId());
+        var result = conversionJobService.getJobResult(API_KEY, job.getId());
+
+        // Assert
+        assertEquals(
+                List.of(
+                        "{\"currency\":\"EUR\",\"amount\":100.0,\"date\":\"2026-09-30\","
+                                + "\"to\":\"USD\",\"rate\":2.0,\"value\":200.0}",
+                        "{\"currency\":\"JPY\",\"amount\":1000.0,\"to\":\"USD\",\"rate\":0.01,"
+                                + "\"value\":10.0}",
+                        "{\"to\":\"USD\",\"error\":\"line 3: malformed JSON\"}"),
+                Files.readAllLines(result.file()));
+    }
+
+    @Test
+    void givenCsvWithByteOrderMarkAndQuotedFields_JobShouldParseThem() throws Exception {
+        // Arrange
+        conversionJobService = newConversionJobService(2, 10, 1024, 3600);
+        setupTargetRates();
+        var rows =
+                """
+                \uFEFF"currency","amount","date"
+                "EUR", "100" ,"2026-09-30"
+                "JP,Y",1
+                "EUR,1
+                """;
+
+        // Act
+        var job = awaitCompletion(submit(ConversionJobFormat.CSV, rows).getId());
+        var result = conversionJobService.getJobResult(API_KEY, job.getId());
+
+        // Assert
+        assertEquals(3, job.getRowsProcessed());
+        assertEquals(
+                List.of(
+                        "currency,amount,date,to,rate,value,error",
+                        "EUR,100.0,2026-09-30,USD,2.0,200.0,",
+                        "\"JP,Y\",1.0,,USD,,,\"line 3: no exchange rate for currency JP,Y\"",
+                        ",,,USD,,,line 4: unterminated quoted field"),
+                Files.readAllLines(result.file()));
+    }
+
+    @Test
+    void givenRowsWithAmountsNotOverZero_RowsShouldFail() throws Exception {
+        // Arrange
+        conversionJobService = newConversionJobService(2, 10, 1024, 3600);
+        setupTargetRates();
+
+        // Act
+        var csvJob = awaitCompletion(submit(ConversionJobFormat.CSV, "EUR,0\n").getId());
+        var ndjsonJob =
+                awaitCompletion(
+                        submit(
+                                        ConversionJobFormat.NDJSON,
+                                        "{\"currency\": \"EUR\", \"amount\": -5}\n")
+                                .getId());
+
+        // Assert - same message as a single conversion
+        assertEquals(1, csvJob.getRowsFailed());
+        assertEquals(
+                List.of(
+                        "currency,amount,date,to,rate,value,error",
+                        ",,,USD,,,line 1: currency amount to convert must be greater than 0."),
+                Files.readAllLines(
+                        conversionJobService.getJobResult(API_KEY, csvJob.getId()).file()));
+        assertEquals(1, ndjsonJob.getRowsFailed());
+        assertEquals(
+                List.of(
+                        "{\"to\":\"USD\",\"error\":\"line 1: currency amount to convert must be"
+                                + " greater than 0.\"}"),
+                Files.readAllLines(
+                        conversionJobService.getJobResult(API_KEY, ndjsonJob.getId()).file()));
+    }
+
+    @Test
+    void givenJobOfAnotherApiKey_JobShouldNotBeFound() throws Exception {
+        // Arrange
+        conversionJobService = newConversionJobService(2, 10, 1024, 3600);
+        setupTargetRates();
+        var job = awaitCompletion(submit(ConversionJobFormat.CSV, "EUR,1\n").getId());
+
+        // Act & Assert
+        assertThrows(
+                NotFoundException.class,
+                () -> conversionJobService.getJob("other-api-key", job.getId()));
+        assertThrows(
+                NotFoundException.class,
+                () -> conversionJobService.getJobResult("other-api-key", job.getId()));
+    }
+
+    @Test
+    void givenWorkersAndQueueBusy_JobShouldBeRejectedBeforeUpload() throws Exception {
+        // Arrange - a single worker, and no room in the queue
+        conversionJobService = newConversionJobService(1, 0, 1024, 3600);
+        when(existingCurrencies.doesCurrencyExist("USD")).thenReturn(true);
+        var ratesLookup = new CountDownLatch(1);
+        when(currencyService.getCurrencyConversionRates("USD", Optional.empty()))
+                .thenAnswer(
+                        invocation -> {
+                            ratesLookup.await();
+                            return usdToAll;
+                        });
+        var runningJob = submit(ConversionJobFormat.CSV, "EUR,1\n");
+
+        // Act
+        var exception =
+                assertThrows(
+                        ResponseStatusException.class,
+                        () -> submit(ConversionJobFormat.CSV, "EUR,1\n"));
+        ratesLookup.countDown();
+
+        // Assert
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode());
+        assertEquals(Status.COMPLETED, awaitCompletion(runningJob.getId()).getStatus());
+        assertEquals(
+                1.0,
+                meterRegistry.get("conversion.jobs").tag("result", "rejected").counter().count());
+    }
+
+    @Test
+    void givenUploadOverLimit_JobShouldBeRejectedAndUploadRemoved() throws Exception {
+        // Arrange
+        conversionJobService = newConversionJobService(2, 10, 8, 3600);
+        when(existingCurrencies.doesCurrencyExist("USD")).thenReturn(true);
+
+        // Act
+        var exception =
+                assertThrows(
+                        ResponseStatusException.class,
+                        () -> submit(ConversionJobFormat.CSV, "EUR,100\nJPY,1000\n"));
+
+        // Assert
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exception.getStatusCode());
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void givenInvalidTargetCurrency_JobShouldNotBeSubmitted() {
+        // Arrange
+        conversionJobService = newConversionJobService(2, 10, 1024, 3600);
+        when(existingCurrencies.doesCurrencyExist(anyString())).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(BusinessException.class, () -> submit(ConversionJobFormat.CSV, "EUR,1\n"));
+    }
+
+    @Test
+    void givenFailingRatesLookup_JobShouldFailWithoutResult() throws Exception {
+        // Arrange
+        conversionJobService = newConversionJobService(2, 10, 1024, 3600);
+        when(existingCurrencies.doesCurrencyExist("USD")).thenReturn(true);
+        when(currencyService.getCurrencyConversionRates("USD", Optional.empty()))
+                .thenThrow(
+                        new ResponseStatusException(HttpStatus.BAD_GATEWAY, "External API failed"));
+
+        // Act
+        var job = awaitCompletion(submit(ConversionJobFormat.CSV, "EUR,1\n").getId());
+
+        // Assert
+        assertEquals(Status.FAILED, job.getStatus());
+        assertTrue(job.getError().contains("External API failed"));
+        var exception =
+                assertThrows(
+                        ResponseStatusException.class,
+                        () -> conversionJobService.getJobResult(API_KEY, job.getId()));
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void givenJobPastRetention_JobAndResultShouldBeRemoved() throws Exception {
+        // Arrange - jobs expire as soon as they complete
+        conversionJobService = newConversionJobService(2, 10, 1024, 0);
+        setupTargetRates();
+        var job = awaitCompletion(submit(ConversionJobFormat.CSV, "EUR,1\n").getId());
+        Thread.sleep(5);
+
+        // Act
+        conversionJobService.removeExpiredJobs();
+
+        // Assert
+        assertThrows(
+                NotFoundException.class, () -> conversionJobService.getJob(API_KEY, job.getId()));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void givenFilesOfJobsBeforeRestart_StartupShouldRemoveThem() throws Exception {
+        // Arrange
+        Files.writeString(directory.resolve("job.input"), "EUR,1\n");
+        Files.writeString(directory.resolve("job.output.csv"), "currency,amount\n");
+        Files.writeString(directory.resolve("unrelated.txt"), "kept");
+
+        // Act
+        conversionJobService = newConversionJobService(2, 10, 1024, 3600);
+
+        // Assert
+        assertEquals(1, countFiles());
+        assertTrue(Files.exists(directory.resolve("unrelated.txt")));
+    }
+
+    private ConversionJobDTO submit(ConversionJobFormat format, String rows) {
+        return conversionJobService.submitJob(
+                API_KEY,
+                format,
+                "usd",
+                new ByteArrayInputStream(rows.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private ConversionJobDTO awaitCompletion(String jobId) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            var job = conversionJobService.getJob(API_KEY, jobId);
+            if (job.getStatus() == Status.COMPLETED || job.getStatus() == Status.FAILED) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Conversion job did not complete in time");
+    }
+
+    private void setupTargetRates() {
+        when(existingCurrencies.doesCurrencyExist("USD")).thenReturn(true);
+        when(currencyService.getCurrencyConversionRates("USD", Optional.empty()))
+                .thenReturn(usdToAll);
+    }
+
+    private long countFiles() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private ConversionJobService newConversionJobService(
+            int workers, int queueCapacity, long maxUploadBytes, long retentionSeconds) {
+        try {
+            return new ConversionJobService(
+                    currencyService,
+                    existingCurrencies,
+                    new ObjectMapper(),
+                    meterRegistry,
+                    directory,
+                    workers,
+                    queueCapacity,
+                    maxUploadBytes,
+                    retentionSeconds);
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    private static final String API_KEY = "api-key";
+    private static final Instant now = Instant.now();
+    // rates from the target currency - rows are converted with their inverse
+    private static final CurrencyConversionDTO usdToAll =
+            new CurrencyConversionDTO("USD", now, Map.of("EUR", 0.5, "JPY", 100.0), false, null);
+}
@@ -1,8 +1,10 @@
 package com.exchangerates.CurrencyExchangeAPI.services;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -10,15 +12,25 @@ import static org.mockito.Mockito.when;
 import com.exchangerates.CurrencyExchangeAPI.domain.AvailableCurrenciesResponse;
 import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyRatesResponse;
 import com.exchangerates.CurrencyExchangeAPI.domain.ExternalAPIError;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -27,6 +39,17 @@ class CurrencyAPIClientTest {
 
     @Mock RestTemplate restTemplate;
 
+    @Mock HttpClient asyncHttpClient;
+
+    @Mock HttpResponse<byte[]> asyncResponse;
+
+    @Spy
+    UpstreamCallGuard upstreamCallGuard =
+            new UpstreamCallGuard(new SimpleMeterRegistry(), 20, 20, 10, 0.5, 30000);
+
+    // configured like the application's ObjectMapper
+    @Spy ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
     @InjectMocks CurrencyAPIClient currencyAPIClient;
 
     @Test
@@ -68,14 +91,15 @@ class CurrencyAPIClientTest {
     }
 
     @Test
-    void fetchCurrencyExchangeRatesSingleTarget_Success() {
+    void fetchCurrencyExchangeRatesSingleTarget_Success() throws Exception {
         // Arrange
         var sourceCurrency = "USD";
         var targetCurrency = "EUR";
         var rate = 2.0;
         var response =
-                new CurrencyRatesResponse(
-                        true, Instant.now(), sourceCurrency, Map.of("USDEUR", rate), null);
+                readRatesResponse(
+                        "{\"success\":true,\"timestamp\":1700000000,\"source\":\"USD\","
+                                + "\"quotes\":{\"USDEUR\":2.0}}");
 
         when(restTemplate.getForObject(anyString(), eq(CurrencyRatesResponse.class)))
                 .thenReturn(response);
@@ -93,7 +117,7 @@ class CurrencyAPIClientTest {
     }
 
     @Test
-    void fetchCurrencyExchangeRatesMultiTarget_Success() {
+    void fetchCurrencyExchangeRatesMultiTarget_Success() throws Exception {
         // Arrange
         var sourceCurrency = "USD";
         var targetCurrency1 = "EUR";
@@ -101,12 +125,9 @@ class CurrencyAPIClientTest {
         var rate1 = 2.0;
         var rate2 = 100.0;
         var response =
-                new CurrencyRatesResponse(
-                        true,
-                        Instant.now(),
-                        sourceCurrency,
-                        Map.of("USDEUR", rate1, "USDJPY", rate2),
-                        null);
+                readRatesResponse(
+                        "{\"success\":true,\"timestamp\":1700000000,\"source\":\"USD\","
+                                + "\"quotes\":{\"USDEUR\":2.0,\"USDJPY\":100.0}}");
 
         when(restTemplate.getForObject(anyString(), eq(CurrencyRatesResponse.class)))
                 .thenReturn(response);
@@ -139,4 +160,77 @@ class CurrencyAPIClientTest {
                 ResponseStatusException.class,
                 () -> currencyAPIClient.fetchCurrencyExchangeRates("USD", List.of("EUR")));
     }
+
+    @Test
+    void fetchCurrencyExchangeRatesAsync_Success() {
+        // Arrange
+        setupAsyncResponse(
+                200,
+                "{\"success\":true,\"timestamp\":1700000000,\"source\":\"USD\","
+                        + "\"quotes\":{\"USDEUR\":2.0,\"USDJPY\":100.0}}");
+
+        // Act
+        var result =
+                currencyAPIClient
+                        .fetchCurrencyExchangeRatesAsync("USD", List.of("EUR", "JPY"))
+                        .join();
+
+        // Assert
+        verify(restTemplate, times(0)).getForObject(anyString(), eq(CurrencyRatesResponse.class));
+        assertEquals("USD", result.getSource());
+        assertEquals(Instant.ofEpochSecond(1700000000), result.getTimestamp());
+        assertEquals(2.0, result.getQuotes().get("EUR"));
+        assertEquals(100.0, result.getQuotes().get("JPY"));
+    }
+
+    @Test
+    void fetchCurrencyExchangeRatesAsync_WhenApiFails_CompletesExceptionally() {
+        // Arrange
+        setupAsyncResponse(
+                200,
+                "{\"success\":false,\"error\":{\"code\":999,\"info\":\"Failed to fetch"
+                        + " exchange rates\"}}");
+
+        // Act
+        var exception =
+                assertThrows(
+                        CompletionException.class,
+                        () ->
+                                currencyAPIClient
+                                        .fetchCurrencyExchangeRatesAsync("USD", List.of("EUR"))
+                                        .join());
+
+        // Assert
+        var cause = (ResponseStatusException) exception.getCause();
+        assertEquals(HttpStatus.BAD_GATEWAY, cause.getStatusCode());
+    }
+
+    @Test
+    void fetchAvailableCurrenciesAsync_WhenApiReturnsErrorStatus_CompletesExceptionally() {
+        // Arrange
+        setupAsyncResponse(503, "");
+
+        // Act
+        var exception =
+                assertThrows(
+                        CompletionException.class,
+                        () -> currencyAPIClient.fetchAvailableCurrenciesAsync().join());
+
+        // Assert
+        var cause = (ResponseStatusException) exception.getCause();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, cause.getStatusCode());
+    }
+
+    // parsed the way the RestTemplate's message converter parses responses
+    private CurrencyRatesResponse readRatesResponse(String body) throws Exception {
+        return objectMapper.readValue(body, CurrencyRatesResponse.class);
+    }
+
+    private void setupAsyncResponse(int statusCode, String body) {
+        when(asyncResponse.statusCode()).thenReturn(statusCode);
+        // not read for error statuses
+        lenient().when(asyncResponse.body()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        when(asyncHttpClient.sendAsync(any(HttpRequest.class), any(HttpResponse.BodyHandler.class)))
+                .thenReturn(CompletableFuture.completedFuture(asyncResponse));
+    }
 }
@@ -1,33 +1,56 @@
 package com.exchangerates.CurrencyExchangeAPI.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.exchangerates.CurrencyExchangeAPI.contracts.requests.ConversionRequestDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.CurrencyConversionDTO;
 import com.exchangerates.CurrencyExchangeAPI.contracts.responses.ValueConversionDTO;
 import com.exchangerates.CurrencyExchangeAPI.domain.CachedRates;
+import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyIndex;
 import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyRatesResponse;
+import com.exchangerates.CurrencyExchangeAPI.domain.QuoteRates;
+import com.exchangerates.CurrencyExchangeAPI.domain.RateSnapshot;
 import com.exchangerates.CurrencyExchangeAPI.exception.BusinessException;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheKeyBuilderService;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheService;
 import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyAPIClient;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRateTriangulationService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRatesHashCacheService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRefreshAheadService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IUpstreamBudgetService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
 
 @ExtendWith(MockitoExtension.class)
 class CurrencyServiceTest {
@@ -41,6 +64,18 @@ class CurrencyServiceTest {
 
     @Mock AvailableCurrenciesHolder existingCurrencies;
 
+    @Mock IRateTriangulationService rateTriangulationService;
+
+    @Mock IRefreshAheadService refreshAheadService;
+
+    @Mock IRatesHashCacheService ratesHashCacheService;
+
+    @Mock IUpstreamBudgetService upstreamBudgetService;
+
+    @Spy RatesFreshnessPolicy ratesFreshnessPolicy = new RatesFreshnessPolicy(60, 300, 3600);
+
+    @Spy RequestCoalescer requestCoalescer = new RequestCoalescer(new SimpleMeterRegistry(), 1000);
+
     @Test
     void givenValidSourceAndTargetCurrencies_FetchExchangeRateShouldReturnValidResponse() {
         // Arrange
@@ -61,14 +96,23 @@ class CurrencyServiceTest {
         assertEquals(expectedRate, response.getTargets().get(targetCurrency));
         assertEquals(1, response.getTargets().size()); // only a single target -> EUR
         assertEquals(sourceCurrency, response.getBase());
-        // 4 cache misses should happen (A -> B, B -> A, A -> (ALL), B -> (ALL))
-        verify(cacheService, times(4)).get(anyString());
+        // 4 cache misses should happen (A -> B, B -> A, A -> (ALL), B -> (ALL)), in a single
+        // batched read
+        verify(cacheService, times(1)).multiGet(anyList());
+        verify(cacheService, times(0)).get(anyString());
         // should save USD -> EUR conversion in cache with some defined TTL
         verify(cacheService, times(1))
-                .set(
-                        eq(mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency))),
-                        any(CachedRates.class),
+                .multiSet(
+                        argThat(
+                                rates ->
+                                        rates.containsKey(
+                                                mockBuildCacheKey(
+                                                        sourceCurrency,
+                                                        Optional.of(targetCurrency)))),
                         any(Duration.class));
+        // fetched rates are kept refreshed ahead of expiry
+        verify(refreshAheadService, times(1))
+                .track(eq("USD:EUR"), any(Duration.class), any(Runnable.class));
     }
 
     @Test
@@ -138,9 +182,13 @@ class CurrencyServiceTest {
         assertEquals(amount, conversionResult.getRequestedValue());
         // should save USD -> EUR conversion in cache with some defined TTL
         verify(cacheService, times(1))
-                .set(
-                        eq(mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency))),
-                        any(CachedRates.class),
+                .multiSet(
+                        argThat(
+                                rates ->
+                                        rates.containsKey(
+                                                mockBuildCacheKey(
+                                                        sourceCurrency,
+                                                        Optional.of(targetCurrency)))),
                         any(Duration.class));
     }
 
@@ -152,7 +200,9 @@ class CurrencyServiceTest {
         double amount = 100.0;
         String sourceCurrency = "USD";
         List<String> targetCurrencies = List.of("EUR", "JPY", "CHF");
-        when(currencyAPIClient.fetchCurrencyExchangeRates(sourceCurrency, targetCurrencies))
+        // targets are normalized (sorted) before going upstream
+        when(currencyAPIClient.fetchCurrencyExchangeRates(
+                        sourceCurrency, List.of("CHF", "EUR", "JPY")))
                 .thenReturn(usdToAllResponse);
         setupExistingCurrenciesMock(sourceCurrency, targetCurrencies);
 
@@ -167,14 +217,100 @@ class CurrencyServiceTest {
         assertEquals(sourceCurrency, conversionResult.getBase());
         assertEquals(amount, conversionResult.getRequestedValue());
 
-        // should save USD -> EUR, USD -> CHF, USD -> JPY conversions in cache with some defined TTL
-        for (var targetCurrency : targetCurrencies) {
-            verify(cacheService, times(1))
-                    .set(
-                            eq(mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency))),
-                            any(CachedRates.class),
-                            any(Duration.class));
-        }
+        // should save USD -> EUR, USD -> CHF, USD -> JPY conversions in cache with some defined
+        // TTL, in a single batched write
+        verify(cacheService, times(1))
+                .multiSet(
+                        argThat(
+                                rates ->
+                                        targetCurrencies.stream()
+                                                .allMatch(
+                                                        target ->
+                                                                rates.containsKey(
+                                                                        mockBuildCacheKey(
+                                                                                sourceCurrency,
+                                                                                Optional.of(
+                                                                                        target))))),
+                        any(Duration.class));
+    }
+
+    @Test
+    void givenPartiallyCachedTargets_ConvertCurrencyShouldFetchEveryTargetInOneCall() {
+        // Arrange
+        setupCacheKeyBuilderMock();
+        double amount = 100.0;
+        String sourceCurrency = "USD";
+        List<String> targetCurrencies = List.of("JPY", "EUR", "CHF", "EUR");
+        // USD -> EUR cached as a pair, USD -> JPY only inside the USD -> (ALL) snapshot
+        when(cacheService.multiGet(any()))
+                .thenReturn(
+                        Map.of(
+                                mockBuildCacheKey(sourceCurrency, Optional.of("EUR")),
+                                usdToEurCachedRates,
+                                mockBuildCacheKey(sourceCurrency, Optional.empty()),
+                                new CachedRates(Map.of("JPY", 100.0), now, now)));
+        when(currencyAPIClient.fetchCurrencyExchangeRates(
+                        sourceCurrency, List.of("CHF", "EUR", "JPY")))
+                .thenReturn(
+                        new CurrencyRatesResponse(
+                                true,
+                                now,
+                                "USD",
+                                Map.of("CHF", 5.0, "EUR", USD_TO_EUR_RATE, "JPY", 100.0),
+                                null,
+                                null));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrencies);
+
+        // Act
+        ValueConversionDTO conversionResult =
+                currencyService.convertCurrencyValues(sourceCurrency, targetCurrencies, amount);
+
+        // Assert
+        assertEquals(3, conversionResult.getConversions().size());
+        assertEquals(amount * USD_TO_EUR_RATE, conversionResult.getConversions().get("EUR"));
+        assertEquals(amount * 100.0, conversionResult.getConversions().get("JPY"));
+        assertEquals(amount * 5.0, conversionResult.getConversions().get("CHF"));
+        // a single batched cache read, with every pair and the USD -> (ALL) snapshot
+        verify(cacheService, times(1))
+                .multiGet(
+                        List.of(
+                                mockBuildCacheKey(sourceCurrency, Optional.of("CHF")),
+                                mockBuildCacheKey(sourceCurrency, Optional.of("EUR")),
+                                mockBuildCacheKey(sourceCurrency, Optional.of("JPY")),
+                                mockBuildCacheKey(sourceCurrency, Optional.empty())));
+        verify(cacheService, times(0)).get(anyString());
+        // a single upstream call for the whole request, which is refreshed ahead of expiry
+        // together - the missing subset alone is neither fetched nor tracked
+        verify(currencyAPIClient, times(1)).fetchCurrencyExchangeRates(anyString(), anyList());
+        verify(refreshAheadService, times(1))
+                .track(eq("USD:CHF,EUR,JPY"), any(Duration.class), any(Runnable.class));
+        verify(refreshAheadService, never())
+                .track(eq("USD:CHF"), any(Duration.class), any(Runnable.class));
+    }
+
+    @Test
+    void givenAllTargetsCached_ConvertCurrencyShouldNotCallExternalAPI() {
+        // Arrange
+        setupCacheKeyBuilderMock();
+        double amount = 100.0;
+        String sourceCurrency = "USD";
+        List<String> targetCurrencies = List.of("EUR", "JPY", "CHF");
+        when(cacheService.multiGet(any()))
+                .thenReturn(
+                        Map.of(
+                                mockBuildCacheKey(sourceCurrency, Optional.empty()),
+                                usdToAllCachedRates));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrencies);
+
+        // Act
+        ValueConversionDTO conversionResult =
+                currencyService.convertCurrencyValues(sourceCurrency, targetCurrencies, amount);
+
+        // Assert
+        assertEquals(amount * USD_TO_EUR_RATE, conversionResult.getConversions().get("EUR"));
+        assertEquals(amount * 100.0, conversionResult.getConversions().get("JPY"));
+        assertEquals(amount * 5.0, conversionResult.getConversions().get("CHF"));
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
     }
 
     @Test
@@ -196,13 +332,14 @@ class CurrencyServiceTest {
     @Test
     void givenCachedSourceToTargetConversion_FetchExchangeRateShouldReturnValidResponseFromCache() {
         // Arrange
-        setupEmptyCacheExpectations();
         String sourceCurrency = "USD";
         String targetCurrency = "EUR";
         double expectedRate = USD_TO_EUR_RATE;
         // set an expectation on the cache - A -> B rates should be cached
-        when(cacheService.get(mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency))))
-                .thenReturn(Optional.of(usdToEurCachedRates));
+        setupCachedRates(
+                Map.of(
+                        mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency)),
+                        usdToEurCachedRates));
         setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
 
         // Act
@@ -215,20 +352,21 @@ class CurrencyServiceTest {
         assertEquals(1, response.getTargets().size()); // only a single target -> EUR
         assertEquals(sourceCurrency, response.getBase());
         // 1 cache hit should happen (A -> B)
-        verify(cacheService, times(1))
-                .get(mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency)));
+        verify(cacheService, times(1)).multiGet(anyList());
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
     }
 
     @Test
     void givenCachedTargetToSourceConversion_FetchExchangeRateShouldReturnValidResponseFromCache() {
         // Arrange
-        setupEmptyCacheExpectations();
         String sourceCurrency = "USD";
         String targetCurrency = "EUR";
         double expectedRate = USD_TO_EUR_RATE;
         // set an expectation on the cache - B -> A rates should be cached
-        when(cacheService.get(mockBuildCacheKey(targetCurrency, Optional.of(sourceCurrency))))
-                .thenReturn(Optional.of(eurToUSDCachedRates));
+        setupCachedRates(
+                Map.of(
+                        mockBuildCacheKey(targetCurrency, Optional.of(sourceCurrency)),
+                        eurToUSDCachedRates));
         setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
 
         // Act
@@ -241,20 +379,19 @@ class CurrencyServiceTest {
         assertEquals(1, response.getTargets().size()); // only a single target -> USD
         assertEquals(targetCurrency, response.getBase());
         // 1 cache hit should happen (B -> A)
-        verify(cacheService, times(1))
-                .get(mockBuildCacheKey(targetCurrency, Optional.of(sourceCurrency)));
+        verify(cacheService, times(1)).multiGet(anyList());
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
     }
 
     @Test
     void givenCachedSourceToAnyConversion_FetchExchangeRateShouldReturnValidResponseFromCache() {
         // Arrange
-        setupEmptyCacheExpectations();
         String sourceCurrency = "USD";
         String targetCurrency = "EUR";
         double expectedRate = USD_TO_EUR_RATE;
         // set an expectation on the cache - A -> (ALL) rates should be cached
-        when(cacheService.get(mockBuildCacheKey(sourceCurrency, Optional.empty())))
-                .thenReturn(Optional.of(usdToAllCachedRates));
+        setupCachedRates(
+                Map.of(mockBuildCacheKey(sourceCurrency, Optional.empty()), usdToAllCachedRates));
         setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
 
         // Act
@@ -267,8 +404,8 @@ class CurrencyServiceTest {
         assertEquals(1, response.getTargets().size()); // only a single target -> EUR
         assertEquals(sourceCurrency, response.getBase());
         // 1 cache hit should happen (A -> (ALL)), and we can get A -> B from that
-        verify(cacheService, times(1))
-                .get(mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency)));
+        verify(cacheService, times(1)).multiGet(anyList());
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
     }
 
     @Test
@@ -308,13 +445,12 @@ class CurrencyServiceTest {
     @Test
     void givenCachedTargetToAnyConversion_FetchExchangeRateShouldReturnValidResponseFromCache() {
         // Arrange
-        setupEmptyCacheExpectations();
         String sourceCurrency = "USD";
         String targetCurrency = "EUR";
         double expectedRate = USD_TO_EUR_RATE;
         // set an expectation on the cache - B -> (ALL) rates should be cached
-        when(cacheService.get(mockBuildCacheKey(targetCurrency, Optional.empty())))
-                .thenReturn(Optional.of(eurToAllCachedRates));
+        setupCachedRates(
+                Map.of(mockBuildCacheKey(targetCurrency, Optional.empty()), eurToAllCachedRates));
         setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
 
         // Act
@@ -327,20 +463,22 @@ class CurrencyServiceTest {
         assertEquals(1, response.getTargets().size()); // only a single target -> USD
         assertEquals(sourceCurrency, response.getBase());
         // 1 cache hit should happen (B -> (ALL)), and we can get B -> A, and A -> B from that
-        verify(cacheService, times(1)).get(mockBuildCacheKey(targetCurrency, Optional.empty()));
+        verify(cacheService, times(1)).multiGet(anyList());
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
     }
 
     @Test
     void givenCachedSourceToTargetConversion_ConvertCurrencyShouldReturnValidResponseFromCache() {
         // Arrange
-        setupEmptyCacheExpectations();
         double amount = 100.0;
         String sourceCurrency = "USD";
         String targetCurrency = "EUR";
         double expectedRate = USD_TO_EUR_RATE;
         // set an expectation on the cache - A -> B rates should be cached
-        when(cacheService.get(mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency))))
-                .thenReturn(Optional.of(usdToEurCachedRates));
+        setupCachedRates(
+                Map.of(
+                        mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency)),
+                        usdToEurCachedRates));
         setupExistingCurrenciesMock(sourceCurrency, List.of(targetCurrency));
 
         // Act
@@ -353,14 +491,512 @@ class CurrencyServiceTest {
         assertEquals(sourceCurrency, conversionResult.getBase());
         assertEquals(amount, conversionResult.getRequestedValue());
         // 1 cache hit should happen (A -> B)
+        verify(cacheService, times(1)).multiGet(anyList());
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
+    }
+
+    @Test
+    void givenStaleCachedConversion_FetchExchangeRateShouldServeItAndRevalidateInBackground() {
+        // Arrange
+        String sourceCurrency = "USD";
+        String targetCurrency = "EUR";
+        // past the soft TTL, but not the hard TTL
+        var staleRates =
+                new CachedRates(
+                        Map.of(targetCurrency, USD_TO_EUR_RATE), now, now.minusSeconds(120));
+        setupCachedRates(
+                Map.of(mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency)), staleRates));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
+
+        // Act
+        CurrencyConversionDTO response =
+                currencyService.getCurrencyConversionRates(
+                        sourceCurrency, Optional.of(targetCurrency));
+
+        // Assert
+        assertEquals(USD_TO_EUR_RATE, response.getTargets().get(targetCurrency));
+        assertTrue(response.isStale());
+        assertTrue(response.getAgeSeconds() >= 120);
+        verify(refreshAheadService, times(1)).refreshNow(eq("USD:EUR"), any(Runnable.class));
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
+    }
+
+    @Test
+    void givenExpiredCachedConversion_FetchExchangeRateShouldFetchFromExternalAPI() {
+        // Arrange
+        String sourceCurrency = "USD";
+        String targetCurrency = "EUR";
+        // past the hard TTL
+        var expiredRates = new CachedRates(Map.of(targetCurrency, 1.0), now, now.minusSeconds(600));
+        setupCachedRates(
+                Map.of(
+                        mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency)),
+                        expiredRates));
+        when(currencyAPIClient.fetchCurrencyExchangeRates(sourceCurrency, List.of(targetCurrency)))
+                .thenReturn(usdToEurResponse);
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
+
+        // Act
+        CurrencyConversionDTO response =
+                currencyService.getCurrencyConversionRates(
+                        sourceCurrency, Optional.of(targetCurrency));
+
+        // Assert
+        assertEquals(USD_TO_EUR_RATE, response.getTargets().get(targetCurrency));
+        assertFalse(response.isStale());
+        assertNull(response.getAgeSeconds());
+    }
+
+    @Test
+    void givenExpiredCachedConversionAndFailingExternalAPI_FetchExchangeRateShouldServeStale() {
+        // Arrange
+        String sourceCurrency = "USD";
+        String targetCurrency = "EUR";
+        var expiredRates =
+                new CachedRates(
+                        Map.of(targetCurrency, USD_TO_EUR_RATE), now, now.minusSeconds(600));
+        setupCachedRates(
+                Map.of(
+                        mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency)),
+                        expiredRates));
+        when(currencyAPIClient.fetchCurrencyExchangeRates(sourceCurrency, List.of(targetCurrency)))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_GATEWAY));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
+
+        // Act
+        CurrencyConversionDTO response =
+                currencyService.getCurrencyConversionRates(
+                        sourceCurrency, Optional.of(targetCurrency));
+
+        // Assert
+        assertEquals(USD_TO_EUR_RATE, response.getTargets().get(targetCurrency));
+        assertTrue(response.isStale());
+        assertTrue(response.getAgeSeconds() >= 600);
+    }
+
+    @Test
+    void givenMissingTargetAndFailingExternalAPI_ConvertCurrencyShouldThrow() {
+        // Arrange - only one of the targets has (expired) cached rates
+        double amount = 100.0;
+        String sourceCurrency = "USD";
+        List<String> targetCurrencies = List.of("CHF", "EUR");
+        setupCachedRates(
+                Map.of(
+                        mockBuildCacheKey(sourceCurrency, Optional.of("EUR")),
+                        new CachedRates(
+                                Map.of("EUR", USD_TO_EUR_RATE), now, now.minusSeconds(600))));
+        when(currencyAPIClient.fetchCurrencyExchangeRates(sourceCurrency, targetCurrencies))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_GATEWAY));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrencies);
+
+        // Act & Assert
+        assertThrows(
+                ResponseStatusException.class,
+                () ->
+                        currencyService.convertCurrencyValues(
+                                sourceCurrency, targetCurrencies, amount));
+    }
+
+    @Test
+    void givenExpiredTargetsAndFailingExternalAPI_ConvertCurrencyShouldServeStale() {
+        // Arrange
+        double amount = 100.0;
+        String sourceCurrency = "USD";
+        List<String> targetCurrencies = List.of("CHF", "EUR");
+        var cachedAt = now.minusSeconds(600);
+        setupCachedRates(
+                Map.of(
+                        mockBuildCacheKey(sourceCurrency, Optional.of("EUR")),
+                        new CachedRates(Map.of("EUR", USD_TO_EUR_RATE), now, cachedAt),
+                        mockBuildCacheKey(sourceCurrency, Optional.of("CHF")),
+                        new CachedRates(Map.of("CHF", 5.0), now, cachedAt)));
+        when(currencyAPIClient.fetchCurrencyExchangeRates(sourceCurrency, targetCurrencies))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_GATEWAY));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrencies);
+
+        // Act
+        ValueConversionDTO conversionResult =
+                currencyService.convertCurrencyValues(sourceCurrency, targetCurrencies, amount);
+
+        // Assert
+        assertEquals(amount * USD_TO_EUR_RATE, conversionResult.getConversions().get("EUR"));
+        assertEquals(amount * 5.0, conversionResult.getConversions().get("CHF"));
+        assertTrue(conversionResult.isStale());
+        assertTrue(conversionResult.getAgeSeconds() >= 600);
+    }
+
+    @Test
+    void givenCacheMiss_AsyncFetchExchangeRateShouldCompleteOnceExternalAPIResponds() {
+        // Arrange
+        setupEmptyCacheExpectations();
+        String sourceCurrency = "USD";
+        String targetCurrency = "EUR";
+        var upstreamResponse = new CompletableFuture<CurrencyRatesResponse>();
+        when(currencyAPIClient.fetchCurrencyExchangeRatesAsync(
+                        sourceCurrency, List.of(targetCurrency)))
+                .thenReturn(upstreamResponse);
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
+
+        // Act
+        var response =
+                currencyService.getCurrencyConversionRatesAsync(
+                        sourceCurrency, Optional.of(targetCurrency));
+        boolean doneBeforeExternalAPIResponded = response.isDone();
+        upstreamResponse.complete(usdToEurResponse);
+
+        // Assert
+        assertFalse(doneBeforeExternalAPIResponded);
+        assertEquals(USD_TO_EUR_RATE, response.join().getTargets().get(targetCurrency));
+        verify(currencyAPIClient, never()).fetchCurrencyExchangeRates(anyString(), anyList());
         verify(cacheService, times(1))
-                .get(mockBuildCacheKey(sourceCurrency, Optional.of(targetCurrency)));
+                .multiSet(
+                        argThat(
+                                rates ->
+                                        rates.containsKey(
+                                                mockBuildCacheKey(
+                                                        sourceCurrency,
+                                                        Optional.of(targetCurrency)))),
+                        any(Duration.class));
+    }
+
+    @Test
+    void givenExpiredTargetsAndFailingExternalAPI_AsyncConvertCurrencyShouldServeStale() {
+        // Arrange
+        double amount = 100.0;
+        String sourceCurrency = "USD";
+        List<String> targetCurrencies = List.of("CHF", "EUR");
+        var cachedAt = now.minusSeconds(600);
+        setupCachedRates(
+                Map.of(
+                        mockBuildCacheKey(sourceCurrency, Optional.of("EUR")),
+                        new CachedRates(Map.of("EUR", USD_TO_EUR_RATE), now, cachedAt),
+                        mockBuildCacheKey(sourceCurrency, Optional.of("CHF")),
+                        new CachedRates(Map.of("CHF", 5.0), now, cachedAt)));
+        when(currencyAPIClient.fetchCurrencyExchangeRatesAsync(sourceCurrency, targetCurrencies))
+                .thenReturn(
+                        CompletableFuture.failedFuture(
+                                new ResponseStatusException(HttpStatus.BAD_GATEWAY)));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrencies);
+
+        // Act
+        ValueConversionDTO conversionResult =
+                currencyService
+                        .convertCurrencyValuesAsync(sourceCurrency, targetCurrencies, amount)
+                        .join();
+
+        // Assert
+        assertEquals(amount * USD_TO_EUR_RATE, conversionResult.getConversions().get("EUR"));
+        assertEquals(amount * 5.0, conversionResult.getConversions().get("CHF"));
+        assertTrue(conversionResult.isStale());
+    }
+
+    @Test
+    void givenBatchOfConversions_ConvertBatchShouldFetchEachBaseCurrencyOnce() {
+        // Arrange
+        setupEmptyCacheExpectations();
+        var conversions =
+                List.of(
+                        new ConversionRequestDTO("USD", "EUR", 100.0),
+                        new ConversionRequestDTO("eur", "usd", 4.0),
+                        new ConversionRequestDTO("USD", "CHF", 10.0),
+                        new ConversionRequestDTO("USD", "EUR", 1.0),
+                        new ConversionRequestDTO("USD", "USD", 7.0));
+        var eurToUsdResponse =
+                new CurrencyRatesResponse(
+                        true, now, "EUR", Map.of("USD", EUR_TO_USD_RATE), null, null);
+        when(currencyAPIClient.fetchCurrencyExchangeRatesAsync("USD", List.of("CHF", "EUR")))
+                .thenReturn(CompletableFuture.completedFuture(usdToAllResponse));
+        when(currencyAPIClient.fetchCurrencyExchangeRatesAsync("EUR", List.of("USD")))
+                .thenReturn(CompletableFuture.completedFuture(eurToUsdResponse));
+        when(existingCurrencies.doesCurrencyExist(anyString())).thenReturn(true);
+
+        // Act
+        var batchResult = currencyService.convertCurrencyValuesBatch(conversions);
+
+        // Assert
+        var results = batchResult.getConversions();
+        assertEquals(5, results.size());
+        assertEquals(100.0 * USD_TO_EUR_RATE, results.get(0).getValue());
+        assertEquals("EUR", results.get(1).getFrom());
+        assertEquals(4.0 * EUR_TO_USD_RATE, results.get(1).getValue());
+        assertEquals(10.0 * 5.0, results.get(2).getValue());
+        assertEquals(USD_TO_EUR_RATE, results.get(3).getValue());
+        assertEquals(1.0, results.get(4).getRate());
+        assertEquals(7.0, results.get(4).getValue());
+        verify(currencyAPIClient, times(1)).fetchCurrencyExchangeRatesAsync(eq("USD"), anyList());
+        verify(currencyAPIClient, times(1)).fetchCurrencyExchangeRatesAsync(eq("EUR"), anyList());
+        verify(currencyAPIClient, never()).fetchCurrencyExchangeRates(anyString(), anyList());
+    }
+
+    @Test
+    void givenTargetWithoutRateInBatch_ConvertBatchShouldReportAnError() {
+        // Arrange
+        setupEmptyCacheExpectations();
+        var conversions =
+                List.of(
+                        new ConversionRequestDTO("USD", "EUR", 100.0),
+                        new ConversionRequestDTO("USD", "GBP", 5.0));
+        when(currencyAPIClient.fetchCurrencyExchangeRatesAsync("USD", List.of("EUR", "GBP")))
+                .thenReturn(CompletableFuture.completedFuture(usdToAllResponse));
+        when(existingCurrencies.doesCurrencyExist(anyString())).thenReturn(true);
+
+        // Act
+        var batchResult = currencyService.convertCurrencyValuesBatch(conversions);
+
+        // Assert
+        var results = batchResult.getConversions();
+        assertEquals(100.0 * USD_TO_EUR_RATE, results.get(0).getValue());
+        assertNull(results.get(0).getError());
+        assertNull(results.get(1).getRate());
+        assertNull(results.get(1).getValue());
+        assertEquals("no exchange rate from USD to GBP", results.get(1).getError());
+    }
+
+    @Test
+    void givenInvalidCurrencyInBatch_ConvertBatchShouldThrowWithoutFetching() {
+        // Arrange
+        var conversions =
+                List.of(
+                        new ConversionRequestDTO("USD", "EUR", 100.0),
+                        new ConversionRequestDTO("USD", "XXX", 1.0));
+        when(existingCurrencies.doesCurrencyExist(anyString()))
+                .thenAnswer(invocation -> !"XXX".equals(invocation.getArgument(0)));
+
+        // Act
+        var exception =
+                assertThrows(
+                        BusinessException.class,
+                        () -> currencyService.convertCurrencyValuesBatch(conversions));
+
+        // Assert
+        assertTrue(exception.getMessage().startsWith("Conversion 1"));
+        verify(currencyAPIClient, never()).fetchCurrencyExchangeRatesAsync(anyString(), anyList());
+    }
+
+    @Test
+    void givenMissingConversionInBatch_ConvertBatchShouldThrowWithoutFetching() {
+        // Arrange
+        var conversions = new ArrayList<ConversionRequestDTO>();
+        conversions.add(new ConversionRequestDTO("USD", "EUR", 100.0));
+        conversions.add(null);
+        when(existingCurrencies.doesCurrencyExist(anyString())).thenReturn(true);
+
+        // Act
+        var exception =
+                assertThrows(
+                        BusinessException.class,
+                        () -> currencyService.convertCurrencyValuesBatch(conversions));
+
+        // Assert
+        assertTrue(exception.getMessage().startsWith("Conversion 1"));
+        verify(currencyAPIClient, never()).fetchCurrencyExchangeRatesAsync(anyString(), anyList());
+    }
+
+    @Test
+    void givenTriangulationEnabled_FetchExchangeRateShouldDeriveFromPivotSnapshot() {
+        // Arrange
+        ReflectionTestUtils.setField(currencyService, "triangulationEnabled", true);
+        String sourceCurrency = "EUR";
+        String targetCurrency = "JPY";
+        var pivotSnapshot = usdToAllSnapshot();
+        when(rateTriangulationService.getPivotCurrency()).thenReturn("USD");
+        when(rateTriangulationService.getSnapshot()).thenReturn(pivotSnapshot);
+        when(rateTriangulationService.deriveRates(
+                        pivotSnapshot, sourceCurrency, List.of(targetCurrency)))
+                .thenReturn(QuoteRates.of(Map.of(targetCurrency, 50.0)));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
+
+        // Act
+        CurrencyConversionDTO response =
+                currencyService.getCurrencyConversionRates(
+                        sourceCurrency, Optional.of(targetCurrency));
+
+        // Assert
+        assertEquals(50.0, response.getTargets().get(targetCurrency));
+        assertEquals(sourceCurrency, response.getBase());
+        // reports the timestamp of the snapshot used
+        assertEquals(pivotSnapshot.getTimestamp(), response.getRateTimestamp());
+        // the pivot currency is the one fetched, so it is the one kept within the upstream budget
+        verify(upstreamBudgetService).recordDemand("USD");
+        verify(upstreamBudgetService, never()).recordDemand(sourceCurrency);
+        verify(cacheService, times(0)).multiGet(anyList());
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
+    }
+
+    @Test
+    void givenTriangulationEnabled_ConvertCurrencyShouldDeriveFromPivotSnapshot() {
+        // Arrange
+        ReflectionTestUtils.setField(currencyService, "triangulationEnabled", true);
+        double amount = 100.0;
+        String sourceCurrency = "EUR";
+        List<String> targetCurrencies = List.of("JPY", "CHF");
+        var pivotSnapshot = usdToAllSnapshot();
+        when(rateTriangulationService.getSnapshot()).thenReturn(pivotSnapshot);
+        when(rateTriangulationService.deriveRates(
+                        pivotSnapshot, sourceCurrency, List.of("CHF", "JPY")))
+                .thenReturn(QuoteRates.of(Map.of("JPY", 50.0, "CHF", 2.5)));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrencies);
+
+        // Act
+        ValueConversionDTO conversionResult =
+                currencyService.convertCurrencyValues(sourceCurrency, targetCurrencies, amount);
+
+        // Assert
+        assertEquals(amount * 50.0, conversionResult.getConversions().get("JPY"));
+        assertEquals(amount * 2.5, conversionResult.getConversions().get("CHF"));
+        assertEquals(pivotSnapshot.getTimestamp(), conversionResult.getRateTimestamp());
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
+    }
+
+    @Test
+    void givenTriangulationEnabled_FetchExchangeRateAsyncShouldNotWaitOnPivotSnapshot() {
+        // Arrange
+        ReflectionTestUtils.setField(currencyService, "triangulationEnabled", true);
+        String sourceCurrency = "EUR";
+        String targetCurrency = "JPY";
+        var pivotSnapshot = usdToAllSnapshot();
+        var pendingSnapshot = new CompletableFuture<RateSnapshot>();
+        when(rateTriangulationService.getSnapshotAsync()).thenReturn(pendingSnapshot);
+        when(rateTriangulationService.deriveRates(
+                        pivotSnapshot, sourceCurrency, List.of(targetCurrency)))
+                .thenReturn(QuoteRates.of(Map.of(targetCurrency, 50.0)));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
+
+        // Act
+        CompletableFuture<CurrencyConversionDTO> response =
+                currencyService.getCurrencyConversionRatesAsync(
+                        sourceCurrency, Optional.of(targetCurrency));
+
+        // Assert
+        // the calling thread returns before the pivot's rates are available
+        assertFalse(response.isDone());
+        pendingSnapshot.complete(pivotSnapshot);
+        assertEquals(50.0, response.join().getTargets().get(targetCurrency));
+        assertEquals(pivotSnapshot.getTimestamp(), response.join().getRateTimestamp());
+        verify(rateTriangulationService, never()).getSnapshot();
+    }
+
+    @Test
+    void givenTriangulationAndHashLayoutEnabled_StartupShouldFail() {
+        // Arrange
+        ReflectionTestUtils.setField(currencyService, "triangulationEnabled", true);
+        ReflectionTestUtils.setField(currencyService, "hashLayoutEnabled", true);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> currencyService.checkRatesLayout());
+    }
+
+    @Test
+    void givenHashLayoutAndCachedRates_ConvertCurrencyShouldReadOnlyRequestedTargets() {
+        // Arrange
+        ReflectionTestUtils.setField(currencyService, "hashLayoutEnabled", true);
+        double amount = 100.0;
+        String sourceCurrency = "USD";
+        List<String> targetCurrencies = List.of("EUR", "CHF");
+        when(ratesHashCacheService.getRates(sourceCurrency, List.of("CHF", "EUR")))
+                .thenReturn(
+                        Optional.of(
+                                new CachedRates(
+                                        Map.of("EUR", USD_TO_EUR_RATE, "CHF", 5.0), now, now)));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrencies);
+
+        // Act
+        ValueConversionDTO conversionResult =
+                currencyService.convertCurrencyValues(sourceCurrency, targetCurrencies, amount);
+
+        // Assert
+        assertEquals(amount * USD_TO_EUR_RATE, conversionResult.getConversions().get("EUR"));
+        assertEquals(amount * 5.0, conversionResult.getConversions().get("CHF"));
+        assertFalse(conversionResult.isStale());
+        verify(cacheService, times(0)).multiGet(anyList());
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
+    }
+
+    @Test
+    void givenHashLayoutAndEmptyCache_FetchExchangeRateShouldFetchAndReplaceWholeSnapshot() {
+        // Arrange
+        ReflectionTestUtils.setField(currencyService, "hashLayoutEnabled", true);
+        String sourceCurrency = "USD";
+        String targetCurrency = "EUR";
+        when(ratesHashCacheService.getRates(anyString(), anyList())).thenReturn(Optional.empty());
+        when(currencyAPIClient.fetchCurrencyExchangeRates(sourceCurrency, List.of()))
+                .thenReturn(usdToAllResponse);
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
+
+        // Act
+        CurrencyConversionDTO response =
+                currencyService.getCurrencyConversionRates(
+                        sourceCurrency, Optional.of(targetCurrency));
+
+        // Assert
+        assertEquals(Map.of(targetCurrency, USD_TO_EUR_RATE), response.getTargets());
+        verify(ratesHashCacheService, times(1))
+                .replaceRates(
+                        eq(sourceCurrency),
+                        argThat(rates -> rates.getRates().equals(usdToAllResponse.getQuotes())),
+                        any(Duration.class));
+        verify(cacheService, times(0)).set(anyString(), any(), any(Duration.class));
+    }
+
+    @Test
+    void givenHashLayoutAndOnlyTargetRatesCached_FetchExchangeRateShouldUseInverseRate() {
+        // Arrange
+        ReflectionTestUtils.setField(currencyService, "hashLayoutEnabled", true);
+        String sourceCurrency = "USD";
+        String targetCurrency = "EUR";
+        when(ratesHashCacheService.getRates(sourceCurrency, List.of(targetCurrency)))
+                .thenReturn(Optional.empty());
+        when(ratesHashCacheService.getRates(targetCurrency, List.of(sourceCurrency)))
+                .thenReturn(Optional.of(eurToUSDCachedRates));
+        setupExistingCurrenciesMock(sourceCurrency, targetCurrency);
+
+        // Act
+        CurrencyConversionDTO response =
+                currencyService.getCurrencyConversionRates(
+                        sourceCurrency, Optional.of(targetCurrency));
+
+        // Assert
+        assertEquals(USD_TO_EUR_RATE, response.getTargets().get(targetCurrency));
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
+    }
+
+    private RateSnapshot usdToAllSnapshot() {
+        var rates = usdToAllCachedRates.getRates();
+        return RateSnapshot.fromPivotRates(
+                CurrencyIndex.of(rates.keySet()),
+                "USD",
+                rates,
+                usdToAllCachedRates.getTimestamp(),
+                now);
     }
 
     // also sets up CacheKeyBuilder mock
     private void setupEmptyCacheExpectations() {
+        setupCachedRates(Map.of());
+    }
+
+    // cache mock that answers both single and batched reads from the given cached rates.
+    // also sets up CacheKeyBuilder mock
+    private void setupCachedRates(Map<String, CachedRates> cachedRates) {
         setupCacheKeyBuilderMock();
-        when(cacheService.get(anyString())).thenReturn(Optional.empty());
+        lenient()
+                .when(cacheService.get(anyString()))
+                .thenAnswer(
+                        invocation ->
+                                Optional.ofNullable(cachedRates.get(invocation.getArgument(0))));
+        lenient()
+                .when(cacheService.multiGet(anyList()))
+                .thenAnswer(
+                        invocation -> {
+                            List<String> keys = invocation.getArgument(0);
+                            var foundRates = new HashMap<String, CachedRates>();
+                            for (var key : keys) {
+                                if (cachedRates.containsKey(key)) {
+                                    foundRates.put(key, cachedRates.get(key));
+                                }
+                            }
+                            return foundRates;
+                        });
     }
 
     private void setupCacheKeyBuilderMock() {
@@ -401,20 +1037,21 @@ class CurrencyServiceTest {
     private static final double USD_TO_EUR_RATE = 2.0;
     private static final double EUR_TO_USD_RATE = 1 / USD_TO_EUR_RATE;
     private static CurrencyRatesResponse usdToEurResponse =
-            new CurrencyRatesResponse(true, now, "USD", Map.of("EUR", USD_TO_EUR_RATE), null);
+            new CurrencyRatesResponse(true, now, "USD", Map.of("EUR", USD_TO_EUR_RATE), null, null);
     private static CurrencyRatesResponse usdToAllResponse =
             new CurrencyRatesResponse(
                     true,
                     now,
                     "USD",
                     Map.of("EUR", USD_TO_EUR_RATE, "JPY", 100.0, "CHF", 5.0),
+                    null,
                     null);
     private static CachedRates usdToEurCachedRates =
-            new CachedRates(Map.of("EUR", USD_TO_EUR_RATE), now);
+            new CachedRates(Map.of("EUR", USD_TO_EUR_RATE), now, now);
     private static CachedRates eurToUSDCachedRates =
-            new CachedRates(Map.of("USD", EUR_TO_USD_RATE), now);
+            new CachedRates(Map.of("USD", EUR_TO_USD_RATE), now, now);
     private static CachedRates usdToAllCachedRates =
-            new CachedRates(Map.of("EUR", USD_TO_EUR_RATE, "JPY", 100.0, "CHF", 5.0), now);
+            new CachedRates(Map.of("EUR", USD_TO_EUR_RATE, "JPY", 100.0, "CHF", 5.0), now, now);
     private static CachedRates eurToAllCachedRates =
-            new CachedRates(Map.of("USD", EUR_TO_USD_RATE, "JPY", 100.0, "CHF", 5.0), now);
+            new CachedRates(Map.of("USD", EUR_TO_USD_RATE, "JPY", 100.0, "CHF", 5.0), now, now);
 }
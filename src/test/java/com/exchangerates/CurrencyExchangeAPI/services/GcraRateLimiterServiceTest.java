@@ -0,0 +1,78 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.RateLimit;
+import com.exchangerates.CurrencyExchangeAPI.entities.Plan;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+@ExtendWith(MockitoExtension.class)
+class GcraRateLimiterServiceTest {
+    @Mock RedisOperations<String, Object> redisOperations;
+
+    @SuppressWarnings("rawtypes")
+    @Mock
+    RedisScript<List> gcraRateLimiterScript;
+
+    GcraRateLimiterService gcraRateLimiterService;
+
+    private static final String API_KEY = "api-key";
+    // 1 request per second, up to 10 at once
+    private static final RateLimit RATE_LIMIT = Plan.FREE.getRateLimit();
+
+    @BeforeEach
+    void setUp() {
+        gcraRateLimiterService = new GcraRateLimiterService(redisOperations, gcraRateLimiterScript);
+    }
+
+    @Test
+    void givenAllowedRequest_CheckRateLimitShouldAllowWithoutRetryAfter() {
+        // Arrange
+        setupScriptResult(List.of(1L, 0L));
+
+        // Act
+        var decision = gcraRateLimiterService.checkRateLimit(API_KEY, RATE_LIMIT);
+
+        // Assert
+        assertTrue(decision.allowed());
+        assertEquals(0, decision.retryAfterMillis());
+    }
+
+    @Test
+    void givenDeniedRequest_CheckRateLimitShouldReturnRetryAfter() {
+        // Arrange
+        setupScriptResult(List.of(0L, 250L));
+
+        // Act
+        var decision = gcraRateLimiterService.checkRateLimit(API_KEY, RATE_LIMIT);
+
+        // Assert
+        assertFalse(decision.allowed());
+        assertEquals(250, decision.retryAfterMillis());
+        assertFalse(gcraRateLimiterService.applyRateLimiting(API_KEY, RATE_LIMIT));
+    }
+
+    private void setupScriptResult(List<Long> result) {
+        // arguments: time (millis), emission interval, burst, cost
+        when(redisOperations.execute(
+                        eq(gcraRateLimiterScript),
+                        eq(List.of("ratelimit:gcra:{" + API_KEY + "}")),
+                        anyLong(),
+                        eq(1000L),
+                        eq(10),
+                        eq(1)))
+                .thenReturn(result);
+    }
+}
@@ -0,0 +1,212 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.RateLimit;
+import com.exchangerates.CurrencyExchangeAPI.entities.Plan;
+import com.exchangerates.CurrencyExchangeAPI.services.GradualRateLimiterService.TokenReservation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class HybridRateLimiterServiceTest {
+    @Mock GradualRateLimiterService redisRateLimiter;
+
+    SimpleMeterRegistry meterRegistry;
+
+    HybridRateLimiterService hybridRateLimiterService;
+
+    private static final String API_KEY = "api-key";
+    // 1 request per second, up to 10 at once
+    private static final RateLimit RATE_LIMIT = Plan.FREE.getRateLimit();
+    private static final int BATCH_SIZE = 3;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        hybridRateLimiterService =
+                new HybridRateLimiterService(
+                        redisRateLimiter, meterRegistry, BATCH_SIZE, 60_000, 100);
+    }
+
+    @Test
+    void givenGrantedBatch_RequestsShouldBeAdmittedLocallyUntilItRunsOut() {
+        // Arrange
+        when(redisRateLimiter.reserveTokens(API_KEY, RATE_LIMIT, BATCH_SIZE, 1, 0))
+                .thenReturn(new TokenReservation(BATCH_SIZE, 0), new TokenReservation(1, 0));
+
+        // Act
+        for (int i = 0; i < BATCH_SIZE + 1; i++) {
+            assertTrue(hybridRateLimiterService.applyRateLimiting(API_KEY, RATE_LIMIT));
+        }
+
+        // Assert
+        verify(redisRateLimiter, times(2)).reserveTokens(API_KEY, RATE_LIMIT, BATCH_SIZE, 1, 0);
+        assertEquals(BATCH_SIZE - 1, decisionCount("local", "allowed"));
+        assertEquals(2.0, decisionCount("redis", "allowed"));
+    }
+
+    @Test
+    void givenDeniedKey_RequestsShouldBeDeniedLocallyUntilRetryTime() {
+        // Arrange
+        when(redisRateLimiter.reserveTokens(API_KEY, RATE_LIMIT, BATCH_SIZE, 1, 0))
+                .thenReturn(new TokenReservation(0, 60));
+
+        // Act
+        var first = hybridRateLimiterService.applyRateLimiting(API_KEY, RATE_LIMIT);
+        var second = hybridRateLimiterService.checkRateLimit(API_KEY, RATE_LIMIT);
+
+        // Assert
+        assertFalse(first);
+        assertFalse(second.allowed());
+        assertTrue(second.retryAfterMillis() > 59_000);
+        verify(redisRateLimiter, times(1)).reserveTokens(API_KEY, RATE_LIMIT, BATCH_SIZE, 1, 0);
+        assertEquals(1.0, decisionCount("local", "denied"));
+    }
+
+    @Test
+    void givenElapsedRetryTime_NextRequestShouldGoToRedisAgain() {
+        // Arrange
+        when(redisRateLimiter.reserveTokens(API_KEY, RATE_LIMIT, BATCH_SIZE, 1, 0))
+                .thenReturn(new TokenReservation(0, 0), new TokenReservation(1, 0));
+
+        // Act
+        var first = hybridRateLimiterService.applyRateLimiting(API_KEY, RATE_LIMIT);
+        var second = hybridRateLimiterService.applyRateLimiting(API_KEY, RATE_LIMIT);
+
+        // Assert
+        assertFalse(first);
+        assertTrue(second);
+        verify(redisRateLimiter, times(2)).reserveTokens(API_KEY, RATE_LIMIT, BATCH_SIZE, 1, 0);
+    }
+
+    @Test
+    void givenExpiredAllowance_NextRequestShouldGoToRedisAgainAndGiveBackUnusedRequests() {
+        // Arrange - allowance expires right away
+        hybridRateLimiterService =
+                new HybridRateLimiterService(redisRateLimiter, meterRegistry, BATCH_SIZE, 0, 100);
+        when(redisRateLimiter.reserveTokens(API_KEY, RATE_LIMIT, BATCH_SIZE, 1, 0))
+                .thenReturn(new TokenReservation(BATCH_SIZE, 0));
+        when(redisRateLimiter.reserveTokens(API_KEY, RATE_LIMIT, BATCH_SIZE, 1, BATCH_SIZE - 1))
+                .thenReturn(new TokenReservation(BATCH_SIZE, 0));
+
+        // Act
+        hybridRateLimiterService.applyRateLimiting(API_KEY, RATE_LIMIT);
+        hybridRateLimiterService.applyRateLimiting(API_KEY, RATE_LIMIT);
+
+        // Assert
+        // the requests reserved by the first request, but never made, are given back
+        verify(redisRateLimiter, times(1)).reserveTokens(API_KEY, RATE_LIMIT, BATCH_SIZE, 1, 0);
+        verify(redisRateLimiter, times(1))
+                .reserveTokens(API_KEY, RATE_LIMIT, BATCH_SIZE, 1, BATCH_SIZE - 1);
+    }
+
+    @Test
+    void givenWeightedRequest_ShouldReserveItsWholeCostAtOnce() {
+        // Arrange - 1 request left locally
+        when(redisRateLimiter.reserveTokens(API_KEY, RATE_LIMIT, BATCH_SIZE, 1, 0))
+                .thenReturn(new TokenReservation(2, 0));
+        when(redisRateLimiter.reserveTokens(API_KEY, RATE_LIMIT, 4, 4, 0))
+                .thenReturn(new TokenReservation(0, 4), new TokenReservation(4, 0));
+        hybridRateLimiterService.applyRateLimiting(API_KEY, RATE_LIMIT);
+
+        // Act - two requests weighing 5
+        var denied = hybridRateLimiterService.checkRateLimit(API_KEY, RATE_LIMIT, 5);
+        var granted = hybridRateLimiterService.checkRateLimit(API_KEY, RATE_LIMIT, 5);
+
+        // Assert
+        // the 4 missing requests did not fit, so none were reserved
+        assertFalse(denied.allowed());
+        assertEquals(4000, denied.retryAfterMillis());
+        // the request held locally, and the 4 missing ones
+        assertTrue(granted.allowed());
+        verify(redisRateLimiter, times(2)).reserveTokens(API_KEY, RATE_LIMIT, 4, 4, 0);
+    }
+
+    @Test
+    void givenWeightedRequestOverRemainingBurst_RetryAtRetryAfterShouldBeGranted() {
+        // Arrange - a bucket with 1 of the 10 requests of the plan's burst left
+        var bucket = new LeakyBucket(9);
+        hybridRateLimiterService =
+                new HybridRateLimiterService(bucket, meterRegistry, BATCH_SIZE, 60_000, 100);
+
+        // Act
+        var denied = hybridRateLimiterService.checkRateLimit(API_KEY, RATE_LIMIT, 9);
+        bucket.elapse(denied.retryAfterMillis() / 1000);
+        var retried = hybridRateLimiterService.checkRateLimit(API_KEY, RATE_LIMIT, 9);
+
+        // Assert
+        assertFalse(denied.allowed());
+        // 8 more requests have to leak at 1 request per second
+        assertEquals(8000, denied.retryAfterMillis());
+        assertTrue(retried.allowed());
+        assertEquals(10, bucket.level);
+    }
+
+    private double decisionCount(String source, String result) {
+        return meterRegistry
+                .get("ratelimit.decisions")
+                .tag("source", source)
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+    /**
+     * Leaky bucket of ratelimiter_reserve.lua, with a clock that only moves when told to.
+     */
+    private static final class LeakyBucket extends GradualRateLimiterService {
+        private int level;
+        private long leakedAt;
+        private long now;
+
+        LeakyBucket(int level) {
+            super(null, null, null);
+            this.level = level;
+        }
+
+        void elapse(long seconds) {
+            now += seconds;
+        }
+
+        @Override
+        public TokenReservation reserveTokens(
+                String rateLimitKey,
+                RateLimit rateLimit,
+                int requested,
+                int minimum,
+                int released) {
+            level = Math.max(level - released, 0);
+            long leaked = (long) ((now - leakedAt) * rateLimit.requestsPerSecond());
+            if (leaked > 0) {
+                level = (int) Math.max(level - leaked, 0);
+                leakedAt = now;
+            }
+
+            int granted = Math.max(Math.min(requested, rateLimit.burst() - level), 0);
+            if (granted < minimum) {
+                int missing = level + minimum - rateLimit.burst();
+                return new TokenReservation(
+                        0,
+                        Math.max(
+                                (long)
+                                        Math.ceil(
+                                                missing / rateLimit.requestsPerSecond()
+                                                        - (now - leakedAt)),
+                                1));
+            }
+            level += granted;
+            leakedAt = now;
+            return new TokenReservation(granted, 0);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class NearCacheServiceTest {
+    @Mock RedisCacheService<Integer> redisCacheService;
+
+    SimpleMeterRegistry meterRegistry;
+
+    NearCacheService<Integer> nearCacheService;
+
+    private static final String KEY = "rates:USD";
+    private static final Integer VALUE = 505050;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        nearCacheService = new NearCacheService<>(redisCacheService, meterRegistry, 100, 60);
+    }
+
+    @Test
+    void givenValueInRedis_SecondGetShouldBeServedFromNearCache() {
+        // Arrange
+        when(redisCacheService.get(KEY)).thenReturn(Optional.of(VALUE));
+
+        // Act
+        var first = nearCacheService.get(KEY);
+        var second = nearCacheService.get(KEY);
+
+        // Assert
+        assertEquals(VALUE, first.get());
+        assertEquals(VALUE, second.get());
+        verify(redisCacheService, times(1)).get(KEY);
+        assertEquals(1.0, tierCount("near", "hit"));
+        assertEquals(1.0, tierCount("near", "miss"));
+        assertEquals(1.0, tierCount("redis", "hit"));
+    }
+
+    @Test
+    void givenMissInBothTiers_GetShouldReturnEmptyAndNotCacheLocally() {
+        // Arrange
+        when(redisCacheService.get(KEY)).thenReturn(Optional.empty());
+
+        // Act
+        var first = nearCacheService.get(KEY);
+        var second = nearCacheService.get(KEY);
+
+        // Assert
+        assertTrue(first.isEmpty());
+        assertTrue(second.isEmpty());
+        verify(redisCacheService, times(2)).get(KEY);
+        assertEquals(2.0, tierCount("redis", "miss"));
+    }
+
+    @Test
+    void givenSomeKeysInNearCache_MultiGetShouldOnlyReadMissingKeysFromRedis() {
+        // Arrange
+        var otherKey = "rates:EUR";
+        when(redisCacheService.get(KEY)).thenReturn(Optional.of(VALUE));
+        when(redisCacheService.multiGet(List.of(otherKey))).thenReturn(Map.of(otherKey, VALUE + 1));
+        nearCacheService.get(KEY);
+
+        // Act
+        var result = nearCacheService.multiGet(List.of(KEY, otherKey));
+        var cachedResult = nearCacheService.multiGet(List.of(KEY, otherKey));
+
+        // Assert
+        assertEquals(Map.of(KEY, VALUE, otherKey, VALUE + 1), result);
+        assertEquals(result, cachedResult);
+        verify(redisCacheService, times(1)).multiGet(List.of(otherKey));
+    }
+
+    @Test
+    void givenInvalidatedKey_GetShouldReadFromRedisAgain() {
+        // Arrange
+        when(redisCacheService.get(KEY)).thenReturn(Optional.of(VALUE), Optional.of(VALUE + 1));
+        nearCacheService.get(KEY);
+
+        // Act
+        nearCacheService.invalidate(List.of(KEY));
+        var result = nearCacheService.get(KEY);
+
+        // Assert
+        assertEquals(VALUE + 1, result.get());
+        verify(redisCacheService, times(2)).get(KEY);
+    }
+
+    @Test
+    void givenInvalidateAll_GetShouldReadFromRedisAgain() {
+        // Arrange
+        when(redisCacheService.get(KEY)).thenReturn(Optional.of(VALUE));
+        nearCacheService.get(KEY);
+
+        // Act
+        nearCacheService.invalidateAll();
+        nearCacheService.get(KEY);
+
+        // Assert
+        verify(redisCacheService, times(2)).get(KEY);
+    }
+
+    @Test
+    void givenKeyAndValueAndTTL_SetShouldWriteThroughAndDropLocalCopy() {
+        // Arrange
+        var ttl = Duration.ofSeconds(10);
+        when(redisCacheService.get(KEY)).thenReturn(Optional.of(VALUE));
+        nearCacheService.get(KEY);
+
+        // Act
+        nearCacheService.set(KEY, VALUE + 1, ttl);
+        nearCacheService.get(KEY);
+
+        // Assert
+        verify(redisCacheService, times(1)).set(KEY, VALUE + 1, ttl);
+        verify(redisCacheService, times(2)).get(KEY);
+    }
+
+    private double tierCount(String tier, String result) {
+        return meterRegistry
+                .get("cache.gets")
+                .tag("tier", tier)
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+}
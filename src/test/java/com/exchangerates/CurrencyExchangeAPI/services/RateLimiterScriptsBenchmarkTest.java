@@ -0,0 +1,106 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.List;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+/**
+ * Compares the latency of the leaky bucket and GCRA rate limiting scripts, against a real Redis
+ * (BENCHMARK_REDIS_HOST / BENCHMARK_REDIS_PORT, localhost:6379 by default - skipped if it is not
+ * reachable). Not run by default - run it with:
+ *   mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class RateLimiterScriptsBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 5_000;
+    private static final int ITERATIONS = 20_000;
+    // requests are spread over many keys, so most of them are allowed (and write) in both scripts
+    private static final int KEYS = 1_000;
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    static void connect() {
+        var configuration =
+                new RedisStandaloneConfiguration(
+                        System.getenv().getOrDefault("BENCHMARK_REDIS_HOST", "localhost"),
+                        Integer.parseInt(
+                                System.getenv().getOrDefault("BENCHMARK_REDIS_PORT", "6379")));
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void compareLeakyBucketAndGcraScripts() {
+        assumeTrue(isRedisReachable(), "Redis is not reachable, skipping benchmark");
+
+        var leakyBucket = script("scripts/ratelimiter.lua", Boolean.class);
+        var gcra = script("scripts/ratelimiter_gcra.lua", List.class);
+
+        measure(
+                "leaky bucket",
+                i ->
+                        redisTemplate.execute(
+                                leakyBucket,
+                                List.of("benchmark:" + (i % KEYS)),
+                                String.valueOf(System.currentTimeMillis() / 1000),
+                                "1.0",
+                                "10"));
+        measure(
+                "gcra",
+                i ->
+                        redisTemplate.execute(
+                                gcra,
+                                List.of("benchmark:" + (i % KEYS)),
+                                String.valueOf(System.currentTimeMillis()),
+                                "1000",
+                                "10",
+                                "1"));
+    }
+
+    private static void measure(String name, IntFunction<Object> call) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            call.apply(i);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.apply(i);
+        }
+        long nanosPerCall = (System.nanoTime() - start) / ITERATIONS;
+        System.out.printf("%-13s %7d ns/op, %8.0f ops/s%n", name, nanosPerCall, 1e9 / nanosPerCall);
+    }
+
+    private static <T> DefaultRedisScript<T> script(String path, Class<T> resultType) {
+        var script = new DefaultRedisScript<T>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(resultType);
+        return script;
+    }
+
+    private static boolean isRedisReachable() {
+        try (var connection = connectionFactory.getConnection()) {
+            return "PONG".equals(connection.ping());
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.CachedRates;
+import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyIndex;
+import com.exchangerates.CurrencyExchangeAPI.domain.CurrencyRatesResponse;
+import com.exchangerates.CurrencyExchangeAPI.domain.RateSnapshot;
+import com.exchangerates.CurrencyExchangeAPI.exception.BusinessException;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheKeyBuilderService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICurrencyAPIClient;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRefreshAheadService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+@ExtendWith(MockitoExtension.class)
+class RateTriangulationServiceTest {
+    @Mock ICurrencyAPIClient currencyAPIClient;
+
+    @Mock ICacheService<CachedRates> cacheService;
+
+    @Mock ICacheKeyBuilderService cacheKeyBuilderService;
+
+    @Mock AvailableCurrenciesHolder existingCurrencies;
+
+    @Mock IRefreshAheadService refreshAheadService;
+
+    RateTriangulationService rateTriangulationService;
+
+    private static final String PIVOT_CACHE_KEY = "rates:USD";
+
+    @BeforeEach
+    void setUp() {
+        rateTriangulationService = createService(60_000);
+    }
+
+    @Test
+    void givenCachedPivotRates_GetSnapshotShouldNotCallExternalAPI() {
+        // Arrange
+        setupPivotRatesCacheHit();
+
+        // Act
+        var snapshot = rateTriangulationService.getSnapshot();
+
+        // Assert
+        assertEquals(now, snapshot.getTimestamp());
+        assertEquals(2.0, rate(snapshot, "USD", "EUR"));
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
+    }
+
+    @Test
+    void givenNoCachedPivotRates_GetSnapshotShouldFetchAndCacheThem() {
+        // Arrange
+        when(cacheKeyBuilderService.buildCacheKey("USD", Optional.empty()))
+                .thenReturn(PIVOT_CACHE_KEY);
+        when(cacheService.get(PIVOT_CACHE_KEY)).thenReturn(Optional.empty());
+        when(existingCurrencies.getCurrencyIndex()).thenReturn(currencyIndex);
+        when(currencyAPIClient.fetchCurrencyExchangeRates("USD", List.of()))
+                .thenReturn(
+                        new CurrencyRatesResponse(
+                                true, now, "USD", usdRates.getRates(), null, null));
+
+        // Act
+        var snapshot = rateTriangulationService.getSnapshot();
+
+        // Assert
+        assertEquals(now, snapshot.getTimestamp());
+        assertEquals(100.0, rate(snapshot, "USD", "JPY"));
+        verify(cacheService, times(1))
+                .set(eq(PIVOT_CACHE_KEY), any(CachedRates.class), any(Duration.class));
+    }
+
+    @Test
+    void givenPublishedSnapshot_GetSnapshotShouldNotCheckCacheAgain() {
+        // Arrange
+        setupPivotRatesCacheHit();
+        var first = rateTriangulationService.getSnapshot();
+
+        // Act
+        var second = rateTriangulationService.getSnapshot();
+
+        // Assert
+        assertSame(first, second);
+        verify(cacheService, times(1)).get(PIVOT_CACHE_KEY);
+    }
+
+    @Test
+    void givenUnchangedPivotRates_GetSnapshotShouldKeepPublishedSnapshot() {
+        // Arrange - recheck the cache on every call
+        rateTriangulationService = createService(0);
+        setupPivotRatesCacheHit();
+        var first = rateTriangulationService.getSnapshot();
+
+        // Act
+        var second = rateTriangulationService.getSnapshot();
+
+        // Assert
+        assertSame(first, second);
+        verify(cacheService, times(2)).get(PIVOT_CACHE_KEY);
+    }
+
+    @Test
+    void givenNewerPivotRates_GetSnapshotShouldPublishNewSnapshot() {
+        // Arrange - recheck the cache on every call
+        rateTriangulationService = createService(0);
+        setupPivotRatesCacheHit();
+        var newerRates = new CachedRates(Map.of("EUR", 4.0), now.plusSeconds(60), now);
+        when(cacheService.get(PIVOT_CACHE_KEY))
+                .thenReturn(Optional.of(usdRates), Optional.of(newerRates));
+        var first = rateTriangulationService.getSnapshot();
+
+        // Act
+        var second = rateTriangulationService.getSnapshot();
+
+        // Assert
+        assertNotSame(first, second);
+        assertEquals(4.0, rate(second, "USD", "EUR"));
+        assertEquals(newerRates.getTimestamp(), second.getTimestamp());
+    }
+
+    @Test
+    void givenStalePivotRates_GetSnapshotShouldServeThemAndRevalidateInBackground() {
+        // Arrange
+        when(cacheKeyBuilderService.buildCacheKey("USD", Optional.empty()))
+                .thenReturn(PIVOT_CACHE_KEY);
+        var cachedAt = now.minusSeconds(120);
+        when(cacheService.get(PIVOT_CACHE_KEY))
+                .thenReturn(Optional.of(new CachedRates(usdRates.getRates(), now, cachedAt)));
+        when(existingCurrencies.getCurrencyIndex()).thenReturn(currencyIndex);
+
+        // Act
+        var snapshot = rateTriangulationService.getSnapshot();
+
+        // Assert
+        assertEquals(cachedAt, snapshot.getCachedAt());
+        verify(refreshAheadService, times(1)).refreshNow(eq(PIVOT_CACHE_KEY), any(Runnable.class));
+        verify(currencyAPIClient, times(0)).fetchCurrencyExchangeRates(anyString(), any());
+    }
+
+    @Test
+    void givenExpiredPivotRatesAndFailingExternalAPI_GetSnapshotShouldServeStaleRates() {
+        // Arrange
+        when(cacheKeyBuilderService.buildCacheKey("USD", Optional.empty()))
+                .thenReturn(PIVOT_CACHE_KEY);
+        var cachedAt = now.minusSeconds(600);
+        when(cacheService.get(PIVOT_CACHE_KEY))
+                .thenReturn(Optional.of(new CachedRates(usdRates.getRates(), now, cachedAt)));
+        when(existingCurrencies.getCurrencyIndex()).thenReturn(currencyIndex);
+        when(currencyAPIClient.fetchCurrencyExchangeRates("USD", List.of()))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_GATEWAY));
+
+        // Act
+        var snapshot = rateTriangulationService.getSnapshot();
+
+        // Assert
+        assertEquals(cachedAt, snapshot.getCachedAt());
+        assertEquals(2.0, rate(snapshot, "USD", "EUR"));
+    }
+
+    @Test
+    void givenNoCachedPivotRates_GetSnapshotAsyncShouldNotWaitOnExternalAPI() {
+        // Arrange
+        when(cacheKeyBuilderService.buildCacheKey("USD", Optional.empty()))
+                .thenReturn(PIVOT_CACHE_KEY);
+        when(cacheService.get(PIVOT_CACHE_KEY)).thenReturn(Optional.empty());
+        when(existingCurrencies.getCurrencyIndex()).thenReturn(currencyIndex);
+        var pendingResponse = new CompletableFuture<CurrencyRatesResponse>();
+        when(currencyAPIClient.fetchCurrencyExchangeRatesAsync("USD", List.of()))
+                .thenReturn(pendingResponse);
+
+        // Act
+        var snapshot = rateTriangulationService.getSnapshotAsync();
+
+        // Assert
+        assertFalse(snapshot.isDone());
+        pendingResponse.complete(
+                new CurrencyRatesResponse(true, now, "USD", usdRates.getRates(), null, null));
+        assertEquals(100.0, rate(snapshot.join(), "USD", "JPY"));
+        verify(cacheService, times(1))
+                .set(eq(PIVOT_CACHE_KEY), any(CachedRates.class), any(Duration.class));
+        verify(currencyAPIClient, never()).fetchCurrencyExchangeRates(anyString(), any());
+    }
+
+    @Test
+    void givenExpiredPivotRatesAndFailingExternalAPI_GetSnapshotAsyncShouldServeStaleRates() {
+        // Arrange
+        when(cacheKeyBuilderService.buildCacheKey("USD", Optional.empty()))
+                .thenReturn(PIVOT_CACHE_KEY);
+        var cachedAt = now.minusSeconds(600);
+        when(cacheService.get(PIVOT_CACHE_KEY))
+                .thenReturn(Optional.of(new CachedRates(usdRates.getRates(), now, cachedAt)));
+        when(existingCurrencies.getCurrencyIndex()).thenReturn(currencyIndex);
+        when(currencyAPIClient.fetchCurrencyExchangeRatesAsync("USD", List.of()))
+                .thenReturn(
+                        CompletableFuture.failedFuture(
+                                new ResponseStatusException(HttpStatus.BAD_GATEWAY)));
+
+        // Act
+        var snapshot = rateTriangulationService.getSnapshotAsync().join();
+
+        // Assert
+        assertEquals(cachedAt, snapshot.getCachedAt());
+        assertEquals(2.0, rate(snapshot, "USD", "EUR"));
+    }
+
+    @Test
+    void givenNonPivotPair_DeriveRatesShouldTriangulateThroughPivot() {
+        // Act
+        var rates = rateTriangulationService.deriveRates(usdSnapshot(), "EUR", List.of("JPY"));
+
+        // Assert - EUR -> JPY = (USD -> JPY) / (USD -> EUR)
+        assertEquals(Map.of("JPY", 100.0 / 2.0), rates);
+    }
+
+    @Test
+    void givenPivotAsTarget_DeriveRatesShouldInvertPivotRate() {
+        // Act
+        var rates = rateTriangulationService.deriveRates(usdSnapshot(), "EUR", List.of("USD"));
+
+        // Assert
+        assertEquals(Map.of("USD", 1 / 2.0), rates);
+    }
+
+    @Test
+    void givenNoTargets_DeriveRatesShouldDeriveEveryOtherQuotedCurrency() {
+        // Act
+        var rates = rateTriangulationService.deriveRates(usdSnapshot(), "EUR", List.of());
+
+        // Assert - GBP is indexed, but has no rate from the pivot
+        assertEquals(3, rates.size());
+        assertEquals(1 / 2.0, rates.get("USD"));
+        assertEquals(100.0 / 2.0, rates.get("JPY"));
+        assertEquals(5.0 / 2.0, rates.get("CHF"));
+        assertFalse(rates.containsKey("EUR"));
+        assertFalse(rates.containsKey("GBP"));
+    }
+
+    @Test
+    void givenUnknownBase_DeriveRatesShouldThrow() {
+        // Act & Assert
+        assertThrows(
+                BusinessException.class,
+                () -> rateTriangulationService.deriveRates(usdSnapshot(), "XYZ", List.of("EUR")));
+    }
+
+    @Test
+    void givenUnquotedSingleTarget_DeriveRatesShouldThrow() {
+        // Act & Assert
+        assertThrows(
+                BusinessException.class,
+                () -> rateTriangulationService.deriveRates(usdSnapshot(), "EUR", List.of("GBP")));
+    }
+
+    private RateTriangulationService createService(long recheckMillis) {
+        var service =
+                new RateTriangulationService(
+                        currencyAPIClient,
+                        cacheService,
+                        cacheKeyBuilderService,
+                        new RequestCoalescer(new SimpleMeterRegistry(), 1000),
+                        existingCurrencies,
+                        refreshAheadService,
+                        new RatesFreshnessPolicy(60, 300, 3600),
+                        recheckMillis);
+        ReflectionTestUtils.setField(service, "pivotCurrency", "USD");
+        return service;
+    }
+
+    private void setupPivotRatesCacheHit() {
+        when(cacheKeyBuilderService.buildCacheKey("USD", Optional.empty()))
+                .thenReturn(PIVOT_CACHE_KEY);
+        when(cacheService.get(PIVOT_CACHE_KEY)).thenReturn(Optional.of(usdRates));
+        when(existingCurrencies.getCurrencyIndex()).thenReturn(currencyIndex);
+    }
+
+    private static double rate(RateSnapshot snapshot, String base, String target) {
+        var index = snapshot.getIndex();
+        return snapshot.rate(index.idOf(base), index.idOf(target));
+    }
+
+    private static RateSnapshot usdSnapshot() {
+        return RateSnapshot.fromPivotRates(currencyIndex, "USD", usdRates.getRates(), now, now);
+    }
+
+    private static final Instant now = Instant.now();
+    private static final CurrencyIndex currencyIndex =
+            CurrencyIndex.of(Set.of("USD", "EUR", "JPY", "CHF", "GBP"));
+    private static final CachedRates usdRates =
+            new CachedRates(Map.of("EUR", 2.0, "JPY", 100.0, "CHF", 5.0), now, now);
+}
@@ -0,0 +1,105 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.CachedRates;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class RatesHashCacheServiceTest {
+    @Mock StringRedisTemplate redisTemplate;
+
+    @Mock HashOperations<String, Object, Object> hashOperations;
+
+    RatesHashCacheService ratesHashCacheService;
+
+    private static final String KEY = "rates-hash:USD";
+    private static final Instant now = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @BeforeEach
+    void setUp() {
+        ratesHashCacheService =
+                new RatesHashCacheService(redisTemplate, new CacheKeyBuilderService());
+    }
+
+    @Test
+    void givenCachedHash_GetRatesShouldReadOnlyRequestedTargets() {
+        // Arrange
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.multiGet(
+                        KEY,
+                        List.of(
+                                "EUR",
+                                "XYZ",
+                                RatesHashCacheService.TIMESTAMP_FIELD,
+                                RatesHashCacheService.CACHED_AT_FIELD)))
+                .thenReturn(Arrays.asList("0.91", null, "1700000000000", "1700000000000"));
+
+        // Act
+        var result = ratesHashCacheService.getRates("USD", List.of("EUR", "XYZ"));
+
+        // Assert
+        assertEquals(new CachedRates(Map.of("EUR", 0.91), now, now), result.get());
+    }
+
+    @Test
+    void givenMissingHash_GetRatesShouldReturnEmptyOptional() {
+        // Arrange
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.multiGet(any(), any())).thenReturn(Arrays.asList(null, null, null));
+
+        // Act
+        var result = ratesHashCacheService.getRates("USD", List.of("EUR"));
+
+        // Assert
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void givenNoTargets_GetRatesShouldReadWholeHash() {
+        // Arrange
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries(KEY))
+                .thenReturn(
+                        Map.of(
+                                "EUR",
+                                "0.91",
+                                "JPY",
+                                "151.2",
+                                RatesHashCacheService.CACHED_AT_FIELD,
+                                "1700000000000"));
+
+        // Act
+        var result = ratesHashCacheService.getRates("USD", List.of());
+
+        // Assert
+        assertEquals(new CachedRates(Map.of("EUR", 0.91, "JPY", 151.2), null, now), result.get());
+    }
+
+    @Test
+    void givenRates_ReplaceRatesShouldWriteInSingleTransaction() {
+        // Act
+        ratesHashCacheService.replaceRates(
+                "USD", new CachedRates(Map.of("EUR", 0.91), now, now), Duration.ofSeconds(60));
+
+        // Assert
+        verify(redisTemplate, times(1)).execute(any(SessionCallback.class));
+    }
+}
@@ -0,0 +1,140 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.ApiKeyAccessDecision.Result;
+import com.exchangerates.CurrencyExchangeAPI.entities.Plan;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyDigest;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IAuthenticationService;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+@ExtendWith(MockitoExtension.class)
+class RedisApiKeyAccessServiceTest {
+    @Mock StringRedisTemplate redisTemplate;
+
+    @SuppressWarnings("rawtypes")
+    @Mock
+    RedisScript<List> authRateLimiterScript;
+
+    @Mock IAuthenticationService authenticationService;
+
+    RedisApiKeyAccessService redisApiKeyAccessService;
+
+    private static final String API_KEY = "api-key";
+
+    @BeforeEach
+    void setUp() {
+        redisApiKeyAccessService =
+                new RedisApiKeyAccessService(
+                        redisTemplate, authRateLimiterScript, authenticationService);
+    }
+
+    @Test
+    void givenActiveApiKey_CheckAccessShouldOnlyRunScript() {
+        // Arrange
+        setupScriptResults(List.of(1L, 0L));
+
+        // Act
+        var decision = redisApiKeyAccessService.checkAccess(API_KEY);
+
+        // Assert
+        assertEquals(Result.ALLOWED, decision.result());
+        verify(authenticationService, never()).revalidateAPIKeyPlan(any());
+    }
+
+    @Test
+    void givenRateLimitedApiKey_CheckAccessShouldReturnRetryAfter() {
+        // Arrange
+        setupScriptResults(List.of(0L, 1500L));
+
+        // Act
+        var decision = redisApiKeyAccessService.checkAccess(API_KEY);
+
+        // Assert
+        assertEquals(Result.RATE_LIMITED, decision.result());
+        assertEquals(1500, decision.retryAfterMillis());
+    }
+
+    @Test
+    void givenValidApiKeyMissingFromRedis_CheckAccessShouldRegisterItAndRetry() {
+        // Arrange
+        setupScriptResults(List.of(-1L, 0L), List.of(1L, 0L));
+        when(authenticationService.revalidateAPIKeyPlan(API_KEY)).thenReturn(Optional.of(Plan.PRO));
+
+        // Act
+        var decision = redisApiKeyAccessService.checkAccess(API_KEY);
+
+        // Assert
+        assertEquals(Result.ALLOWED, decision.result());
+        verify(authenticationService).registerActiveAPIKey(API_KEY, Plan.PRO);
+        verify(authenticationService, never()).unregisterActiveAPIKey(any());
+        verify(redisTemplate, times(2))
+                .execute(
+                        eq(authRateLimiterScript),
+                        eq(
+                                List.of(
+                                        "auth:api-key:{" + ApiKeyDigest.hexOf(API_KEY) + "}",
+                                        "ratelimit:gcra:{" + ApiKeyDigest.hexOf(API_KEY) + "}")),
+                        any(Object[].class));
+    }
+
+    @Test
+    void givenApiKeyRevokedWhileRegistering_CheckAccessShouldUnregisterItAndReturnInvalid() {
+        // Arrange
+        setupScriptResults(List.of(-1L, 0L));
+        when(authenticationService.revalidateAPIKeyPlan(API_KEY))
+                .thenReturn(Optional.of(Plan.PRO))
+                .thenReturn(Optional.empty());
+
+        // Act
+        var decision = redisApiKeyAccessService.checkAccess(API_KEY);
+
+        // Assert
+        assertEquals(Result.INVALID_API_KEY, decision.result());
+        verify(authenticationService).registerActiveAPIKey(API_KEY, Plan.PRO);
+        verify(authenticationService).unregisterActiveAPIKey(API_KEY);
+        verify(redisTemplate, times(1))
+                .execute(eq(authRateLimiterScript), any(), any(Object[].class));
+    }
+
+    @Test
+    void givenInvalidApiKey_CheckAccessShouldReturnInvalid() {
+        // Arrange
+        setupScriptResults(List.of(-1L, 0L));
+        when(authenticationService.revalidateAPIKeyPlan(API_KEY)).thenReturn(Optional.empty());
+
+        // Act
+        var decision = redisApiKeyAccessService.checkAccess(API_KEY);
+
+        // Assert
+        assertEquals(Result.INVALID_API_KEY, decision.result());
+        verify(authenticationService, never()).registerActiveAPIKey(any(), any());
+    }
+
+    @SafeVarargs
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void setupScriptResults(List<Long> first, List<Long>... next) {
+        when(redisTemplate.execute(
+                        eq(authRateLimiterScript),
+                        eq(
+                                List.of(
+                                        "auth:api-key:{" + ApiKeyDigest.hexOf(API_KEY) + "}",
+                                        "ratelimit:gcra:{" + ApiKeyDigest.hexOf(API_KEY) + "}")),
+                        any(Object[].class)))
+                .thenReturn(first, (List[]) next);
+    }
+}
@@ -0,0 +1,157 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RefreshAheadServiceTest {
+    SimpleMeterRegistry meterRegistry;
+
+    RefreshAheadService refreshAheadService;
+
+    private static final String KEY = "USD:EUR";
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        refreshAheadService = createService(300, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        refreshAheadService.shutdown();
+    }
+
+    @Test
+    void givenRatesExpiringWithinLeadTime_RefreshShouldRun() throws Exception {
+        // Arrange
+        var refreshed = new CountDownLatch(1);
+        refreshAheadService.track(KEY, Duration.ofSeconds(5), refreshed::countDown);
+
+        // Act
+        refreshAheadService.refreshExpiringRates();
+
+        // Assert
+        assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void givenRatesNotExpiringSoon_RefreshShouldNotRun() {
+        // Arrange
+        var refreshes = new AtomicInteger();
+        refreshAheadService.track(KEY, Duration.ofSeconds(60), refreshes::incrementAndGet);
+
+        // Act
+        refreshAheadService.refreshExpiringRates();
+
+        // Assert
+        assertEquals(0, refreshes.get());
+        assertEquals(1.0, meterRegistry.get("rates.refresh.tracked").gauge().value());
+    }
+
+    @Test
+    void givenIdleRates_RefreshShouldNotRunAndRatesShouldBeDropped() {
+        // Arrange - every entry is idle right away
+        refreshAheadService.shutdown();
+        refreshAheadService = createService(0, 1);
+        var refreshes = new AtomicInteger();
+        refreshAheadService.track(KEY, Duration.ZERO, refreshes::incrementAndGet);
+
+        // Act
+        refreshAheadService.refreshExpiringRates();
+
+        // Assert
+        assertEquals(0, refreshes.get());
+        assertEquals(0.0, meterRegistry.get("rates.refresh.tracked").gauge().value());
+    }
+
+    @Test
+    void givenRefreshInProgress_SameRatesShouldNotBeRefreshedAgain() throws Exception {
+        // Arrange
+        var refreshes = new AtomicInteger();
+        var refreshStarted = new CountDownLatch(1);
+        var releaseRefresh = new CountDownLatch(1);
+        refreshAheadService.track(
+                KEY,
+                Duration.ZERO,
+                () -> {
+                    refreshes.incrementAndGet();
+                    refreshStarted.countDown();
+                    await(releaseRefresh);
+                });
+        refreshAheadService.refreshExpiringRates();
+        refreshStarted.await(5, TimeUnit.SECONDS);
+
+        // Act
+        refreshAheadService.refreshExpiringRates();
+        releaseRefresh.countDown();
+
+        // Assert
+        assertEquals(1, refreshes.get());
+    }
+
+    @Test
+    void givenMoreExpiringRatesThanPoolCapacity_ExtraRefreshesShouldBeSkipped() throws Exception {
+        // Arrange - 1 running refresh + 1 queued refresh fit in the pool
+        var releaseRefresh = new CountDownLatch(1);
+        for (int i = 0; i < 4; i++) {
+            refreshAheadService.track("USD:" + i, Duration.ZERO, () -> await(releaseRefresh));
+        }
+
+        // Act
+        refreshAheadService.refreshExpiringRates();
+        releaseRefresh.countDown();
+
+        // Assert
+        assertEquals(
+                2.0,
+                meterRegistry
+                        .get("rates.refresh.ahead")
+                        .tag("result", "skipped")
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    void givenRefreshInProgress_RefreshNowShouldNotRefreshSameRatesAgain() throws Exception {
+        // Arrange
+        var refreshes = new AtomicInteger();
+        var refreshStarted = new CountDownLatch(1);
+        var releaseRefresh = new CountDownLatch(1);
+        refreshAheadService.refreshNow(
+                KEY,
+                () -> {
+                    refreshes.incrementAndGet();
+                    refreshStarted.countDown();
+                    await(releaseRefresh);
+                });
+        refreshStarted.await(5, TimeUnit.SECONDS);
+
+        // Act
+        refreshAheadService.refreshNow(KEY, refreshes::incrementAndGet);
+        releaseRefresh.countDown();
+
+        // Assert
+        assertEquals(1, refreshes.get());
+    }
+
+    private RefreshAheadService createService(long idleSeconds, int maxConcurrency) {
+        return new RefreshAheadService(meterRegistry, true, 10, idleSeconds, maxConcurrency);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+class RequestCoalescerTest {
+    SimpleMeterRegistry meterRegistry;
+
+    RequestCoalescer requestCoalescer;
+
+    private static final String KEY = "USD:EUR";
+    private static final int CONCURRENT_CALLERS = 8;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        requestCoalescer = new RequestCoalescer(meterRegistry, 5000);
+    }
+
+    @Test
+    void givenConcurrentCallsForSameKey_OnlyOneCallShouldExecute() throws Exception {
+        // Arrange
+        var executions = new AtomicInteger();
+        var leaderStarted = new CountDownLatch(1);
+        var releaseLeader = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(CONCURRENT_CALLERS);
+
+        // Act
+        var leader =
+                executor.submit(
+                        () ->
+                                requestCoalescer.coalesce(
+                                        KEY,
+                                        () -> {
+                                            executions.incrementAndGet();
+                                            leaderStarted.countDown();
+                                            await(releaseLeader);
+                                            return 42;
+                                        }));
+        leaderStarted.await();
+
+        var followers = new ArrayList<Future<Integer>>();
+        for (int i = 1; i < CONCURRENT_CALLERS; i++) {
+            followers.add(
+                    executor.submit(
+                            () ->
+                                    requestCoalescer.coalesce(
+                                            KEY,
+                                            () -> {
+                                                executions.incrementAndGet();
+                                                return -1;
+                                            })));
+        }
+        // wait until every follower is parked on the leader's result
+        while (followerCount() < CONCURRENT_CALLERS - 1) {
+            Thread.sleep(5);
+        }
+        releaseLeader.countDown();
+
+        // Assert
+        assertEquals(42, leader.get(5, TimeUnit.SECONDS));
+        for (var follower : followers) {
+            assertEquals(42, follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+        executor.shutdown();
+    }
+
+    @Test
+    void givenCompletedCall_NextCallForSameKeyShouldExecuteAgain() {
+        // Arrange
+        var executions = new AtomicInteger();
+
+        // Act
+        requestCoalescer.coalesce(KEY, executions::incrementAndGet);
+        var result = requestCoalescer.coalesce(KEY, executions::incrementAndGet);
+
+        // Assert
+        assertEquals(2, result);
+        assertEquals(0.0, followerCount());
+    }
+
+    @Test
+    void givenFailingLeader_FollowersShouldFailWithSameException() throws Exception {
+        // Arrange
+        var leaderStarted = new CountDownLatch(1);
+        var releaseLeader = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(2);
+
+        // Act
+        var leader =
+                executor.submit(
+                        () ->
+                                requestCoalescer.coalesce(
+                                        KEY,
+                                        () -> {
+                                            leaderStarted.countDown();
+                                            await(releaseLeader);
+                                            throw new ResponseStatusException(
+                                                    HttpStatus.BAD_GATEWAY);
+                                        }));
+        leaderStarted.await();
+        var follower = executor.submit(() -> requestCoalescer.coalesce(KEY, () -> 1));
+        while (followerCount() < 1) {
+            Thread.sleep(5);
+        }
+        releaseLeader.countDown();
+
+        // Assert
+        var leaderException = assertThrows(ExecutionException.class, () -> leader.get());
+        var followerException = assertThrows(ExecutionException.class, () -> follower.get());
+        assertTrue(leaderException.getCause() instanceof ResponseStatusException);
+        assertTrue(followerException.getCause() instanceof ResponseStatusException);
+        executor.shutdown();
+    }
+
+    @Test
+    void givenLeaderFailingWithError_FollowersShouldFailInsteadOfWaiting() throws Exception {
+        // Arrange
+        var leaderStarted = new CountDownLatch(1);
+        var releaseLeader = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(2);
+
+        // Act
+        var leader =
+                executor.submit(
+                        () ->
+                                requestCoalescer.coalesce(
+                                        KEY,
+                                        () -> {
+                                            leaderStarted.countDown();
+                                            await(releaseLeader);
+                                            throw new AssertionError("upstream client bug");
+                                        }));
+        leaderStarted.await();
+        var follower = executor.submit(() -> requestCoalescer.coalesce(KEY, () -> 1));
+        while (followerCount() < 1) {
+            Thread.sleep(5);
+        }
+        releaseLeader.countDown();
+
+        // Assert
+        var leaderException = assertThrows(ExecutionException.class, () -> leader.get());
+        var followerException =
+                assertThrows(ExecutionException.class, () -> follower.get(1, TimeUnit.SECONDS));
+        assertTrue(leaderException.getCause() instanceof AssertionError);
+        assertTrue(followerException.getCause() instanceof AssertionError);
+        assertEquals(0.0, meterRegistry.get("upstream.coalescing.timeouts").counter().count());
+        executor.shutdown();
+    }
+
+    @Test
+    void givenSlowLeader_FollowerShouldTimeOut() throws Exception {
+        // Arrange
+        requestCoalescer = new RequestCoalescer(meterRegistry, 50);
+        var leaderStarted = new CountDownLatch(1);
+        var releaseLeader = new CountDownLatch(1);
+        var executor = Executors.newSingleThreadExecutor();
+        executor.submit(
+                () ->
+                        requestCoalescer.coalesce(
+                                KEY,
+                                () -> {
+                                    leaderStarted.countDown();
+                                    await(releaseLeader);
+                                    return 1;
+                                }));
+        leaderStarted.await();
+
+        // Act & Assert
+        var exception =
+                assertThrows(
+                        ResponseStatusException.class,
+                        () -> requestCoalescer.coalesce(KEY, () -> 2));
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, exception.getStatusCode());
+        assertEquals(1.0, meterRegistry.get("upstream.coalescing.timeouts").counter().count());
+        releaseLeader.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void givenAsyncCallInFlight_AsyncAndBlockingCallersShouldShareIt() throws Exception {
+        // Arrange
+        var executions = new AtomicInteger();
+        var inFlightCall = new CompletableFuture<Integer>();
+        var executor = Executors.newSingleThreadExecutor();
+
+        // Act
+        var leader =
+                requestCoalescer.coalesceAsync(
+                        KEY,
+                        () -> {
+                            executions.incrementAndGet();
+                            return inFlightCall;
+                        });
+        var asyncFollower =
+                requestCoalescer.coalesceAsync(
+                        KEY, () -> CompletableFuture.completedFuture(executions.incrementAndGet()));
+        var blockingFollower =
+                executor.submit(() -> requestCoalescer.coalesce(KEY, executions::incrementAndGet));
+        while (followerCount() < 2) {
+            Thread.sleep(5);
+        }
+        boolean doneBeforeCallCompleted = leader.isDone() || asyncFollower.isDone();
+        inFlightCall.complete(42);
+
+        // Assert
+        assertFalse(doneBeforeCallCompleted);
+        assertEquals(42, leader.join());
+        assertEquals(42, asyncFollower.join());
+        assertEquals(42, blockingFollower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+        executor.shutdown();
+    }
+
+    @Test
+    void givenSlowAsyncLeader_AsyncFollowerShouldTimeOutWithoutFailingTheCall() {
+        // Arrange
+        requestCoalescer = new RequestCoalescer(meterRegistry, 50);
+        var inFlightCall = new CompletableFuture<Integer>();
+        var leader = requestCoalescer.coalesceAsync(KEY, () -> inFlightCall);
+
+        // Act
+        var follower =
+                requestCoalescer.coalesceAsync(KEY, () -> CompletableFuture.completedFuture(2));
+        var exception = assertThrows(CompletionException.class, follower::join);
+        inFlightCall.complete(1);
+
+        // Assert
+        assertTrue(exception.getCause() instanceof ResponseStatusException);
+        assertEquals(
+                HttpStatus.GATEWAY_TIMEOUT,
+                ((ResponseStatusException) exception.getCause()).getStatusCode());
+        assertEquals(1, leader.join());
+    }
+
+    @Test
+    void givenCallInFlightPastTheTimeout_NextCallerShouldExecuteItsOwnCall() throws Exception {
+        // Arrange
+        meterRegistry = new SimpleMeterRegistry();
+        requestCoalescer = new RequestCoalescer(meterRegistry, 50);
+        var hungCall = new CompletableFuture<Integer>();
+        var leader = requestCoalescer.coalesceAsync(KEY, () -> hungCall);
+        while (meterRegistry.get("upstream.coalescing.inflight").gauge().value() > 0) {
+            Thread.sleep(5);
+        }
+
+        // Act
+        var result =
+                requestCoalescer.coalesceAsync(KEY, () -> CompletableFuture.completedFuture(2));
+
+        // Assert
+        assertEquals(2, result.join());
+        assertEquals(0.0, followerCount());
+        assertFalse(leader.isDone());
+        hungCall.complete(1);
+        assertEquals(1, leader.join());
+    }
+
+    private double followerCount() {
+        return meterRegistry
+                .get("upstream.coalescing.calls")
+                .tag("role", "follower")
+                .counter()
+                .count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+@ExtendWith(MockitoExtension.class)
+class UpstreamBudgetServiceTest {
+    @Mock StringRedisTemplate redisTemplate;
+
+    @Mock ValueOperations<String, String> valueOperations;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    RatesFreshnessPolicy ratesFreshnessPolicy = new RatesFreshnessPolicy(60, 300, 3600);
+
+    @Test
+    void givenQuotaConsumedFasterThanSustainable_SyncShouldStretchTtls() throws Exception {
+        // Arrange
+        var upstreamBudgetService = newUpstreamBudgetService(true, 10000, 10);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenReturn("5000");
+        Thread.sleep(5);
+
+        // Act
+        upstreamBudgetService.synchronize();
+
+        // Assert
+        // raised by at most a factor of 2 per sync
+        assertEquals(2.0, ratesFreshnessPolicy.getTtlMultiplier());
+        assertEquals(Duration.ofSeconds(120), ratesFreshnessPolicy.getSoftTtl());
+        assertEquals(5000, meterRegistry.get("upstream.budget.remaining").gauge().value());
+        assertTrue(
+                meterRegistry.get("upstream.budget.projected-exhaustion-seconds").gauge().value()
+                        < Double.POSITIVE_INFINITY);
+    }
+
+    @Test
+    void givenNoCallsMade_SyncShouldNotStretchTtls() throws Exception {
+        // Arrange
+        var upstreamBudgetService = newUpstreamBudgetService(true, 10000, 10);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenReturn(null);
+        Thread.sleep(5);
+
+        // Act
+        upstreamBudgetService.synchronize();
+
+        // Assert
+        assertEquals(1.0, ratesFreshnessPolicy.getTtlMultiplier());
+        assertEquals(
+                Double.POSITIVE_INFINITY,
+                meterRegistry.get("upstream.budget.projected-exhaustion-seconds").gauge().value());
+        assertTrue(upstreamBudgetService.allowCall("EUR"));
+    }
+
+    @Test
+    void givenQuotaDownToReserve_OnlyMostRequestedBasesShouldBeAllowed() throws Exception {
+        // Arrange
+        var upstreamBudgetService = newUpstreamBudgetService(true, 100, 1);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenReturn("95");
+        upstreamBudgetService.recordDemand("USD");
+        upstreamBudgetService.recordDemand("USD");
+        upstreamBudgetService.recordDemand("EUR");
+        Thread.sleep(5);
+
+        // Act
+        upstreamBudgetService.synchronize();
+
+        // Assert
+        assertTrue(upstreamBudgetService.allowCall("USD"));
+        assertFalse(upstreamBudgetService.allowCall("EUR"));
+        // calls not specific to a base currency are still made
+        assertTrue(upstreamBudgetService.allowCall(null));
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("upstream.budget.calls")
+                        .tag("result", "rejected")
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    void givenQuotaUsedUp_NoCallShouldBeAllowed() {
+        // Arrange
+        var upstreamBudgetService = newUpstreamBudgetService(true, 100, 10);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.increment(anyString())).thenReturn(100L);
+        upstreamBudgetService.recordDemand("USD");
+
+        // Act
+        upstreamBudgetService.recordCall();
+
+        // Assert
+        assertFalse(upstreamBudgetService.allowCall("USD"));
+        assertFalse(upstreamBudgetService.allowCall(null));
+        assertEquals(0, meterRegistry.get("upstream.budget.remaining").gauge().value());
+    }
+
+    @Test
+    void givenRedisUnavailable_CallsShouldBeCountedLocally() {
+        // Arrange
+        var upstreamBudgetService = newUpstreamBudgetService(true, 100, 10);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.increment(anyString()))
+                .thenThrow(new RedisConnectionFailureException("Redis down"));
+
+        // Act
+        upstreamBudgetService.recordCall();
+        upstreamBudgetService.recordCall();
+
+        // Assert
+        assertEquals(98, meterRegistry.get("upstream.budget.remaining").gauge().value());
+    }
+
+    @Test
+    void givenBudgetDisabled_CallsShouldAlwaysBeAllowedWithoutTouchingRedis() {
+        // Arrange
+        var upstreamBudgetService = newUpstreamBudgetService(false, 0, 10);
+
+        // Act
+        upstreamBudgetService.recordCall();
+        upstreamBudgetService.synchronize();
+        var allowed = upstreamBudgetService.allowCall("USD");
+
+        // Assert
+        assertTrue(allowed);
+        assertEquals(1.0, ratesFreshnessPolicy.getTtlMultiplier());
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void givenBudgetEnabledWithoutQuota_ConstructionShouldFail() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> newUpstreamBudgetService(true, 0, 10));
+    }
+
+    @Test
+    void givenInstant_PeriodStartShouldBeStartOfCalendarPeriodInUtc() {
+        // Arrange
+        // a Sunday
+        var now = Instant.parse("2026-10-18T13:45:00Z");
+
+        // Act & Assert
+        assertEquals(
+                Instant.parse("2026-10-18T00:00:00Z"),
+                UpstreamBudgetService.periodStart(now, ChronoUnit.DAYS));
+        assertEquals(
+                Instant.parse("2026-10-12T00:00:00Z"),
+                UpstreamBudgetService.periodStart(now, ChronoUnit.WEEKS));
+        assertEquals(
+                Instant.parse("2026-10-01T00:00:00Z"),
+                UpstreamBudgetService.periodStart(now, ChronoUnit.MONTHS));
+    }
+
+    private UpstreamBudgetService newUpstreamBudgetService(
+            boolean enabled, long quota, int priorityBases) {
+        return new UpstreamBudgetService(
+                redisTemplate,
+                ratesFreshnessPolicy,
+                meterRegistry,
+                enabled,
+                quota,
+                ChronoUnit.MONTHS,
+                10,
+                0.1,
+                priorityBases);
+    }
+}
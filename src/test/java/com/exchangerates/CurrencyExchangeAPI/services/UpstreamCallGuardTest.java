@@ -0,0 +1,181 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.exchangerates.CurrencyExchangeAPI.services.UpstreamCallGuard.State;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.server.ResponseStatusException;
+
+class UpstreamCallGuardTest {
+    SimpleMeterRegistry meterRegistry;
+
+    UpstreamCallGuard upstreamCallGuard;
+
+    private static final int MAX_CONCURRENT_CALLS = 2;
+    private static final int MINIMUM_CALLS = 4;
+    private static final long OPEN_DURATION_MILLIS = 50;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        upstreamCallGuard =
+                new UpstreamCallGuard(
+                        meterRegistry,
+                        MAX_CONCURRENT_CALLS,
+                        10,
+                        MINIMUM_CALLS,
+                        0.5,
+                        OPEN_DURATION_MILLIS);
+    }
+
+    @Test
+    void givenFailureRateAboveThreshold_CircuitShouldOpenAndRejectCallsWithoutExecutingThem() {
+        // Arrange
+        var executions = new AtomicInteger();
+        succeed();
+        succeed();
+        fail();
+        fail();
+
+        // Act
+        var exception =
+                assertThrows(
+                        ResponseStatusException.class,
+                        () -> upstreamCallGuard.call(executions::incrementAndGet));
+
+        // Assert
+        assertEquals(State.OPEN, upstreamCallGuard.getState());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode());
+        assertEquals(0, executions.get());
+        assertEquals(1.0, callCount("rejected_open"));
+        assertEquals(1.0, meterRegistry.get("upstream.circuit-breaker.state").gauge().value());
+    }
+
+    @Test
+    void givenFewerCallsThanMinimum_CircuitShouldStayClosed() {
+        // Act
+        fail();
+        fail();
+        fail();
+
+        // Assert
+        assertEquals(State.CLOSED, upstreamCallGuard.getState());
+    }
+
+    @Test
+    void givenClientErrors_TheyShouldNotCountAsFailures() {
+        // Act
+        for (int i = 0; i < MINIMUM_CALLS; i++) {
+            assertThrows(
+                    ResponseStatusException.class,
+                    () ->
+                            upstreamCallGuard.call(
+                                    () -> {
+                                        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+                                    }));
+        }
+
+        // Assert
+        assertEquals(State.CLOSED, upstreamCallGuard.getState());
+    }
+
+    @Test
+    void givenOpenDurationElapsed_SuccessfulTrialCallShouldCloseCircuit() throws Exception {
+        // Arrange
+        openCircuit();
+        Thread.sleep(OPEN_DURATION_MILLIS + 10);
+
+        // Act
+        var result = upstreamCallGuard.call(() -> 42);
+
+        // Assert
+        assertEquals(42, result);
+        assertEquals(State.CLOSED, upstreamCallGuard.getState());
+    }
+
+    @Test
+    void givenOpenDurationElapsed_FailedTrialCallShouldReopenCircuit() throws Exception {
+        // Arrange
+        openCircuit();
+        Thread.sleep(OPEN_DURATION_MILLIS + 10);
+
+        // Act
+        fail();
+
+        // Assert
+        assertEquals(State.OPEN, upstreamCallGuard.getState());
+        assertThrows(ResponseStatusException.class, () -> upstreamCallGuard.call(() -> 1));
+    }
+
+    @Test
+    void givenHalfOpenCircuit_OnlyOneTrialCallShouldBeInFlight() throws Exception {
+        // Arrange
+        openCircuit();
+        Thread.sleep(OPEN_DURATION_MILLIS + 10);
+        var trialCall = new CompletableFuture<Integer>();
+        upstreamCallGuard.callAsync(() -> trialCall);
+
+        // Act
+        var concurrentCall =
+                upstreamCallGuard.callAsync(() -> CompletableFuture.completedFuture(1));
+        trialCall.complete(1);
+
+        // Assert
+        var exception = assertThrows(CompletionException.class, concurrentCall::join);
+        assertTrue(exception.getCause() instanceof ResponseStatusException);
+        assertEquals(State.CLOSED, upstreamCallGuard.getState());
+    }
+
+    @Test
+    void givenBulkheadFull_CallsShouldBeRejectedUntilInFlightCallsComplete() {
+        // Arrange
+        var inFlightCalls = new CompletableFuture<Integer>();
+        for (int i = 0; i < MAX_CONCURRENT_CALLS; i++) {
+            upstreamCallGuard.callAsync(() -> inFlightCalls);
+        }
+
+        // Act
+        var rejected = assertThrows(ResponseStatusException.class, () -> succeed());
+        inFlightCalls.complete(1);
+
+        // Assert
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+        assertEquals(1.0, callCount("rejected_bulkhead"));
+        assertEquals(1, upstreamCallGuard.call(() -> 1));
+        assertEquals(0.0, meterRegistry.get("upstream.bulkhead.in-flight").gauge().value());
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < MINIMUM_CALLS; i++) {
+            fail();
+        }
+        assertEquals(State.OPEN, upstreamCallGuard.getState());
+    }
+
+    private void succeed() {
+        upstreamCallGuard.call(() -> 1);
+    }
+
+    private void fail() {
+        assertThrows(
+                ResourceAccessException.class,
+                () ->
+                        upstreamCallGuard.call(
+                                () -> {
+                                    throw new ResourceAccessException("Read timed out");
+                                }));
+    }
+
+    private double callCount(String outcome) {
+        return meterRegistry.get("upstream.calls").tag("outcome", outcome).counter().count();
+    }
+}
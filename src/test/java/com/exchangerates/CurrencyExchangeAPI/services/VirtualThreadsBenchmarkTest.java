@@ -0,0 +1,336 @@
+package com.exchangerates.CurrencyExchangeAPI.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import com.exchangerates.CurrencyExchangeAPI.domain.ApiKeyAccessDecision;
+import com.exchangerates.CurrencyExchangeAPI.domain.ApiKeyAccessDecision.Result;
+import com.exchangerates.CurrencyExchangeAPI.domain.CachedRates;
+import com.exchangerates.CurrencyExchangeAPI.repository.UserRepository;
+import com.exchangerates.CurrencyExchangeAPI.security.ApiKeyFormat;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyAccessService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IApiKeyBloomFilterService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.ICacheService;
+import com.exchangerates.CurrencyExchangeAPI.services.interfaces.IRequestCoalescer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Measures requests blocked on the external API, with latency injected by a stub of it
+ * (BENCHMARK_UPSTREAM_LATENCY_MS, 250 by default):
+ * - through the upstream client alone, from a pool of platform threads (the size of Tomcat's
+ *   default request pool) and from virtual threads
+ * - through the application, served by Tomcat with spring.threads.virtual.enabled off and on.
+ *   Rate limiting, the rates cache and request coalescing are mocked out, so every request calls
+ *   the stub, and Redis and MySQL are not needed
+ * The virtual thread parts need a Java 21 runtime, and are skipped otherwise. Not run by default -
+ * run it with:
+ *   mvn test -Pbenchmark -Dtest=VirtualThreadsBenchmarkTest
+ */
+@Tag("benchmark")
+class VirtualThreadsBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadsBenchmarkTest.class);
+
+    private static final int REQUESTS = 2_000;
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final List<String> CURRENCIES = List.of("USD", "EUR", "GBP", "JPY", "CHF");
+    private static final Pattern QUERY_PARAMETER = Pattern.compile("(\\w+)=([^&]*)");
+
+    private static HttpServer upstreamStub;
+    private CurrencyAPIClient currencyAPIClient;
+
+    @BeforeAll
+    static void startUpstreamStub() throws Exception {
+        long latencyMillis =
+                Long.parseLong(
+                        System.getenv().getOrDefault("BENCHMARK_UPSTREAM_LATENCY_MS", "250"));
+        upstreamStub = HttpServer.create(new InetSocketAddress("localhost", 0), REQUESTS);
+        // the stub itself must not be what limits throughput
+        var stubExecutor = newVirtualThreadPerTaskExecutor();
+        upstreamStub.setExecutor(
+                stubExecutor != null ? stubExecutor : Executors.newCachedThreadPool());
+        upstreamStub.createContext(
+                "/list",
+                exchange -> {
+                    var currencies = new StringBuilder();
+                    for (var currency : CURRENCIES) {
+                        currencies.append(currencies.isEmpty() ? "" : ",");
+                        currencies.append('"').append(currency).append("\":\"").append(currency);
+                        currencies.append('"');
+                    }
+                    respond(exchange, "{\"success\":true,\"currencies\":{" + currencies + "}}");
+                });
+        upstreamStub.createContext(
+                "/live",
+                exchange -> {
+                    try {
+                        Thread.sleep(latencyMillis);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    respond(exchange, liveResponse(exchange.getRequestURI().getRawQuery()));
+                });
+        upstreamStub.start();
+    }
+
+    @AfterAll
+    static void stopUpstreamStub() {
+        upstreamStub.stop(0);
+    }
+
+    @BeforeEach
+    void setUp() {
+        currencyAPIClient =
+                new CurrencyAPIClient(
+                        new RestTemplate(),
+                        HttpClient.newHttpClient(),
+                        new ObjectMapper(),
+                        // no bulkhead, so only the threads limit concurrent calls
+                        new UpstreamCallGuard(
+                                new SimpleMeterRegistry(), REQUESTS, 20, 10, 0.5, 30000));
+        ReflectionTestUtils.setField(currencyAPIClient, "exchangeRateKey", "benchmark");
+        ReflectionTestUtils.setField(currencyAPIClient, "exchangeRateBaseUrl", upstreamStubUrl());
+    }
+
+    @Test
+    void measureUpstreamCallsOnPlatformAndVirtualThreads() throws Exception {
+        var virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+        assumeTrue(virtualThreadExecutor != null, "virtual threads need a Java 21 runtime");
+
+        measure("platform threads", Executors.newFixedThreadPool(TOMCAT_MAX_THREADS));
+        measure("virtual threads", virtualThreadExecutor);
+    }
+
+    @Nested
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+    class ApplicationOnPlatformThreads extends ApplicationBenchmark {
+        @Test
+        void measureRequestsThroughTomcat() throws Exception {
+            measure("application on platform threads");
+        }
+    }
+
+    @Nested
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+    class ApplicationOnVirtualThreads extends ApplicationBenchmark {
+        @Test
+        void measureRequestsThroughTomcat() throws Exception {
+            measure("application on virtual threads");
+        }
+    }
+
+    @SpringBootTest(
+            webEnvironment = WebEnvironment.RANDOM_PORT,
+            properties = {
+                "spring.autoconfigure.exclude="
+                    + "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration,"
+                    + "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration,"
+                    + "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration",
+                // never connected to
+                "spring.data.redis.host=localhost",
+                "spring.data.redis.port=6379",
+                "spring.data.redis.password=",
+                "exchangerate.apikey=benchmark",
+                "auth.api-key.mac-secret=benchmark",
+                "rates.refresh-ahead.enabled=false",
+                // no pool limit nor bulkhead, so only the request threads limit concurrent calls
+                "upstream.http.max-connections=" + REQUESTS,
+                "upstream.bulkhead.max-concurrent-calls=" + REQUESTS,
+                "upstream.http.pool-timeout-ms=60000",
+                "server.tomcat.threads.max=" + TOMCAT_MAX_THREADS
+            })
+    abstract static class ApplicationBenchmark {
+        @LocalServerPort private int port;
+
+        @Autowired private ApiKeyFormat apiKeyFormat;
+
+        @MockitoBean private IApiKeyAccessService apiKeyAccessService;
+
+        @MockitoBean private IApiKeyBloomFilterService apiKeyBloomFilter;
+
+        @MockitoBean private ICacheService<CachedRates> cacheService;
+
+        // available currencies are then loaded from the stub
+        @MockitoBean private ICacheService<Set<String>> availableCurrenciesCache;
+
+        @MockitoBean private IRequestCoalescer requestCoalescer;
+
+        @MockitoBean private ApiKeyDigestBackfillService apiKeyDigestBackfillService;
+
+        @MockitoBean private UserRepository userRepository;
+
+        // subscribes to revocations in Redis on startup
+        @MockitoBean private RedisMessageListenerContainer apiKeyListenerContainer;
+
+        @DynamicPropertySource
+        static void upstreamProperties(DynamicPropertyRegistry registry) {
+            registry.add("exchangerate.base-url", VirtualThreadsBenchmarkTest::upstreamStubUrl);
+        }
+
+        @BeforeEach
+        void setUpMocks() {
+            when(apiKeyBloomFilter.mightBeIssued(anyString())).thenReturn(true);
+            when(apiKeyAccessService.checkAccess(anyString()))
+                    .thenReturn(new ApiKeyAccessDecision(Result.ALLOWED, 0));
+            when(apiKeyAccessService.checkAccess(anyString(), anyInt()))
+                    .thenReturn(new ApiKeyAccessDecision(Result.ALLOWED, 0));
+            when(requestCoalescer.coalesce(anyString(), any()))
+                    .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+            when(requestCoalescer.coalesceAsync(anyString(), any()))
+                    .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        }
+
+        void measure(String name) throws Exception {
+            var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            var apiKey = apiKeyFormat.generate();
+            // warms up the application, and loads the available currencies
+            send(client, apiKey, 0).join();
+
+            long start = System.nanoTime();
+            var responses = new ArrayList<CompletableFuture<HttpResponse<String>>>(REQUESTS);
+            for (int i = 0; i < REQUESTS; i++) {
+                responses.add(send(client, apiKey, i));
+            }
+            for (var response : responses) {
+                assertEquals(200, response.join().statusCode());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            logRequestsPerSecond(name, seconds);
+        }
+
+        private CompletableFuture<HttpResponse<String>> send(
+                HttpClient client, String apiKey, int i) {
+            var request =
+                    HttpRequest.newBuilder(
+                                    URI.create(
+                                            "http://localhost:"
+                                                    + port
+                                                    + "/api/v1/currency/rate?from=USD&to="
+                                                    + CURRENCIES.get(1 + i % 4)))
+                            .header("X-API-KEY", apiKey)
+                            .build();
+            return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        }
+    }
+
+    private void measure(String name, ExecutorService executor) throws Exception {
+        long start = System.nanoTime();
+        var results = new ArrayList<Future<?>>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            results.add(
+                    executor.submit(
+                            () ->
+                                    currencyAPIClient.fetchCurrencyExchangeRates(
+                                            "USD", List.of("EUR"))));
+        }
+        for (var result : results) {
+            result.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+
+        logRequestsPerSecond(name, seconds);
+    }
+
+    private static void logRequestsPerSecond(String name, double seconds) {
+        logger.info(
+                "{}: {} requests in {}s - {} requests/s",
+                name,
+                REQUESTS,
+                String.format("%.2f", seconds),
+                String.format("%.1f", REQUESTS / seconds));
+    }
+
+    private static String upstreamStubUrl() {
+        return "http://localhost:" + upstreamStub.getAddress().getPort();
+    }
+
+    private static String liveResponse(String query) {
+        var source = "USD";
+        var currencies = "EUR";
+        var parameters = QUERY_PARAMETER.matcher(query != null ? query : "");
+        while (parameters.find()) {
+            if (parameters.group(1).equals("source")) {
+                source = parameters.group(2);
+            } else if (parameters.group(1).equals("currencies")) {
+                currencies = parameters.group(2).replace("%2C", ",");
+            }
+        }
+
+        var quotes = new StringBuilder();
+        for (var currency : currencies.split(",")) {
+            quotes.append(quotes.isEmpty() ? "" : ",");
+            quotes.append('"').append(source).append(currency).append("\":0.92");
+        }
+        return "{\"success\":true,\"timestamp\":"
+                + System.currentTimeMillis() / 1000
+                + ",\"source\":\""
+                + source
+                + "\",\"quotes\":{"
+                + quotes
+                + "}}";
+    }
+
+    private static void respond(HttpExchange exchange, String response) throws IOException {
+        var body = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        // looked up reflectively, so the benchmark still compiles against Java 17
+        try {
+            return (ExecutorService)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+}